@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra;
+
+import java.util.Map;
+
+/**
+ * A StructuredDataSupport which forwards all its method calls to another StructuredDataSupport.
+ * Subclasses override one or more methods to decorate the behavior of the delegate.
+ *
+ * @param <K> The row key type
+ */
+public abstract class ForwardingStructuredDataSupport<K> implements StructuredDataSupport<K> {
+
+    /**
+     * Return the StructuredDataSupport that method calls are forwarded to.
+     */
+    protected abstract StructuredDataSupport<K> delegate();
+
+    @Override
+    public BatchContext beginBatch() {
+        return delegate().beginBatch();
+    }
+
+    @Override
+    public void applyBatch(BatchContext batchContext) {
+        delegate().applyBatch(batchContext);
+    }
+
+    @Override
+    public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        return delegate().readFromPath(rowKey, path, type);
+    }
+
+    @Override
+    public <T> CloseableIterator<Map.Entry<K,T>> scan(Path path, TypeReference<T> type) {
+        return delegate().scan(path, type);
+    }
+
+    @Override
+    public CloseableIterator<K> scanRowKeys() {
+        return delegate().scanRowKeys();
+    }
+
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        return delegate().iteratePath(rowKey, path);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value) {
+        delegate().writeToPath(rowKey, path, value);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext) {
+        delegate().writeToPath(rowKey, path, value, batchContext);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        delegate().writeColumns(rowKey, columns);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        delegate().writeColumns(rowKey, columns, batchContext);
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path) {
+        delegate().deletePath(rowKey, path);
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path, BatchContext batchContext) {
+        delegate().deletePath(rowKey, path, batchContext);
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        delegate().appendToList(rowKey, listPath, values);
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        return delegate().listSize(rowKey, listPath);
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        delegate().addToSet(rowKey, path, members);
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        delegate().removeFromSet(rowKey, path, members);
+    }
+
+    @Override
+    public Path createPath(String... elements) {
+        return delegate().createPath(elements);
+    }
+}
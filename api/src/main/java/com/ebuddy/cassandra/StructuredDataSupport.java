@@ -15,6 +15,8 @@
  */
  package com.ebuddy.cassandra;
 
+import java.util.Map;
+
 /**
  * <p>
  * Provides data access for structured objects in Cassandra.
@@ -57,6 +59,47 @@ public interface StructuredDataSupport<K> {
      */
     <T> T readFromPath(K rowKey, Path path, TypeReference<T> type);
 
+    /**
+     * Scan all rows in the table or column family, reading the object at the specified path in each row.
+     * The token ring is split into ranges that are read concurrently, one page of rows at a time, so only a bounded
+     * number of objects are held in memory. Rows are returned in no particular order and rows that have no
+     * data at the path are skipped.
+     * The iterator should be closed if it is not read to the end.
+     *
+     * @param path the path to the object to be read in each row
+     * @param type a TypeReference for the type of objects to be returned
+     * @param <T> the type of the objects to be returned
+     * @return an iterator of entries of row key to object
+     */
+    <T> CloseableIterator<Map.Entry<K,T>> scan(Path path, TypeReference<T> type);
+
+    /**
+     * Scan the keys of all rows in the table or column family, reading only as much of each row as is needed to
+     * find its key. Rows are read one page at a time, so only a bounded number of keys are held in memory.
+     * Keys are returned in no particular order, and each key is returned once.
+     * The iterator should be closed if it is not read to the end.
+     *
+     * @return an iterator of row keys
+     */
+    CloseableIterator<K> scanRowKeys();
+
+    /**
+     * Read the simple values under a path one at a time, without composing them into an object, e.g. to export or
+     * forward very large objects in bounded memory. The values are read from the database one page at a time as
+     * the iterator is advanced, so reading keeps pace with the consumer.
+     * Each entry has the path of a simple value relative to the specified path, which is empty for a simple value
+     * at the path itself, and the value, i.e. a String, Number, Boolean or null. Entries are returned in the order
+     * of the encoded paths, with list elements as list index elements and members of sets of simple values as
+     * set member elements; list terminators and list headers are not returned.
+     * The iterator should be closed if it is not read to the end.
+     *
+     * @param rowKey the row key for the object to be read
+     * @param path the path to the object to be read
+     * @return an iterator of entries of relative path to simple value, which is empty if not found
+     * @throws IllegalArgumentException if path is empty
+     */
+    CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path);
+
     /**
      * Write an object to a path in the database.
      * @param rowKey the row key for the object to be written
@@ -74,6 +117,27 @@ public interface StructuredDataSupport<K> {
      */
     void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext);
 
+    /**
+     * Write columns that are already decomposed, e.g. columns that were decomposed earlier and buffered, as a single
+     * write without converting and decomposing them again.
+     * Each entry has the full path of a column and its value as decomposed, i.e. a String, Number, Boolean, list
+     * terminator, or the null token {@code org.apache.commons.lang3.ObjectUtils.NULL} that stands in for null.
+     * @param rowKey the row key for the columns to be written
+     * @param columns the decomposed columns, by path
+     * @throws IllegalArgumentException if any path is empty
+     */
+    void writeColumns(K rowKey, Map<Path,Object> columns);
+
+    /**
+     * Write columns that are already decomposed as part of a batch operation.
+     * @param rowKey the row key for the columns to be written
+     * @param columns the decomposed columns, by path
+     * @param batchContext the BatchContext that this write operation should participate in
+     * @throws IllegalArgumentException if any path is empty
+     * @see #writeColumns(Object, Map)
+     */
+    void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext);
+
     /**
      * Delete the values found at the specified path.
      * @param rowKey the row key for the object to be deleted
@@ -89,6 +153,53 @@ public interface StructuredDataSupport<K> {
      */
     void deletePath(K rowKey, Path path, BatchContext batchContext);
 
+    /**
+     * Append elements to the end of a list in the database, creating the list if it does not exist.
+     * The current size of the list is obtained from the list header, which is a single column read; if there
+     * is no list header then the whole list is read once and a list header is written along with the new elements.
+     * Lists that are appended to should also be written with list headers enabled so that the list header
+     * stays consistent when the whole list is replaced.
+     * Note that appending is not atomic: concurrent appends to the same list may overwrite each other's elements.
+     *
+     * @param rowKey the row key for the list
+     * @param listPath the path to the list
+     * @param values the elements to append
+     */
+    void appendToList(K rowKey, Path listPath, Object... values);
+
+    /**
+     * Get the size of a list in the database. If the list has a list header then only a single column is read,
+     * otherwise the whole list is read.
+     *
+     * @param rowKey the row key for the list
+     * @param listPath the path to the list
+     * @return the size of the list, or zero if not found
+     */
+    int listSize(K rowKey, Path listPath);
+
+    /**
+     * Add members to a set in the database, creating the set if it does not exist.
+     * Members of a set of simple values are encoded in the paths, so this is a single write without a read.
+     *
+     * @param rowKey the row key for the set
+     * @param path the path to the set
+     * @param members the members to add, which must be non-null Strings, Numbers, or Booleans
+     * @throws IllegalArgumentException if any member is null or not a simple value
+     */
+    void addToSet(K rowKey, Path path, Object... members);
+
+    /**
+     * Remove members from a set in the database. This is a single delete without a read.
+     * Only members that are encoded in the paths are removed, i.e. members of sets that were written with
+     * non-null simple values.
+     *
+     * @param rowKey the row key for the set
+     * @param path the path to the set
+     * @param members the members to remove, which must be non-null Strings, Numbers, or Booleans
+     * @throws IllegalArgumentException if any member is null or not a simple value
+     */
+    void removeFromSet(K rowKey, Path path, Object... members);
+
     /**
      * Utility method for creating a Path from individual string elements.
      */
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-safe histogram of non-negative values with a fixed amount of memory.
+ * Each power of two is divided into eight buckets of equal width, so percentiles are accurate to within
+ * an eighth of the value. Negative values are recorded as zero.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Record a value. */
+    public void record(long value) {
+        long nonNegativeValue = Math.max(0L, value);
+        counts.incrementAndGet(bucketOf(nonNegativeValue));
+        count.incrementAndGet();
+        sum.addAndGet(nonNegativeValue);
+
+        long currentMax = max.get();
+        while (nonNegativeValue > currentMax && !max.compareAndSet(currentMax, nonNegativeValue)) {
+            currentMax = max.get();
+        }
+    }
+
+    /** Return the number of values recorded. */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** Return the sum of the values recorded. */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /** Return the largest value recorded, or zero if none were recorded. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** Return the mean of the values recorded, or zero if none were recorded. */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0 : (double)sum.get() / n;
+    }
+
+    /**
+     * Return an upper bound of the value at a percentile of the values recorded, or zero if none were recorded.
+     * @param percentile the percentile, from 0 to 100
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0L;
+        }
+
+        long rank = Math.max(1L, (long)Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount() + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getPercentile(50) +
+                ", p99=" + getPercentile(99) + ", max=" + getMax();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        if (exponent == Long.SIZE - 1) {
+            return Long.MAX_VALUE;
+        }
+        long subBucket = bucket % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Metrics kept in memory as histograms, one for each kind of metric and operation, and for each phase of
+ * each operation. Histograms are created when the first value is recorded in them.
+ * Latencies are recorded in nanoseconds.
+ */
+public class InMemoryMetrics implements Metrics {
+    private static final int OPERATIONS = Operation.values().length;
+    private static final int PHASES = Phase.values().length;
+
+    private final AtomicReferenceArray<Histogram> latencies = new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> phaseLatencies =
+            new AtomicReferenceArray<Histogram>(OPERATIONS * PHASES);
+    private final AtomicReferenceArray<Histogram> columnsRead = new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> valueSizesRead = new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> columnsWritten = new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> valueSizesWritten =
+            new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> batchSizes = new AtomicReferenceArray<Histogram>(OPERATIONS);
+    private final AtomicReferenceArray<Histogram> queueDepths = new AtomicReferenceArray<Histogram>(OPERATIONS);
+
+    @Override
+    public void recordLatency(Operation operation, long elapsedNanos) {
+        getOrCreate(latencies, operation.ordinal()).record(elapsedNanos);
+    }
+
+    @Override
+    public void recordPhase(Operation operation, Phase phase, long elapsedNanos) {
+        getOrCreate(phaseLatencies, phaseIndex(operation, phase)).record(elapsedNanos);
+    }
+
+    @Override
+    public void recordColumnsRead(Operation operation, int columnCount, long valueSize) {
+        getOrCreate(columnsRead, operation.ordinal()).record(columnCount);
+        getOrCreate(valueSizesRead, operation.ordinal()).record(valueSize);
+    }
+
+    @Override
+    public void recordColumnsWritten(Operation operation, int columnCount, long valueSize) {
+        getOrCreate(columnsWritten, operation.ordinal()).record(columnCount);
+        getOrCreate(valueSizesWritten, operation.ordinal()).record(valueSize);
+    }
+
+    @Override
+    public void recordBatchSize(Operation operation, int statementCount) {
+        getOrCreate(batchSizes, operation.ordinal()).record(statementCount);
+    }
+
+    @Override
+    public void recordQueueDepth(Operation operation, int queueDepth) {
+        getOrCreate(queueDepths, operation.ordinal()).record(queueDepth);
+    }
+
+    /** Return the latencies of an operation in nanoseconds. */
+    public Histogram getLatency(Operation operation) {
+        return getOrCreate(latencies, operation.ordinal());
+    }
+
+    /** Return the time spent in a phase of an operation in nanoseconds. */
+    public Histogram getPhaseLatency(Operation operation, Phase phase) {
+        return getOrCreate(phaseLatencies, phaseIndex(operation, phase));
+    }
+
+    /** Return the number of columns read by an operation. */
+    public Histogram getColumnsRead(Operation operation) {
+        return getOrCreate(columnsRead, operation.ordinal());
+    }
+
+    /** Return the total size of the values read by an operation. */
+    public Histogram getValueSizeRead(Operation operation) {
+        return getOrCreate(valueSizesRead, operation.ordinal());
+    }
+
+    /** Return the number of columns written by an operation. */
+    public Histogram getColumnsWritten(Operation operation) {
+        return getOrCreate(columnsWritten, operation.ordinal());
+    }
+
+    /** Return the total size of the values written by an operation. */
+    public Histogram getValueSizeWritten(Operation operation) {
+        return getOrCreate(valueSizesWritten, operation.ordinal());
+    }
+
+    /** Return the number of statements or mutations in the batches executed by an operation. */
+    public Histogram getBatchSize(Operation operation) {
+        return getOrCreate(batchSizes, operation.ordinal());
+    }
+
+    /** Return the number of operations waiting when an operation was submitted for asynchronous execution. */
+    public Histogram getQueueDepth(Operation operation) {
+        return getOrCreate(queueDepths, operation.ordinal());
+    }
+
+    /**
+     * Return a report of the latencies of all operations and phases that have been recorded, one per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        for (Operation operation : Operation.values()) {
+            Histogram latency = latencies.get(operation.ordinal());
+            if (latency == null) {
+                continue;
+            }
+            report.append(operation).append(": ").append(latency).append('\n');
+            for (Phase phase : Phase.values()) {
+                Histogram phaseLatency = phaseLatencies.get(phaseIndex(operation, phase));
+                if (phaseLatency != null) {
+                    report.append("    ").append(phase).append(": ").append(phaseLatency).append('\n');
+                }
+            }
+        }
+        return report.toString();
+    }
+
+    private static int phaseIndex(Operation operation, Phase phase) {
+        return operation.ordinal() * PHASES + phase.ordinal();
+    }
+
+    private static Histogram getOrCreate(AtomicReferenceArray<Histogram> histograms, int index) {
+        Histogram histogram = histograms.get(index);
+        if (histogram == null) {
+            histograms.compareAndSet(index, null, new Histogram());
+            histogram = histograms.get(index);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+/**
+ * Receives the metrics recorded by data access operations. Implementations must be thread-safe and should return
+ * quickly, since they are called on the thread executing the operation.
+ *
+ * @see NoOpMetrics
+ * @see InMemoryMetrics
+ */
+public interface Metrics {
+
+    /**
+     * Record the time taken by an operation that completed normally.
+     * @param operation the operation
+     * @param elapsedNanos the elapsed time in nanoseconds
+     */
+    void recordLatency(Operation operation, long elapsedNanos);
+
+    /**
+     * Record the time spent in one phase of an operation.
+     * @param operation the operation
+     * @param phase the phase of the operation
+     * @param elapsedNanos the elapsed time in nanoseconds
+     */
+    void recordPhase(Operation operation, Phase phase, long elapsedNanos);
+
+    /**
+     * Record the columns read by an operation.
+     * @param operation the operation
+     * @param columnCount the number of columns
+     * @param valueSize the total size of the column values in bytes, or in characters for values read as text
+     */
+    void recordColumnsRead(Operation operation, int columnCount, long valueSize);
+
+    /**
+     * Record the columns written by an operation.
+     * @param operation the operation
+     * @param columnCount the number of columns
+     * @param valueSize the total size of the column values in bytes, or in characters for values written as text
+     */
+    void recordColumnsWritten(Operation operation, int columnCount, long valueSize);
+
+    /**
+     * Record the number of statements or mutations executed in one batch.
+     * @param operation the operation
+     * @param statementCount the number of statements or mutations
+     */
+    void recordBatchSize(Operation operation, int statementCount);
+
+    /**
+     * Record the number of operations waiting to be executed when an operation is submitted for execution.
+     * @param operation the operation
+     * @param queueDepth the number of operations waiting, not including the submitted operation
+     */
+    void recordQueueDepth(Operation operation, int queueDepth);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+/**
+ * Metrics that are discarded. This is the default for all data access classes.
+ */
+public enum NoOpMetrics implements Metrics {
+    INSTANCE;
+
+    @Override
+    public void recordLatency(Operation operation, long elapsedNanos) {
+    }
+
+    @Override
+    public void recordPhase(Operation operation, Phase phase, long elapsedNanos) {
+    }
+
+    @Override
+    public void recordColumnsRead(Operation operation, int columnCount, long valueSize) {
+    }
+
+    @Override
+    public void recordColumnsWritten(Operation operation, int columnCount, long valueSize) {
+    }
+
+    @Override
+    public void recordBatchSize(Operation operation, int statementCount) {
+    }
+
+    @Override
+    public void recordQueueDepth(Operation operation, int queueDepth) {
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+/**
+ * The operations for which metrics are recorded.
+ */
+public enum Operation {
+    /** StructuredDataSupport.readFromPath. */
+    READ,
+    /** Reading one chunk of rows of a multi-row readFromPath. */
+    MULTI_READ,
+    /** Reading one page of a StructuredDataSupport.scan or scanRowKeys. */
+    SCAN,
+    /** StructuredDataSupport.writeToPath. */
+    WRITE,
+    /** StructuredDataSupport.deletePath. */
+    DELETE,
+    /** StructuredDataSupport.appendToList. */
+    APPEND_TO_LIST,
+    /** StructuredDataSupport.listSize. */
+    LIST_SIZE,
+    /** StructuredDataSupport.addToSet. */
+    ADD_TO_SET,
+    /** StructuredDataSupport.removeFromSet. */
+    REMOVE_FROM_SET,
+    /** StructuredDataSupport.applyBatch. */
+    APPLY_BATCH,
+    /** Sweeping the columns deleted by prefix tombstones under a path. */
+    SWEEP_TOMBSTONES,
+    /** A query of a column family template. */
+    READ_COLUMNS,
+    /** An immediate write of a column family template. */
+    WRITE_COLUMNS,
+    /** An immediate delete of a column family template. */
+    DELETE_COLUMNS,
+    /** The execution of a batch of a column family template. */
+    COMMIT,
+    /** The execution of part of an auto-flushing batch when a threshold is reached. */
+    FLUSH,
+    /** An asynchronous operation of a template or structured data support, from submission to completion. */
+    ASYNC
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import com.ebuddy.cassandra.Path;
+
+/**
+ * Measures the time spent in the phases of one operation and the time taken by the whole operation.
+ * Each call of phase records the time since the start of the operation or the end of the previous phase.
+ * Timers for NoOpMetrics do not read the clock. A timer is used by one thread only.
+ * <p>
+ * If the metrics are TracingMetrics and the operation is traced, the timer also accumulates a trace record,
+ * which is emitted when the operation is stopped.
+ */
+public final class OperationTimer {
+    private static final OperationTimer NO_OP = new OperationTimer(NoOpMetrics.INSTANCE, null, null, false, null, null);
+
+    private final Metrics metrics;
+    private final Operation operation;
+    private final long startNanos;
+    private long lastNanos;
+
+    // the following are only used if the operation is traced
+    private final TracingMetrics tracing;
+    private final boolean sampled;
+    private final Object rowKey;
+    private final Path path;
+    private final long[] phaseNanos;
+    private int columnsRead;
+    private long valueSizeRead;
+    private int columnsWritten;
+    private long valueSizeWritten;
+    private int batchSize;
+    private UUID queryTraceId;
+
+    private OperationTimer(Metrics metrics,
+                           Operation operation,
+                           @Nullable TracingMetrics tracing,
+                           boolean sampled,
+                           @Nullable Object rowKey,
+                           @Nullable Path path) {
+        this.metrics = metrics;
+        this.operation = operation;
+        this.tracing = tracing;
+        this.sampled = sampled;
+        this.rowKey = rowKey;
+        this.path = path;
+        phaseNanos = tracing == null ? null : new long[Phase.values().length];
+        startNanos = metrics == NoOpMetrics.INSTANCE ? 0L : System.nanoTime();
+        lastNanos = startNanos;
+    }
+
+    /**
+     * Start timing an operation.
+     * @param metrics the metrics to record to
+     * @param operation the operation
+     * @return the timer
+     */
+    public static OperationTimer start(Metrics metrics, Operation operation) {
+        return start(metrics, operation, null, null);
+    }
+
+    /**
+     * Start timing an operation on a row, or on a path in a row, that may be traced.
+     * @param metrics the metrics to record to
+     * @param operation the operation
+     * @param rowKey the row key, or null if the operation is not on a single row
+     * @param path the path, or null if the operation is not on a path
+     * @return the timer
+     */
+    public static OperationTimer start(Metrics metrics,
+                                       Operation operation,
+                                       @Nullable Object rowKey,
+                                       @Nullable Path path) {
+        if (metrics == NoOpMetrics.INSTANCE) {
+            return NO_OP;
+        }
+        if (!(metrics instanceof TracingMetrics)) {
+            return new OperationTimer(metrics, operation, null, false, null, null);
+        }
+
+        TracingMetrics tracing = (TracingMetrics)metrics;
+        boolean sampled = tracing.sample();
+        if (sampled || tracing.isSlowThresholdSet()) {
+            return new OperationTimer(metrics, operation, tracing, sampled, rowKey, path);
+        }
+        if (tracing.getDelegate() == NoOpMetrics.INSTANCE) {
+            return NO_OP;
+        }
+        return new OperationTimer(metrics, operation, null, false, null, null);
+    }
+
+    /** Return true if the metrics are recorded, so that computing them is worthwhile. */
+    public boolean isRecording() {
+        return this != NO_OP;
+    }
+
+    /** Return true if the operation is sampled and the query trace of its queries is wanted. */
+    public boolean isQueryTraceRequested() {
+        return sampled && tracing.isQueryTraceEnabled();
+    }
+
+    /** Record the end of a phase. */
+    public void phase(Phase phase) {
+        if (this == NO_OP) {
+            return;
+        }
+        long now = System.nanoTime();
+        metrics.recordPhase(operation, phase, now - lastNanos);
+        if (tracing != null) {
+            phaseNanos[phase.ordinal()] += now - lastNanos;
+        }
+        lastNanos = now;
+    }
+
+    /** Record the columns read by the operation. */
+    public void columnsRead(int columnCount, long valueSize) {
+        metrics.recordColumnsRead(operation, columnCount, valueSize);
+        if (tracing != null) {
+            columnsRead += columnCount;
+            valueSizeRead += valueSize;
+        }
+    }
+
+    /** Record the columns written by the operation. */
+    public void columnsWritten(int columnCount, long valueSize) {
+        metrics.recordColumnsWritten(operation, columnCount, valueSize);
+        if (tracing != null) {
+            columnsWritten += columnCount;
+            valueSizeWritten += valueSize;
+        }
+    }
+
+    /** Record the number of statements or mutations executed in one batch by the operation. */
+    public void batchSize(int statementCount) {
+        metrics.recordBatchSize(operation, statementCount);
+        if (tracing != null) {
+            batchSize += statementCount;
+        }
+    }
+
+    /** Record the id of a query trace of the operation. */
+    public void queryTrace(UUID traceId) {
+        if (tracing != null) {
+            queryTraceId = traceId;
+        }
+    }
+
+    /** Record the end of the operation. */
+    public void stop() {
+        if (this == NO_OP) {
+            return;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        metrics.recordLatency(operation, elapsedNanos);
+        if (tracing != null && (sampled || tracing.isSlow(elapsedNanos))) {
+            tracing.emit(new TraceRecord(operation,
+                                         rowKey,
+                                         path,
+                                         System.currentTimeMillis(),
+                                         elapsedNanos,
+                                         phaseNanos,
+                                         columnsRead,
+                                         valueSizeRead,
+                                         columnsWritten,
+                                         valueSizeWritten,
+                                         batchSize,
+                                         queryTraceId,
+                                         sampled));
+        }
+    }
+}
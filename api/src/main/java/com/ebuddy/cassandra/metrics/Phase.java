@@ -0,0 +1,42 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.metrics;
+
+/**
+ * The phases of an operation for which the time spent is recorded.
+ */
+public enum Phase {
+    /** Executing a query and receiving the result. */
+    QUERY,
+    /** Decoding column values into simple objects. */
+    DECODE,
+    /** Composing the simple objects read into a structure. */
+    COMPOSE,
+    /** Converting between a structure and an object of the requested type with Jackson. */
+    CONVERT,
+    /** Decomposing a structure into simple objects by path. */
+    DECOMPOSE,
+    /** Encoding simple objects into column values. */
+    ENCODE,
+    /** Preparing a statement and binding its arguments. */
+    BIND,
+    /** Executing a mutation. */
+    EXECUTE,
+    /** Waiting to be executed after being submitted for asynchronous execution. */
+    QUEUE
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the most recent trace records in memory so they can be read at runtime, e.g. from a management interface.
+ */
+public class RingBufferTraceSink implements TraceSink {
+    private final TraceRecord[] records;
+    private long emitted;
+
+    /**
+     * Create a ring buffer.
+     * @param capacity the number of records that are kept
+     */
+    public RingBufferTraceSink(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        records = new TraceRecord[capacity];
+    }
+
+    @Override
+    public synchronized void emit(TraceRecord record) {
+        records[(int)(emitted % records.length)] = record;
+        emitted++;
+    }
+
+    /**
+     * Return the records kept, oldest first.
+     */
+    public synchronized List<TraceRecord> getRecords() {
+        int size = (int)Math.min(emitted, records.length);
+        List<TraceRecord> result = new ArrayList<TraceRecord>(size);
+        for (long i = emitted - size; i < emitted; i++) {
+            result.add(records[(int)(i % records.length)]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the number of records emitted since this sink was created or cleared, including those no longer kept.
+     */
+    public synchronized long getEmittedCount() {
+        return emitted;
+    }
+
+    /**
+     * Discard the records kept.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < records.length; i++) {
+            records[i] = null;
+        }
+        emitted = 0;
+    }
+}
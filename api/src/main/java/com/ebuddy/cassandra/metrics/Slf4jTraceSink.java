@@ -0,0 +1,52 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs trace records with SLF4J, one line per record. Sampled records are logged at info level and
+ * slow records at warn level.
+ */
+public class Slf4jTraceSink implements TraceSink {
+    private final Logger log;
+
+    /**
+     * Create a sink that logs to the logger of this class.
+     */
+    public Slf4jTraceSink() {
+        this(LoggerFactory.getLogger(Slf4jTraceSink.class));
+    }
+
+    /**
+     * Create a sink that logs to a logger.
+     * @param log the logger
+     */
+    public Slf4jTraceSink(Logger log) {
+        this.log = log;
+    }
+
+    @Override
+    public void emit(TraceRecord record) {
+        if (record.isSampled()) {
+            log.info("{}", record);
+        } else {
+            log.warn("{}", record);
+        }
+    }
+}
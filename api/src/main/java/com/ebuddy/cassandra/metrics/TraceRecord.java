@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import com.ebuddy.cassandra.Path;
+
+/**
+ * An immutable record of one traced operation, with the time spent in each phase and the volume of data
+ * read and written. Times are in nanoseconds.
+ */
+public final class TraceRecord {
+    private final Operation operation;
+    private final Object rowKey;
+    private final Path path;
+    private final long timestampMillis;
+    private final long elapsedNanos;
+    private final Map<Phase,Long> phaseNanos;
+    private final int columnsRead;
+    private final long valueSizeRead;
+    private final int columnsWritten;
+    private final long valueSizeWritten;
+    private final int batchSize;
+    private final UUID queryTraceId;
+    private final boolean sampled;
+
+    @SuppressWarnings("ConstructorWithTooManyParameters")
+    TraceRecord(Operation operation,
+                @Nullable Object rowKey,
+                @Nullable Path path,
+                long timestampMillis,
+                long elapsedNanos,
+                long[] phaseNanos,
+                int columnsRead,
+                long valueSizeRead,
+                int columnsWritten,
+                long valueSizeWritten,
+                int batchSize,
+                @Nullable UUID queryTraceId,
+                boolean sampled) {
+        this.operation = operation;
+        this.rowKey = rowKey;
+        this.path = path;
+        this.timestampMillis = timestampMillis;
+        this.elapsedNanos = elapsedNanos;
+        Map<Phase,Long> phases = new EnumMap<Phase,Long>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            if (phaseNanos[phase.ordinal()] > 0L) {
+                phases.put(phase, phaseNanos[phase.ordinal()]);
+            }
+        }
+        this.phaseNanos = Collections.unmodifiableMap(phases);
+        this.columnsRead = columnsRead;
+        this.valueSizeRead = valueSizeRead;
+        this.columnsWritten = columnsWritten;
+        this.valueSizeWritten = valueSizeWritten;
+        this.batchSize = batchSize;
+        this.queryTraceId = queryTraceId;
+        this.sampled = sampled;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /** Return the row key, or null if the operation is not on a single row. */
+    @Nullable
+    public Object getRowKey() {
+        return rowKey;
+    }
+
+    /** Return the path, or null if the operation is not on a path. */
+    @Nullable
+    public Path getPath() {
+        return path;
+    }
+
+    /** Return the time the operation ended, in milliseconds since the epoch. */
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /** Return the time spent in each phase of the operation, for the phases that were recorded. */
+    public Map<Phase,Long> getPhaseNanos() {
+        return phaseNanos;
+    }
+
+    public int getColumnsRead() {
+        return columnsRead;
+    }
+
+    public long getValueSizeRead() {
+        return valueSizeRead;
+    }
+
+    public int getColumnsWritten() {
+        return columnsWritten;
+    }
+
+    public long getValueSizeWritten() {
+        return valueSizeWritten;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Return the id of the query trace recorded by Cassandra for the last query of the operation,
+     * or null if query tracing was not enabled. The trace can be read from the system_traces keyspace.
+     */
+    @Nullable
+    public UUID getQueryTraceId() {
+        return queryTraceId;
+    }
+
+    /** Return true if the operation was sampled, or false if it was traced only because it was slow. */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("operation=").append(operation);
+        if (rowKey != null) {
+            builder.append(" rowKey=").append(rowKey);
+        }
+        if (path != null) {
+            builder.append(" path=").append(path);
+        }
+        builder.append(" elapsedMicros=").append(elapsedNanos / 1000L);
+        for (Map.Entry<Phase,Long> entry : phaseNanos.entrySet()) {
+            builder.append(' ').append(entry.getKey().name().toLowerCase()).append("Micros=")
+                   .append(entry.getValue() / 1000L);
+        }
+        if (columnsRead > 0) {
+            builder.append(" columnsRead=").append(columnsRead).append(" valueSizeRead=").append(valueSizeRead);
+        }
+        if (columnsWritten > 0) {
+            builder.append(" columnsWritten=").append(columnsWritten)
+                   .append(" valueSizeWritten=").append(valueSizeWritten);
+        }
+        if (batchSize > 0) {
+            builder.append(" batchSize=").append(batchSize);
+        }
+        if (queryTraceId != null) {
+            builder.append(" queryTraceId=").append(queryTraceId);
+        }
+        builder.append(sampled ? " sampled" : " slow");
+        return builder.toString();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+/**
+ * Receives the trace records of the operations that are sampled or slow.
+ * Records are emitted by the thread that performed the operation, so a sink should not block.
+ */
+public interface TraceSink {
+
+    /**
+     * Receive a trace record.
+     * @param record the record of one operation
+     */
+    void emit(TraceRecord record);
+}
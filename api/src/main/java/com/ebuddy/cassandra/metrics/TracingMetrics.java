@@ -0,0 +1,143 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics that also trace a sample of operations, and every operation slower than a threshold, to a TraceSink.
+ * A trace record has the row key and path of the operation, the time spent in each phase, and the columns and
+ * value sizes read and written. The CQL implementation can also enable Cassandra query tracing for sampled
+ * operations and record the id of the query trace.
+ * <p>
+ * All metrics are also recorded to a delegate, which can be NoOpMetrics if only tracing is wanted.
+ * In that case, operations that are not sampled are not timed at all unless a slow threshold is set.
+ */
+public class TracingMetrics implements Metrics {
+    private final Metrics delegate;
+    private final TraceSink sink;
+    private final ThreadLocal<Random> random = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+
+    private volatile double sampleRate;
+    private volatile long slowThresholdNanos = Long.MAX_VALUE;
+    private volatile boolean queryTraceEnabled;
+
+    /**
+     * Create an instance that samples no operations until a sample rate or a slow threshold is set.
+     * @param delegate the metrics that all metrics are recorded to
+     * @param sink the sink for the trace records
+     */
+    public TracingMetrics(Metrics delegate, TraceSink sink) {
+        if (delegate == null || sink == null) {
+            throw new IllegalArgumentException("delegate and sink are required");
+        }
+        this.delegate = delegate;
+        this.sink = sink;
+    }
+
+    /**
+     * Set the fraction of operations that are traced, from 0 (none) to 1 (all). The default is 0.
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        }
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Trace every operation that takes at least this long, whether it is sampled or not.
+     * By default operations are not traced for being slow.
+     */
+    public void setSlowThreshold(long threshold, TimeUnit unit) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        slowThresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * Enable Cassandra query tracing of sampled operations, where supported.
+     * Query tracing adds load to the cluster, so it should be used with a low sample rate. The default is false.
+     */
+    public void setQueryTraceEnabled(boolean queryTraceEnabled) {
+        this.queryTraceEnabled = queryTraceEnabled;
+    }
+
+    public boolean isQueryTraceEnabled() {
+        return queryTraceEnabled;
+    }
+
+    @Override
+    public void recordLatency(Operation operation, long elapsedNanos) {
+        delegate.recordLatency(operation, elapsedNanos);
+    }
+
+    @Override
+    public void recordPhase(Operation operation, Phase phase, long elapsedNanos) {
+        delegate.recordPhase(operation, phase, elapsedNanos);
+    }
+
+    @Override
+    public void recordColumnsRead(Operation operation, int columnCount, long valueSize) {
+        delegate.recordColumnsRead(operation, columnCount, valueSize);
+    }
+
+    @Override
+    public void recordColumnsWritten(Operation operation, int columnCount, long valueSize) {
+        delegate.recordColumnsWritten(operation, columnCount, valueSize);
+    }
+
+    @Override
+    public void recordBatchSize(Operation operation, int statementCount) {
+        delegate.recordBatchSize(operation, statementCount);
+    }
+
+    @Override
+    public void recordQueueDepth(Operation operation, int queueDepth) {
+        delegate.recordQueueDepth(operation, queueDepth);
+    }
+
+    Metrics getDelegate() {
+        return delegate;
+    }
+
+    /** Decide whether to sample the next operation. */
+    boolean sample() {
+        double rate = sampleRate;
+        return rate >= 1.0 || rate > 0.0 && random.get().nextDouble() < rate;
+    }
+
+    /** Return true if operations that are not sampled are traced if they are slow. */
+    boolean isSlowThresholdSet() {
+        return slowThresholdNanos != Long.MAX_VALUE;
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= slowThresholdNanos;
+    }
+
+    void emit(TraceRecord record) {
+        sink.emit(record);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for Histogram.
+ */
+public class HistogramTest {
+
+    @Test(groups = "unit")
+    public void emptyHistogramReturnsZero() throws Exception {
+        Histogram histogram = new Histogram();
+
+        assertEquals(histogram.getCount(), 0L);
+        assertEquals(histogram.getMax(), 0L);
+        assertEquals(histogram.getMean(), 0.0);
+        assertEquals(histogram.getPercentile(99), 0L);
+    }
+
+    @Test(groups = "unit")
+    public void smallValuesAreExact() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 0; i < 8; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(histogram.getCount(), 8L);
+        assertEquals(histogram.getSum(), 28L);
+        assertEquals(histogram.getPercentile(50), 3L);
+        assertEquals(histogram.getPercentile(100), 7L);
+    }
+
+    @Test(groups = "unit")
+    public void percentileIsWithinAnEighthOfTheValue() throws Exception {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p50 >= 500000L && p50 <= 500000L * 9 / 8, "p50=" + p50);
+        assertTrue(p99 >= 990000L && p99 <= 990000L * 9 / 8, "p99=" + p99);
+        assertEquals(histogram.getPercentile(100), 1000000L);
+        assertEquals(histogram.getMax(), 1000000L);
+    }
+
+    @Test(groups = "unit")
+    public void largestValuesAreRecorded() throws Exception {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-1L);
+
+        assertEquals(histogram.getPercentile(0), 0L);
+        assertEquals(histogram.getPercentile(100), Long.MAX_VALUE);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void percentileOutOfRange() throws Exception {
+        new Histogram().getPercentile(101);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for OperationTimer and InMemoryMetrics.
+ */
+public class OperationTimerTest {
+
+    @Test(groups = "unit")
+    public void timerWithNoOpMetricsIsShared() throws Exception {
+        OperationTimer timer = OperationTimer.start(NoOpMetrics.INSTANCE, Operation.READ);
+
+        assertFalse(timer.isRecording());
+        assertSame(OperationTimer.start(NoOpMetrics.INSTANCE, Operation.WRITE), timer);
+    }
+
+    @Test(groups = "unit")
+    public void timerRecordsOperation() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+
+        OperationTimer timer = OperationTimer.start(metrics, Operation.READ);
+        assertTrue(timer.isRecording());
+        timer.phase(Phase.QUERY);
+        timer.columnsRead(3, 42L);
+        timer.phase(Phase.COMPOSE);
+        timer.stop();
+
+        assertEquals(metrics.getLatency(Operation.READ).getCount(), 1L);
+        assertEquals(metrics.getPhaseLatency(Operation.READ, Phase.QUERY).getCount(), 1L);
+        assertEquals(metrics.getPhaseLatency(Operation.READ, Phase.COMPOSE).getCount(), 1L);
+        assertEquals(metrics.getColumnsRead(Operation.READ).getSum(), 3L);
+        assertEquals(metrics.getValueSizeRead(Operation.READ).getSum(), 42L);
+        assertTrue(metrics.getLatency(Operation.READ).getSum() >=
+                   metrics.getPhaseLatency(Operation.READ, Phase.QUERY).getSum() +
+                   metrics.getPhaseLatency(Operation.READ, Phase.COMPOSE).getSum());
+    }
+
+    @Test(groups = "unit")
+    public void metricsAreKeptPerOperation() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+
+        OperationTimer timer = OperationTimer.start(metrics, Operation.WRITE);
+        timer.columnsWritten(5, 100L);
+        timer.batchSize(5);
+        timer.stop();
+
+        assertEquals(metrics.getColumnsWritten(Operation.WRITE).getSum(), 5L);
+        assertEquals(metrics.getValueSizeWritten(Operation.WRITE).getSum(), 100L);
+        assertEquals(metrics.getBatchSize(Operation.WRITE).getMax(), 5L);
+        assertEquals(metrics.getLatency(Operation.READ).getCount(), 0L);
+    }
+}
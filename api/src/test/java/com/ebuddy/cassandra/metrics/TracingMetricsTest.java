@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for TracingMetrics, including the tracing done by OperationTimer and the RingBufferTraceSink.
+ */
+public class TracingMetricsTest {
+    private final Object rowKey = "rowKey";
+    private RingBufferTraceSink sink;
+    private InMemoryMetrics delegate;
+    private TracingMetrics metrics;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        sink = new RingBufferTraceSink(2);
+        delegate = new InMemoryMetrics();
+        metrics = new TracingMetrics(delegate, sink);
+    }
+
+    @Test(groups = "unit")
+    public void sampledOperationIsTraced() throws Exception {
+        metrics.setSampleRate(1.0);
+
+        OperationTimer timer = OperationTimer.start(metrics, Operation.READ, rowKey, null);
+        timer.phase(Phase.QUERY);
+        timer.columnsRead(2, 10L);
+        timer.columnsRead(1, 5L);
+        timer.queryTrace(UUID.randomUUID());
+        timer.stop();
+
+        List<TraceRecord> records = sink.getRecords();
+        assertEquals(records.size(), 1);
+        TraceRecord record = records.get(0);
+        assertEquals(record.getOperation(), Operation.READ);
+        assertEquals(record.getRowKey(), rowKey);
+        assertTrue(record.isSampled());
+        assertTrue(record.getPhaseNanos().containsKey(Phase.QUERY));
+        assertFalse(record.getPhaseNanos().containsKey(Phase.COMPOSE));
+        assertEquals(record.getColumnsRead(), 3);
+        assertEquals(record.getValueSizeRead(), 15L);
+        assertNotNull(record.getQueryTraceId());
+        assertEquals(delegate.getLatency(Operation.READ).getCount(), 1L);
+    }
+
+    @Test(groups = "unit")
+    public void operationNotSampledIsNotTraced() throws Exception {
+        OperationTimer timer = OperationTimer.start(metrics, Operation.READ, rowKey, null);
+        timer.phase(Phase.QUERY);
+        timer.queryTrace(UUID.randomUUID());
+        timer.stop();
+
+        assertTrue(sink.getRecords().isEmpty());
+        assertEquals(delegate.getLatency(Operation.READ).getCount(), 1L);
+    }
+
+    @Test(groups = "unit")
+    public void operationNotSampledIsNotTimedWithoutDelegate() throws Exception {
+        TracingMetrics tracingOnly = new TracingMetrics(NoOpMetrics.INSTANCE, sink);
+
+        OperationTimer timer = OperationTimer.start(tracingOnly, Operation.READ, rowKey, null);
+
+        assertFalse(timer.isRecording());
+        assertFalse(timer.isQueryTraceRequested());
+    }
+
+    @Test(groups = "unit")
+    public void slowOperationIsTraced() throws Exception {
+        metrics.setSlowThreshold(0L, TimeUnit.MILLISECONDS);
+
+        OperationTimer timer = OperationTimer.start(metrics, Operation.WRITE, rowKey, null);
+        timer.batchSize(4);
+        timer.stop();
+
+        TraceRecord record = sink.getRecords().get(0);
+        assertFalse(record.isSampled());
+        assertEquals(record.getBatchSize(), 4);
+        assertNull(record.getQueryTraceId());
+    }
+
+    @Test(groups = "unit")
+    public void queryTraceIsRequestedOnlyWhenEnabled() throws Exception {
+        metrics.setSampleRate(1.0);
+        assertFalse(OperationTimer.start(metrics, Operation.READ, rowKey, null).isQueryTraceRequested());
+
+        metrics.setQueryTraceEnabled(true);
+        assertTrue(OperationTimer.start(metrics, Operation.READ, rowKey, null).isQueryTraceRequested());
+    }
+
+    @Test(groups = "unit")
+    public void ringBufferKeepsMostRecentRecords() throws Exception {
+        metrics.setSampleRate(1.0);
+
+        OperationTimer.start(metrics, Operation.READ, "k1", null).stop();
+        OperationTimer.start(metrics, Operation.READ, "k2", null).stop();
+        OperationTimer.start(metrics, Operation.READ, "k3", null).stop();
+
+        List<TraceRecord> records = sink.getRecords();
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getRowKey(), "k2");
+        assertEquals(records.get(1).getRowKey(), "k3");
+        assertEquals(sink.getEmittedCount(), 3L);
+    }
+}
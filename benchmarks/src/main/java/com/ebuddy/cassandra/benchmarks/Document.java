@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A POJO used as the document in the benchmarks.
+ */
+public class Document {
+    private String name;
+    private long count;
+    private boolean active;
+    private List<String> tags = new ArrayList<String>();
+    private List<Document> items = new ArrayList<Document>();
+    private Map<String,Document> children = new LinkedHashMap<String,Document>();
+
+    public Document() {
+    }
+
+    public Document(String name, long count) {
+        this.name = name;
+        this.count = count;
+        active = count % 2 == 0;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public List<Document> getItems() {
+        return items;
+    }
+
+    public void setItems(List<Document> items) {
+        this.items = items;
+    }
+
+    public Map<String,Document> getChildren() {
+        return children;
+    }
+
+    public void setChildren(Map<String,Document> children) {
+        this.children = children;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+/**
+ * The shapes of the documents that the benchmarks are run over.
+ */
+public enum DocumentShape {
+    /** A few simple properties and a short list. */
+    SMALL {
+        @Override
+        public Document create() {
+            Document document = new Document("small", 1L);
+            document.getTags().add("a");
+            document.getTags().add("b");
+            return document;
+        }
+    },
+    /** Documents nested twenty levels deep. */
+    DEEP {
+        @Override
+        public Document create() {
+            Document root = new Document("deep", 0L);
+            Document parent = root;
+            for (int i = 1; i < 20; i++) {
+                Document child = new Document("level " + i, i);
+                parent.getChildren().put("child", child);
+                parent = child;
+            }
+            return root;
+        }
+    },
+    /** Two hundred child documents in one map. */
+    WIDE {
+        @Override
+        public Document create() {
+            Document root = new Document("wide", 0L);
+            for (int i = 0; i < 200; i++) {
+                root.getChildren().put("child" + i, new Document("child " + i, i));
+            }
+            return root;
+        }
+    },
+    /** A list of five hundred strings and a list of fifty documents. */
+    LIST_HEAVY {
+        @Override
+        public Document create() {
+            Document root = new Document("lists", 0L);
+            for (int i = 0; i < 500; i++) {
+                root.getTags().add("tag" + i);
+            }
+            for (int i = 0; i < 50; i++) {
+                Document item = new Document("item " + i, i);
+                item.getTags().add("x");
+                root.getItems().add(item);
+            }
+            return root;
+        }
+    };
+
+    /** Create a new document of this shape. */
+    public abstract Document create();
+}
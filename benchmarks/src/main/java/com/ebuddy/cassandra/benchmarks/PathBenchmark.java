@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.structure.DefaultPath;
+
+/**
+ * Creating, parsing, encoding and comparing paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathBenchmark {
+
+    @Param({"2", "8"})
+    private int depth;
+
+    private String[] elements;
+    private String encoded;
+    private Path path;
+    private Path prefix;
+    private Path parsed;
+
+    @Setup
+    public void setUp() {
+        elements = new String[depth];
+        for (int i = 0; i < depth; i++) {
+            elements[i] = "element " + i;
+        }
+        path = DefaultPath.fromStrings(elements);
+        encoded = path.toString();
+        parsed = DefaultPath.fromEncodedPathString(encoded);
+        prefix = DefaultPath.fromStrings(Arrays.copyOf(elements, depth / 2));
+    }
+
+    @Benchmark
+    public Path create() {
+        return DefaultPath.fromStrings(elements);
+    }
+
+    @Benchmark
+    public String createAndEncode() {
+        return DefaultPath.fromStrings(elements).toString();
+    }
+
+    @Benchmark
+    public Path parse() {
+        return DefaultPath.fromEncodedPathString(encoded);
+    }
+
+    @Benchmark
+    public String encode() {
+        return parsed.toString();
+    }
+
+    @Benchmark
+    public boolean startsWith() {
+        return parsed.startsWith(prefix);
+    }
+
+    @Benchmark
+    public Path concat() {
+        return prefix.concat(parsed);
+    }
+}
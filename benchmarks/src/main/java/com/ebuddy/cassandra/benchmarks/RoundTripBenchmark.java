@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.structure.Composer;
+import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.ebuddy.cassandra.structure.StructureConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The full pipeline of writing a POJO as columns and reading it back, without the database: converting to a
+ * structure, decomposing, encoding the paths and values as column names and values, then decoding, composing
+ * and converting back to a POJO. This is the client side work of the CQL writeToPath and readFromPath.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    private static final Path PATH = DefaultPath.fromStrings("document");
+
+    @Param({"SMALL", "DEEP", "WIDE", "LIST_HEAVY"})
+    private DocumentShape shape;
+
+    private final ObjectMapper writeMapper = new ObjectMapper();
+    private final ObjectMapper readMapper = new ObjectMapper();
+    private Document document;
+    private Map<String,String> columns;
+
+    @Setup
+    public void setUp() {
+        writeMapper.setDefaultTyping(new CustomTypeResolverBuilder());
+        document = shape.create();
+        columns = write(document);
+    }
+
+    @Benchmark
+    public Map<String,String> write() {
+        return write(document);
+    }
+
+    @Benchmark
+    public Document read() {
+        return read(columns);
+    }
+
+    @Benchmark
+    public Document roundTrip() {
+        return read(write(document));
+    }
+
+    private Map<String,String> write(Document value) {
+        Object structure = writeMapper.convertValue(value, Object.class);
+        Map<Path,Object> simpleObjects = Decomposer.get().decompose(Collections.singletonMap(PATH, structure));
+        Map<String,String> result = new HashMap<String,String>(simpleObjects.size());
+        for (Map.Entry<Path,Object> entry : simpleObjects.entrySet()) {
+            result.put(entry.getKey().toString(), StructureConverter.get().toString(entry.getValue()));
+        }
+        return result;
+    }
+
+    private Document read(Map<String,String> columnMap) {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>(columnMap.size());
+        for (Map.Entry<String,String> entry : columnMap.entrySet()) {
+            Path path = DefaultPath.fromEncodedPathString(entry.getKey()).tail(PATH.size());
+            simpleObjects.put(path, StructureConverter.get().fromString(entry.getValue()));
+        }
+        Object structure = Composer.get().compose(simpleObjects);
+        return readMapper.convertValue(structure, Document.class);
+    }
+}
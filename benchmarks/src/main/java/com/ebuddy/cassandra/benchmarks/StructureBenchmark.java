@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.structure.Composer;
+import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Decomposing a structure into simple objects by path, and composing them back into a structure.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StructureBenchmark {
+    private static final Path PATH = DefaultPath.fromStrings("document");
+
+    @Param({"SMALL", "DEEP", "WIDE", "LIST_HEAVY"})
+    private DocumentShape shape;
+
+    private Map<Path,Object> structures;
+    private Map<Path,Object> simpleObjects;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper writeMapper = new ObjectMapper();
+        writeMapper.setDefaultTyping(new CustomTypeResolverBuilder());
+        Object structure = writeMapper.convertValue(shape.create(), Object.class);
+        structures = Collections.singletonMap(PATH, structure);
+        simpleObjects = Decomposer.get().decompose(structures);
+    }
+
+    @Benchmark
+    public Map<Path,Object> decompose() {
+        return Decomposer.get().decompose(structures);
+    }
+
+    @Benchmark
+    public Map<Path,Object> decomposeWithListHeaders() {
+        return Decomposer.getWithListHeaders().decompose(structures);
+    }
+
+    @Benchmark
+    public Object compose() {
+        return Composer.get().compose(simpleObjects);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.ebuddy.cassandra.structure.StructureConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encoding the simple objects of a document into column values and decoding them, as strings for CQL and as
+ * bytes for Thrift.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValueCodecBenchmark {
+
+    @Param({"SMALL", "DEEP", "WIDE", "LIST_HEAVY"})
+    private DocumentShape shape;
+
+    private List<Object> values;
+    private List<String> strings;
+    private List<ByteBuffer> buffers;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper writeMapper = new ObjectMapper();
+        writeMapper.setDefaultTyping(new CustomTypeResolverBuilder());
+        Object structure = writeMapper.convertValue(shape.create(), Object.class);
+        Path path = DefaultPath.fromStrings("document");
+        values = new ArrayList<Object>(Decomposer.get().decompose(Collections.singletonMap(path, structure)).values());
+
+        strings = new ArrayList<String>(values.size());
+        buffers = new ArrayList<ByteBuffer>(values.size());
+        for (Object value : values) {
+            strings.add(StructureConverter.get().toString(value));
+            buffers.add(StructureConverter.get().toByteBuffer(value));
+        }
+    }
+
+    @Benchmark
+    public void encodeToString(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(StructureConverter.get().toString(value));
+        }
+    }
+
+    @Benchmark
+    public void decodeFromString(Blackhole blackhole) {
+        for (String string : strings) {
+            blackhole.consume(StructureConverter.get().fromString(string));
+        }
+    }
+
+    @Benchmark
+    public void encodeToBytes(Blackhole blackhole) {
+        for (Object value : values) {
+            blackhole.consume(StructureConverter.get().toByteBuffer(value));
+        }
+    }
+
+    @Benchmark
+    public void decodeFromBytes(Blackhole blackhole) {
+        for (ByteBuffer buffer : buffers) {
+            blackhole.consume(StructureConverter.get().fromByteBuffer(buffer.duplicate()));
+        }
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.bulkload;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.cassandra.db.marshal.AbstractType;
+import org.apache.cassandra.db.marshal.CompositeType;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.sstable.Descriptor;
+import org.apache.cassandra.io.sstable.SSTableSimpleUnsortedWriter;
+import org.apache.cassandra.utils.ByteBufferUtil;
+import org.apache.cassandra.utils.Pair;
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.StructureConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Writes structured objects to SSTables in a local directory, for loading into a cluster with sstableloader
+ * instead of through the write path of the cluster.
+ * Objects are decomposed in the same way as by the StructuredDataSupport implementations, so they can be read
+ * with readFromPath once they are loaded.
+ *
+ * Objects are written by a number of writer threads, each with its own SSTable writer. Rows are partitioned
+ * over the writers by row key, so all the objects in a row are written by the same writer. When the writer is
+ * closed, the SSTables are moved into the directory <code>directory/keyspace/columnFamily</code>, which
+ * is the directory to pass to sstableloader.
+ *
+ * The partitioner must be the same as the partitioner of the cluster. When used outside of a Cassandra server,
+ * either a cassandra.yaml must be available or <code>Config.setLoadYaml(false)</code> must be called first.
+ *
+ * @param <K> the type of the row key
+ */
+public class StructuredDataSSTableWriter<K> implements Closeable {
+    static final int QUEUE_CAPACITY = 1000;
+    private static final long POLL_MILLIS = 100L;
+
+    private final File outputDirectory;
+    private final String keyspace;
+    private final String columnFamily;
+    private final AbstractType<K> keyType;
+    @Nullable
+    private final ByteBuffer valueColumnName;
+    /** The type of cell names of a CQL3 table, or null for a compact column family. */
+    @Nullable
+    private final CompositeType compositeType;
+    private final ObjectMapper writeMapper;
+
+    private final List<RowWriter> writers;
+    private final List<Future<Void>> futures;
+    private final ExecutorService executor;
+
+    private boolean closed;
+
+    /**
+     * Create a writer and start its writer threads.
+     *
+     * @param directory the base directory for the output
+     * @param keyspace the name of the keyspace
+     * @param columnFamily the name of the table or column family
+     * @param keyType the type of the row key, e.g. UTF8Type.instance or UUIDType.instance
+     * @param partitioner the partitioner of the cluster
+     * @param valueColumnName the name of the designated value column of a CQL3 table, or null for a
+     *                        column family created with Thrift or a table with COMPACT STORAGE
+     * @param numberOfWriters the number of writer threads
+     * @param bufferSizeInMB the size of the buffer of each writer, an SSTable is written each time it is full
+     * @throws IOException if the output directory cannot be created
+     */
+    public StructuredDataSSTableWriter(File directory,
+                                       String keyspace,
+                                       String columnFamily,
+                                       AbstractType<K> keyType,
+                                       IPartitioner<?> partitioner,
+                                       @Nullable String valueColumnName,
+                                       int numberOfWriters,
+                                       int bufferSizeInMB) throws IOException {
+        Validate.notEmpty(keyspace);
+        Validate.notEmpty(columnFamily);
+        Validate.isTrue(numberOfWriters > 0, "numberOfWriters must be positive");
+
+        this.keyspace = keyspace;
+        this.columnFamily = columnFamily;
+        this.keyType = keyType;
+        this.valueColumnName = valueColumnName == null ? null : ByteBufferUtil.bytes(valueColumnName);
+        outputDirectory = new File(new File(directory, keyspace), columnFamily);
+        createDirectory(outputDirectory);
+
+        writeMapper = new ObjectMapper();
+        writeMapper.setDefaultTyping(new CustomTypeResolverBuilder());
+
+        // a CQL3 table has a composite of the path and the CQL column name as the cell name
+        compositeType = valueColumnName == null ?
+                null :
+                CompositeType.getInstance(Arrays.<AbstractType<?>>asList(UTF8Type.instance, UTF8Type.instance));
+        AbstractType<?> comparator = compositeType == null ? UTF8Type.instance : compositeType;
+
+        writers = new ArrayList<RowWriter>(numberOfWriters);
+        futures = new ArrayList<Future<Void>>(numberOfWriters);
+        executor = Executors.newFixedThreadPool(numberOfWriters, new ThreadFactoryBuilder()
+                .setNameFormat("sstable-writer-%d")
+                .build());
+        for (int i = 0; i < numberOfWriters; i++) {
+            // each writer has its own directory, since generation numbers are assigned by listing the directory
+            File writerDirectory = new File(outputDirectory, "writer-" + i);
+            createDirectory(writerDirectory);
+            RowWriter writer = new RowWriter(writerDirectory, new SSTableSimpleUnsortedWriter(writerDirectory,
+                                                                                            partitioner,
+                                                                                            keyspace,
+                                                                                            columnFamily,
+                                                                                            comparator,
+                                                                                            null,
+                                                                                            bufferSizeInMB));
+            writers.add(writer);
+            futures.add(executor.submit(writer));
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Get the directory that contains the SSTables after the writer is closed.
+     */
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    /**
+     * Write an object to a path in a row. The object is decomposed and written by a writer thread,
+     * this waits if the writer thread falls behind.
+     *
+     * @param rowKey the row key
+     * @param path the path to the object
+     * @param value the object to write
+     * @throws IOException if a writer thread failed
+     */
+    public void writeToPath(K rowKey, Path path, Object value) throws IOException {
+        Validate.notNull(rowKey, "Row key must not be empty");
+        Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+        if (closed) {
+            throw new IllegalStateException("writer is closed");
+        }
+
+        long timestampMicros = TimeUnit.MICROSECONDS.convert(System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        Write write = new Write(keyType.decompose(rowKey), path, value, timestampMicros);
+        int writerIndex = (rowKey.hashCode() & Integer.MAX_VALUE) % writers.size();
+        try {
+            enqueue(writers.get(writerIndex), write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for writer", e);
+        }
+    }
+
+    /**
+     * Flush all objects to SSTables, stop the writer threads and move the SSTables into the output directory.
+     *
+     * @throws IOException if a writer thread failed or the SSTables could not be moved
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (RowWriter writer : writers) {
+                // a writer that failed no longer drains its queue, so report its failure instead of waiting
+                checkWriters();
+                enqueue(writer, Write.END);
+            }
+            for (Future<Void> future : futures) {
+                getResult(future);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing writers", e);
+        }
+
+        int generation = 0;
+        for (RowWriter writer : writers) {
+            generation = moveSSTables(writer.directory, generation);
+        }
+    }
+
+    /**
+     * Add a write to the queue of a writer, checking the writer threads while the queue is full.
+     */
+    private void enqueue(RowWriter writer, Write write) throws IOException, InterruptedException {
+        while (!writer.queue.offer(write, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkWriters();
+        }
+    }
+
+    /**
+     * Throw the failure of a writer thread that has stopped. A writer only stops without failing after it is
+     * sent the end of the writes on close.
+     */
+    private void checkWriters() throws IOException, InterruptedException {
+        for (Future<Void> future : futures) {
+            if (future.isDone()) {
+                getResult(future);
+                if (!closed) {
+                    throw new IllegalStateException("writer stopped");
+                }
+            }
+        }
+    }
+
+    private void getResult(Future<Void> future) throws IOException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            if (e.getCause() instanceof IOException) {
+                throw (IOException)e.getCause();
+            }
+            throw new IOException("writer failed", e.getCause());
+        }
+    }
+
+    /**
+     * Move the SSTables from a writer directory into the output directory, numbering them from
+     * the last generation used.
+     *
+     * @return the last generation used
+     */
+    private int moveSSTables(File writerDirectory, int lastGeneration) throws IOException {
+        Map<Integer,Integer> generations = new HashMap<Integer,Integer>();
+        int generation = lastGeneration;
+        File[] files = writerDirectory.listFiles();
+        if (files == null) {
+            throw new IOException("cannot list " + writerDirectory);
+        }
+        for (File file : files) {
+            Pair<Descriptor,String> component = Descriptor.fromFilename(writerDirectory, file.getName());
+            if (component == null) {
+                continue;
+            }
+            Descriptor descriptor = component.left;
+            Integer newGeneration = generations.get(descriptor.generation);
+            if (newGeneration == null) {
+                newGeneration = ++generation;
+                generations.put(descriptor.generation, newGeneration);
+            }
+            Descriptor newDescriptor = new Descriptor(descriptor.version,
+                                                      outputDirectory,
+                                                      keyspace,
+                                                      columnFamily,
+                                                      newGeneration,
+                                                      false);
+            File newFile = new File(newDescriptor.filenameFor(component.right));
+            if (!file.renameTo(newFile)) {
+                throw new IOException("cannot move " + file + " to " + newFile);
+            }
+        }
+        if (!writerDirectory.delete()) {
+            throw new IOException("cannot delete " + writerDirectory);
+        }
+        return generation;
+    }
+
+    private static void createDirectory(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create directory " + directory);
+        }
+    }
+
+    private static final class Write {
+        private static final Write END = new Write(null, null, null, 0L);
+
+        private final ByteBuffer rowKey;
+        private final Path path;
+        private final Object value;
+        private final long timestampMicros;
+
+        private Write(ByteBuffer rowKey, Path path, Object value, long timestampMicros) {
+            this.rowKey = rowKey;
+            this.path = path;
+            this.value = value;
+            this.timestampMicros = timestampMicros;
+        }
+    }
+
+    private class RowWriter implements Callable<Void> {
+        private final BlockingQueue<Write> queue = new ArrayBlockingQueue<Write>(QUEUE_CAPACITY);
+        private final File directory;
+        private final SSTableSimpleUnsortedWriter writer;
+
+        private RowWriter(File directory, SSTableSimpleUnsortedWriter writer) {
+            this.directory = directory;
+            this.writer = writer;
+        }
+
+        @Override
+        public Void call() throws IOException, InterruptedException {
+            try {
+                for (Write write = queue.take(); write != Write.END; write = queue.take()) {
+                    write(write);
+                }
+            } finally {
+                writer.close();
+            }
+            return null;
+        }
+
+        private void write(Write write) throws IOException {
+            Object structure = writeMapper.convertValue(write.value, Object.class);
+            Map<Path,Object> pathMap = Collections.singletonMap(write.path, structure);
+            Map<Path,Object> objectMap = Decomposer.get().decompose(pathMap);
+
+            writer.newRow(write.rowKey);
+            for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
+                ByteBuffer pathBytes = ByteBufferUtil.bytes(entry.getKey().toString());
+                ByteBuffer value = StructureConverter.get().toByteBuffer(entry.getValue());
+                if (compositeType == null) {
+                    writer.addColumn(pathBytes, value, write.timestampMicros);
+                } else {
+                    // the CQL3 row marker, followed by the value column
+                    ByteBuffer markerName = compositeType.builder()
+                            .add(pathBytes)
+                            .add(ByteBufferUtil.EMPTY_BYTE_BUFFER)
+                            .build();
+                    ByteBuffer valueName = compositeType.builder().add(pathBytes).add(valueColumnName).build();
+                    writer.addColumn(markerName, ByteBufferUtil.EMPTY_BYTE_BUFFER, write.timestampMicros);
+                    writer.addColumn(valueName, value, write.timestampMicros);
+                }
+            }
+        }
+    }
+}
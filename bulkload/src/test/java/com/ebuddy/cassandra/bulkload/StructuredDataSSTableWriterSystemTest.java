@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.bulkload;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.cassandra.config.DatabaseDescriptor;
+import org.apache.cassandra.db.marshal.UUIDType;
+import org.apache.cassandra.dht.IPartitioner;
+import org.apache.cassandra.io.util.FileUtils;
+import org.apache.cassandra.service.StorageService;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.cql.dao.CqlStructuredDataSupport;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.io.Files;
+
+/**
+ * System test for StructuredDataSSTableWriter that loads the SSTables into the embedded Cassandra
+ * and reads the objects back with CqlStructuredDataSupport.
+ */
+public class StructuredDataSSTableWriterSystemTest {
+    private static final String TEST_KEYSPACE = "bulkloadsystemtest";
+    private static final String TABLE_NAME = "testpojo";
+
+    private Cluster cluster;
+    private Session session;
+    private File directory;
+
+    @BeforeMethod(groups = {"system"})
+    public void setUp() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+        cluster = Cluster.builder().addContactPoint("localhost").withPort(9142).build();
+        dropAndCreateSchema();
+        session = cluster.connect(TEST_KEYSPACE);
+        directory = Files.createTempDir();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+        if (directory != null) {
+            FileUtils.deleteRecursive(directory);
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldLoadWrittenSSTables() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        Map<UUID,TestPojo> expected = new HashMap<UUID,TestPojo>();
+
+        // the partitioner must be the same as the partitioner of the cluster
+        IPartitioner<?> partitioner = DatabaseDescriptor.getPartitioner();
+        StructuredDataSSTableWriter<UUID> writer = new StructuredDataSSTableWriter<UUID>(directory,
+                                                                                       TEST_KEYSPACE,
+                                                                                       TABLE_NAME,
+                                                                                       UUIDType.instance,
+                                                                                       partitioner,
+                                                                                       "value",
+                                                                                       3,
+                                                                                       1);
+        try {
+            for (int i = 0; i < 100; i++) {
+                UUID rowKey = UUID.randomUUID();
+                TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+                writer.writeToPath(rowKey, path, testObject);
+                expected.put(rowKey, testObject);
+            }
+        } finally {
+            writer.close();
+        }
+
+        File[] files = writer.getOutputDirectory().listFiles();
+        assertTrue(files != null && files.length > 0);
+        for (File file : files) {
+            assertTrue(file.isFile(), file + " is not a file");
+        }
+
+        StorageService.instance.bulkLoad(writer.getOutputDirectory().getPath());
+
+        StructuredDataSupport<UUID> dao = new CqlStructuredDataSupport<UUID>(TABLE_NAME,
+                                                                               "key",
+                                                                               "column1",
+                                                                               "value",
+                                                                               ConsistencyLevel.ONE,
+                                                                               session);
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+        for (Map.Entry<UUID,TestPojo> entry : expected.entrySet()) {
+            assertEquals(dao.readFromPath(entry.getKey(), path, typeReference), entry.getValue());
+        }
+    }
+
+    private void dropAndCreateSchema() {
+        Session localSession = cluster.connect();
+        try {
+            try {
+                localSession.execute("drop keyspace " + TEST_KEYSPACE);
+            } catch (InvalidQueryException ignored) {
+                // doesn't exist
+            }
+            localSession.execute("CREATE KEYSPACE " + TEST_KEYSPACE + " WITH replication " +
+                                         "= {'class':'SimpleStrategy', 'replication_factor':1};");
+            localSession.execute("CREATE TABLE " + TEST_KEYSPACE + "." + TABLE_NAME + " (key uuid, column1 text, " +
+                                         "value text, PRIMARY KEY (key, column1));");
+        } finally {
+            localSession.shutdown();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.bulkload;
+
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.cassandra.config.Config;
+import org.apache.cassandra.db.marshal.UTF8Type;
+import org.apache.cassandra.dht.RandomPartitioner;
+import org.apache.cassandra.io.util.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.io.Files;
+
+/**
+ * Tests for StructuredDataSSTableWriter that do not need a running Cassandra.
+ */
+public class StructuredDataSSTableWriterTest {
+    private static final Path PATH = DefaultPath.fromStrings("a");
+
+    private File directory;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        Config.setLoadYaml(false);
+        directory = Files.createTempDir();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        FileUtils.deleteRecursive(directory);
+    }
+
+    @Test(groups = "unit", timeOut = 30000, expectedExceptions = IOException.class)
+    public void closeShouldThrowWhenWriterFailedWithFullQueue() throws Exception {
+        StructuredDataSSTableWriter<String> writer = new StructuredDataSSTableWriter<String>(directory,
+                                                                                           "ks",
+                                                                                           "cf",
+                                                                                           UTF8Type.instance,
+                                                                                           new RandomPartitioner(),
+                                                                                           null,
+                                                                                           1,
+                                                                                           1);
+        FailingValue failingValue = new FailingValue();
+        writer.writeToPath("row", PATH, failingValue);
+        assertTrue(failingValue.converting.await(5, TimeUnit.SECONDS));
+
+        // fill the queue while the writer is converting the failing value, then let the writer fail
+        for (int i = 0; i < StructuredDataSSTableWriter.QUEUE_CAPACITY; i++) {
+            writer.writeToPath("row", PATH, "value" + i);
+        }
+        failingValue.fail.countDown();
+
+        writer.close();
+    }
+
+    /**
+     * A value that fails when the writer converts it, once it is allowed to.
+     */
+    public static class FailingValue {
+        private final CountDownLatch converting = new CountDownLatch(1);
+        private final CountDownLatch fail = new CountDownLatch(1);
+
+        public String getValue() throws InterruptedException {
+            converting.countDown();
+            fail.await();
+            throw new IllegalStateException("conversion failed");
+        }
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.bloom;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
+import com.ebuddy.cassandra.ForwardingStructuredDataSupport;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.PathEntryIterator;
+import com.google.common.hash.Funnel;
+
+/**
+ * A StructuredDataSupport that keeps a Bloom filter of the row keys that have been written, so that reads of
+ * rows that were never written return null without a round trip to the database.
+ * <p>
+ * Every row key written through this instance is added to the filter before it is written. Rows written by other
+ * clients must be added by seeding the filter with a scan of the keys of all rows, or by loading a filter saved
+ * earlier, before the filter is used: until then all reads are forwarded to the delegate.
+ * Deleting data does not remove row keys from the filter.
+ * </p>
+ * <p>
+ * Reads forwarded to the delegate that return null are counted as empty reads. They include the false positives of
+ * the filter as well as reads of rows that exist without data at the path read.
+ * </p>
+ *
+ * @param <K> The row key type
+ */
+public class BloomFilterStructuredDataSupport<K> extends ForwardingStructuredDataSupport<K> {
+    private static final Logger LOG = LoggerFactory.getLogger(BloomFilterStructuredDataSupport.class);
+
+    private final StructuredDataSupport<K> delegate;
+    private volatile ScalableBloomFilter<K> filter;
+    private volatile boolean ready;
+
+    private final AtomicLong filteredReadCount = new AtomicLong();
+    private final AtomicLong forwardedReadCount = new AtomicLong();
+    private final AtomicLong emptyReadCount = new AtomicLong();
+
+    /**
+     * Create a decorator with an empty filter, which is not used until it is seeded or loaded.
+     *
+     * @param delegate the StructuredDataSupport to read from and write to
+     * @param funnel the funnel of row keys into the hash functions, which must be serializable
+     *               if the filter is to be saved
+     * @param expectedInsertions the expected number of rows; the filter grows if there are more
+     * @param falsePositiveProbability the maximum probability that a row that was not written is read from the delegate
+     */
+    public BloomFilterStructuredDataSupport(StructuredDataSupport<K> delegate,
+                                            Funnel<? super K> funnel,
+                                            int expectedInsertions,
+                                            double falsePositiveProbability) {
+        Validate.notNull(delegate);
+        this.delegate = delegate;
+        filter = new ScalableBloomFilter<K>(funnel, expectedInsertions, falsePositiveProbability);
+    }
+
+    @Override
+    protected StructuredDataSupport<K> delegate() {
+        return delegate;
+    }
+
+    /**
+     * Add the keys of all rows in the table or column family to the filter, and start using the filter.
+     * The keys are read with a key scan of the delegate, without reading the objects in the rows.
+     * Rows may be written concurrently while seeding.
+     */
+    public void seed() {
+        long rowCount = 0;
+        CloseableIterator<K> rowKeys = delegate.scanRowKeys();
+        try {
+            while (rowKeys.hasNext()) {
+                filter.put(rowKeys.next());
+                rowCount++;
+            }
+        } finally {
+            rowKeys.close();
+        }
+        LOG.info("Seeded row key filter with {} rows", rowCount);
+        ready = true;
+    }
+
+    /**
+     * Replace the filter with one saved to a file, and start using the filter.
+     * This should be done before any rows are written through this instance.
+     *
+     * @param file the file the filter was saved to
+     * @throws IOException if the file cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public void load(File file) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            filter = (ScalableBloomFilter<K>)in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+        ready = true;
+    }
+
+    /**
+     * Save the filter to a file. The filter is written to a temporary file first, which then replaces the file,
+     * so a previously saved filter is not lost if saving fails.
+     *
+     * @param file the file to save the filter to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeObject(filter);
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(file) && !(file.delete() && tempFile.renameTo(file))) {
+            throw new IOException("Could not rename " + tempFile + " to " + file);
+        }
+    }
+
+    /** Return true if the filter has been seeded or loaded and reads of absent rows are filtered. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        if (isDefinitelyAbsent(rowKey)) {
+            return null;
+        }
+        T value = delegate.readFromPath(rowKey, path, type);
+        if (value == null) {
+            emptyReadCount.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        if (isDefinitelyAbsent(rowKey)) {
+            return new PathEntryIterator(path, Collections.<Map.Entry<String,Object>>emptyList().iterator());
+        }
+        return delegate.iteratePath(rowKey, path);
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        if (isDefinitelyAbsent(rowKey)) {
+            return 0;
+        }
+        return delegate.listSize(rowKey, listPath);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value) {
+        filter.put(rowKey);
+        delegate.writeToPath(rowKey, path, value);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext) {
+        filter.put(rowKey);
+        delegate.writeToPath(rowKey, path, value, batchContext);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        filter.put(rowKey);
+        delegate.writeColumns(rowKey, columns);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        filter.put(rowKey);
+        delegate.writeColumns(rowKey, columns, batchContext);
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        filter.put(rowKey);
+        delegate.appendToList(rowKey, listPath, values);
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        filter.put(rowKey);
+        delegate.addToSet(rowKey, path, members);
+    }
+
+    /** Return the number of reads that returned without reading from the delegate. */
+    public long getFilteredReadCount() {
+        return filteredReadCount.get();
+    }
+
+    /** Return the number of reads that were forwarded to the delegate. */
+    public long getForwardedReadCount() {
+        return forwardedReadCount.get();
+    }
+
+    /** Return the number of reads that were forwarded to the delegate and returned null. */
+    public long getEmptyReadCount() {
+        return emptyReadCount.get();
+    }
+
+    /**
+     * Return the fraction of reads returning null that were forwarded to the delegate, which is an upper bound
+     * of the observed false positive rate of the filter.
+     */
+    public double getObservedFalsePositiveRate() {
+        long empty = emptyReadCount.get();
+        long absent = empty + filteredReadCount.get();
+        return absent == 0 ? 0.0 : (double)empty / absent;
+    }
+
+    /** Return the false positive probability of the filter, based on the number of row keys in it. */
+    public double getExpectedFalsePositiveProbability() {
+        return filter.expectedFpp();
+    }
+
+    //////// Private Methods //////////
+
+    private boolean isDefinitelyAbsent(K rowKey) {
+        if (ready && !filter.mightContain(rowKey)) {
+            filteredReadCount.incrementAndGet();
+            return true;
+        }
+        forwardedReadCount.incrementAndGet();
+        return false;
+    }
+}
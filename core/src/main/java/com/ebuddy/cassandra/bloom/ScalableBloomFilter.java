@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.bloom;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.Validate;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+
+/**
+ * A Bloom filter that grows as elements are added, so the number of elements need not be known in advance.
+ * When the current filter holds as many elements as it was created for, a new filter with twice the capacity
+ * and half the false positive probability is added to the chain, which keeps the false positive probability of the
+ * whole chain below the probability it was created with.
+ * An element might be contained if any filter in the chain might contain it.
+ * <p>
+ * This class is thread-safe. It is serializable if its funnel is serializable.
+ * </p>
+ *
+ * @param <T> the type of elements
+ * @see <a href="http://gsd.di.uminho.pt/members/cbm/ps/dbloom.pdf">Scalable Bloom Filters</a>
+ */
+public class ScalableBloomFilter<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final Funnel<? super T> funnel;
+    private final List<BloomFilter<? super T>> filters = new ArrayList<BloomFilter<? super T>>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int capacity;
+    private double falsePositiveProbability;
+    private int size;
+
+    /**
+     * Create an empty filter.
+     *
+     * @param funnel the funnel of elements into the hash functions
+     * @param expectedInsertions the number of elements that the first filter in the chain is created for
+     * @param falsePositiveProbability the maximum probability that an element that was not added might be contained
+     */
+    public ScalableBloomFilter(Funnel<? super T> funnel, int expectedInsertions, double falsePositiveProbability) {
+        Validate.notNull(funnel);
+        Validate.isTrue(expectedInsertions > 0, "expectedInsertions must be positive");
+        Validate.isTrue(falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0,
+                        "falsePositiveProbability must be between 0 and 1");
+        this.funnel = funnel;
+        capacity = expectedInsertions;
+        // the probabilities of the chain form a geometric series that sums to the requested probability
+        this.falsePositiveProbability = falsePositiveProbability * (1.0 - TIGHTENING_RATIO);
+        filters.add(BloomFilter.create(funnel, capacity, this.falsePositiveProbability));
+    }
+
+    /**
+     * Return true if the element might have been added to this filter, false if it definitely has not.
+     */
+    public boolean mightContain(T element) {
+        lock.readLock().lock();
+        try {
+            return mightContainUnlocked(element);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add an element to this filter.
+     *
+     * @return true if the element was not contained before
+     */
+    public boolean put(T element) {
+        // elements that are already contained are the common case and need only the read lock
+        if (mightContain(element)) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            // another thread may have added the element since the read lock was released
+            if (mightContainUnlocked(element)) {
+                return false;
+            }
+            if (size == capacity) {
+                capacity *= GROWTH_FACTOR;
+                falsePositiveProbability *= TIGHTENING_RATIO;
+                filters.add(BloomFilter.create(funnel, capacity, falsePositiveProbability));
+                size = 0;
+            }
+            filters.get(filters.size() - 1).put(element);
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return the probability that an element that was not added might be contained, based on the number of
+     * elements added so far.
+     */
+    public double expectedFpp() {
+        lock.readLock().lock();
+        try {
+            double trueNegativeProbability = 1.0;
+            for (BloomFilter<? super T> filter : filters) {
+                trueNegativeProbability *= 1.0 - filter.expectedFpp();
+            }
+            return 1.0 - trueNegativeProbability;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Return the number of filters in the chain. */
+    public int getFilterCount() {
+        lock.readLock().lock();
+        try {
+            return filters.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.defaultWriteObject();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean mightContainUnlocked(T element) {
+        for (BloomFilter<? super T> filter : filters) {
+            if (filter.mightContain(element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.cache;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.ForwardingStructuredDataSupport;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.JacksonTypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+
+/**
+ * A StructuredDataSupport that keeps the objects read from the delegate in an in-process cache.
+ * <p>
+ * Objects are cached in their composed form, keyed by row key and path, and are converted to the requested type on
+ * every read, so callers never share cached instances. Objects that are not found are cached as well.
+ * The cache holds a bounded number of rows, evicting the least recently used rows, and each cached object
+ * is read again from the delegate after the time to live has passed since it was read.
+ * </p>
+ * <p>
+ * Writes, deletes and list and set operations made through this instance invalidate the cached objects at
+ * the written path, at its ancestors and at its descendants, but not at its siblings: a write to a/b
+ * invalidates a, a/b and a/b/c, but not a/c. Writes that are part of a batch are invalidated again when the batch
+ * is applied. Writes made by other clients are only seen once the time to live has passed.
+ * </p>
+ *
+ * @param <K> The row key type
+ */
+public class CachingStructuredDataSupport<K> extends ForwardingStructuredDataSupport<K> {
+    private static final TypeReference<Object> STRUCTURE_TYPE = new TypeReference<Object>() { };
+
+    private final StructuredDataSupport<K> delegate;
+    private final long timeToLiveNanos;
+    private final Ticker ticker;
+    private final LoadingCache<K,CachedRow> rows;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /** The paths written as part of a batch, keyed by the identity of the BatchContext. */
+    private final ConcurrentMap<BatchContext,Queue<Map.Entry<K,Path>>> batchWrites =
+            new MapMaker().weakKeys().makeMap();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Create a caching decorator.
+     *
+     * @param delegate the StructuredDataSupport to read from and write to
+     * @param maximumRows the maximum number of rows to keep objects for
+     * @param timeToLive the maximum time that a cached object is used after it was read
+     * @param timeToLiveUnit the unit of timeToLive
+     */
+    public CachingStructuredDataSupport(StructuredDataSupport<K> delegate,
+                                        long maximumRows,
+                                        long timeToLive,
+                                        TimeUnit timeToLiveUnit) {
+        this(delegate, maximumRows, timeToLive, timeToLiveUnit, Ticker.systemTicker());
+    }
+
+    CachingStructuredDataSupport(StructuredDataSupport<K> delegate,
+                                 long maximumRows,
+                                 long timeToLive,
+                                 TimeUnit timeToLiveUnit,
+                                 Ticker ticker) {
+        Validate.notNull(delegate);
+        Validate.isTrue(maximumRows > 0, "maximumRows must be positive");
+        Validate.isTrue(timeToLive > 0, "timeToLive must be positive");
+        this.delegate = delegate;
+        this.ticker = ticker;
+        timeToLiveNanos = timeToLiveUnit.toNanos(timeToLive);
+
+        // a row that has not been read for the time to live only holds stale objects
+        rows = CacheBuilder.newBuilder()
+                .maximumSize(maximumRows)
+                .expireAfterAccess(timeToLive, timeToLiveUnit)
+                .ticker(ticker)
+                .removalListener(new RemovalListener<K,CachedRow>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<K,CachedRow> notification) {
+                        if (notification.wasEvicted()) {
+                            evictionCount.addAndGet(notification.getValue().objects.size());
+                        }
+                    }
+                })
+                .build(new CacheLoader<K,CachedRow>() {
+                    @Override
+                    public CachedRow load(K key) {
+                        return new CachedRow();
+                    }
+                });
+    }
+
+    @Override
+    protected StructuredDataSupport<K> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void applyBatch(BatchContext batchContext) {
+        delegate.applyBatch(batchContext);
+        Queue<Map.Entry<K,Path>> writes = batchWrites.remove(batchContext);
+        if (writes != null) {
+            for (Map.Entry<K,Path> write : writes) {
+                invalidate(write.getKey(), write.getValue());
+            }
+        }
+    }
+
+    @Override
+    public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        CachedRow row = rows.getUnchecked(rowKey);
+        long now = ticker.read();
+
+        CachedObject cached = row.objects.get(path);
+        if (cached != null) {
+            if (now - cached.readTime < timeToLiveNanos) {
+                hitCount.incrementAndGet();
+                return convert(cached.structure, type);
+            }
+            if (row.objects.remove(path, cached)) {
+                evictionCount.incrementAndGet();
+            }
+        }
+        missCount.incrementAndGet();
+
+        // if the path is invalidated while reading, then what was read may be stale and is not kept
+        long version = row.version.get();
+        Object structure = delegate.readFromPath(rowKey, path, STRUCTURE_TYPE);
+        CachedObject read = new CachedObject(structure, now);
+        row.objects.put(path, read);
+        if (row.version.get() != version) {
+            row.objects.remove(path, read);
+        }
+        return convert(structure, type);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value) {
+        delegate.writeToPath(rowKey, path, value);
+        invalidate(rowKey, path);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext) {
+        delegate.writeToPath(rowKey, path, value, batchContext);
+        invalidate(rowKey, path, batchContext);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        delegate.writeColumns(rowKey, columns);
+        for (Path path : columns.keySet()) {
+            invalidate(rowKey, path);
+        }
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        delegate.writeColumns(rowKey, columns, batchContext);
+        for (Path path : columns.keySet()) {
+            invalidate(rowKey, path, batchContext);
+        }
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path) {
+        delegate.deletePath(rowKey, path);
+        invalidate(rowKey, path);
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path, BatchContext batchContext) {
+        delegate.deletePath(rowKey, path, batchContext);
+        invalidate(rowKey, path, batchContext);
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        delegate.appendToList(rowKey, listPath, values);
+        invalidate(rowKey, listPath);
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        delegate.addToSet(rowKey, path, members);
+        invalidate(rowKey, path);
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        delegate.removeFromSet(rowKey, path, members);
+        invalidate(rowKey, path);
+    }
+
+    /** Return the number of reads that were answered from the cache. */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /** Return the number of reads that were forwarded to the delegate. */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /** Return the number of cached objects that were removed because of the size bound or the time to live. */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /** Remove all cached objects. */
+    public void invalidateAll() {
+        rows.invalidateAll();
+    }
+
+    //////// Private Methods //////////
+
+    private <T> T convert(@Nullable Object structure, TypeReference<T> type) {
+        if (structure == null) {
+            return null;
+        }
+        return mapper.convertValue(structure, new JacksonTypeReference<T>(type));
+    }
+
+    private void invalidate(K rowKey, Path path, BatchContext batchContext) {
+        // invalidate now as well, since the delegate may read its own pending writes
+        invalidate(rowKey, path);
+
+        Queue<Map.Entry<K,Path>> writes = batchWrites.get(batchContext);
+        if (writes == null) {
+            Queue<Map.Entry<K,Path>> newWrites = new ConcurrentLinkedQueue<Map.Entry<K,Path>>();
+            writes = batchWrites.putIfAbsent(batchContext, newWrites);
+            if (writes == null) {
+                writes = newWrites;
+            }
+        }
+        writes.add(Maps.immutableEntry(rowKey, path));
+    }
+
+    /**
+     * Remove the cached objects of a row at the path, its ancestors and its descendants.
+     */
+    private void invalidate(K rowKey, Path path) {
+        CachedRow row = rows.getIfPresent(rowKey);
+        if (row == null) {
+            return;
+        }
+        row.version.incrementAndGet();
+        for (Path cachedPath : row.objects.keySet()) {
+            if (cachedPath.startsWith(path) || path.startsWith(cachedPath)) {
+                row.objects.remove(cachedPath);
+            }
+        }
+    }
+
+    /** The cached objects of a row, keyed by path. */
+    private static class CachedRow {
+        private final ConcurrentMap<Path,CachedObject> objects = new MapMaker().makeMap();
+        /** Incremented whenever objects in this row are invalidated. */
+        private final AtomicLong version = new AtomicLong();
+    }
+
+    /** A composed object, or null if it was not found, and the time it was read. */
+    private static class CachedObject {
+        @Nullable
+        private final Object structure;
+        private final long readTime;
+
+        private CachedObject(@Nullable Object structure, long readTime) {
+            this.structure = structure;
+            this.readTime = readTime;
+        }
+    }
+}
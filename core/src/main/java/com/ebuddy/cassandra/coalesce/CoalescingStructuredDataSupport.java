@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.coalesce;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.ForwardingStructuredDataSupport;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.JacksonTypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * A StructuredDataSupport that coalesces concurrent reads of the same row key and path into a single read
+ * from the delegate. The first thread to read becomes the leader and reads from the delegate, and threads that
+ * ask for the same object while the read is in flight wait for it and receive the same result, or the same
+ * exception. Reads are not coalesced with reads that have already completed.
+ * <p>
+ * The object is read from the delegate in its composed form and is converted to the requested type by each
+ * reader, so readers never share instances, and reads of the same path as different types are coalesced too.
+ * A write, delete or list or set operation made through this instance detaches the reads in flight of the written
+ * path, its ancestors and its descendants, so reads that start after the write never receive a result read before
+ * the write.
+ * </p>
+ *
+ * @param <K> The row key type
+ */
+public class CoalescingStructuredDataSupport<K> extends ForwardingStructuredDataSupport<K> {
+    private static final TypeReference<Object> STRUCTURE_TYPE = new TypeReference<Object>() { };
+
+    private final StructuredDataSupport<K> delegate;
+    private final ConcurrentMap<ReadKey<K>,SettableFuture<Object>> readsInFlight = new MapMaker().makeMap();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    public CoalescingStructuredDataSupport(StructuredDataSupport<K> delegate) {
+        Validate.notNull(delegate);
+        this.delegate = delegate;
+    }
+
+    @Override
+    protected StructuredDataSupport<K> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        ReadKey<K> key = new ReadKey<K>(rowKey, path);
+        SettableFuture<Object> read = SettableFuture.create();
+        SettableFuture<Object> readInFlight = readsInFlight.putIfAbsent(key, read);
+
+        if (readInFlight != null) {
+            coalescedCount.incrementAndGet();
+            Object structure;
+            try {
+                structure = Uninterruptibles.getUninterruptibly(readInFlight);
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+            return convert(structure, type);
+        }
+
+        readCount.incrementAndGet();
+        Object structure;
+        try {
+            structure = delegate.readFromPath(rowKey, path, STRUCTURE_TYPE);
+            read.set(structure);
+        } catch (RuntimeException e) {
+            read.setException(e);
+            throw e;
+        } catch (Error e) {
+            read.setException(e);
+            throw e;
+        } finally {
+            readsInFlight.remove(key, read);
+        }
+        return convert(structure, type);
+    }
+
+    @Override
+    public void applyBatch(BatchContext batchContext) {
+        // the paths written in the batch are not known here, so no reads in flight are kept
+        delegate.applyBatch(batchContext);
+        readsInFlight.clear();
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value) {
+        delegate.writeToPath(rowKey, path, value);
+        detachReadsInFlight(rowKey, path);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        delegate.writeColumns(rowKey, columns);
+        for (Path path : columns.keySet()) {
+            detachReadsInFlight(rowKey, path);
+        }
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path) {
+        delegate.deletePath(rowKey, path);
+        detachReadsInFlight(rowKey, path);
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        delegate.appendToList(rowKey, listPath, values);
+        detachReadsInFlight(rowKey, listPath);
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        delegate.addToSet(rowKey, path, members);
+        detachReadsInFlight(rowKey, path);
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        delegate.removeFromSet(rowKey, path, members);
+        detachReadsInFlight(rowKey, path);
+    }
+
+    /** Return the number of reads that were forwarded to the delegate. */
+    public long getReadCount() {
+        return readCount.get();
+    }
+
+    /** Return the number of reads that waited for a read in flight instead of reading from the delegate. */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    //////// Private Methods //////////
+
+    private <T> T convert(@Nullable Object structure, TypeReference<T> type) {
+        if (structure == null) {
+            return null;
+        }
+        return mapper.convertValue(structure, new JacksonTypeReference<T>(type));
+    }
+
+    /**
+     * Stop new reads from joining the reads in flight of a row at the path, its ancestors and its descendants.
+     * The reads in flight still complete for the threads already waiting for them.
+     */
+    private void detachReadsInFlight(K rowKey, Path path) {
+        for (ReadKey<K> key : readsInFlight.keySet()) {
+            if (key.rowKey.equals(rowKey) && (key.path.startsWith(path) || path.startsWith(key.path))) {
+                readsInFlight.remove(key);
+            }
+        }
+    }
+
+    /** Identifies reads that can be coalesced. */
+    private static class ReadKey<K> {
+        private final K rowKey;
+        private final Path path;
+
+        private ReadKey(K rowKey, Path path) {
+            this.rowKey = rowKey;
+            this.path = path;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ReadKey)) {
+                return false;
+            }
+            ReadKey<?> other = (ReadKey<?>)o;
+            return Objects.equal(rowKey, other.rowKey) && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(rowKey, path);
+        }
+    }
+}
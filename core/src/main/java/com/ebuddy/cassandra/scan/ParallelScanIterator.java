@@ -0,0 +1,214 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ebuddy.cassandra.CloseableIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An iterator over the elements of a set of token ranges that are read concurrently by a RangeScanner.
+ * Elements are handed over through a bounded queue, so the scanning threads wait when the consumer falls behind
+ * and memory use is bounded by the queue capacity plus the page held by each scanning thread.
+ * If scanning a range fails, then the exception is rethrown to the consumer from hasNext or next and the
+ * scan is stopped. Closing the iterator stops the scanning threads.
+ *
+ * @param <E> the type of elements
+ */
+public class ParallelScanIterator<E> implements CloseableIterator<E> {
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelScanIterator.class);
+
+    /** Marks the end of the scan in the queue. */
+    private static final Object END_OF_SCAN = new Object();
+    /** Wakes up the consumer when a range fails. */
+    private static final Object FAILED = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final ExecutorService executor;
+    private final AtomicInteger remainingRanges;
+
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    private Object nextElement;
+    private boolean finished;
+
+    /**
+     * Start scanning the token ranges.
+     *
+     * @param ranges the token ranges to scan
+     * @param scanner reads the elements of a token range
+     * @param parallelism the maximum number of ranges scanned concurrently
+     * @param capacity the maximum number of elements waiting for the consumer
+     */
+    public ParallelScanIterator(List<TokenRange> ranges,
+                                RangeScanner<E> scanner,
+                                int parallelism,
+                                int capacity) {
+        Validate.isTrue(parallelism > 0, "parallelism must be positive");
+        Validate.isTrue(capacity > 0, "capacity must be positive");
+
+        queue = new ArrayBlockingQueue<Object>(capacity);
+        remainingRanges = new AtomicInteger(ranges.size());
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, ranges.size())),
+                                                new ThreadFactoryBuilder()
+                                                        .setDaemon(true)
+                                                        .setNameFormat("parallel-scan-%d")
+                                                        .build());
+        if (ranges.isEmpty()) {
+            queue.add(END_OF_SCAN);
+        }
+        Sink sink = new Sink();
+        for (TokenRange range : ranges) {
+            executor.execute(new RangeTask(range, scanner, sink));
+        }
+        // no more tasks, the threads terminate when all ranges are done
+        executor.shutdown();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextElement != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+        if (closed) {
+            throw new IllegalStateException("scan is closed");
+        }
+
+        Object element;
+        try {
+            element = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IllegalStateException("interrupted while waiting for scan", e);
+        }
+
+        checkFailure();
+        if (element == END_OF_SCAN) {
+            finished = true;
+            close();
+            return false;
+        }
+        nextElement = element;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        E element = (E)nextElement;
+        nextElement = null;
+        return element;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        executor.shutdownNow();
+        queue.clear();
+    }
+
+    private void checkFailure() {
+        Throwable t = failure;
+        if (t == null) {
+            return;
+        }
+        finished = true;
+        close();
+        if (t instanceof Error) {
+            throw (Error)t;
+        }
+        throw (RuntimeException)t;
+    }
+
+    private class Sink implements RangeScanner.Sink<E> {
+        @Override
+        public void put(E element) throws InterruptedException {
+            if (closed) {
+                throw new InterruptedException("scan is closed");
+            }
+            queue.put(element);
+        }
+    }
+
+    private class RangeTask implements Runnable {
+        private final TokenRange range;
+        private final RangeScanner<E> scanner;
+        private final Sink sink;
+
+        private RangeTask(TokenRange range, RangeScanner<E> scanner, Sink sink) {
+            this.range = range;
+            this.scanner = scanner;
+            this.sink = sink;
+        }
+
+        @Override
+        public void run() {
+            try {
+                scanner.scan(range, sink);
+                if (remainingRanges.decrementAndGet() == 0) {
+                    queue.put(END_OF_SCAN);
+                }
+            } catch (InterruptedException ignored) {
+                // the scan was closed
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                fail(e);
+            } catch (Error e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (closed) {
+                return;
+            }
+            LOG.debug("scan of token range " + range + " failed", t);
+            if (failure == null) {
+                failure = t;
+            }
+            // wake up the consumer if it is waiting; if the queue is full then the consumer is not waiting
+            queue.offer(FAILED);
+        }
+    }
+}
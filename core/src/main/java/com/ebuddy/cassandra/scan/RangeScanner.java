@@ -0,0 +1,48 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+/**
+ * Reads all the elements in a token range, one page at a time, and passes them to a Sink.
+ *
+ * @param <E> the type of elements read
+ */
+public interface RangeScanner<E> {
+
+    /**
+     * Read all the elements in the token range.
+     *
+     * @param range the token range to read
+     * @param sink the sink that receives the elements
+     * @throws InterruptedException if interrupted while waiting for the sink, e.g. because the scan was closed
+     */
+    void scan(TokenRange range, Sink<E> sink) throws InterruptedException;
+
+    /**
+     * Receives the elements read by a RangeScanner.
+     *
+     * @param <E> the type of elements
+     */
+    interface Sink<E> {
+        /**
+         * Pass an element to the consumer of the scan, waiting if necessary for the consumer to catch up.
+         *
+         * @throws InterruptedException if interrupted while waiting, e.g. because the scan was closed
+         */
+        void put(E element) throws InterruptedException;
+    }
+}
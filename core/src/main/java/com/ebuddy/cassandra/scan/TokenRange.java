@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+import java.math.BigInteger;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A range of tokens in the token ring, exclusive of the start token and inclusive of the end token,
+ * following the Cassandra convention.
+ */
+public final class TokenRange {
+    private final BigInteger startToken;
+    private final BigInteger endToken;
+
+    public TokenRange(BigInteger startToken, BigInteger endToken) {
+        Validate.notNull(startToken);
+        Validate.notNull(endToken);
+        this.startToken = startToken;
+        this.endToken = endToken;
+    }
+
+    /** The start token, exclusive. */
+    public BigInteger getStartToken() {
+        return startToken;
+    }
+
+    /** The end token, inclusive. */
+    public BigInteger getEndToken() {
+        return endToken;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        TokenRange other = (TokenRange)o;
+        return startToken.equals(other.startToken) && endToken.equals(other.endToken);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * startToken.hashCode() + endToken.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "(" + startToken + "," + endToken + "]";
+    }
+}
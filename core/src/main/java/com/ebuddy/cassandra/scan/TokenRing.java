@@ -0,0 +1,72 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * The token rings of the supported partitioners, used to split a full table scan into token ranges.
+ */
+public enum TokenRing {
+    /** The ring of the Murmur3Partitioner, the default partitioner since Cassandra 1.2. Tokens are longs. */
+    MURMUR3(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE)),
+
+    /** The ring of the RandomPartitioner. Tokens are integers between 0 and 2^127, the minimum token is -1. */
+    RANDOM(BigInteger.ONE.negate(), BigInteger.ONE.shiftLeft(127));
+
+    private final BigInteger minToken;
+    private final BigInteger maxToken;
+
+    private TokenRing(BigInteger minToken, BigInteger maxToken) {
+        this.minToken = minToken;
+        this.maxToken = maxToken;
+    }
+
+    /**
+     * Split the whole ring into contiguous token ranges of (nearly) equal size.
+     *
+     * @param numberOfRanges the number of ranges, must be positive
+     * @return the token ranges in ring order
+     */
+    public List<TokenRange> split(int numberOfRanges) {
+        Validate.isTrue(numberOfRanges > 0, "numberOfRanges must be positive");
+
+        BigInteger span = maxToken.subtract(minToken);
+        BigInteger divisor = BigInteger.valueOf(numberOfRanges);
+        List<TokenRange> ranges = new ArrayList<TokenRange>(numberOfRanges);
+        BigInteger start = minToken;
+        for (int i = 1; i <= numberOfRanges; i++) {
+            BigInteger end = i == numberOfRanges ?
+                    maxToken :
+                    minToken.add(span.multiply(BigInteger.valueOf(i)).divide(divisor));
+            ranges.add(new TokenRange(start, end));
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Convert a token to the value used for it in CQL, i.e. a Long for MURMUR3 or a BigInteger for RANDOM.
+     */
+    public Object toCqlValue(BigInteger token) {
+        return this == MURMUR3 ? (Object)token.longValue() : token;
+    }
+}
@@ -16,8 +16,6 @@
 
 package com.ebuddy.cassandra.structure;
 
-import static java.util.AbstractMap.SimpleEntry;
-
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
@@ -98,22 +96,75 @@ public class Composer {
         return transformLists(composeMap(simpleObjects));
     }
 
+    /**
+     * Start composing an object from simple objects that are added one at a time, e.g. as columns are read,
+     * so that the simple objects do not need to be collected into a map first.
+     */
+    public Composition startComposition() {
+        return new Composition();
+    }
+
+    /**
+     * A complex object being composed from simple objects added one at a time.
+     * The result is the same as composing a map of all the simple objects added.
+     */
+    public final class Composition {
+        private final Map<String,Object> composition = new LinkedHashMap<String,Object>();
+        private Object rootValue;
+        private boolean hasRootValue;
+
+        private Composition() { }
+
+        /**
+         * Add a simple object to the composition.
+         *
+         * @param path the path of the simple object relative to the object being composed
+         * @param simpleValue the simple object
+         */
+        public void add(Path path, Object simpleValue) {
+            if (path.isEmpty()) {
+                rootValue = simpleValue;
+                hasRootValue = true;
+            } else {
+                merge(path, simpleValue, composition);
+            }
+        }
+
+        public boolean isEmpty() {
+            return composition.isEmpty() && !hasRootValue;
+        }
+
+        /**
+         * Get the composed object.
+         * @return a complex object such as a map or list, or the simple object added with an empty path if that
+         *         is the only object added
+         */
+        public Object compose() {
+            if (composition.isEmpty()) {
+                return hasRootValue ? rootValue : Collections.emptyMap();
+            }
+            if (hasRootValue) {
+                // INCONSISTENCY!! there is a simple value at the same level as a complex object
+                composition.put(INCONSISTENT_ROOT, rootValue);
+            }
+            return transformLists(composition);
+        }
+    }
+
     private Map<String,Object> composeMap(Map<Path,Object> simpleObjects) {
         Map<String,Object> composition = new LinkedHashMap<String,Object>(simpleObjects.size());
         for (Map.Entry<Path,Object> entry : simpleObjects.entrySet()) {
-            merge(entry, composition);
+            merge(entry.getKey(), entry.getValue(), composition);
         }
         return composition;
     }
 
     @SuppressWarnings("unchecked")
-    private void merge(Map.Entry<Path,Object> simpleEntry, Map<String,Object> compositionMap) {
-        Path path = simpleEntry.getKey();
+    private void merge(Path path, Object simpleValue, Map<String,Object> compositionMap) {
         String head = path.head();
         assert head != null;
         Object nextLevelComposition = compositionMap.get(head);
         Path tail = path.tail();
-        Object simpleValue = simpleEntry.getValue();
         if (nextLevelComposition == null) {
             mergeEntryIntoEmptySlot(compositionMap, head, tail, simpleValue);
         } else if (Types.isSimple(nextLevelComposition)) {
@@ -135,7 +186,7 @@ public class Composer {
             }
         } else {
             // simply advance to next level since the head matches a key already there
-            merge(new SimpleEntry<Path,Object>(tail, simpleValue), nextLevelComposition);
+            merge(tail, simpleValue, nextLevelComposition);
         }
     }
 
@@ -143,7 +194,7 @@ public class Composer {
         if (tail.isEmpty()) {
             composition.put(head, simpleValue);
         } else {
-            composition.put(head, composeMap(Collections.singletonMap(tail, simpleValue)));
+            composition.put(head, composeNextLevel(tail, simpleValue));
         }
     }
 
@@ -158,18 +209,27 @@ public class Composer {
         }
 
         // merging longer path with simple value
-        Map<String,Object> map = composeMap(Collections.singletonMap(tail, simpleValue));
+        Map<String,Object> map = composeNextLevel(tail, simpleValue);
         map.put(INCONSISTENT_ROOT, nextLevelComposition);
         // replace the simple value with map containing simple value and inconsistent root
         composition.put(head, map);
     }
 
+    private Map<String,Object> composeNextLevel(Path tail, Object simpleValue) {
+        Map<String,Object> map = new LinkedHashMap<String,Object>();
+        merge(tail, simpleValue, map);
+        return map;
+    }
+
     @SuppressWarnings("unchecked")
     private Object transformLists(Map<String,Object> map) {
         // go through nested maps and transform maps into lists where possible
         if (DefaultPath.isList(map.keySet())) {
             return transformActualList(map);
         }
+        if (DefaultPath.isSet(map.keySet())) {
+            return transformActualSet(map);
+        }
         // if not a list, then just recursively transform the structure, and also URL-Decode the keys
         Map<String,Object> newMap = new HashMap<String,Object>(map.size());
         for (Map.Entry<String,Object> entry : map.entrySet()) {
@@ -192,10 +252,18 @@ public class Composer {
         List<Object> list = new ArrayList<Object>(map.size());
 
         int listSize = -1;
+        int headerSize = -1;
 
         // convert keys into integer indexes and sort
         for (Map.Entry<String,Object> entry : map.entrySet()) {
             Object value = entry.getValue();
+            if (DefaultPath.isListHeader(entry.getKey())) {
+                // the list header is only a hint, the terminator takes precedence if there is one
+                if (value instanceof Number) {
+                    headerSize = ((Number)value).intValue();
+                }
+                continue;
+            }
             int listIndex = DefaultPath.getListIndex(entry.getKey());
             if (Types.isListTerminator(value)) {
                 listSize = listSize == -1 ? listIndex : Math.min(listIndex, listSize);
@@ -213,6 +281,11 @@ public class Composer {
             sortedMap.put(DefaultPath.getListIndex(entry.getKey()), transformedValue);
         }
 
+        // if no terminator was found then use the list header if there is one
+        if (listSize == -1) {
+            listSize = headerSize;
+        }
+
         // if no listSize was found then something went wrong, but just warn and use whole list found
         if (listSize == -1) {
             log.warn("no list terminator found, using all list elements");
@@ -230,6 +303,27 @@ public class Composer {
         return list;
     }
 
+    /**
+     * Transform a set into a list of its members. List elements next to the members are left over from a set
+     * that was written in a form that could not be encoded with members and has been replaced, so they are ignored.
+     */
+    @SuppressWarnings("unchecked")
+    private Object transformActualSet(Map<String,Object> map) {
+        List<Object> members = new ArrayList<Object>(map.size());
+        for (Map.Entry<String,Object> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (!DefaultPath.isSetMember(entry.getKey())) {
+                continue;
+            }
+            if (value instanceof Map) {
+                members.add(transformLists((Map<String,Object>)value));
+            } else {
+                members.add(value);
+            }
+        }
+        return members;
+    }
+
     private String urlDecode(String encodedString) {
         String decodedString;
         try {
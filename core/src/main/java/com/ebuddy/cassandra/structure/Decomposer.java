@@ -18,9 +18,16 @@ package com.ebuddy.cassandra.structure;
 
 import static org.apache.commons.lang3.ObjectUtils.NULL;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
 
 import com.ebuddy.cassandra.Path;
 
@@ -31,14 +38,30 @@ import com.ebuddy.cassandra.Path;
  * @author Eric Zoerner <a href="mailto:ezoerner@ebuddy.com">ezoerner@ebuddy.com</a>
  */
 public class Decomposer {
-    private static final Decomposer INSTANCE = new Decomposer();
+    private static final Decomposer INSTANCE = new Decomposer(false);
+    private static final Decomposer LIST_HEADER_INSTANCE = new Decomposer(true);
+    /** Whether each type id of a list is the type of a set, to avoid loading the class for every list. */
+    private static final ConcurrentMap<String,Boolean> SET_TYPES = new ConcurrentHashMap<String,Boolean>();
+
+    private final boolean writeListHeaders;
 
-    private Decomposer() { }
+    private Decomposer(boolean writeListHeaders) {
+        this.writeListHeaders = writeListHeaders;
+    }
 
     public static Decomposer get() {
         return INSTANCE;
     }
 
+    /**
+     * Get a Decomposer that also writes a list header recording the size of every list, next to the
+     * list terminator. The list header allows the size of a list to be read, and elements to be appended to it,
+     * without reading the whole list.
+     */
+    public static Decomposer getWithListHeaders() {
+        return LIST_HEADER_INSTANCE;
+    }
+
     /**
      * Decompose a map of arbitrarily complex structured objects into a map of
      * simple objects keyed by paths.
@@ -49,6 +72,23 @@ public class Decomposer {
      *                                  or if structures is null
      */
     public Map<Path,Object> decompose(Map<Path,Object> structures) {
+        return decompose(structures, null);
+    }
+
+    /**
+     * Decompose a map of arbitrarily complex structured objects into a map of simple objects keyed by paths, and
+     * collect the paths of the sets in the structures.
+     * A set replaces what was at its path before, but the columns of its members have different paths than the
+     * columns of the set it replaces, so the columns under these paths that are not in the result need to be
+     * deleted when the result is written.
+     *
+     * @param structures the input map of paths to objects
+     * @param setPaths the collection to add the paths of the sets to, or null if they are not needed
+     * @return a map of simple object keyed by paths
+     * @throws IllegalArgumentException if there is an object of unsupported type in structures
+     *                                  or if structures is null
+     */
+    public Map<Path,Object> decompose(Map<Path,Object> structures, @Nullable Collection<Path> setPaths) {
         if (structures == null) {
             throw new IllegalArgumentException("structures is null");
         }
@@ -70,28 +110,56 @@ public class Decomposer {
                 continue;
             }
 
-            Map<Path,Object> decomposedMap = decomposeStructure(structure);
+            List<Path> structureSetPaths = setPaths == null ? null : new ArrayList<Path>();
+            Map<Path,Object> decomposedMap = decomposeStructure(structure, structureSetPaths);
 
             for (Map.Entry<Path,Object> decomposedEntry : decomposedMap.entrySet()) {
                 decomposed.put(path.concat(decomposedEntry.getKey()), decomposedEntry.getValue());
             }
+            if (structureSetPaths != null) {
+                for (Path structureSetPath : structureSetPaths) {
+                    setPaths.add(path.concat(structureSetPath));
+                }
+            }
         }
         return decomposed;
     }
 
+    /**
+     * Decompose elements to be appended to a list, along with a new list terminator and list header.
+     * The list header is written regardless of whether this Decomposer writes list headers in general.
+     *
+     * @param listPath the path to the list
+     * @param currentSize the size of the list before appending
+     * @param elements the elements to append, already converted to basic JSON structures
+     * @return a map of simple objects keyed by paths
+     */
+    public Map<Path,Object> decomposeListAppend(Path listPath, int currentSize, List<?> elements) {
+        Map<Path,Object> structures = new HashMap<Path,Object>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            structures.put(listPath.withIndices(currentSize + i), elements.get(i));
+        }
+        Map<Path,Object> decomposed = decompose(structures);
+
+        int newSize = currentSize + elements.size();
+        decomposed.put(listPath.withIndices(newSize), Types.LIST_TERMINATOR_VALUE);
+        decomposed.put(listPath.concat(DefaultPath.fromListHeader()), newSize);
+        return decomposed;
+    }
+
     //////// Private Methods //////////
 
     @SuppressWarnings("ChainOfInstanceofChecks")
-    private Map<Path,Object> decomposeStructure(Object structure) {
+    private Map<Path,Object> decomposeStructure(Object structure, @Nullable Collection<Path> setPaths) {
         Map<Path,Object> decomposedMap;
         if (structure instanceof Map) {
             decomposedMap = normalizeMap((Map<?,?>)structure);
         } else if (structure instanceof List) {
-            decomposedMap = normalizeList((List<?>)structure);
+            decomposedMap = normalizeList((List<?>)structure, setPaths);
         } else {
             throw new IllegalArgumentException("Unsupported data type: " + structure.getClass().getSimpleName());
         }
-        return decompose(decomposedMap);
+        return decompose(decomposedMap, setPaths);
     }
 
     private Map<Path,Object> normalizeMap(Map<?,?> map) {
@@ -111,20 +179,72 @@ public class Decomposer {
         return normalized;
     }
 
-    private Map<Path,Object> normalizeList(List<?> list) {
+    private Map<Path,Object> normalizeList(List<?> list, @Nullable Collection<Path> setPaths) {
         // get type info for list
-        // TODO: if this is a set of simple types, then encode the set into the keys using #
-        // String type = (String)list.get(0);
+        String type = (String)list.get(0);
         /// get list itself
         List<?> listItself = (List<?>)list.get(1);
 
+        if (isSetType(type)) {
+            if (setPaths != null) {
+                setPaths.add(DefaultPath.fromStrings());
+            }
+            // if this is a set of simple types, then encode the set into the keys using #
+            if (isMemberEncodable(listItself)) {
+                return normalizeSet(listItself);
+            }
+        }
+
         Map<Path,Object> normalized = new HashMap<Path,Object>(listItself.size());
         for (int i = 0; i < listItself.size(); i++) {
             normalized.put(DefaultPath.fromIndex(i), listItself.get(i));
         }
         // add terminator column, issue #20
         normalized.put(DefaultPath.fromIndex(listItself.size()), Types.LIST_TERMINATOR_VALUE);
+        if (writeListHeaders) {
+            normalized.put(DefaultPath.fromListHeader(), listItself.size());
+        }
 
         return normalized;
     }
+
+    private Map<Path,Object> normalizeSet(List<?> members) {
+        Map<Path,Object> normalized = new HashMap<Path,Object>(members.size());
+        for (Object member : members) {
+            normalized.put(DefaultPath.fromSetMember(member), member);
+        }
+        return normalized;
+    }
+
+    /**
+     * A set can be encoded with its members in the keys if it is not empty and all the members are simple
+     * and not null. Otherwise it is encoded in the same way as a list.
+     */
+    private boolean isMemberEncodable(List<?> members) {
+        if (members.isEmpty()) {
+            return false;
+        }
+        for (Object member : members) {
+            if (member == null || !Types.isSimple(member)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isSetType(String type) {
+        Boolean isSet = SET_TYPES.get(type);
+        if (isSet == null) {
+            // strip off any type parameters, e.g. java.util.HashSet<java.lang.String>
+            int typeParametersIndex = type.indexOf('<');
+            String className = typeParametersIndex < 0 ? type : type.substring(0, typeParametersIndex);
+            try {
+                isSet = Set.class.isAssignableFrom(Class.forName(className, false, getClass().getClassLoader()));
+            } catch (ClassNotFoundException ignored) {
+                isSet = false;
+            }
+            SET_TYPES.put(type, isSet);
+        }
+        return isSet;
+    }
 }
@@ -44,6 +44,21 @@ import com.google.common.collect.Lists;
 public class DefaultPath implements Path {
     private static final char PATH_DELIMITER_CHAR = '/';
     private static final String LIST_INDEX_PREFIX = "@";
+    /**
+     * Path element for the optional list header column, which records the size of a list.
+     * Cannot clash with a map key since map keys are URL-encoded.
+     */
+    private static final String LIST_HEADER_ELEMENT = LIST_INDEX_PREFIX + "size";
+    /**
+     * Prefix for path elements that encode a member of a set of simple values.
+     * Cannot clash with a map key since map keys are URL-encoded.
+     */
+    private static final String SET_MEMBER_PREFIX = "#";
+    /**
+     * Path element for a prefix tombstone, which marks everything under the path before it as deleted.
+     * Cannot clash with a map key since map keys are URL-encoded.
+     */
+    private static final String PREFIX_TOMBSTONE_ELEMENT = "!deleted";
 
     private static final Function<String,String> urlEncodeFunction = new UrlEncode();
 
@@ -85,6 +100,32 @@ public class DefaultPath implements Path {
         return new DefaultPath(Arrays.asList(LIST_INDEX_PREFIX + i));
     }
 
+    /** Create a path consisting of the single element used for a list header. */
+    public static DefaultPath fromListHeader() {
+        return new DefaultPath(Arrays.asList(LIST_HEADER_ELEMENT));
+    }
+
+    /** Create a path consisting of the single element used for a prefix tombstone. */
+    public static DefaultPath fromPrefixTombstone() {
+        return new DefaultPath(Arrays.asList(PREFIX_TOMBSTONE_ELEMENT));
+    }
+
+    /**
+     * Create a path consisting of the single element that encodes a member of a set.
+     * The member is encoded in the same way as a column value so that members of different types that have the
+     * same string representation (e.g. 1 and "1") are distinct.
+     *
+     * @param member the set member, must be a non-null String, Number, or Boolean
+     * @throws IllegalArgumentException if the member is null or not a simple type
+     */
+    public static DefaultPath fromSetMember(Object member) {
+        if (member == null || !Types.isSimple(member)) {
+            throw new IllegalArgumentException("set member must be a non-null simple value");
+        }
+        String encodedMember = urlEncodeFunction.apply(StructureConverter.get().toString(member));
+        return new DefaultPath(Arrays.asList(SET_MEMBER_PREFIX + encodedMember));
+    }
+
     @Override
     public String head() {
         return getFirst(pathElements, null);
@@ -179,22 +220,59 @@ public class DefaultPath implements Path {
     }
 
     /**
-     * Return true if all the given encoded path elements are list indexes.
+     * Return true if all the given encoded path elements are list indexes or list headers.
      * @throws IllegalArgumentException if an empty path is found
      */
     public static boolean isList(Iterable<String> encodedElements) {
         for (String element : encodedElements)  {
-            if (!isListIndex(element)) {
+            if (!isListIndex(element) && !isListHeader(element)) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Return true if the encoded path element is the element used for a list header.
+     */
+    public static boolean isListHeader(String pathElement) {
+        return pathElement.equals(LIST_HEADER_ELEMENT);
+    }
+
+    /**
+     * Return true if the encoded path element is the element used for a prefix tombstone.
+     */
+    public static boolean isPrefixTombstone(String pathElement) {
+        return pathElement.equals(PREFIX_TOMBSTONE_ELEMENT);
+    }
+
+    /**
+     * Return true if the encoded path element encodes a set member.
+     */
+    public static boolean isSetMember(String pathElement) {
+        return pathElement.startsWith(SET_MEMBER_PREFIX);
+    }
+
+    /**
+     * Return true if the given encoded path elements contain at least one set member and otherwise only
+     * list indexes or list headers, which are used for sets that were not encoded with members (e.g. empty sets).
+     */
+    public static boolean isSet(Iterable<String> encodedElements) {
+        boolean foundMember = false;
+        for (String element : encodedElements)  {
+            if (isSetMember(element)) {
+                foundMember = true;
+            } else if (!isListIndex(element) && !isListHeader(element)) {
+                return false;
+            }
+        }
+        return foundMember;
+    }
+
     /**
      * Return true if the first element in this path is a list index.
      */
-    private static boolean isListIndex(String pathElement) {
+    static boolean isListIndex(String pathElement) {
         if (!pathElement.startsWith(LIST_INDEX_PREFIX)) {
             return false;
         }
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.structure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.CloseableIterator;
+import com.ebuddy.cassandra.Path;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
+
+/**
+ * Converts the columns read under a path into entries of the path of each simple value relative to the path read,
+ * and the value, without composing the values into an object. The columns are taken from the underlying iterator
+ * one at a time, so when it reads a page of columns at a time only one page is held in memory.
+ *
+ * List terminators, list headers and prefix tombstones are not returned, since they are not values of the object.
+ * Nor are the elements beyond the end of a list that are left over from a longer list written earlier. List
+ * indexes are not in numeric order in column name order, so the columns of a list are held until the end of the
+ * list is known, i.e. its smallest terminator, or its header if it has no terminator, as when it is composed.
+ * Columns deleted by prefix tombstones must already have been removed from the underlying iterator.
+ */
+public class PathEntryIterator extends AbstractIterator<Map.Entry<Path,Object>>
+        implements CloseableIterator<Map.Entry<Path,Object>> {
+    private final Path path;
+    private final PeekingIterator<? extends Map.Entry<String,?>> columns;
+    private Iterator<Map.Entry<Path,Object>> listEntries = Iterators.emptyIterator();
+    private boolean closed;
+
+    /**
+     * @param path the path read
+     * @param columns the columns under the path, keyed by the encoded path strings of the column names,
+     *                with the decoded simple values
+     */
+    public PathEntryIterator(Path path, Iterator<? extends Map.Entry<String,?>> columns) {
+        Validate.notNull(path);
+        Validate.notNull(columns);
+        this.path = path;
+        this.columns = Iterators.peekingIterator(columns);
+    }
+
+    @Override
+    protected Map.Entry<Path,Object> computeNext() {
+        while (!closed) {
+            if (listEntries.hasNext()) {
+                return listEntries.next();
+            }
+            if (!columns.hasNext()) {
+                break;
+            }
+            Map.Entry<String,?> column = columns.next();
+            if (PrefixTombstoneFilter.isTombstone(column.getKey())) {
+                continue;
+            }
+
+            Path relativePath = getRelativePath(column.getKey());
+            List<String> elements = Lists.newArrayList(relativePath.getElements());
+            int listPosition = getListPosition(elements);
+            if (listPosition < 0) {
+                return Maps.immutableEntry(relativePath, (Object)column.getValue());
+            }
+            listEntries = readList(relativePath, elements.subList(0, listPosition), column.getValue());
+        }
+        return endOfData();
+    }
+
+    /**
+     * Stop the iteration. The columns are read on demand, so no further pages are read once closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private Path getRelativePath(String columnName) {
+        Path columnPath = DefaultPath.fromEncodedPathString(columnName);
+        if (!columnPath.startsWith(path)) {
+            throw new IllegalStateException("unexpected path found in database:" + columnPath);
+        }
+        return columnPath.tail(path.size());
+    }
+
+    /**
+     * Read the rest of the columns of the list that the first column is in, which follow it in column name order,
+     * and return the entries of the elements within the list and within any lists nested in it.
+     */
+    private Iterator<Map.Entry<Path,Object>> readList(Path firstPath, List<String> listPrefix, Object firstValue) {
+        List<Map.Entry<Path,Object>> listColumns = new ArrayList<Map.Entry<Path,Object>>();
+        listColumns.add(Maps.immutableEntry(firstPath, firstValue));
+        while (columns.hasNext()) {
+            String columnName = columns.peek().getKey();
+            if (PrefixTombstoneFilter.isTombstone(columnName)) {
+                columns.next();
+                continue;
+            }
+            Path relativePath = getRelativePath(columnName);
+            List<String> elements = Lists.newArrayList(relativePath.getElements());
+            if (elements.size() <= listPrefix.size() || !elements.subList(0, listPrefix.size()).equals(listPrefix) ||
+                    !isListElement(elements.get(listPrefix.size()))) {
+                break;
+            }
+            listColumns.add(Maps.immutableEntry(relativePath, (Object)columns.next().getValue()));
+        }
+
+        // the size of each list, keyed by the elements of its path
+        Map<List<String>,Integer> terminators = new HashMap<List<String>,Integer>();
+        Map<List<String>,Integer> headers = new HashMap<List<String>,Integer>();
+        for (Map.Entry<Path,Object> column : listColumns) {
+            List<String> elements = Lists.newArrayList(column.getKey().getElements());
+            String last = elements.get(elements.size() - 1);
+            List<String> parent = elements.subList(0, elements.size() - 1);
+            Object value = column.getValue();
+            if (DefaultPath.isListHeader(last) && value instanceof Number) {
+                headers.put(parent, ((Number)value).intValue());
+            } else if (DefaultPath.isListIndex(last) && value != null && Types.isListTerminator(value)) {
+                int index = DefaultPath.getListIndex(last);
+                Integer size = terminators.get(parent);
+                terminators.put(parent, size == null ? index : Math.min(index, size));
+            }
+        }
+
+        List<Map.Entry<Path,Object>> entries = new ArrayList<Map.Entry<Path,Object>>(listColumns.size());
+        for (Map.Entry<Path,Object> column : listColumns) {
+            if (isWithinLists(Lists.newArrayList(column.getKey().getElements()), terminators, headers)) {
+                entries.add(column);
+            }
+        }
+        return entries.iterator();
+    }
+
+    /**
+     * Return true if the column is an element within the size of every list in its path, and is not the header or
+     * terminator of a list.
+     */
+    private static boolean isWithinLists(List<String> elements,
+                                         Map<List<String>,Integer> terminators,
+                                         Map<List<String>,Integer> headers) {
+        for (int i = 0; i < elements.size(); i++) {
+            String element = elements.get(i);
+            if (DefaultPath.isListHeader(element)) {
+                return false;
+            }
+            if (!DefaultPath.isListIndex(element)) {
+                continue;
+            }
+            List<String> listPrefix = elements.subList(0, i);
+            Integer size = terminators.get(listPrefix);
+            if (size == null) {
+                size = headers.get(listPrefix);
+            }
+            if (size != null && DefaultPath.getListIndex(element) >= size) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the position of the first list index or list header in the elements, or -1 if there is none. */
+    private static int getListPosition(List<String> elements) {
+        for (int i = 0; i < elements.size(); i++) {
+            if (isListElement(elements.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isListElement(String element) {
+        return DefaultPath.isListIndex(element) || DefaultPath.isListHeader(element);
+    }
+}
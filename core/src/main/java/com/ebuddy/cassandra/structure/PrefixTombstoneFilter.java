@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.structure;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.ebuddy.cassandra.Path;
+
+/**
+ * Finds the columns that are deleted by prefix tombstones.
+ *
+ * A prefix tombstone is a single column written under a path when the path is deleted, instead of reading and
+ * deleting every column under the path. Its write timestamp is the time of the delete: every column under the
+ * same path that was written at or before that timestamp is deleted, as it would be by a Cassandra tombstone.
+ * The filter is given the tombstones read along with the columns, and the tombstones of the ancestors of the
+ * path read, which are outside of the range of columns read.
+ */
+public class PrefixTombstoneFilter {
+    // column names are encoded paths, see DefaultPath#toString
+    private static final char PATH_DELIMITER_CHAR = '/';
+    private static final String TOMBSTONE_SUFFIX = DefaultPath.fromPrefixTombstone().toString();
+
+    /** Timestamps of tombstones keyed by the column name prefix that they delete. */
+    private final Map<String,Long> tombstoneTimestamps = new HashMap<String,Long>();
+
+    /**
+     * Get the column name of the prefix tombstone that deletes a path.
+     */
+    public static String getTombstoneName(Path path) {
+        return path.concat(DefaultPath.fromPrefixTombstone()).toString();
+    }
+
+    /**
+     * Get the column names of the prefix tombstones that would delete the ancestors of a path.
+     */
+    public static List<String> getAncestorTombstoneNames(Path path) {
+        String pathString = path.toString();
+        List<String> names = new ArrayList<String>(path.size() - 1);
+        // the last delimiter ends the path itself, whose tombstone is under the path
+        for (int i = pathString.indexOf(PATH_DELIMITER_CHAR);
+             i >= 0 && i < pathString.length() - 1;
+             i = pathString.indexOf(PATH_DELIMITER_CHAR, i + 1)) {
+            names.add(pathString.substring(0, i + 1) + TOMBSTONE_SUFFIX);
+        }
+        return names;
+    }
+
+    /**
+     * Return true if a column name is the name of a prefix tombstone.
+     */
+    public static boolean isTombstone(String columnName) {
+        return columnName.endsWith(TOMBSTONE_SUFFIX) &&
+                (columnName.length() == TOMBSTONE_SUFFIX.length() ||
+                        columnName.charAt(columnName.length() - TOMBSTONE_SUFFIX.length() - 1) == PATH_DELIMITER_CHAR);
+    }
+
+    /**
+     * If a column is a prefix tombstone then add it to this filter.
+     *
+     * @param columnName the name of the column
+     * @param timestamp the write timestamp of the column
+     * @return true if the column is a prefix tombstone
+     */
+    public boolean addIfTombstone(String columnName, long timestamp) {
+        if (!isTombstone(columnName)) {
+            return false;
+        }
+        String prefix = columnName.substring(0, columnName.length() - TOMBSTONE_SUFFIX.length());
+        Long previous = tombstoneTimestamps.get(prefix);
+        if (previous == null || previous < timestamp) {
+            tombstoneTimestamps.put(prefix, timestamp);
+        }
+        return true;
+    }
+
+    /**
+     * Return true if there are no prefix tombstones in this filter, so no columns are deleted.
+     */
+    public boolean isEmpty() {
+        return tombstoneTimestamps.isEmpty();
+    }
+
+    /**
+     * Return true if a column is deleted by a prefix tombstone.
+     *
+     * @param columnName the name of the column, which is not a tombstone
+     * @param timestamp the write timestamp of the column
+     */
+    public boolean isDeleted(String columnName, long timestamp) {
+        return getDeletingTimestamp(columnName, timestamp) != null;
+    }
+
+    /**
+     * Get the timestamp of the newest prefix tombstone that deletes a column.
+     *
+     * @param columnName the name of the column, which is not a tombstone
+     * @param timestamp the write timestamp of the column
+     * @return the timestamp of the tombstone, or null if the column is not deleted
+     */
+    @Nullable
+    public Long getDeletingTimestamp(String columnName, long timestamp) {
+        if (tombstoneTimestamps.isEmpty()) {
+            return null;
+        }
+        Long deletingTimestamp = null;
+        for (int i = columnName.indexOf(PATH_DELIMITER_CHAR);
+             i >= 0;
+             i = columnName.indexOf(PATH_DELIMITER_CHAR, i + 1)) {
+            Long tombstoneTimestamp = tombstoneTimestamps.get(columnName.substring(0, i + 1));
+            // as with Cassandra tombstones, a delete wins over a write with the same timestamp
+            if (tombstoneTimestamp != null && tombstoneTimestamp >= timestamp &&
+                    (deletingTimestamp == null || tombstoneTimestamp > deletingTimestamp)) {
+                deletingTimestamp = tombstoneTimestamp;
+            }
+        }
+        return deletingTimestamp;
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.writebehind;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
+import com.ebuddy.cassandra.ForwardingStructuredDataSupport;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.structure.Decomposer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A StructuredDataSupport that buffers the writes of writeToPath and writes them to the delegate later, so that
+ * rows that are written many times in a short time are written once per flush.
+ * <p>
+ * Writes are decomposed into columns when they are buffered, and a later write of a column supersedes the buffered
+ * value of that column, whether it is written to the same path or to an ancestor path. A background task runs
+ * with a fixed delay of the flush interval between the end of one run and the start of the next, and each run
+ * writes all buffered rows, however long they have been buffered. A run is also started as soon as the number of
+ * buffered columns reaches the flush size. Each row is written with one writeColumns, so the columns are not
+ * converted or decomposed again. A column can therefore stay buffered for up to the flush interval plus the time
+ * that a run takes. When the number of buffered columns reaches the maximum, writers wait until the buffer is
+ * flushed.
+ * </p>
+ * <p>
+ * Reads through this instance of paths with buffered columns flush the row first, so they see all writes made
+ * through this instance. Other operations, including writes that are part of a batch, flush the buffered
+ * columns of the row first so they are applied in order. Writes of values that contain sets are not buffered but
+ * written through the same way, since replacing a set deletes the columns of the old set. The buffer should be
+ * closed when it is no longer used, which flushes it.
+ * If a background flush fails then the columns of the failed row are lost; the failure is logged and counted.
+ * </p>
+ *
+ * @param <K> The row key type
+ */
+public class WriteBehindStructuredDataSupport<K> extends ForwardingStructuredDataSupport<K> implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindStructuredDataSupport.class);
+
+    private final StructuredDataSupport<K> delegate;
+    private final int flushSize;
+    private final int maxBufferedColumns;
+    private final ObjectMapper writeMapper;
+    private final ScheduledExecutorService flusher;
+    private final Runnable flushTask = new FlushTask();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /** Guards the buffer, the rows in flight and the number of buffered columns. */
+    private final Lock bufferLock = new ReentrantLock();
+    private final Condition notFull = bufferLock.newCondition();
+    /** Held while buffered columns are written, so writes of the same row are applied in order. */
+    private final Lock flushLock = new ReentrantLock();
+
+    private Map<K,Map<Path,Object>> buffer = new LinkedHashMap<K,Map<Path,Object>>();
+    private Set<K> rowsInFlight = Collections.emptySet();
+    private int bufferedColumns;
+    private volatile boolean closed;
+    private volatile boolean listHeadersEnabled;
+
+    private final AtomicLong bufferedWriteCount = new AtomicLong();
+    private final AtomicLong supersededColumnCount = new AtomicLong();
+    private final AtomicLong flushedBatchCount = new AtomicLong();
+    private final AtomicLong flushedColumnCount = new AtomicLong();
+    private final AtomicLong failedBatchCount = new AtomicLong();
+
+    /**
+     * Create a write-behind buffer and start flushing it in the background.
+     *
+     * @param delegate the StructuredDataSupport to write to
+     * @param flushInterval the delay between the end of one background flush and the start of the next
+     * @param flushIntervalUnit the unit of flushInterval
+     * @param flushSize the number of buffered columns that triggers a flush before the next scheduled one
+     * @param maxBufferedColumns the number of buffered columns at which writers wait for the buffer to be flushed
+     */
+    public WriteBehindStructuredDataSupport(StructuredDataSupport<K> delegate,
+                                            long flushInterval,
+                                            TimeUnit flushIntervalUnit,
+                                            int flushSize,
+                                            int maxBufferedColumns) {
+        Validate.notNull(delegate);
+        Validate.isTrue(flushInterval > 0, "flushInterval must be positive");
+        Validate.isTrue(flushSize > 0, "flushSize must be positive");
+        Validate.isTrue(maxBufferedColumns >= flushSize, "maxBufferedColumns must not be less than flushSize");
+        this.delegate = delegate;
+        this.flushSize = flushSize;
+        this.maxBufferedColumns = maxBufferedColumns;
+
+        writeMapper = new ObjectMapper();
+        writeMapper.setDefaultTyping(new CustomTypeResolverBuilder());
+
+        flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat("write-behind-%d")
+                        .build());
+        flusher.scheduleWithFixedDelay(flushTask, flushInterval, flushInterval, flushIntervalUnit);
+    }
+
+    /**
+     * Enable or disable writing a list header with the size of each list that is written.
+     * This should be the same as in the delegate. List headers are disabled by default.
+     */
+    public void setListHeadersEnabled(boolean listHeadersEnabled) {
+        this.listHeadersEnabled = listHeadersEnabled;
+    }
+
+    @Override
+    protected StructuredDataSupport<K> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        flushRow(rowKey, path);
+        return delegate.readFromPath(rowKey, path, type);
+    }
+
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        flushRow(rowKey, path);
+        return delegate.iteratePath(rowKey, path);
+    }
+
+    @Override
+    public <T> CloseableIterator<Map.Entry<K,T>> scan(Path path, TypeReference<T> type) {
+        flush();
+        return delegate.scan(path, type);
+    }
+
+    @Override
+    public CloseableIterator<K> scanRowKeys() {
+        flush();
+        return delegate.scanRowKeys();
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value) {
+        Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+        Validate.notNull(rowKey, "Row key must not be empty");
+
+        Object simplifiedStructure = writeMapper.convertValue(value, Object.class);
+        List<Path> setPaths = new ArrayList<Path>();
+        Map<Path,Object> columns = getDecomposer().decompose(Collections.singletonMap(path, simplifiedStructure),
+                                                             setPaths);
+        if (!setPaths.isEmpty()) {
+            // replacing a set deletes the columns of the old set, which are not buffered, so write it through
+            flushRow(rowKey, null);
+            delegate.writeToPath(rowKey, path, simplifiedStructure);
+            return;
+        }
+        bufferColumns(rowKey, columns);
+    }
+
+    @Override
+    public void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext) {
+        flushRow(rowKey, null);
+        delegate.writeToPath(rowKey, path, value, batchContext);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        Validate.notNull(rowKey, "Row key must not be empty");
+        for (Path path : columns.keySet()) {
+            Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+        }
+        bufferColumns(rowKey, columns);
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        flushRow(rowKey, null);
+        delegate.writeColumns(rowKey, columns, batchContext);
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path) {
+        flushRow(rowKey, null);
+        delegate.deletePath(rowKey, path);
+    }
+
+    @Override
+    public void deletePath(K rowKey, Path path, BatchContext batchContext) {
+        flushRow(rowKey, null);
+        delegate.deletePath(rowKey, path, batchContext);
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        flushRow(rowKey, null);
+        delegate.appendToList(rowKey, listPath, values);
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        flushRow(rowKey, listPath);
+        return delegate.listSize(rowKey, listPath);
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        flushRow(rowKey, null);
+        delegate.addToSet(rowKey, path, members);
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        flushRow(rowKey, null);
+        delegate.removeFromSet(rowKey, path, members);
+    }
+
+    /**
+     * Write all buffered columns to the delegate.
+     *
+     * @throws RuntimeException the first exception thrown by the delegate, after all rows have been written
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<K,Map<Path,Object>> rows;
+            bufferLock.lock();
+            try {
+                rows = buffer;
+                buffer = new LinkedHashMap<K,Map<Path,Object>>();
+                rowsInFlight = rows.keySet();
+                bufferedColumns = 0;
+                notFull.signalAll();
+            } finally {
+                bufferLock.unlock();
+            }
+
+            RuntimeException failure = null;
+            for (Map.Entry<K,Map<Path,Object>> row : rows.entrySet()) {
+                try {
+                    writeRow(row.getKey(), row.getValue());
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+
+            bufferLock.lock();
+            try {
+                rowsInFlight = Collections.emptySet();
+            } finally {
+                bufferLock.unlock();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stop flushing in the background and flush the buffer. Writes are rejected after the buffer is closed.
+     */
+    @Override
+    public void close() {
+        bufferLock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+        } finally {
+            bufferLock.unlock();
+        }
+        flusher.shutdown();
+        flush();
+    }
+
+    /** Return the number of writes that were buffered. */
+    public long getBufferedWriteCount() {
+        return bufferedWriteCount.get();
+    }
+
+    /** Return the number of buffered columns that were superseded by a later write before they were flushed. */
+    public long getSupersededColumnCount() {
+        return supersededColumnCount.get();
+    }
+
+    /** Return the number of batches written to the delegate. */
+    public long getFlushedBatchCount() {
+        return flushedBatchCount.get();
+    }
+
+    /** Return the number of columns written to the delegate. */
+    public long getFlushedColumnCount() {
+        return flushedColumnCount.get();
+    }
+
+    /** Return the number of batches that failed to be written to the delegate. */
+    public long getFailedBatchCount() {
+        return failedBatchCount.get();
+    }
+
+    /** Return the number of columns currently buffered. */
+    public int getBufferedColumnCount() {
+        bufferLock.lock();
+        try {
+            return bufferedColumns;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    //////// Private Methods //////////
+
+    private Decomposer getDecomposer() {
+        return listHeadersEnabled ? Decomposer.getWithListHeaders() : Decomposer.get();
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true) && !flusher.isShutdown()) {
+            flusher.execute(flushTask);
+        }
+    }
+
+    /**
+     * Buffer decomposed columns of a row, waiting while the buffer is full.
+     */
+    private void bufferColumns(K rowKey, Map<Path,Object> columns) {
+        boolean full;
+        bufferLock.lock();
+        try {
+            while (bufferedColumns >= maxBufferedColumns && !closed) {
+                requestFlush();
+                notFull.awaitUninterruptibly();
+            }
+            Validate.validState(!closed, "write-behind buffer is closed");
+
+            Map<Path,Object> row = buffer.get(rowKey);
+            if (row == null) {
+                row = new LinkedHashMap<Path,Object>();
+                buffer.put(rowKey, row);
+            }
+            for (Map.Entry<Path,Object> column : columns.entrySet()) {
+                if (row.put(column.getKey(), column.getValue()) == null) {
+                    bufferedColumns++;
+                } else {
+                    supersededColumnCount.incrementAndGet();
+                }
+            }
+            full = bufferedColumns >= flushSize;
+        } finally {
+            bufferLock.unlock();
+        }
+        bufferedWriteCount.incrementAndGet();
+
+        if (full) {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Write the buffered columns of a row to the delegate if any of them are at, above or below the path.
+     *
+     * @param path the path, or null to write the buffered columns of the row in any case
+     */
+    private void flushRow(K rowKey, @Nullable Path path) {
+        if (!isBuffered(rowKey, path)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Map<Path,Object> columns;
+            bufferLock.lock();
+            try {
+                columns = buffer.remove(rowKey);
+                if (columns != null) {
+                    bufferedColumns -= columns.size();
+                    notFull.signalAll();
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+            if (columns != null) {
+                writeRow(rowKey, columns);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private boolean isBuffered(K rowKey, @Nullable Path path) {
+        bufferLock.lock();
+        try {
+            if (rowsInFlight.contains(rowKey)) {
+                return true;
+            }
+            Map<Path,Object> columns = buffer.get(rowKey);
+            if (columns == null) {
+                return false;
+            }
+            if (path == null) {
+                return true;
+            }
+            for (Path columnPath : columns.keySet()) {
+                if (columnPath.startsWith(path) || path.startsWith(columnPath)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            bufferLock.unlock();
+        }
+    }
+
+    /** Write the columns of a row in a single write, without decomposing them again. */
+    private void writeRow(K rowKey, Map<Path,Object> columns) {
+        try {
+            delegate.writeColumns(rowKey, columns);
+        } catch (RuntimeException e) {
+            failedBatchCount.incrementAndGet();
+            throw e;
+        }
+        flushedBatchCount.incrementAndGet();
+        flushedColumnCount.addAndGet(columns.size());
+    }
+
+    private class FlushTask implements Runnable {
+        @Override
+        public void run() {
+            flushRequested.set(false);
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to write buffered columns", e);
+            }
+        }
+    }
+}
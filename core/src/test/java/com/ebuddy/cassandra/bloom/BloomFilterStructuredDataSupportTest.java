@@ -0,0 +1,163 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.bloom;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.CloseableIterator;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.hash.Funnels;
+
+/**
+ * Tests for BloomFilterStructuredDataSupport.
+ */
+public class BloomFilterStructuredDataSupportTest {
+    private static final TypeReference<String> STRING_TYPE = new TypeReference<String>() { };
+    private static final Path PATH = DefaultPath.fromStrings("a");
+
+    private StructuredDataSupport<String> delegate;
+    private BloomFilterStructuredDataSupport<String> dataSupport;
+
+    @SuppressWarnings("unchecked")
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        delegate = mock(StructuredDataSupport.class);
+        dataSupport = new BloomFilterStructuredDataSupport<String>(delegate, Funnels.stringFunnel(), 100, 0.001);
+        when(delegate.readFromPath(anyString(), eq(PATH), any(TypeReference.class))).thenReturn(null);
+        when(delegate.readFromPath(eq("existing"), eq(PATH), any(TypeReference.class))).thenReturn("value");
+    }
+
+    @Test(groups = "unit")
+    public void shouldForwardReadsUntilSeeded() throws Exception {
+        assertFalse(dataSupport.isReady());
+
+        assertNull(dataSupport.readFromPath("absent", PATH, STRING_TYPE));
+
+        verify(delegate).readFromPath("absent", PATH, STRING_TYPE);
+        assertEquals(dataSupport.getForwardedReadCount(), 1L);
+        assertEquals(dataSupport.getEmptyReadCount(), 1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldNotReadAbsentRowsAfterSeeding() throws Exception {
+        when(delegate.scanRowKeys()).thenReturn(iteratorOf("existing"));
+
+        dataSupport.seed();
+
+        // seeding reads only the row keys, not the objects in the rows
+        verify(delegate, never()).scan(any(Path.class), any(TypeReference.class));
+        assertTrue(dataSupport.isReady());
+        assertNull(dataSupport.readFromPath("absent", PATH, STRING_TYPE));
+        assertEquals(dataSupport.readFromPath("existing", PATH, STRING_TYPE), "value");
+        verify(delegate, never()).readFromPath("absent", PATH, STRING_TYPE);
+        assertEquals(dataSupport.getFilteredReadCount(), 1L);
+        assertEquals(dataSupport.getForwardedReadCount(), 1L);
+        assertEquals(dataSupport.getObservedFalsePositiveRate(), 0.0);
+    }
+
+    @Test(groups = "unit")
+    public void shouldNotIterateAbsentRowsAfterSeeding() throws Exception {
+        when(delegate.scanRowKeys()).thenReturn(iteratorOf("existing"));
+        dataSupport.seed();
+
+        assertFalse(dataSupport.iteratePath("absent", PATH).hasNext());
+        dataSupport.iteratePath("existing", PATH);
+
+        verify(delegate, never()).iteratePath("absent", PATH);
+        verify(delegate).iteratePath("existing", PATH);
+    }
+
+    @Test(groups = "unit")
+    public void shouldReadRowsWrittenAfterSeeding() throws Exception {
+        when(delegate.scanRowKeys()).thenReturn(iteratorOf());
+        dataSupport.seed();
+
+        dataSupport.writeToPath("new", PATH, "new value");
+        dataSupport.readFromPath("new", PATH, STRING_TYPE);
+
+        verify(delegate).writeToPath("new", PATH, "new value");
+        verify(delegate).readFromPath("new", PATH, STRING_TYPE);
+        assertEquals(dataSupport.listSize("absent", PATH), 0);
+        verify(delegate, never()).listSize("absent", PATH);
+    }
+
+    @Test(groups = "unit")
+    public void shouldSaveAndLoadFilter() throws Exception {
+        dataSupport.writeToPath("existing", PATH, "value");
+        File file = File.createTempFile("filter", ".ser");
+        file.deleteOnExit();
+        dataSupport.save(file);
+
+        @SuppressWarnings("unchecked")
+        StructuredDataSupport<String> otherDelegate = mock(StructuredDataSupport.class);
+        BloomFilterStructuredDataSupport<String> loaded =
+                new BloomFilterStructuredDataSupport<String>(otherDelegate, Funnels.stringFunnel(), 100, 0.001);
+        loaded.load(file);
+
+        assertTrue(loaded.isReady());
+        loaded.readFromPath("existing", PATH, STRING_TYPE);
+        loaded.readFromPath("absent", PATH, STRING_TYPE);
+        verify(otherDelegate).readFromPath("existing", PATH, STRING_TYPE);
+        verify(otherDelegate, never()).readFromPath("absent", PATH, STRING_TYPE);
+    }
+
+    private CloseableIterator<String> iteratorOf(String... keys) {
+        final Iterator<String> iterator = Arrays.asList(keys).iterator();
+        return new CloseableIterator<String>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
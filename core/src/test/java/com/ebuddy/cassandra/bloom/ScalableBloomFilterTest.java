@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.bloom;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Funnels;
+
+/**
+ * Tests for ScalableBloomFilter.
+ */
+public class ScalableBloomFilterTest {
+
+    @Test(groups = "unit")
+    public void shouldContainAllAddedElementsWhenGrown() throws Exception {
+        ScalableBloomFilter<Integer> filter = new ScalableBloomFilter<Integer>(Funnels.integerFunnel(), 100, 0.01);
+
+        for (int i = 0; i < 10000; i++) {
+            filter.put(i);
+        }
+
+        assertTrue(filter.getFilterCount() > 1);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void shouldKeepFalsePositiveProbabilityWhenGrown() throws Exception {
+        ScalableBloomFilter<Integer> filter = new ScalableBloomFilter<Integer>(Funnels.integerFunnel(), 100, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put(i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 10000; i < 20000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(filter.expectedFpp() <= 0.01, "expected fpp " + filter.expectedFpp());
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+
+    @Test(groups = "unit")
+    public void shouldNotAddContainedElementAgain() throws Exception {
+        ScalableBloomFilter<Integer> filter = new ScalableBloomFilter<Integer>(Funnels.integerFunnel(), 100, 0.01);
+
+        assertTrue(filter.put(1));
+        assertFalse(filter.put(1));
+    }
+
+    @Test(groups = "unit")
+    public void shouldSerialize() throws Exception {
+        ScalableBloomFilter<CharSequence> filter =
+                new ScalableBloomFilter<CharSequence>(Funnels.stringFunnel(), 10, 0.01);
+        for (int i = 0; i < 100; i++) {
+            filter.put("key" + i);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(filter);
+        out.close();
+        @SuppressWarnings("unchecked")
+        ScalableBloomFilter<CharSequence> copy = (ScalableBloomFilter<CharSequence>)new ObjectInputStream(
+                new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(copy.getFilterCount(), filter.getFilterCount());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(copy.mightContain("key" + i));
+        }
+        assertTrue(copy.put("another key"));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.cache;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.base.Ticker;
+
+/**
+ * Tests for CachingStructuredDataSupport.
+ */
+public class CachingStructuredDataSupportTest {
+    private static final TypeReference<Object> OBJECT_TYPE = new TypeReference<Object>() { };
+    private static final TypeReference<Map<String,String>> MAP_TYPE = new TypeReference<Map<String,String>>() { };
+    private static final String ROW_KEY = "row";
+
+    private StructuredDataSupport<String> delegate;
+    private FakeTicker ticker;
+    private CachingStructuredDataSupport<String> cache;
+
+    @SuppressWarnings("unchecked")
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        delegate = mock(StructuredDataSupport.class);
+        ticker = new FakeTicker();
+        cache = new CachingStructuredDataSupport<String>(delegate, 2, 1, TimeUnit.MINUTES, ticker);
+        when(delegate.readFromPath(eq(ROW_KEY), any(Path.class), any(TypeReference.class))).thenReturn("value");
+    }
+
+    @Test(groups = "unit")
+    public void shouldReadFromCacheAfterFirstRead() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+
+        assertEquals(cache.readFromPath(ROW_KEY, path, OBJECT_TYPE), "value");
+        assertEquals(cache.readFromPath(ROW_KEY, path, OBJECT_TYPE), "value");
+
+        verify(delegate, times(1)).readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class));
+        assertEquals(cache.getMissCount(), 1L);
+        assertEquals(cache.getHitCount(), 1L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldCacheObjectsNotFound() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+        when(delegate.readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class))).thenReturn(null);
+
+        assertNull(cache.readFromPath(ROW_KEY, path, OBJECT_TYPE));
+        assertNull(cache.readFromPath(ROW_KEY, path, OBJECT_TYPE));
+
+        verify(delegate, times(1)).readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class));
+    }
+
+    @Test(groups = "unit")
+    public void shouldNotShareCachedObjects() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+        Map<String,Object> structure = new HashMap<String,Object>();
+        structure.put("x", "y");
+        when(delegate.readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class))).thenReturn(structure);
+
+        Map<String,String> first = cache.readFromPath(ROW_KEY, path, MAP_TYPE);
+        first.put("x", "changed");
+        Map<String,String> second = cache.readFromPath(ROW_KEY, path, MAP_TYPE);
+
+        assertEquals(second, Collections.singletonMap("x", "y"));
+    }
+
+    @Test(groups = "unit")
+    public void shouldInvalidateAncestorsAndDescendantsButNotSiblings() throws Exception {
+        Path a = DefaultPath.fromStrings("a");
+        Path ab = DefaultPath.fromStrings("a", "b");
+        Path abc = DefaultPath.fromStrings("a", "b", "c");
+        Path ac = DefaultPath.fromStrings("a", "c");
+        readAll(a, ab, abc, ac);
+
+        cache.writeToPath(ROW_KEY, ab, "new value");
+        readAll(a, ab, abc, ac);
+
+        verify(delegate, times(2)).readFromPath(eq(ROW_KEY), eq(a), any(TypeReference.class));
+        verify(delegate, times(2)).readFromPath(eq(ROW_KEY), eq(ab), any(TypeReference.class));
+        verify(delegate, times(2)).readFromPath(eq(ROW_KEY), eq(abc), any(TypeReference.class));
+        verify(delegate, times(1)).readFromPath(eq(ROW_KEY), eq(ac), any(TypeReference.class));
+        verify(delegate).writeToPath(ROW_KEY, ab, "new value");
+    }
+
+    @Test(groups = "unit")
+    public void shouldInvalidateOtherRowsIndependently() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+        when(delegate.readFromPath(eq("other"), any(Path.class), any(TypeReference.class))).thenReturn("other value");
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+        cache.readFromPath("other", path, OBJECT_TYPE);
+
+        cache.deletePath("other", path);
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+        cache.readFromPath("other", path, OBJECT_TYPE);
+
+        verify(delegate, times(1)).readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class));
+        verify(delegate, times(2)).readFromPath(eq("other"), eq(path), any(TypeReference.class));
+    }
+
+    @Test(groups = "unit")
+    public void shouldInvalidateBatchWritesWhenBatchIsApplied() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        BatchContext batchContext = mock(BatchContext.class);
+
+        cache.writeToPath(ROW_KEY, path, "new value", batchContext);
+        // read before the batch is applied is cached with the old value
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+        cache.applyBatch(batchContext);
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+
+        verify(delegate).applyBatch(batchContext);
+        verify(delegate, times(2)).readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class));
+    }
+
+    @Test(groups = "unit")
+    public void shouldReadAgainAfterTimeToLive() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+
+        ticker.advance(30, TimeUnit.SECONDS);
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+        ticker.advance(31, TimeUnit.SECONDS);
+        cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+
+        verify(delegate, times(2)).readFromPath(eq(ROW_KEY), eq(path), any(TypeReference.class));
+        assertEquals(cache.getHitCount(), 1L);
+        assertEquals(cache.getMissCount(), 2L);
+        assertEquals(cache.getEvictionCount(), 1L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldEvictLeastRecentlyUsedRows() throws Exception {
+        Path path = DefaultPath.fromStrings("a");
+        when(delegate.readFromPath(any(String.class), any(Path.class), any(TypeReference.class))).thenReturn("value");
+
+        cache.readFromPath("row1", path, OBJECT_TYPE);
+        cache.readFromPath("row2", path, OBJECT_TYPE);
+        cache.readFromPath("row3", path, OBJECT_TYPE);
+        cache.readFromPath("row1", path, OBJECT_TYPE);
+
+        verify(delegate, times(2)).readFromPath(eq("row1"), eq(path), any(TypeReference.class));
+        assertEquals(cache.getEvictionCount(), 2L);
+    }
+
+    private void readAll(Path... paths) {
+        for (Path path : paths) {
+            cache.readFromPath(ROW_KEY, path, OBJECT_TYPE);
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos += unit.toNanos(time);
+        }
+    }
+}
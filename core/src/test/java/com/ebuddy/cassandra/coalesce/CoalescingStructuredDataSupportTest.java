@@ -0,0 +1,210 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.coalesce;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests for CoalescingStructuredDataSupport.
+ */
+public class CoalescingStructuredDataSupportTest {
+    private static final TypeReference<Object> OBJECT_TYPE = new TypeReference<Object>() { };
+    private static final Path PATH = DefaultPath.fromStrings("a");
+    private static final int THREADS = 5;
+
+    private StructuredDataSupport<String> delegate;
+    private CoalescingStructuredDataSupport<String> dataSupport;
+    private ExecutorService executor;
+    private CountDownLatch readStarted;
+    private CountDownLatch releaseRead;
+
+    @SuppressWarnings("unchecked")
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        delegate = mock(StructuredDataSupport.class);
+        dataSupport = new CoalescingStructuredDataSupport<String>(delegate);
+        executor = Executors.newFixedThreadPool(THREADS);
+        readStarted = new CountDownLatch(1);
+        releaseRead = new CountDownLatch(1);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldShareOneReadAmongConcurrentReaders() throws Exception {
+        Map<String,Object> value = Collections.<String,Object>singletonMap("k", "v");
+        when(delegate.readFromPath(eq("row"), eq(PATH), any(TypeReference.class))).thenAnswer(blockingAnswer(value));
+
+        List<Future<Object>> reads = startReads(THREADS, OBJECT_TYPE);
+        waitForWaiters(THREADS - 1);
+        releaseRead.countDown();
+
+        // each reader receives its own instance
+        Set<Object> results = Sets.newIdentityHashSet();
+        for (Future<Object> read : reads) {
+            Object result = read.get(10, TimeUnit.SECONDS);
+            assertEquals(result, value);
+            results.add(result);
+        }
+        assertEquals(results.size(), THREADS);
+        verify(delegate, times(1)).readFromPath(eq("row"), eq(PATH), any(TypeReference.class));
+        assertEquals(dataSupport.getReadCount(), 1L);
+        assertEquals(dataSupport.getCoalescedCount(), (long)THREADS - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldCoalesceReadsOfDifferentTypes() throws Exception {
+        Map<String,Object> value = Collections.<String,Object>singletonMap("n", 42);
+        when(delegate.readFromPath(eq("row"), eq(PATH), any(TypeReference.class))).thenAnswer(blockingAnswer(value));
+
+        List<Future<Object>> reads = startReads(1, OBJECT_TYPE);
+        reads.addAll(startReads(THREADS - 1, new TypeReference<Map<String,Long>>() { }));
+        waitForWaiters(THREADS - 1);
+        releaseRead.countDown();
+
+        assertEquals(reads.get(0).get(10, TimeUnit.SECONDS), value);
+        for (Future<Object> read : reads.subList(1, THREADS)) {
+            assertEquals(read.get(10, TimeUnit.SECONDS), Collections.singletonMap("n", 42L));
+        }
+        verify(delegate, times(1)).readFromPath(eq("row"), eq(PATH), any(TypeReference.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldPropagateExceptionToAllReaders() throws Exception {
+        when(delegate.readFromPath(eq("row"), eq(PATH), any(TypeReference.class)))
+                .thenAnswer(blockingAnswer(new IllegalStateException("read failed")));
+
+        List<Future<Object>> reads = startReads(THREADS, OBJECT_TYPE);
+        waitForWaiters(THREADS - 1);
+        releaseRead.countDown();
+
+        for (Future<Object> read : reads) {
+            try {
+                read.get(10, TimeUnit.SECONDS);
+                fail("expected exception");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldNotCoalesceSequentialReads() throws Exception {
+        when(delegate.readFromPath(eq("row"), eq(PATH), any(TypeReference.class))).thenReturn("value");
+
+        dataSupport.readFromPath("row", PATH, OBJECT_TYPE);
+        dataSupport.readFromPath("row", PATH, OBJECT_TYPE);
+
+        verify(delegate, times(2)).readFromPath(eq("row"), eq(PATH), any(TypeReference.class));
+        assertEquals(dataSupport.getCoalescedCount(), 0L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test(groups = "unit")
+    public void shouldNotJoinReadStartedBeforeWrite() throws Exception {
+        when(delegate.readFromPath(eq("row"), eq(PATH), any(TypeReference.class)))
+                .thenAnswer(blockingAnswer("old value"));
+
+        List<Future<Object>> before = startReads(1, OBJECT_TYPE);
+        assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+        dataSupport.writeToPath("row", DefaultPath.fromStrings("a", "b"), "new value");
+        releaseRead.countDown();
+        Object after = dataSupport.readFromPath("row", PATH, OBJECT_TYPE);
+
+        assertEquals(before.get(0).get(10, TimeUnit.SECONDS), "old value");
+        assertEquals(after, "old value");
+        verify(delegate, times(2)).readFromPath(eq("row"), eq(PATH), any(TypeReference.class));
+        assertEquals(dataSupport.getCoalescedCount(), 0L);
+    }
+
+    private List<Future<Object>> startReads(int count, final TypeReference<?> type) {
+        List<Future<Object>> reads = new ArrayList<Future<Object>>(count);
+        for (int i = 0; i < count; i++) {
+            reads.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return dataSupport.readFromPath("row", PATH, type);
+                }
+            }));
+        }
+        return reads;
+    }
+
+    private void waitForWaiters(int waiters) throws InterruptedException {
+        assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (dataSupport.getCoalescedCount() < waiters && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    /** Answers with a value, or throws an exception, once released. */
+    private Answer<Object> blockingAnswer(final Object result) {
+        return new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                readStarted.countDown();
+                assertTrue(releaseRead.await(10, TimeUnit.SECONDS));
+                if (result instanceof Throwable) {
+                    throw (Throwable)result;
+                }
+                return result;
+            }
+        };
+    }
+}
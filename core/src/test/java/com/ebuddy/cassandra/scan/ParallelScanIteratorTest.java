@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for ParallelScanIterator.
+ */
+public class ParallelScanIteratorTest {
+
+    /** Produces the numbers from the start token (exclusive) to the end token (inclusive). */
+    private final RangeScanner<Integer> numbers = new RangeScanner<Integer>() {
+        @Override
+        public void scan(TokenRange range, Sink<Integer> sink) throws InterruptedException {
+            for (int i = range.getStartToken().intValue() + 1; i <= range.getEndToken().intValue(); i++) {
+                sink.put(i);
+            }
+        }
+    };
+
+    @Test(groups = "unit")
+    public void iterateAllElementsOfAllRanges() throws Exception {
+        ParallelScanIterator<Integer> iterator = new ParallelScanIterator<Integer>(rangesOf(0, 100, 10), numbers, 3, 5);
+
+        List<Integer> elements = new ArrayList<Integer>();
+        while (iterator.hasNext()) {
+            elements.add(iterator.next());
+        }
+        Collections.sort(elements);
+
+        assertEquals(elements.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(elements.get(i), Integer.valueOf(i + 1));
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(groups = "unit")
+    public void iterateNoRanges() throws Exception {
+        ParallelScanIterator<Integer> iterator = new ParallelScanIterator<Integer>(new ArrayList<TokenRange>(),
+                                                                                   numbers,
+                                                                                   3,
+                                                                                   5);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(groups = "unit", expectedExceptions = NoSuchElementException.class)
+    public void nextAfterEnd() throws Exception {
+        ParallelScanIterator<Integer> iterator = new ParallelScanIterator<Integer>(rangesOf(0, 1, 1), numbers, 1, 1);
+        assertEquals(iterator.next(), Integer.valueOf(1));
+        iterator.next();
+    }
+
+    @Test(groups = "unit")
+    public void failureInRangeIsRethrown() throws Exception {
+        RangeScanner<Integer> failing = new RangeScanner<Integer>() {
+            @Override
+            public void scan(TokenRange range, Sink<Integer> sink) throws InterruptedException {
+                throw new IllegalStateException("failed");
+            }
+        };
+        ParallelScanIterator<Integer> iterator = new ParallelScanIterator<Integer>(rangesOf(0, 10, 2), failing, 2, 5);
+        try {
+            iterator.hasNext();
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals(e.getMessage(), "failed");
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test(groups = "unit")
+    public void closeStopsScanningThreads() throws Exception {
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        RangeScanner<Integer> endless = new RangeScanner<Integer>() {
+            @Override
+            public void scan(TokenRange range, Sink<Integer> sink) throws InterruptedException {
+                try {
+                    for (int i = 0; ; i++) {
+                        sink.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            }
+        };
+        ParallelScanIterator<Integer> iterator = new ParallelScanIterator<Integer>(rangesOf(0, 10, 1), endless, 1, 2);
+        assertTrue(iterator.hasNext());
+        iterator.close();
+
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    private static List<TokenRange> rangesOf(int start, int end, int numberOfRanges) {
+        List<TokenRange> ranges = new ArrayList<TokenRange>(numberOfRanges);
+        int size = (end - start) / numberOfRanges;
+        for (int i = 0; i < numberOfRanges; i++) {
+            int rangeEnd = i == numberOfRanges - 1 ? end : start + size;
+            ranges.add(new TokenRange(BigInteger.valueOf(start), BigInteger.valueOf(rangeEnd)));
+            start = rangeEnd;
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.scan;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for TokenRing.
+ */
+public class TokenRingTest {
+
+    @Test(groups = "unit")
+    public void splitMurmur3RingIntoContiguousRanges() throws Exception {
+        List<TokenRange> ranges = TokenRing.MURMUR3.split(16);
+
+        assertEquals(ranges.size(), 16);
+        assertEquals(ranges.get(0).getStartToken(), BigInteger.valueOf(Long.MIN_VALUE));
+        assertEquals(ranges.get(15).getEndToken(), BigInteger.valueOf(Long.MAX_VALUE));
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i).getStartToken(), ranges.get(i - 1).getEndToken());
+            assertTrue(ranges.get(i).getStartToken().compareTo(ranges.get(i).getEndToken()) < 0);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void splitRandomRingIntoOneRange() throws Exception {
+        List<TokenRange> ranges = TokenRing.RANDOM.split(1);
+
+        assertEquals(ranges.size(), 1);
+        assertEquals(ranges.get(0), new TokenRange(BigInteger.ONE.negate(), BigInteger.ONE.shiftLeft(127)));
+    }
+
+    @Test(groups = "unit")
+    public void convertTokensToCqlValues() throws Exception {
+        BigInteger token = BigInteger.valueOf(42L);
+
+        assertEquals(TokenRing.MURMUR3.toCqlValue(token), 42L);
+        assertEquals(TokenRing.RANDOM.toCqlValue(token), token);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void splitIntoNoRanges() throws Exception {
+        TokenRing.MURMUR3.split(0);
+    }
+}
@@ -17,10 +17,13 @@
 package com.ebuddy.cassandra.structure;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.testng.annotations.BeforeMethod;
@@ -124,6 +127,93 @@ public class ComposerTest {
         assertEquals(result, expectedResult);
     }
 
+    @Test(groups = {"unit"})
+    public void composeListWithListHeader() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@0"), "x");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@1"), "y");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@2"), "z");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@size"), 2);
+
+        /////////////
+        Object result = composer.compose(simpleObjects);
+        /////////////
+
+        // without a terminator the list header determines the size
+        Map<String,Object> expectedResult = new HashMap<String,Object>();
+        expectedResult.put("a", Arrays.asList("x", "y"));
+
+        assertEquals(result, expectedResult);
+    }
+
+    @Test(groups = {"unit"})
+    public void composeListWithListHeaderAndTerminator() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@0"), "x");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@1"), "y");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@2"), "\uFFFF\uFFFF");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@size"), 1);
+
+        /////////////
+        Object result = composer.compose(simpleObjects);
+        /////////////
+
+        // the terminator takes precedence over the list header
+        Map<String,Object> expectedResult = new HashMap<String,Object>();
+        expectedResult.put("a", Arrays.asList("x", "y"));
+
+        assertEquals(result, expectedResult);
+    }
+
+    @Test(groups = {"unit"})
+    public void composeSet() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromStrings("a").concat(DefaultPath.fromSetMember("x")), "x");
+        simpleObjects.put(DefaultPath.fromStrings("a").concat(DefaultPath.fromSetMember(1)), 1);
+
+        /////////////
+        Object result = composer.compose(simpleObjects);
+        /////////////
+
+        assertTrue(result instanceof Map);
+        Object set = ((Map<?,?>)result).get("a");
+        assertTrue(set instanceof List);
+        assertEquals(new HashSet<Object>((List<?>)set), new HashSet<Object>(Arrays.asList("x", 1)));
+    }
+
+    @Test(groups = {"unit"})
+    public void composeSetWithListElements() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@0"), "\uFFFF\uFFFF");
+        simpleObjects.put(DefaultPath.fromStrings("a").concat(DefaultPath.fromSetMember("x")), "x");
+
+        /////////////
+        Object result = composer.compose(simpleObjects);
+        /////////////
+
+        Map<String,Object> expectedResult = new HashMap<String,Object>();
+        expectedResult.put("a", Arrays.asList("x"));
+
+        assertEquals(result, expectedResult);
+    }
+
+    @Test(groups = {"unit"})
+    public void composeSetShouldIgnoreElementsOfReplacedList() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@0"), "y");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a/@1"), "\uFFFF\uFFFF");
+        simpleObjects.put(DefaultPath.fromStrings("a").concat(DefaultPath.fromSetMember("x")), "x");
+
+        /////////////
+        Object result = composer.compose(simpleObjects);
+        /////////////
+
+        Map<String,Object> expectedResult = new HashMap<String,Object>();
+        expectedResult.put("a", Arrays.asList("x"));
+
+        assertEquals(result, expectedResult);
+    }
+
     @Test(groups = {"unit"})
     public void composeListOfMaps() throws Exception {
         Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
@@ -201,6 +291,40 @@ public class ComposerTest {
     }
 
 
+    @Test(groups = {"unit"})
+    public void composeIncrementally() throws Exception {
+        Map<Path,Object> simpleObjects = new HashMap<Path,Object>();
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a%2F%40%23/b/c"), "");
+        simpleObjects.put(DefaultPath.fromEncodedPathString("a%2F%40%23/b/d"), 42);
+        simpleObjects.put(DefaultPath.fromEncodedPathString("d/e/f"), true);
+        simpleObjects.put(DefaultPath.fromEncodedPathString("d/f/g"), false);
+        simpleObjects.put(DefaultPath.fromEncodedPathString("j/k/l"), null);
+        Composer.Composition composition = composer.startComposition();
+        assertTrue(composition.isEmpty());
+
+        /////////////
+        for (Map.Entry<Path,Object> entry : simpleObjects.entrySet()) {
+            composition.add(entry.getKey(), entry.getValue());
+        }
+        Object result = composition.compose();
+        /////////////
+
+        assertEquals(result, getExpectedMapForComposeSimpleObjectWithLongerPaths());
+    }
+
+    @Test(groups = {"unit"})
+    public void composeIncrementallyWithEmptyPath() throws Exception {
+        Composer.Composition composition = composer.startComposition();
+        composition.add(DefaultPath.fromStrings(), "x");
+        assertEquals(composition.compose(), "x");
+
+        // a simple value at the root as well as longer paths is an inconsistent root
+        composition = composer.startComposition();
+        composition.add(DefaultPath.fromStrings(), "x");
+        composition.add(DefaultPath.fromStrings("a"), "y");
+        assertEquals(composition.compose(), ImmutableMap.<String,Object>of("a", "y", "@ROOT", "x"));
+    }
+
     private Map<String,Object> getExpectedMapForComposeSimpleObjectWithLongerPaths() {
         Map<String,Object> result = new HashMap<String,Object>();
         final Map<String,Object> innerMap1 = new HashMap<String,Object>() {{
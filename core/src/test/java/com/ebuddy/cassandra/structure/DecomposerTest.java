@@ -20,8 +20,10 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 
@@ -146,6 +148,95 @@ public class DecomposerTest {
         assertEquals(result, expected);
     }
 
+    @Test(groups = "unit")
+    public void decomposeListWithListHeader() throws Exception {
+        Map<Path,Object> structures = new HashMap<Path,Object>();
+        structures.put(DefaultPath.fromStrings("list"), Arrays.asList("java.util.ArrayList", Arrays.asList("x", "y")));
+
+        Map<Path,Object> expected  = new HashMap<Path,Object>();
+        expected.put(DefaultPath.fromEncodedPathString("list/@0"), "x");
+        expected.put(DefaultPath.fromEncodedPathString("list/@1"), "y");
+        expected.put(DefaultPath.fromEncodedPathString("list/@2"), "\uFFFF\uFFFF");
+        expected.put(DefaultPath.fromEncodedPathString("list/@size"), 2);
+
+        Map<Path,Object> result = Decomposer.getWithListHeaders().decompose(structures);
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = "unit")
+    public void decomposeListAppend() throws Exception {
+        Map<String,Object> map = new HashMap<String,Object>();
+        map.put("k", "v");
+
+        Path listPath = DefaultPath.fromStrings("list");
+        Map<Path,Object> result = decomposer.decomposeListAppend(listPath, 3, Arrays.<Object>asList(map, "y"));
+
+        Map<Path,Object> expected  = new HashMap<Path,Object>();
+        expected.put(DefaultPath.fromEncodedPathString("list/@3/k"), "v");
+        expected.put(DefaultPath.fromEncodedPathString("list/@4"), "y");
+        expected.put(DefaultPath.fromEncodedPathString("list/@5"), "\uFFFF\uFFFF");
+        expected.put(DefaultPath.fromEncodedPathString("list/@size"), 5);
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = "unit")
+    public void decomposeSet() throws Exception {
+        Map<Path,Object> structures = new HashMap<Path,Object>();
+        structures.put(DefaultPath.fromStrings("set"), Arrays.asList("java.util.HashSet<java.lang.Object>",
+                                                                     Arrays.asList("x", 1, "a b")));
+
+        Map<Path,Object> expected  = new HashMap<Path,Object>();
+        expected.put(DefaultPath.fromEncodedPathString("set/#x"), "x");
+        expected.put(DefaultPath.fromEncodedPathString("set/#%EF%BF%BE1"), 1);
+        expected.put(DefaultPath.fromEncodedPathString("set/#a+b"), "a b");
+
+        Map<Path,Object> result = decomposer.decompose(structures);
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = "unit")
+    public void decomposeEmptySetAsList() throws Exception {
+        Map<Path,Object> structures = new HashMap<Path,Object>();
+        structures.put(DefaultPath.fromStrings("set"), Arrays.asList("java.util.HashSet", Arrays.asList()));
+
+        Map<Path,Object> expected  = new HashMap<Path,Object>();
+        expected.put(DefaultPath.fromEncodedPathString("set/@0"), "\uFFFF\uFFFF");
+
+        Map<Path,Object> result = decomposer.decompose(structures);
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = "unit")
+    public void decomposeSetOfMapsAsList() throws Exception {
+        Map<Path,Object> structures = new HashMap<Path,Object>();
+        Map<String,Object> map = new HashMap<String,Object>();
+        map.put("k", "v");
+        structures.put(DefaultPath.fromStrings("set"), Arrays.asList("java.util.HashSet", Arrays.asList(map)));
+
+        Map<Path,Object> expected  = new HashMap<Path,Object>();
+        expected.put(DefaultPath.fromEncodedPathString("set/@0/k"), "v");
+        expected.put(DefaultPath.fromEncodedPathString("set/@1"), "\uFFFF\uFFFF");
+
+        Map<Path,Object> result = decomposer.decompose(structures);
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = "unit")
+    public void decomposeShouldCollectSetPaths() throws Exception {
+        Map<Path,Object> structures = new HashMap<Path,Object>();
+        Map<String,Object> map = new HashMap<String,Object>();
+        map.put("members", Arrays.asList("java.util.HashSet", Arrays.asList("x")));
+        map.put("list", Arrays.asList("java.util.ArrayList", Arrays.asList("y")));
+        structures.put(DefaultPath.fromStrings("a"), map);
+        structures.put(DefaultPath.fromStrings("set"), Arrays.asList("java.util.HashSet", Arrays.asList()));
+
+        List<Path> setPaths = new ArrayList<Path>();
+        decomposer.decompose(structures, setPaths);
+        assertEquals(new HashSet<Path>(setPaths),
+                     new HashSet<Path>(Arrays.asList(DefaultPath.fromStrings("a", "members"),
+                                                     DefaultPath.fromStrings("set"))));
+    }
+
     @Test(groups = "unit")
     public void decomposeListOfMaps() throws Exception {
         Map<Path,Object> structures = new HashMap<Path,Object>();
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.structure;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.google.common.collect.Maps;
+
+/**
+ * Tests for PathEntryIterator.
+ */
+public class PathEntryIteratorTest {
+    private static final Path PATH = DefaultPath.fromStrings("a", "b");
+
+    @Test(groups = "unit")
+    public void shouldReturnValuesWithRelativePaths() throws Exception {
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("a/b/", 5);
+        columns.put("a/b/list/@0/", "e0");
+        columns.put("a/b/list/@1/", Types.LIST_TERMINATOR_VALUE);
+        columns.put("a/b/list/@size/", 1);
+        columns.put("a/b/name/", "x");
+        columns.put("a/b/nothing/", null);
+
+        List<Map.Entry<Path,Object>> entries = toList(new PathEntryIterator(PATH, columns.entrySet().iterator()));
+
+        List<Map.Entry<Path,Object>> expected = new ArrayList<Map.Entry<Path,Object>>();
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings(), 5));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("list").withIndices(0), "e0"));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("name"), "x"));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("nothing"), null));
+        assertEquals(entries, expected);
+    }
+
+    @Test(groups = "unit")
+    public void shouldSkipPrefixTombstones() throws Exception {
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("a/b/!deleted/", "");
+        columns.put("a/b/c/!deleted/", "");
+        columns.put("a/b/c/d/", "value");
+
+        List<Map.Entry<Path,Object>> entries = toList(new PathEntryIterator(PATH, columns.entrySet().iterator()));
+
+        assertEquals(entries.size(), 1);
+        assertEquals(entries.get(0).getKey(), DefaultPath.fromStrings("c", "d"));
+    }
+
+    @Test(groups = "unit")
+    public void shouldSkipElementsBeyondTheEndOfAShorterList() throws Exception {
+        // columns are in column name order, so the indexes of a list are not in numeric order
+        Map<String,Object> columns = new TreeMap<String,Object>();
+        for (int i = 3; i < 12; i++) {
+            columns.put("a/b/list/@" + i + "/", "old" + i);
+        }
+        columns.put("a/b/list/@12/", Types.LIST_TERMINATOR_VALUE);
+        columns.put("a/b/list/@0/", "e0");
+        columns.put("a/b/list/@1/", "e1");
+        columns.put("a/b/list/@2/nested/@0/", "n0");
+        columns.put("a/b/list/@2/nested/@1/", Types.LIST_TERMINATOR_VALUE);
+        columns.put("a/b/list/@2/nested/@2/", "old");
+        columns.put("a/b/list/@3/", Types.LIST_TERMINATOR_VALUE);
+        columns.put("a/b/name/", "x");
+
+        List<Map.Entry<Path,Object>> entries = toList(new PathEntryIterator(PATH, columns.entrySet().iterator()));
+
+        List<Map.Entry<Path,Object>> expected = new ArrayList<Map.Entry<Path,Object>>();
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("list").withIndices(0), "e0"));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("list").withIndices(1), "e1"));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("list")
+                                                              .withIndices(2)
+                                                              .withElements("nested")
+                                                              .withIndices(0), "n0"));
+        expected.add(Maps.<Path,Object>immutableEntry(DefaultPath.fromStrings("name"), "x"));
+        assertEquals(entries, expected);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalStateException.class)
+    public void shouldRejectColumnsOutsideThePath() throws Exception {
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("a/c/", "value");
+
+        new PathEntryIterator(PATH, columns.entrySet().iterator()).next();
+    }
+
+    @Test(groups = "unit")
+    public void shouldStopReadingWhenClosed() throws Exception {
+        Map<String,Object> columns = new LinkedHashMap<String,Object>();
+        columns.put("a/b/c/", "1");
+        columns.put("a/b/d/", "2");
+        Iterator<Map.Entry<String,Object>> columnIterator = columns.entrySet().iterator();
+        PathEntryIterator iterator = new PathEntryIterator(PATH, columnIterator);
+
+        iterator.next();
+        iterator.close();
+
+        assertFalse(iterator.hasNext());
+        assertTrue(columnIterator.hasNext());
+    }
+
+    private static List<Map.Entry<Path,Object>> toList(Iterator<Map.Entry<Path,Object>> iterator) {
+        List<Map.Entry<Path,Object>> list = new ArrayList<Map.Entry<Path,Object>>();
+        while (iterator.hasNext()) {
+            list.add(iterator.next());
+        }
+        return list;
+    }
+}
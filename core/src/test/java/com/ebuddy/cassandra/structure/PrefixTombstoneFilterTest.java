@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.structure;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for PrefixTombstoneFilter.
+ */
+public class PrefixTombstoneFilterTest {
+
+    @Test(groups = "unit")
+    public void shouldNameTombstones() throws Exception {
+        assertEquals(PrefixTombstoneFilter.getTombstoneName(DefaultPath.fromStrings("a", "b")), "a/b/!deleted/");
+        assertEquals(PrefixTombstoneFilter.getAncestorTombstoneNames(DefaultPath.fromStrings("a", "b", "c")),
+                     Arrays.asList("a/!deleted/", "a/b/!deleted/"));
+        assertEquals(PrefixTombstoneFilter.getAncestorTombstoneNames(DefaultPath.fromStrings("a")),
+                     Collections.emptyList());
+    }
+
+    @Test(groups = "unit")
+    public void shouldRecognizeTombstones() throws Exception {
+        assertTrue(PrefixTombstoneFilter.isTombstone("a/!deleted/"));
+        assertFalse(PrefixTombstoneFilter.isTombstone("a/x!deleted/"));
+        // a map key that looks like a tombstone is URL-encoded
+        assertFalse(PrefixTombstoneFilter.isTombstone(DefaultPath.fromStrings("a", "!deleted").toString()));
+    }
+
+    @Test(groups = "unit")
+    public void shouldDeleteOlderColumnsUnderTombstone() throws Exception {
+        PrefixTombstoneFilter filter = new PrefixTombstoneFilter();
+        assertTrue(filter.isEmpty());
+        assertFalse(filter.isDeleted("a/b/", 10L));
+
+        assertFalse(filter.addIfTombstone("a/b/", 10L));
+        assertTrue(filter.addIfTombstone("a/!deleted/", 20L));
+        assertFalse(filter.isEmpty());
+
+        assertTrue(filter.isDeleted("a/b/", 10L));
+        assertTrue(filter.isDeleted("a/b/c/", 20L));
+        assertFalse(filter.isDeleted("a/b/", 21L));
+        assertFalse(filter.isDeleted("ab/", 10L));
+        assertFalse(filter.isDeleted("b/a/", 10L));
+    }
+
+    @Test(groups = "unit")
+    public void shouldUseNewestDeletingTombstone() throws Exception {
+        PrefixTombstoneFilter filter = new PrefixTombstoneFilter();
+        filter.addIfTombstone("a/!deleted/", 20L);
+        filter.addIfTombstone("a/!deleted/", 15L);
+        filter.addIfTombstone("a/b/!deleted/", 30L);
+
+        assertEquals(filter.getDeletingTimestamp("a/b/c/", 10L), Long.valueOf(30L));
+        assertEquals(filter.getDeletingTimestamp("a/c/", 10L), Long.valueOf(20L));
+        assertEquals(filter.getDeletingTimestamp("a/b/c/", 25L), Long.valueOf(30L));
+        assertNull(filter.getDeletingTimestamp("a/c/", 25L));
+    }
+}
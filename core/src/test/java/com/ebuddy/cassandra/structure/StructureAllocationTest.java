@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.structure;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.test.AllocationBudget;
+
+/**
+ * Allocation budgets for decomposing, composing, encoding and decoding a typical document.
+ * The budgets are in allocation-budgets.properties.
+ */
+public class StructureAllocationTest {
+    private AllocationBudget budget;
+    private Map<Path,Object> structures;
+    private Map<Path,Object> decomposed;
+    private List<String> encodedStrings;
+    private List<ByteBuffer> encodedBuffers;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        budget = new AllocationBudget(getClass());
+
+        Map<String,Object> child = new LinkedHashMap<String,Object>();
+        child.put("x", 1);
+        child.put("y", "z");
+        Map<String,Object> document = new LinkedHashMap<String,Object>();
+        document.put("name", "value");
+        document.put("count", 42L);
+        document.put("flag", true);
+        document.put("tags", Arrays.asList("java.util.ArrayList", Arrays.asList("a", "b", "c")));
+        document.put("child", child);
+        structures = Collections.<Path,Object>singletonMap(DefaultPath.fromStrings("documents", "d"), document);
+
+        decomposed = Decomposer.get().decompose(structures);
+        encodedStrings = new ArrayList<String>();
+        encodedBuffers = new ArrayList<ByteBuffer>();
+        for (Object value : decomposed.values()) {
+            encodedStrings.add(StructureConverter.get().toString(value));
+            encodedBuffers.add(StructureConverter.get().toByteBuffer(value));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void decomposeShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("decompose", new Runnable() {
+            @Override
+            public void run() {
+                Decomposer.get().decompose(structures);
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void composeShouldBeWithinBudget() throws Exception {
+        final Map<Path,Object> pathMap = new HashMap<Path,Object>(decomposed);
+        budget.assertWithinBudget("compose", new Runnable() {
+            @Override
+            public void run() {
+                Composer.get().compose(pathMap);
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void encodeShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("encode.string", new Runnable() {
+            @Override
+            public void run() {
+                for (Object value : decomposed.values()) {
+                    StructureConverter.get().toString(value);
+                }
+            }
+        });
+        budget.assertWithinBudget("encode.bytes", new Runnable() {
+            @Override
+            public void run() {
+                for (Object value : decomposed.values()) {
+                    StructureConverter.get().toByteBuffer(value);
+                }
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void decodeShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("decode.string", new Runnable() {
+            @Override
+            public void run() {
+                for (String value : encodedStrings) {
+                    StructureConverter.get().fromString(value);
+                }
+            }
+        });
+        budget.assertWithinBudget("decode.bytes", new Runnable() {
+            @Override
+            public void run() {
+                for (ByteBuffer value : encodedBuffers) {
+                    StructureConverter.get().fromByteBuffer(value.duplicate());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.test;
+
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import org.testng.SkipException;
+
+/**
+ * Measures the bytes allocated per invocation of an operation on the current thread, and checks them against
+ * budgets checked in next to a test class as allocation-budgets.properties, so that changes that allocate more in
+ * the hot paths fail the build. A budget is raised deliberately by editing the properties file.
+ * <p>
+ * The operation is warmed up first so that it is measured after being compiled, and the smallest of several rounds
+ * is used to leave out allocations that are not made by the operation itself.
+ */
+public class AllocationBudget {
+    private static final String BUDGETS_RESOURCE = "allocation-budgets.properties";
+    private static final int WARMUP_ITERATIONS = 5000;
+    private static final int ITERATIONS = 500;
+    private static final int ROUNDS = 5;
+
+    private final Properties budgets = new Properties();
+
+    /**
+     * Load the budgets for a test class from allocation-budgets.properties in the same package.
+     */
+    public AllocationBudget(Class<?> testClass) throws IOException {
+        InputStream in = testClass.getResourceAsStream(BUDGETS_RESOURCE);
+        if (in == null) {
+            throw new IllegalStateException(BUDGETS_RESOURCE + " not found in package of " + testClass.getName());
+        }
+        try {
+            budgets.load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Measure the bytes allocated per invocation of an operation on the current thread.
+     * @throws SkipException if the JVM cannot measure allocations by thread
+     */
+    public static long measure(Runnable operation) {
+        com.sun.management.ThreadMXBean threadBean = getThreadBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+        long smallest = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                operation.run();
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+            smallest = Math.min(smallest, allocated / ITERATIONS);
+        }
+        return smallest;
+    }
+
+    /**
+     * Assert that an operation allocates no more bytes per invocation than its budget.
+     * @param name the name of the budget in the properties file
+     */
+    public void assertWithinBudget(String name, Runnable operation) {
+        assertWithinBudget(name, measure(operation));
+    }
+
+    /**
+     * Assert that a measured number of bytes per invocation is no more than a budget.
+     * @param name the name of the budget in the properties file
+     */
+    public void assertWithinBudget(String name, long bytesPerInvocation) {
+        String budget = budgets.getProperty(name);
+        if (budget == null) {
+            throw new IllegalStateException("no allocation budget for " + name);
+        }
+        long budgetBytes = Long.parseLong(budget.trim());
+        assertTrue(bytesPerInvocation <= budgetBytes,
+                   String.format("%s allocated %d bytes per invocation, over its budget of %d bytes",
+                                 name, bytesPerInvocation, budgetBytes));
+    }
+
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            throw new SkipException("allocations by thread cannot be measured in this JVM");
+        }
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean)threadBean;
+        if (!sunThreadBean.isThreadAllocatedMemorySupported()) {
+            throw new SkipException("allocations by thread cannot be measured in this JVM");
+        }
+        if (!sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+            sunThreadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return sunThreadBean;
+    }
+}
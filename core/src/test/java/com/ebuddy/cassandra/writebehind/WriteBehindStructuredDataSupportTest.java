@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.writebehind;
+
+import static org.apache.commons.lang3.ObjectUtils.NULL;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.structure.DefaultPath;
+
+/**
+ * Tests for WriteBehindStructuredDataSupport.
+ */
+public class WriteBehindStructuredDataSupportTest {
+    private static final TypeReference<Object> OBJECT_TYPE = new TypeReference<Object>() { };
+
+    private StructuredDataSupport<String> delegate;
+    private WriteBehindStructuredDataSupport<String> dataSupport;
+
+    @SuppressWarnings("unchecked")
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        delegate = mock(StructuredDataSupport.class);
+        dataSupport = new WriteBehindStructuredDataSupport<String>(delegate, 1, TimeUnit.HOURS, 10, 20);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        dataSupport.close();
+    }
+
+    @Test(groups = "unit")
+    public void shouldBufferWritesUntilFlushed() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeToPath("row", path, "value");
+
+        verify(delegate, never()).writeColumns(anyString(), anyMapOf(Path.class, Object.class));
+        assertEquals(dataSupport.getBufferedColumnCount(), 1);
+
+        dataSupport.flush();
+
+        verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+        assertEquals(dataSupport.getBufferedColumnCount(), 0);
+        assertEquals(dataSupport.getFlushedBatchCount(), 1L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldDecomposeWritesIntoColumns() throws Exception {
+        Map<String,Object> value = new LinkedHashMap<String,Object>();
+        value.put("x", 42);
+        value.put("y", null);
+
+        dataSupport.writeToPath("row", DefaultPath.fromStrings("a"), value);
+        dataSupport.flush();
+
+        Map<Path,Object> expectedColumns = new LinkedHashMap<Path,Object>();
+        expectedColumns.put(DefaultPath.fromStrings("a", "x"), 42);
+        expectedColumns.put(DefaultPath.fromStrings("a", "y"), NULL);
+        verify(delegate).writeColumns("row", expectedColumns);
+        assertEquals(dataSupport.getFlushedColumnCount(), 2L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldBufferDecomposedColumns() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+
+        verify(delegate, never()).writeColumns(anyString(), anyMapOf(Path.class, Object.class));
+        assertEquals(dataSupport.getBufferedColumnCount(), 1);
+
+        dataSupport.flush();
+
+        verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+    }
+
+    @Test(groups = "unit")
+    public void shouldSupersedeBufferedColumnsWithLaterWrites() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeToPath("row", path, "first");
+        dataSupport.writeToPath("row", path, "second");
+        dataSupport.writeToPath("row", DefaultPath.fromStrings("a"), Collections.singletonMap("b", "third"));
+        dataSupport.flush();
+
+        verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "third"));
+        assertEquals(dataSupport.getSupersededColumnCount(), 2L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldWriteEachRowWithOneWrite() throws Exception {
+        dataSupport.writeToPath("row1", DefaultPath.fromStrings("a"), "value");
+        dataSupport.writeToPath("row2", DefaultPath.fromStrings("a"), "value");
+        dataSupport.writeToPath("row1", DefaultPath.fromStrings("b"), Collections.singletonMap("c", "value"));
+        dataSupport.flush();
+
+        Map<Path,Object> row1 = new LinkedHashMap<Path,Object>();
+        row1.put(DefaultPath.fromStrings("a"), "value");
+        row1.put(DefaultPath.fromStrings("b", "c"), "value");
+        verify(delegate).writeColumns("row1", row1);
+        verify(delegate).writeColumns("row2",
+                                      Collections.<Path,Object>singletonMap(DefaultPath.fromStrings("a"), "value"));
+        verify(delegate, times(2)).writeColumns(anyString(), anyMapOf(Path.class, Object.class));
+        verify(delegate, never()).writeToPath(anyString(), any(Path.class), any(), any(BatchContext.class));
+        assertEquals(dataSupport.getFlushedBatchCount(), 2L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushRowBeforeReadingBufferedPath() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeToPath("row", path, "value");
+
+        dataSupport.readFromPath("row", DefaultPath.fromStrings("c"), OBJECT_TYPE);
+        dataSupport.readFromPath("other", DefaultPath.fromStrings("a"), OBJECT_TYPE);
+        verify(delegate, never()).writeColumns(anyString(), anyMapOf(Path.class, Object.class));
+
+        dataSupport.readFromPath("row", DefaultPath.fromStrings("a"), OBJECT_TYPE);
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+        inOrder.verify(delegate).readFromPath("row", DefaultPath.fromStrings("a"), OBJECT_TYPE);
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushRowBeforeIteratingBufferedPath() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeToPath("row", path, "value");
+
+        dataSupport.iteratePath("row", DefaultPath.fromStrings("a"));
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+        inOrder.verify(delegate).iteratePath("row", DefaultPath.fromStrings("a"));
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushRowBeforeDeleting() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b");
+        dataSupport.writeToPath("row", path, "value");
+
+        dataSupport.deletePath("row", path);
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).writeColumns("row", Collections.<Path,Object>singletonMap(path, "value"));
+        inOrder.verify(delegate).deletePath("row", path);
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushWhenFlushSizeIsReached() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            dataSupport.writeToPath("row", DefaultPath.fromStrings("a", Integer.toString(i)), i);
+        }
+
+        verify(delegate, timeout(10000)).writeColumns(eq("row"), argThat(new ArgumentMatcher<Map<Path,Object>>() {
+            @Override
+            public boolean matches(Object columns) {
+                return ((Map<?,?>)columns).size() == 10;
+            }
+        }));
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushOnClose() throws Exception {
+        dataSupport.writeToPath("row", DefaultPath.fromStrings("a"), "value");
+
+        dataSupport.close();
+
+        verify(delegate).writeColumns("row",
+                                      Collections.<Path,Object>singletonMap(DefaultPath.fromStrings("a"), "value"));
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalStateException.class)
+    public void shouldRejectWritesAfterClose() throws Exception {
+        dataSupport.close();
+
+        dataSupport.writeToPath("row", DefaultPath.fromStrings("a"), "value");
+    }
+}
@@ -19,46 +19,82 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.batch;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.delete;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gt;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.gte;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.timestamp;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.token;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Query;
+import com.datastax.driver.core.QueryTrace;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Batch;
+import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Delete;
+import com.datastax.driver.core.querybuilder.Select;
 import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.StructuredDataSupport;
 import com.ebuddy.cassandra.TypeReference;
 import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.metrics.Metrics;
+import com.ebuddy.cassandra.metrics.NoOpMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.ebuddy.cassandra.scan.ParallelScanIterator;
+import com.ebuddy.cassandra.scan.RangeScanner;
+import com.ebuddy.cassandra.scan.TokenRange;
+import com.ebuddy.cassandra.scan.TokenRing;
 import com.ebuddy.cassandra.structure.Composer;
 import com.ebuddy.cassandra.structure.Decomposer;
 import com.ebuddy.cassandra.structure.DefaultPath;
 import com.ebuddy.cassandra.structure.JacksonTypeReference;
+import com.ebuddy.cassandra.structure.PathEntryIterator;
+import com.ebuddy.cassandra.structure.PrefixTombstoneFilter;
 import com.ebuddy.cassandra.structure.StructureConverter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.base.Predicate;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Implementation of StructuredDataSupport for CQL.
@@ -75,12 +111,23 @@ import com.google.common.base.Optional;
  * @author Eric Zoerner <a href="mailto:ezoerner@ebuddy.com">ezoerner@ebuddy.com</a>
  */
 public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
+    private static final Logger LOG = LoggerFactory.getLogger(CqlStructuredDataSupport.class);
+
     private static final String DEFAULT_VALUE_COLUMN = "value";
     private static final String DEFAULT_PATH_COLUMN = "column1";
     private static final String DEFAULT_PARTITION_KEY_COLUMN = "key";
 
     private static final int MAX_CODE_POINT = 0x10FFFF;
 
+    private static final int DEFAULT_SCAN_PARALLELISM = 4;
+    private static final int DEFAULT_SCAN_PAGE_SIZE = 100;
+    private static final int DEFAULT_DELETE_PAGE_SIZE = 1000;
+    private static final int DEFAULT_READ_PAGE_SIZE = 1000;
+    /** The number of token ranges per scanning thread, so that threads finishing early can pick up more work. */
+    private static final int RANGES_PER_THREAD = 4;
+
+    private static final TypeReference<List<Object>> LIST_TYPE = new TypeReference<List<Object>>() { };
+
     private static final AtomicLong lastTime = new AtomicLong();
 
     private final Session session;
@@ -90,7 +137,14 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
     private final ObjectMapper readMapper;
 
     private final PreparedStatement readPathQuery;
-    private final PreparedStatement readForDeleteQuery;
+    private PreparedStatement readForDeleteQuery;
+    private PreparedStatement readForDeleteNextPageQuery;
+    private final PreparedStatement readColumnQuery;
+    private PreparedStatement readTombstoneQuery;
+    private PreparedStatement readPageQuery;
+    private PreparedStatement readNextPageQuery;
+    private PreparedStatement readPageWithTimestampsQuery;
+    private PreparedStatement readNextPageWithTimestampsQuery;
 
     private final String tableName;
     private final String partitionKeyColumnName;
@@ -98,6 +152,19 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
     /** The default consistency level for all operations. */
     private final ConsistencyLevel defaultConsistencyLevel;
 
+    private boolean listHeadersEnabled;
+    private boolean prefixTombstonesEnabled;
+    @Nullable
+    private ScheduledExecutorService sweepExecutor;
+    private long sweepDelayMillis;
+
+    private int scanParallelism = DEFAULT_SCAN_PARALLELISM;
+    private int scanPageSize = DEFAULT_SCAN_PAGE_SIZE;
+    private int deletePageSize = DEFAULT_DELETE_PAGE_SIZE;
+    private int readPageSize = DEFAULT_READ_PAGE_SIZE;
+    private TokenRing tokenRing = TokenRing.MURMUR3;
+    private Metrics metrics = NoOpMetrics.INSTANCE;
+
     /**
      * Used for tables that are upgraded from a thrift dynamic column family that still have the default column names.
      * @param session a Session configured with the keyspace
@@ -141,13 +208,113 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
                 .getQueryString());
         readPathQuery.setConsistencyLevel(defaultConsistencyLevel);
 
-        readForDeleteQuery = session.prepare(select(pathColumnName)
-                                                     .from(tableName)
-                                                     .where(eq(partitionKeyColumnName, bindMarker()))
-                                                        .and(gte(pathColumnName, bindMarker()))
-                                                        .and(lte(pathColumnName, bindMarker()))
-                                                     .getQueryString());
-        readForDeleteQuery.setConsistencyLevel(defaultConsistencyLevel);
+        prepareReadForDeleteQueries();
+        prepareReadPageQueries();
+
+        readColumnQuery = session.prepare(select(valueColumnName)
+                                                  .from(tableName)
+                                                  .where(eq(partitionKeyColumnName, bindMarker()))
+                                                     .and(eq(pathColumnName, bindMarker()))
+                                                  .getQueryString());
+        readColumnQuery.setConsistencyLevel(defaultConsistencyLevel);
+    }
+
+    /**
+     * Enable or disable writing a list header with the size of each list that is written.
+     * List headers are disabled by default.
+     */
+    public void setListHeadersEnabled(boolean listHeadersEnabled) {
+        this.listHeadersEnabled = listHeadersEnabled;
+    }
+
+    /**
+     * Enable or disable prefix tombstones, which are disabled by default.
+     * When enabled, deletePath writes a single tombstone column under the path instead of reading and deleting
+     * every column under it, and reads ignore the columns that were written before a tombstone of their path or of
+     * one of its ancestors. A scan ignores the columns deleted by tombstones of the path scanned and its
+     * descendants, but not those of its ancestors.
+     * The deleted columns are only removed when they are swept, see sweepPrefixTombstones, and tombstones must
+     * stay enabled for as long as there are tombstones that have not been swept.
+     */
+    public void setPrefixTombstonesEnabled(boolean prefixTombstonesEnabled) {
+        if (prefixTombstonesEnabled && readTombstoneQuery == null) {
+            readTombstoneQuery = session.prepare(select().column(pathColumnName)
+                                                         .writeTime(valueColumnName)
+                                                         .from(tableName)
+                                                         .where(eq(partitionKeyColumnName, bindMarker()))
+                                                            .and(eq(pathColumnName, bindMarker()))
+                                                         .getQueryString());
+            readTombstoneQuery.setConsistencyLevel(defaultConsistencyLevel);
+
+            readPageWithTimestampsQuery = prepareReadPageQuery(true, false);
+            readNextPageWithTimestampsQuery = prepareReadPageQuery(true, true);
+        }
+        this.prefixTombstonesEnabled = prefixTombstonesEnabled;
+    }
+
+    /**
+     * Sweep the columns deleted by each prefix tombstone in the background, a delay after the tombstone is written.
+     * The delay should be longer than the time a batch containing the delete can take to be applied.
+     * Without an executor, which is the default, tombstones are only swept by calling sweepPrefixTombstones.
+     *
+     * @param executor the executor to sweep with, or null to not sweep in the background
+     */
+    public void setPrefixTombstoneSweeper(@Nullable ScheduledExecutorService executor, long delay, TimeUnit unit) {
+        Validate.isTrue(delay >= 0, "delay must not be negative");
+        sweepExecutor = executor;
+        sweepDelayMillis = unit.toMillis(delay);
+    }
+
+    /**
+     * Set the number of token ranges that are read concurrently by a scan. The default is 4.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        Validate.isTrue(scanParallelism > 0, "scanParallelism must be positive");
+        this.scanParallelism = scanParallelism;
+    }
+
+    /**
+     * Set the maximum number of CQL rows read in one query by a scan. The default is 100.
+     */
+    public void setScanPageSize(int scanPageSize) {
+        Validate.isTrue(scanPageSize > 1, "scanPageSize must be greater than one");
+        this.scanPageSize = scanPageSize;
+    }
+
+    /**
+     * Set the maximum number of paths that deletePath reads and deletes in one batch. The default is 1000.
+     */
+    public void setDeletePageSize(int deletePageSize) {
+        Validate.isTrue(deletePageSize > 0, "deletePageSize must be positive");
+        this.deletePageSize = deletePageSize;
+        prepareReadForDeleteQueries();
+    }
+
+    /**
+     * Set the maximum number of paths that iteratePath reads in one query. The default is 1000.
+     */
+    public void setReadPageSize(int readPageSize) {
+        Validate.isTrue(readPageSize > 1, "readPageSize must be greater than one");
+        this.readPageSize = readPageSize;
+        prepareReadPageQueries();
+    }
+
+    /**
+     * Set the token ring of the partitioner used by the cluster, used to split a scan into token ranges.
+     * The default is the ring of the Murmur3Partitioner.
+     */
+    public void setTokenRing(TokenRing tokenRing) {
+        Validate.notNull(tokenRing);
+        this.tokenRing = tokenRing;
+    }
+
+    /**
+     * Set the Metrics that the latency, phases, columns and batch sizes of operations are recorded to.
+     * The default discards them.
+     */
+    public void setMetrics(Metrics metrics) {
+        Validate.notNull(metrics);
+        this.metrics = metrics;
     }
 
     @Override
@@ -158,6 +325,7 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
     @Override
     public void applyBatch(BatchContext batchContext) {
         Batch batch = validateAndGetBatch(batchContext);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.APPLY_BATCH);
         List<Object> bindArguments = ((CqlBatchContext)batchContext).getBindArguments();
         Query query;
         if (bindArguments.isEmpty()) {
@@ -166,13 +334,18 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
             query = session.prepare(batch.getQueryString()).bind(bindArguments.toArray());
         }
         query.setConsistencyLevel(defaultConsistencyLevel);
-        session.execute(query);
+        timer.phase(Phase.BIND);
+        execute(query, timer);
+        timer.phase(Phase.EXECUTE);
+        timer.batchSize(((CqlBatchContext)batchContext).getStatementCount());
         ((CqlBatchContext)batchContext).reset();
+        timer.stop();
     }
 
     @Override
     public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
         validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.READ, rowKey, path);
 
         String start = path.toString();
         // use the maximum unicode code point to terminate the range
@@ -180,20 +353,120 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
 
         // note: prepared statements should be cached and reused by the connection pooling component....
 
-        Object[] args = {rowKey,start,finish};
-        ResultSet resultSet = session.execute(readPathQuery.bind(args));
+        Iterable<Row> resultSet;
+        if (prefixTombstonesEnabled) {
+            PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            resultSet = removeDeleted(readWithTombstones(rowKey, path, tombstones), tombstones);
+        } else {
+            Object[] args = {rowKey,start,finish};
+            resultSet = execute(readPathQuery.bind(args), timer);
+        }
+        timer.phase(Phase.QUERY);
 
-        Map<Path,Object> pathMap = getPathMap(path, resultSet);
+        Map<Path,Object> pathMap = getPathMap(path, resultSet, timer);
 
         if (pathMap.isEmpty()) {
             // not found
+            timer.stop();
             return null;
         }
 
         Object structure = Composer.get().compose(pathMap);
+        timer.phase(Phase.COMPOSE);
 
         // convert object structure into POJO of type referred to by TypeReference
-        return readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        T value = readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        timer.phase(Phase.CONVERT);
+        timer.stop();
+        return value;
+    }
+
+    @Override
+    public <T> CloseableIterator<Map.Entry<K,T>> scan(Path path, TypeReference<T> type) {
+        Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+
+        // the limit cannot be a bind variable in CQL 1.2, so the query is prepared for each scan
+        Select.Selection selection = select().column(token(partitionKeyColumnName))
+                                             .column(partitionKeyColumnName)
+                                             .column(pathColumnName)
+                                             .column(valueColumnName);
+        if (prefixTombstonesEnabled) {
+            selection = selection.writeTime(valueColumnName);
+        }
+        PreparedStatement scanQuery = session.prepare(selection.from(tableName)
+                                                               .where(gt(token(partitionKeyColumnName), bindMarker()))
+                                                                  .and(lte(token(partitionKeyColumnName), bindMarker()))
+                                                               .limit(scanPageSize)
+                                                               .getQueryString());
+        scanQuery.setConsistencyLevel(defaultConsistencyLevel);
+
+        return new ParallelScanIterator<Map.Entry<K,T>>(tokenRing.split(scanParallelism * RANGES_PER_THREAD),
+                                                        new CqlRangeScanner<T>(scanQuery, path, type),
+                                                        scanParallelism,
+                                                        scanPageSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The token ring is split into ranges that are read concurrently. CQL 1.2 has no SELECT DISTINCT, so each
+     * query reads the partition key of a page of CQL rows, and the next page starts after the token of the last
+     * partition read.
+     */
+    @Override
+    public CloseableIterator<K> scanRowKeys() {
+        PreparedStatement scanQuery = session.prepare(select().column(token(partitionKeyColumnName))
+                                                              .column(partitionKeyColumnName)
+                                                              .from(tableName)
+                                                              .where(gt(token(partitionKeyColumnName), bindMarker()))
+                                                                 .and(lte(token(partitionKeyColumnName), bindMarker()))
+                                                              .limit(scanPageSize)
+                                                              .getQueryString());
+        scanQuery.setConsistencyLevel(defaultConsistencyLevel);
+
+        return new ParallelScanIterator<K>(tokenRing.split(scanParallelism * RANGES_PER_THREAD),
+                                           new CqlRowKeyScanner(scanQuery),
+                                           scanParallelism,
+                                           scanPageSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If prefix tombstones are enabled, the paths under the path are read twice, first to find the tombstones and
+     * then to return the values that are not deleted by them, since a tombstone can follow the paths it deletes.
+     */
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        validateArgs(rowKey, path);
+        String start = path.toString();
+        String finish = getFinishString(start);
+
+        Iterator<Row> rows = new PathPageIterator(rowKey, start, finish, prefixTombstonesEnabled);
+        if (prefixTombstonesEnabled) {
+            final PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            addAncestorTombstones(rowKey, path, tombstones);
+            while (rows.hasNext()) {
+                Row row = rows.next();
+                tombstones.addIfTombstone(row.getString(pathColumnName), getWriteTime(row));
+            }
+            rows = Iterators.filter(new PathPageIterator(rowKey, start, finish, true),
+                                    new Predicate<Row>() {
+                                        @Override
+                                        public boolean apply(Row row) {
+                                            String pathString = row.getString(pathColumnName);
+                                            return !PrefixTombstoneFilter.isTombstone(pathString) &&
+                                                    !tombstones.isDeleted(pathString, getWriteTime(row));
+                                        }
+                                    });
+        }
+        return new PathEntryIterator(path, Iterators.transform(rows, new Function<Row,Map.Entry<String,Object>>() {
+            @Override
+            public Map.Entry<String,Object> apply(Row row) {
+                return Maps.immutableEntry(row.getString(pathColumnName),
+                                           StructureConverter.get().fromString(row.getString(valueColumnName)));
+            }
+        }));
     }
 
     @Override
@@ -209,37 +482,36 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
         Batch batch = validateAndGetBatch(batchContext);
 
         validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.WRITE, rowKey, path);
         Object simplifiedStructure = writeMapper.convertValue(structuredValue, Object.class);
+        timer.phase(Phase.CONVERT);
         Map<Path,Object> pathMap = Collections.singletonMap(path, simplifiedStructure);
-        Map<Path,Object> objectMap = Decomposer.get().decompose(pathMap);
-
-        batch = batchContext == null ? batch() : batch;
-        List<Object> bindArguments = batchContext == null ?
-                                        new ArrayList<Object>() :
-                                        ((CqlBatchContext)batchContext).getBindArguments();
-        Statement insertStatement = insertInto(tableName)
-                .value(partitionKeyColumnName, bindMarker())
-                .value(pathColumnName, bindMarker())
-                .value(valueColumnName, bindMarker())
-                .using(timestamp(getCurrentMicros()));
-        insertStatement.setConsistencyLevel(defaultConsistencyLevel);
+        List<Path> setPaths = new ArrayList<Path>();
+        Map<Path,Object> objectMap = getDecomposer().decompose(pathMap, setPaths);
+        timer.phase(Phase.DECOMPOSE);
 
+        // a set replaces the set that was at its path, so the old rows that are not overwritten are deleted
+        List<String> stalePaths = setPaths.isEmpty() ?
+                Collections.<String>emptyList() :
+                readStaleSetPaths(rowKey, setPaths, objectMap, timer);
+        writeDecomposedColumns(rowKey, objectMap, stalePaths, batch, batchContext, timer);
+        timer.stop();
+    }
 
-        for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
-            batch.add(insertStatement);
-
-            String stringValue = StructureConverter.get().toString(entry.getValue());
-
-            bindArguments.add(rowKey);
-            bindArguments.add(entry.getKey().toString());
-            bindArguments.add(stringValue);
-        }
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        writeColumns(rowKey, columns, null);
+    }
 
-        if (batchContext == null) {
-            Query boundStatement = session.prepare(batch.getQueryString()).bind(bindArguments.toArray());
-            boundStatement.setConsistencyLevel(defaultConsistencyLevel);
-            session.execute(boundStatement);
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        Batch batch = validateAndGetBatch(batchContext);
+        for (Path path : columns.keySet()) {
+            validateArgs(rowKey, path);
         }
+        OperationTimer timer = OperationTimer.start(metrics, Operation.WRITE, rowKey, null);
+        writeDecomposedColumns(rowKey, columns, Collections.<String>emptyList(), batch, batchContext, timer);
+        timer.stop();
     }
 
     @Override
@@ -249,9 +521,14 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
 
     @Override
     public void deletePath(K rowKey, Path path, BatchContext batchContext) {
+        if (prefixTombstonesEnabled) {
+            writeTombstone(rowKey, path, batchContext);
+            return;
+        }
         Batch batch = validateAndGetBatch(batchContext);
 
         validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.DELETE, rowKey, path);
 
         // converting from a string and back normalizes the path, e.g. makes sure ends with the delimiter character
         String start = path.toString();
@@ -261,41 +538,474 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
         // with >= and <=
 
         // Since the path column is in the primary key, we need to just delete whole rows.
+        // The paths are read a page at a time and each page is deleted in its own batch, so a large subtree is
+        // never held in memory or deleted in one mutation. The next page is read while the previous one is deleted.
+        long timestampMicros = getCurrentMicros();
+        List<Object> bindArguments = batchContext == null ? null : ((CqlBatchContext)batchContext).getBindArguments();
+        ResultSetFuture pendingDelete = null;
+        int statementCount = 0;
+        List<String> page;
+        String lastPath = null;
+        do {
+            Object[] args = {rowKey, lastPath == null ? start : lastPath, finish};
+            PreparedStatement query = lastPath == null ? readForDeleteQuery : readForDeleteNextPageQuery;
+            page = new ArrayList<String>(deletePageSize);
+            for (Row row : execute(query.bind(args), timer)) {
+                page.add(row.getString(0));
+            }
+            timer.phase(Phase.QUERY);
+            if (page.isEmpty()) {
+                break;
+            }
+            lastPath = page.get(page.size() - 1);
+            statementCount += page.size();
 
-        Object[] args = {rowKey,start,finish};
-        ResultSet resultSet = session.execute(readForDeleteQuery.bind(args));
-        if (resultSet.isExhausted()) {
-            // not found
-            return;
+            if (batchContext == null) {
+                Batch pageBatch = batch();
+                List<Object> pageBindArguments = new ArrayList<Object>(page.size() * 2);
+                addDeletes(rowKey, page, timestampMicros, pageBatch, pageBindArguments);
+                awaitDelete(pendingDelete);
+                timer.phase(Phase.EXECUTE);
+                pendingDelete = executeBatchAsync(pageBatch, pageBindArguments);
+            } else {
+                addDeletes(rowKey, page, timestampMicros, batch, bindArguments);
+                ((CqlBatchContext)batchContext).addStatements(page.size());
+            }
+        } while (page.size() == deletePageSize);
+
+        awaitDelete(pendingDelete);
+        timer.phase(Phase.EXECUTE);
+        if (batchContext == null && statementCount > 0) {
+            timer.batchSize(statementCount);
+        }
+        timer.stop();
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        validateArgs(rowKey, listPath);
+        Validate.notEmpty(values, "No values to append");
+        OperationTimer timer = OperationTimer.start(metrics, Operation.APPEND_TO_LIST, rowKey, listPath);
+
+        int currentSize = listSize(rowKey, listPath);
+        timer.phase(Phase.QUERY);
+        List<Object> elements = new ArrayList<Object>(values.length);
+        for (Object value : values) {
+            elements.add(writeMapper.convertValue(value, Object.class));
+        }
+        timer.phase(Phase.CONVERT);
+        Map<Path,Object> objectMap = Decomposer.get().decomposeListAppend(listPath, currentSize, elements);
+        timer.phase(Phase.DECOMPOSE);
+
+        Batch batch = batch();
+        List<Object> bindArguments = new ArrayList<Object>();
+        long timestampMicros = getCurrentMicros();
+
+        // if the first new element is a structure then the old terminator is not overwritten, so delete it
+        Path oldTerminatorPath = listPath.withIndices(currentSize);
+        int statementCount = objectMap.size();
+        if (!objectMap.containsKey(oldTerminatorPath)) {
+            Delete deleteStatement = delete().from(tableName);
+            deleteStatement
+                    .using(timestamp(timestampMicros))
+                    .where(eq(partitionKeyColumnName, bindMarker()))
+                    .and(eq(pathColumnName, bindMarker()));
+            batch.add(deleteStatement);
+            bindArguments.add(rowKey);
+            bindArguments.add(oldTerminatorPath.toString());
+            statementCount++;
         }
+        addInserts(rowKey, objectMap, timestampMicros, batch, bindArguments, timer);
+
+        executeBatch(batch, bindArguments, statementCount, timer);
+        timer.stop();
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        validateArgs(rowKey, listPath);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.LIST_SIZE, rowKey, listPath);
+
+        Path headerPath = listPath.concat(DefaultPath.fromListHeader());
+        Row row;
+        if (prefixTombstonesEnabled) {
+            PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            List<Row> rows = removeDeleted(readWithTombstones(rowKey, headerPath, tombstones), tombstones);
+            row = rows.isEmpty() ? null : rows.get(0);
+        } else {
+            Object[] args = {rowKey,headerPath.toString()};
+            row = execute(readColumnQuery.bind(args), timer).one();
+        }
+        timer.phase(Phase.QUERY);
+        if (row != null) {
+            String headerString = row.getString(valueColumnName);
+            Object header = StructureConverter.get().fromString(headerString);
+            timer.phase(Phase.DECODE);
+            timer.columnsRead(1, headerString.length());
+            if (header instanceof Number) {
+                timer.stop();
+                return ((Number)header).intValue();
+            }
+        }
+
+        // no list header, so fall back to reading the whole list
+        List<Object> list = readFromPath(rowKey, listPath, LIST_TYPE);
+        timer.phase(Phase.QUERY);
+        timer.stop();
+        return list == null ? 0 : list.size();
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to add");
+        OperationTimer timer = OperationTimer.start(metrics, Operation.ADD_TO_SET, rowKey, path);
+
+        Map<Path,Object> objectMap = new HashMap<Path,Object>(members.length);
+        for (Object member : members) {
+            Object simpleMember = writeMapper.convertValue(member, Object.class);
+            objectMap.put(path.concat(DefaultPath.fromSetMember(simpleMember)), simpleMember);
+        }
+        timer.phase(Phase.CONVERT);
+
+        Batch batch = batch();
+        List<Object> bindArguments = new ArrayList<Object>();
+        addInserts(rowKey, objectMap, getCurrentMicros(), batch, bindArguments, timer);
+
+        executeBatch(batch, bindArguments, objectMap.size(), timer);
+        timer.stop();
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to remove");
+        OperationTimer timer = OperationTimer.start(metrics, Operation.REMOVE_FROM_SET, rowKey, path);
 
         Delete deleteStatement = delete().from(tableName);
         deleteStatement
                 .using(timestamp(getCurrentMicros()))
-                .where(eq(partitionKeyColumnName, rowKey))
+                .where(eq(partitionKeyColumnName, bindMarker()))
+                .and(eq(pathColumnName, bindMarker()));
+
+        Batch batch = batch();
+        List<Object> bindArguments = new ArrayList<Object>();
+        for (Object member : members) {
+            Object simpleMember = writeMapper.convertValue(member, Object.class);
+            batch.add(deleteStatement);
+            bindArguments.add(rowKey);
+            bindArguments.add(path.concat(DefaultPath.fromSetMember(simpleMember)).toString());
+        }
+        timer.phase(Phase.CONVERT);
+
+        executeBatch(batch, bindArguments, members.length, timer);
+        timer.stop();
+    }
+
+    /**
+     * Remove the columns under a path that are deleted by prefix tombstones, followed by the tombstones under the
+     * path. Each column is deleted with the timestamp of the tombstone that deleted it, so a column written since
+     * is not removed.
+     */
+    public void sweepPrefixTombstones(K rowKey, Path path) {
+        validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.SWEEP_TOMBSTONES, rowKey, path);
+
+        String start = path.toString();
+        String finish = getFinishString(start);
+
+        // a tombstone can follow the columns it deletes, so all the tombstones are found before deleting any column
+        PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+        addAncestorTombstones(rowKey, path, tombstones);
+        Iterator<Row> rows = new PathPageIterator(rowKey, start, finish, true);
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            tombstones.addIfTombstone(row.getString(pathColumnName), getWriteTime(row));
+        }
+        timer.phase(Phase.QUERY);
+
+        // the columns are read again a page at a time, and the deleted columns are deleted in batches as they are
+        // found. The tombstones are deleted last, so the columns they delete stay hidden if the sweep fails part way
+        Map<String,Long> deletedColumns = new LinkedHashMap<String,Long>();
+        Map<String,Long> sweptTombstones = new LinkedHashMap<String,Long>();
+        rows = new PathPageIterator(rowKey, start, finish, true);
+        while (rows.hasNext()) {
+            Row row = rows.next();
+            String pathString = row.getString(pathColumnName);
+            long writeTime = getWriteTime(row);
+            if (PrefixTombstoneFilter.isTombstone(pathString)) {
+                sweptTombstones.put(pathString, writeTime);
+            } else {
+                Long deletingTimestamp = tombstones.getDeletingTimestamp(pathString, writeTime);
+                if (deletingTimestamp != null) {
+                    deletedColumns.put(pathString, deletingTimestamp);
+                    if (deletedColumns.size() == deletePageSize) {
+                        deleteWithTimestamps(rowKey, deletedColumns, timer);
+                        deletedColumns.clear();
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String,Long> tombstone : sweptTombstones.entrySet()) {
+            deletedColumns.put(tombstone.getKey(), tombstone.getValue());
+            if (deletedColumns.size() == deletePageSize) {
+                deleteWithTimestamps(rowKey, deletedColumns, timer);
+                deletedColumns.clear();
+            }
+        }
+        if (!deletedColumns.isEmpty()) {
+            deleteWithTimestamps(rowKey, deletedColumns, timer);
+        }
+        timer.stop();
+    }
+
+    /**
+     * Delete columns in one batch, each with its own timestamp.
+     */
+    private void deleteWithTimestamps(K rowKey, Map<String,Long> timestamps, OperationTimer timer) {
+        Batch batch = batch();
+        List<Object> bindArguments = new ArrayList<Object>(timestamps.size() * 2);
+        for (Map.Entry<String,Long> entry : timestamps.entrySet()) {
+            batch.add(delete().from(tableName)
+                              .using(timestamp(entry.getValue()))
+                              .where(eq(partitionKeyColumnName, bindMarker()))
+                                 .and(eq(pathColumnName, bindMarker())));
+            bindArguments.add(rowKey);
+            bindArguments.add(entry.getKey());
+        }
+        executeBatch(batch, bindArguments, timestamps.size(), timer);
+    }
+
+    @Override
+    public Path createPath(String... elements) {
+        return DefaultPath.fromStrings(elements);
+    }
+
+    private void prepareReadForDeleteQueries() {
+        // the limit cannot be a bind variable in CQL 1.2, so the queries are prepared again when the page size changes
+        readForDeleteQuery = session.prepare(select(pathColumnName)
+                                                     .from(tableName)
+                                                     .where(eq(partitionKeyColumnName, bindMarker()))
+                                                        .and(gte(pathColumnName, bindMarker()))
+                                                        .and(lte(pathColumnName, bindMarker()))
+                                                     .limit(deletePageSize)
+                                                     .getQueryString());
+        readForDeleteQuery.setConsistencyLevel(defaultConsistencyLevel);
+
+        readForDeleteNextPageQuery = session.prepare(select(pathColumnName)
+                                                             .from(tableName)
+                                                             .where(eq(partitionKeyColumnName, bindMarker()))
+                                                                .and(gt(pathColumnName, bindMarker()))
+                                                                .and(lte(pathColumnName, bindMarker()))
+                                                             .limit(deletePageSize)
+                                                             .getQueryString());
+        readForDeleteNextPageQuery.setConsistencyLevel(defaultConsistencyLevel);
+    }
+
+    private void prepareReadPageQueries() {
+        // the limit cannot be a bind variable in CQL 1.2, so the queries are prepared again when the page size changes
+        readPageQuery = prepareReadPageQuery(false, false);
+        readNextPageQuery = prepareReadPageQuery(false, true);
+        if (readTombstoneQuery != null) {
+            // prefix tombstones have been enabled
+            readPageWithTimestampsQuery = prepareReadPageQuery(true, false);
+            readNextPageWithTimestampsQuery = prepareReadPageQuery(true, true);
+        }
+    }
+
+    /**
+     * Prepare a query of a page of the paths and values in a range, starting with the first path of the range,
+     * or after the last path of the previous page.
+     */
+    private PreparedStatement prepareReadPageQuery(boolean withTimestamps, boolean nextPage) {
+        Select.Selection selection = select().column(pathColumnName).column(valueColumnName);
+        if (withTimestamps) {
+            selection = selection.writeTime(valueColumnName);
+        }
+        Clause startClause = nextPage ? gt(pathColumnName, bindMarker()) : gte(pathColumnName, bindMarker());
+        PreparedStatement query = session.prepare(selection.from(tableName)
+                                                           .where(eq(partitionKeyColumnName, bindMarker()))
+                                                              .and(startClause)
+                                                              .and(lte(pathColumnName, bindMarker()))
+                                                           .limit(readPageSize)
+                                                           .getQueryString());
+        query.setConsistencyLevel(defaultConsistencyLevel);
+        return query;
+    }
+
+    private Decomposer getDecomposer() {
+        return listHeadersEnabled ? Decomposer.getWithListHeaders() : Decomposer.get();
+    }
+
+    private void addInserts(K rowKey,
+                            Map<Path,Object> objectMap,
+                            long timestampMicros,
+                            Batch batch,
+                            List<Object> bindArguments,
+                            OperationTimer timer) {
+        Statement insertStatement = insertInto(tableName)
+                .value(partitionKeyColumnName, bindMarker())
+                .value(pathColumnName, bindMarker())
+                .value(valueColumnName, bindMarker())
+                .using(timestamp(timestampMicros));
+        insertStatement.setConsistencyLevel(defaultConsistencyLevel);
+
+        long valueSize = 0;
+        for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
+            batch.add(insertStatement);
+
+            String stringValue = StructureConverter.get().toString(entry.getValue());
+            valueSize += stringValue.length();
+
+            bindArguments.add(rowKey);
+            bindArguments.add(entry.getKey().toString());
+            bindArguments.add(stringValue);
+        }
+        timer.phase(Phase.ENCODE);
+        timer.columnsWritten(objectMap.size(), valueSize);
+    }
+
+    /**
+     * Execute a query, with Cassandra query tracing if the operation is sampled for tracing.
+     */
+    private ResultSet execute(Query query, OperationTimer timer) {
+        if (timer.isQueryTraceRequested()) {
+            query.enableTracing();
+        }
+        ResultSet resultSet = session.execute(query);
+        if (query.isTracing()) {
+            QueryTrace queryTrace = resultSet.getExecutionInfo().getQueryTrace();
+            if (queryTrace != null) {
+                timer.queryTrace(queryTrace.getTraceId());
+            }
+        }
+        return resultSet;
+    }
+
+    private void executeBatch(Batch batch, List<Object> bindArguments, int statementCount, OperationTimer timer) {
+        Query query = session.prepare(batch.getQueryString()).bind(bindArguments.toArray());
+        query.setConsistencyLevel(defaultConsistencyLevel);
+        timer.phase(Phase.BIND);
+        execute(query, timer);
+        timer.phase(Phase.EXECUTE);
+        timer.batchSize(statementCount);
+    }
+
+    private void addDeletes(K rowKey,
+                            List<String> paths,
+                            long timestampMicros,
+                            Batch batch,
+                            List<Object> bindArguments) {
+        Delete deleteStatement = delete().from(tableName);
+        deleteStatement
+                .using(timestamp(timestampMicros))
+                .where(eq(partitionKeyColumnName, bindMarker()))
                 .and(eq(pathColumnName, bindMarker()));
+        for (String pathToDelete : paths) {
+            batch.add(deleteStatement);
+            bindArguments.add(rowKey);
+            bindArguments.add(pathToDelete);
+        }
+    }
 
+    private ResultSetFuture executeBatchAsync(Batch batch, List<Object> bindArguments) {
+        Query query = session.prepare(batch.getQueryString()).bind(bindArguments.toArray());
+        query.setConsistencyLevel(defaultConsistencyLevel);
+        return session.executeAsync(query);
+    }
+
+    private static void awaitDelete(@Nullable ResultSetFuture pendingDelete) {
+        if (pendingDelete != null) {
+            pendingDelete.getUninterruptibly();
+        }
+    }
+
+    private void writeTombstone(K rowKey, Path path, @Nullable BatchContext batchContext) {
+        Batch batch = validateAndGetBatch(batchContext);
+        validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(metrics, Operation.DELETE, rowKey, path);
+
+        Path tombstonePath = path.concat(DefaultPath.fromPrefixTombstone());
+        Map<Path,Object> tombstone = Collections.<Path,Object>singletonMap(tombstonePath, ObjectUtils.NULL);
         batch = batchContext == null ? batch() : batch;
         List<Object> bindArguments = batchContext == null ?
                 new ArrayList<Object>() :
                 ((CqlBatchContext)batchContext).getBindArguments();
+        addInserts(rowKey, tombstone, getCurrentMicros(), batch, bindArguments, timer);
 
-        for (Row row : resultSet) {
-            String pathToDelete = row.getString(0);
-            batch.add(deleteStatement);
-            bindArguments.add(pathToDelete);
+        if (batchContext == null) {
+            executeBatch(batch, bindArguments, 1, timer);
+        } else {
+            ((CqlBatchContext)batchContext).addStatements(1);
+        }
+        if (sweepExecutor != null) {
+            sweepExecutor.schedule(new SweepTask(rowKey, path), sweepDelayMillis, TimeUnit.MILLISECONDS);
         }
+        timer.stop();
+    }
 
-        if (batchContext == null) {
-            BoundStatement query = session.prepare(batch.getQueryString()).bind(bindArguments.toArray());
-            query.setConsistencyLevel(defaultConsistencyLevel);
-            session.execute(query);
+    /**
+     * Read the columns under a path with their write timestamps, and add the prefix tombstones of the path,
+     * its ancestors and its descendants to a filter.
+     *
+     * @return the rows read, including the tombstones and the columns they delete
+     */
+    private List<Row> readWithTombstones(K rowKey, Path path, PrefixTombstoneFilter tombstones) {
+        // the tombstones of the ancestors are outside the range of the path, so they are read concurrently
+        List<ResultSetFuture> ancestorTombstones = readAncestorTombstonesAsync(rowKey, path);
+
+        // the rows are read a page at a time, so a wide path is not read in a single query
+        String start = path.toString();
+        List<Row> rows = Lists.newArrayList(new PathPageIterator(rowKey, start, getFinishString(start), true));
+
+        addAncestorTombstones(ancestorTombstones, tombstones);
+        for (Row row : rows) {
+            tombstones.addIfTombstone(row.getString(pathColumnName), getWriteTime(row));
         }
+        return rows;
     }
 
-    @Override
-    public Path createPath(String... elements) {
-        return DefaultPath.fromStrings(elements);
+    private void addAncestorTombstones(K rowKey, Path path, PrefixTombstoneFilter tombstones) {
+        addAncestorTombstones(readAncestorTombstonesAsync(rowKey, path), tombstones);
+    }
+
+    private List<ResultSetFuture> readAncestorTombstonesAsync(K rowKey, Path path) {
+        List<ResultSetFuture> ancestorTombstones = new ArrayList<ResultSetFuture>(path.size());
+        for (String tombstoneName : PrefixTombstoneFilter.getAncestorTombstoneNames(path)) {
+            ancestorTombstones.add(session.executeAsync(readTombstoneQuery.bind(rowKey, tombstoneName)));
+        }
+        return ancestorTombstones;
+    }
+
+    private void addAncestorTombstones(List<ResultSetFuture> ancestorTombstones, PrefixTombstoneFilter tombstones) {
+        for (ResultSetFuture future : ancestorTombstones) {
+            Row row = future.getUninterruptibly().one();
+            if (row != null) {
+                tombstones.addIfTombstone(row.getString(pathColumnName), getWriteTime(row));
+            }
+        }
+    }
+
+    /**
+     * Remove the prefix tombstones and the columns deleted by them from rows read with their write timestamps.
+     */
+    private List<Row> removeDeleted(List<Row> rows, PrefixTombstoneFilter tombstones) {
+        List<Row> liveRows = new ArrayList<Row>(rows.size());
+        for (Row row : rows) {
+            String pathString = row.getString(pathColumnName);
+            if (!PrefixTombstoneFilter.isTombstone(pathString) &&
+                    !tombstones.isDeleted(pathString, getWriteTime(row))) {
+                liveRows.add(row);
+            }
+        }
+        return liveRows;
+    }
+
+    /**
+     * Get the write timestamp of the value of a row, which is always the last column selected.
+     */
+    private static long getWriteTime(Row row) {
+        return row.getLong(row.getColumnDefinitions().size() - 1);
     }
 
     private String getFinishString(String start) {
@@ -310,6 +1020,63 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
     }
 
 
+    /**
+     * Insert decomposed columns in a batch that is executed now, or add them to the batch of the batch context.
+     */
+    private void writeDecomposedColumns(K rowKey,
+                                        Map<Path,Object> objectMap,
+                                        List<String> stalePaths,
+                                        Batch batch,
+                                        @Nullable BatchContext batchContext,
+                                        OperationTimer timer) {
+        batch = batchContext == null ? batch() : batch;
+        List<Object> bindArguments = batchContext == null ?
+                                        new ArrayList<Object>() :
+                                        ((CqlBatchContext)batchContext).getBindArguments();
+        // the stale paths are never written again, so deleting them with the same timestamp does not conflict
+        long timestampMicros = getCurrentMicros();
+        addDeletes(rowKey, stalePaths, timestampMicros, batch, bindArguments);
+        addInserts(rowKey, objectMap, timestampMicros, batch, bindArguments, timer);
+
+        int statementCount = stalePaths.size() + objectMap.size();
+        if (batchContext == null) {
+            executeBatch(batch, bindArguments, statementCount, timer);
+        } else {
+            ((CqlBatchContext)batchContext).addStatements(statementCount);
+        }
+    }
+
+    /**
+     * Read the paths under the set paths that are not written again, i.e. the members, list elements and terminator
+     * of the sets that are replaced. The paths are read a page at a time.
+     */
+    private List<String> readStaleSetPaths(K rowKey,
+                                           Iterable<Path> setPaths,
+                                           Map<Path,Object> objectMap,
+                                           OperationTimer timer) {
+        Set<String> stalePaths = new LinkedHashSet<String>();
+        for (Path setPath : setPaths) {
+            String start = setPath.toString();
+            String finish = getFinishString(start);
+            int pageSize;
+            String lastPath = null;
+            do {
+                Object[] args = {rowKey, lastPath == null ? start : lastPath, finish};
+                PreparedStatement query = lastPath == null ? readForDeleteQuery : readForDeleteNextPageQuery;
+                pageSize = 0;
+                for (Row row : execute(query.bind(args), timer)) {
+                    lastPath = row.getString(0);
+                    pageSize++;
+                    if (!objectMap.containsKey(DefaultPath.fromEncodedPathString(lastPath))) {
+                        stalePaths.add(lastPath);
+                    }
+                }
+            } while (pageSize == deletePageSize);
+        }
+        timer.phase(Phase.QUERY);
+        return new ArrayList<String>(stalePaths);
+    }
+
     private void validateArgs(K rowKey, Path path) {
         Validate.isTrue(!path.isEmpty(), "Path must not be empty");
         Validate.notNull(rowKey, "Row key must not be empty");
@@ -325,11 +1092,19 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
         return ((CqlBatchContext)batchContext).getBatch();
     }
 
-    private Map<Path,Object> getPathMap(Path inputPath, Iterable<Row> resultSet) {
+    private static Object deserialize(Row row, int i) {
+        ColumnDefinitions columnDefinitions = row.getColumnDefinitions();
+        ByteBuffer bytes = row.getBytesUnsafe(i);
+        return bytes == null ? null : columnDefinitions.getType(i).deserialize(bytes);
+    }
+
+    private Map<Path,Object> getPathMap(Path inputPath, Iterable<Row> resultSet, OperationTimer timer) {
         Map<Path,Object> pathMap = new HashMap<Path,Object>();
 
+        long valueSize = 0;
         for (Row row : resultSet) {
             String valueString = row.getString(valueColumnName);
+            valueSize += valueString == null ? 0 : valueString.length();
             Path path = DefaultPath.fromEncodedPathString(row.getString(pathColumnName));
 
             if (!path.startsWith(inputPath)) {
@@ -340,6 +1115,8 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
             // this can be a null converted from a JSON null
             pathMap.put(path, value);
         }
+        timer.phase(Phase.DECODE);
+        timer.columnsRead(pathMap.size(), valueSize);
         return pathMap;
     }
 
@@ -377,9 +1154,233 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
         return success ? Optional.of(nowMicros) : Optional.<Long>absent();
     }
 
+    /**
+     * Iterates over the CQL rows of the paths in a range in a partition, reading one page of rows at a time.
+     * Each page after the first starts after the last path of the previous page.
+     */
+    private class PathPageIterator extends AbstractIterator<Row> {
+        private final K rowKey;
+        private final String finish;
+        private final PreparedStatement firstPageQuery;
+        private final PreparedStatement nextPageQuery;
+        // the limit of the queries
+        private final int pageSize = readPageSize;
+        private String pageStart;
+        private boolean firstPage = true;
+        private Iterator<Row> page = Collections.<Row>emptyList().iterator();
+        private boolean lastPage;
+
+        /**
+         * @param withTimestamps whether the rows include the write time of the value, which prefix tombstones must
+         *                       have been enabled for
+         */
+        private PathPageIterator(K rowKey, String start, String finish, boolean withTimestamps) {
+            this.rowKey = rowKey;
+            this.finish = finish;
+            firstPageQuery = withTimestamps ? readPageWithTimestampsQuery : readPageQuery;
+            nextPageQuery = withTimestamps ? readNextPageWithTimestampsQuery : readNextPageQuery;
+            pageStart = start;
+        }
+
+        @Override
+        protected Row computeNext() {
+            while (!page.hasNext()) {
+                if (lastPage) {
+                    return endOfData();
+                }
+                PreparedStatement query = firstPage ? firstPageQuery : nextPageQuery;
+                List<Row> rows = session.execute(query.bind(rowKey, pageStart, finish)).all();
+                firstPage = false;
+                lastPage = rows.size() < pageSize;
+                if (rows.isEmpty()) {
+                    return endOfData();
+                }
+                pageStart = rows.get(rows.size() - 1).getString(pathColumnName);
+                page = rows.iterator();
+            }
+            return page.next();
+        }
+    }
+
+    /**
+     * Scans a token range one page of CQL rows at a time. Since a page can end in the middle of a partition,
+     * the remainder of the path in the last partition of a full page is read one read page at a time before
+     * continuing with the next token. Paths are filtered on the client, because CQL 1.2 cannot restrict a clustering
+     * column in a token range query.
+     * Each object is composed from all of its columns, so the memory used by a scanning thread is bounded by a page
+     * of CQL rows plus the columns of the largest object scanned.
+     */
+    private class CqlRangeScanner<T> implements RangeScanner<Map.Entry<K,T>> {
+        private final PreparedStatement scanQuery;
+        private final Path path;
+        private final String start;
+        private final String finish;
+        private final JacksonTypeReference<T> typeReference;
+
+        private CqlRangeScanner(PreparedStatement scanQuery, Path path, TypeReference<T> type) {
+            this.scanQuery = scanQuery;
+            this.path = path;
+            start = path.toString();
+            finish = getFinishString(start);
+            typeReference = new JacksonTypeReference<T>(type);
+        }
+
+        @Override
+        public void scan(TokenRange range, Sink<Map.Entry<K,T>> sink) throws InterruptedException {
+            BigInteger lastToken = range.getStartToken();
+            while (true) {
+                OperationTimer timer = OperationTimer.start(metrics, Operation.SCAN, null, path);
+                Object[] args = {tokenRing.toCqlValue(lastToken), tokenRing.toCqlValue(range.getEndToken())};
+                List<Row> rows = execute(scanQuery.bind(args), timer).all();
+                timer.phase(Phase.QUERY);
+                if (rows.isEmpty()) {
+                    timer.stop();
+                    return;
+                }
+
+                // group the rows by partition key, in token order
+                Map<K,List<Row>> partitions = new LinkedHashMap<K,List<Row>>();
+                K lastKey = null;
+                for (Row row : rows) {
+                    @SuppressWarnings("unchecked")
+                    K key = (K)deserialize(row, 1);
+                    List<Row> partition = partitions.get(key);
+                    if (partition == null) {
+                        partition = new ArrayList<Row>();
+                        partitions.put(key, partition);
+                    }
+                    String pathString = row.getString(2);
+                    if (pathString.startsWith(start)) {
+                        partition.add(row);
+                    }
+                    lastKey = key;
+                }
+                Row lastRow = rows.get(rows.size() - 1);
+                boolean fullPage = rows.size() >= scanPageSize;
+                if (fullPage) {
+                    readRemainder(lastKey, lastRow.getString(2), partitions.get(lastKey));
+                    timer.phase(Phase.QUERY);
+                }
+
+                List<Map.Entry<K,T>> page = new ArrayList<Map.Entry<K,T>>(partitions.size());
+                for (Map.Entry<K,List<Row>> entry : partitions.entrySet()) {
+                    List<Row> partition = entry.getValue();
+                    if (prefixTombstonesEnabled) {
+                        PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+                        for (Row row : partition) {
+                            tombstones.addIfTombstone(row.getString(pathColumnName), getWriteTime(row));
+                        }
+                        partition = removeDeleted(partition, tombstones);
+                    }
+                    if (!partition.isEmpty()) {
+                        page.add(Maps.immutableEntry(entry.getKey(), compose(partition, timer)));
+                    }
+                }
+                // the time waiting for the consumer is not part of the operation
+                timer.stop();
+                for (Map.Entry<K,T> entry : page) {
+                    sink.put(entry);
+                }
+
+                if (!fullPage) {
+                    return;
+                }
+                // note that other partitions with exactly the same token as the last one would be skipped
+                Object token = deserialize(lastRow, 0);
+                lastToken = token instanceof BigInteger ? (BigInteger)token : BigInteger.valueOf((Long)token);
+            }
+        }
+
+        private void readRemainder(K key, String lastPathString, List<Row> partition) {
+            // the next path after the last path read
+            String remainderStart = lastPathString + '\0';
+            if (remainderStart.compareTo(start) < 0) {
+                remainderStart = start;
+            }
+            if (remainderStart.compareTo(finish) > 0) {
+                return;
+            }
+            Iterators.addAll(partition, new PathPageIterator(key, remainderStart, finish, prefixTombstonesEnabled));
+        }
+
+        private T compose(List<Row> partition, OperationTimer timer) {
+            Object structure = Composer.get().compose(getPathMap(path, partition, timer));
+            timer.phase(Phase.COMPOSE);
+            T value = readMapper.convertValue(structure, typeReference);
+            timer.phase(Phase.CONVERT);
+            return value;
+        }
+    }
+
+    /**
+     * Scans the partition keys of a token range one page of CQL rows at a time. The CQL rows of a partition are
+     * consecutive, and a page continues after the token of the last partition of the previous page, so each key is
+     * passed on once even if the partition is wider than a page.
+     */
+    private class CqlRowKeyScanner implements RangeScanner<K> {
+        private final PreparedStatement scanQuery;
+
+        private CqlRowKeyScanner(PreparedStatement scanQuery) {
+            this.scanQuery = scanQuery;
+        }
+
+        @Override
+        public void scan(TokenRange range, Sink<K> sink) throws InterruptedException {
+            BigInteger lastToken = range.getStartToken();
+            while (true) {
+                OperationTimer timer = OperationTimer.start(metrics, Operation.SCAN);
+                Object[] args = {tokenRing.toCqlValue(lastToken), tokenRing.toCqlValue(range.getEndToken())};
+                List<Row> rows = execute(scanQuery.bind(args), timer).all();
+                timer.phase(Phase.QUERY);
+                List<K> keys = new ArrayList<K>();
+                K lastKey = null;
+                for (Row row : rows) {
+                    @SuppressWarnings("unchecked")
+                    K key = (K)deserialize(row, 1);
+                    if (!key.equals(lastKey)) {
+                        keys.add(key);
+                        lastKey = key;
+                    }
+                }
+                // the time waiting for the consumer is not part of the operation
+                timer.stop();
+                for (K key : keys) {
+                    sink.put(key);
+                }
+
+                if (rows.size() < scanPageSize) {
+                    return;
+                }
+                // note that other partitions with exactly the same token as the last one would be skipped
+                Object token = deserialize(rows.get(rows.size() - 1), 0);
+                lastToken = token instanceof BigInteger ? (BigInteger)token : BigInteger.valueOf((Long)token);
+            }
+        }
+    }
+
+    private class SweepTask implements Runnable {
+        private final K rowKey;
+        private final Path path;
+
+        private SweepTask(K rowKey, Path path) {
+            this.rowKey = rowKey;
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            try {
+                sweepPrefixTombstones(rowKey, path);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to sweep prefix tombstones under " + path, e);
+            }
+        }
+    }
+
     private static class CqlBatchContext implements BatchContext {
         private Batch batch = batch();
         private final List<Object> bindArguments = new LinkedList<Object>();
+        private int statementCount;
 
         private Batch getBatch() {
             return batch;
@@ -389,9 +1390,18 @@ public class CqlStructuredDataSupport<K> implements StructuredDataSupport<K> {
             return bindArguments;
         }
 
+        private int getStatementCount() {
+            return statementCount;
+        }
+
+        private void addStatements(int count) {
+            statementCount += count;
+        }
+
         private void reset() {
             batch = batch();
             bindArguments.clear();
+            statementCount = 0;
         }
     }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates Rows of text columns for unit tests. Rows can only be created within the driver's package.
+ */
+public final class TestRows {
+    private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+    private TestRows() {
+    }
+
+    /**
+     * Create a row of text columns.
+     * @param columnNames the names of the columns
+     * @param values the values of the columns, in the same order as the names
+     */
+    public static Row createTextRow(String[] columnNames, String... values) {
+        ColumnDefinitions.Definition[] definitions = new ColumnDefinitions.Definition[columnNames.length];
+        List<ByteBuffer> data = new ArrayList<ByteBuffer>(values.length);
+        for (int i = 0; i < columnNames.length; i++) {
+            definitions[i] = new ColumnDefinitions.Definition("keyspace", "table", columnNames[i], DataType.text());
+            data.add(values[i] == null ? null : ByteBuffer.wrap(values[i].getBytes(UTF8_CHARSET)));
+        }
+        return Row.fromData(new ColumnDefinitions(definitions), data);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.cql.dao;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Query;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TestRows;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.test.AllocationBudget;
+
+/**
+ * Allocation budgets for CqlStructuredDataSupport, from a POJO to bound statements and from rows back to a POJO,
+ * without the call to Cassandra. The driver is mocked, and what the mocks allocate is measured separately and
+ * left out. The budgets are in allocation-budgets.properties.
+ */
+public class CqlStructuredDataSupportAllocationTest {
+    private static final String[] COLUMN_NAMES = {"column1", "value"};
+
+    private final String rowKey = "rowKey";
+    private final TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+    private final TestPojo testPojo = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3"));
+
+    private AllocationBudget budget;
+    private Session session;
+    private PreparedStatement preparedStatement;
+    private BoundStatement boundStatement;
+    private ResultSet resultSet;
+    private final List<Row> rows = new ArrayList<Row>();
+    private Object[] lastBindArguments;
+
+    private CqlStructuredDataSupport<String> dao;
+    private Path path;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        budget = new AllocationBudget(getClass());
+        session = mock(Session.class);
+        preparedStatement = mock(PreparedStatement.class);
+        boundStatement = mock(BoundStatement.class);
+        resultSet = mock(ResultSet.class);
+        when(session.prepare(anyString())).thenReturn(preparedStatement);
+        when(session.execute(any(Query.class))).thenReturn(resultSet);
+        when(preparedStatement.bind(anyVararg())).thenAnswer(new Answer<BoundStatement>() {
+            @Override
+            public BoundStatement answer(InvocationOnMock invocation) {
+                lastBindArguments = invocation.getArguments();
+                return boundStatement;
+            }
+        });
+        when(resultSet.iterator()).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return rows.iterator();
+            }
+        });
+
+        dao = new CqlStructuredDataSupport<String>("testpojo", ConsistencyLevel.ONE, session);
+        path = dao.createPath("a", "b", "c");
+
+        // the rows that are read are the ones that are written, bound as key, path, value for each column
+        dao.writeToPath(rowKey, path, testPojo);
+        for (int i = 0; i < lastBindArguments.length; i += 3) {
+            rows.add(TestRows.createTextRow(COLUMN_NAMES,
+                                            (String)lastBindArguments[i + 1],
+                                            (String)lastBindArguments[i + 2]));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void writeToPathShouldBeWithinBudget() throws Exception {
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                dao.writeToPath(rowKey, path, testPojo);
+            }
+        });
+        final int bindArgumentCount = lastBindArguments.length;
+        long allocatedByMocks = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                Query query = session.prepare("batch").bind(new Object[bindArgumentCount]);
+                query.setConsistencyLevel(ConsistencyLevel.ONE);
+                session.execute(query);
+                query.isTracing();
+            }
+        });
+
+        budget.assertWithinBudget("cql.writeToPath", allocated - allocatedByMocks);
+    }
+
+    @Test(groups = "unit")
+    public void readFromPathShouldBeWithinBudget() throws Exception {
+        long allocated = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                dao.readFromPath(rowKey, path, typeReference);
+            }
+        });
+        long allocatedByMocks = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                Query query = preparedStatement.bind(rowKey, "start", "finish");
+                int rowCount = 0;
+                for (Row ignored : session.execute(query)) {
+                    rowCount++;
+                }
+                query.isTracing();
+            }
+        });
+
+        budget.assertWithinBudget("cql.readFromPath", allocated - allocatedByMocks);
+    }
+}
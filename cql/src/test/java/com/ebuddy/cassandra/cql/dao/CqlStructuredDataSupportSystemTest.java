@@ -16,6 +16,9 @@
 
 package com.ebuddy.cassandra.cql.dao;
 
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -24,14 +27,20 @@ import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.UUID;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
 import org.mockito.ArgumentCaptor;
@@ -47,11 +56,14 @@ import com.datastax.driver.core.Query;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.StructuredDataSupport;
 import com.ebuddy.cassandra.TypeReference;
 import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.scan.TokenRing;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
 
 /**
  * System tests for CqlStructuredDataSupport.
@@ -63,6 +75,8 @@ public class CqlStructuredDataSupportSystemTest {
     private static final String CASSANDRA_HOSTS_SYSTEM_PROPERTY = "cassandra.hosts";
     private static final String TEST_KEYSPACE = "cqlstructureddatasupportsystemtest";
 
+    private static final TypeReference<Map<String,Object>> MAP_TYPE = new TypeReference<Map<String,Object>>() { };
+
     private Cluster cluster;
     private final String tableName = "testpojo";
 
@@ -167,6 +181,26 @@ public class CqlStructuredDataSupportSystemTest {
         verifyConsistency(4);
     }
 
+    @Test(groups = {"system"})
+    public void shouldReplaceSet() throws Exception {
+        UUID rowKey = UUID.randomUUID();
+        Path path = daoSupport.createPath("x");
+        TypeReference<Set<String>> typeReference = new TypeReference<Set<String>>() { };
+
+        daoSupport.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1", "m2", "m3")));
+        daoSupport.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1")));
+        assertEquals(daoSupport.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m1")));
+
+        daoSupport.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m4", "m5")));
+        assertEquals(daoSupport.readFromPath(rowKey, path, typeReference),
+                     new HashSet<String>(Arrays.asList("m4", "m5")));
+
+        // a set with a null member is written as a list
+        daoSupport.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m6", null)));
+        daoSupport.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m7")));
+        assertEquals(daoSupport.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m7")));
+    }
+
     @Test(groups = {"system"})
     public void shouldRemoveListCruftWhenDeleting() throws Exception {
         List<String> longList = Arrays.asList("1", "2", "3", "4", "5", "6");
@@ -200,6 +234,274 @@ public class CqlStructuredDataSupportSystemTest {
     }
 
 
+    @Test(groups = {"system"})
+    public void shouldDeletePathInPages() throws Exception {
+        ((CqlStructuredDataSupport<UUID>)daoSupport).setDeletePageSize(2);
+        UUID rowKey = UUID.randomUUID();
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3", "e4"));
+        Path path = daoSupport.createPath("a");
+        Path otherPath = daoSupport.createPath("b");
+
+        daoSupport.writeToPath(rowKey, path, testObject);
+        daoSupport.writeToPath(rowKey, otherPath, "other");
+
+        daoSupport.deletePath(rowKey, path);
+        assertNull(daoSupport.readFromPath(rowKey, path, new TypeReference<TestPojo>() { }));
+        assertEquals(daoSupport.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+
+        daoSupport.writeToPath(rowKey, path, testObject);
+        BatchContext batchContext = daoSupport.beginBatch();
+        daoSupport.deletePath(rowKey, path, batchContext);
+        daoSupport.applyBatch(batchContext);
+        assertNull(daoSupport.readFromPath(rowKey, path, new TypeReference<TestPojo>() { }));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldDeletePathWithPrefixTombstones() throws Exception {
+        CqlStructuredDataSupport<UUID> tombstoneSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                              ConsistencyLevel.QUORUM,
+                                                                                              session);
+        tombstoneSupport.setPrefixTombstonesEnabled(true);
+        // small pages make the reads and the sweep span several pages
+        tombstoneSupport.setReadPageSize(2);
+        tombstoneSupport.setDeletePageSize(2);
+        UUID rowKey = UUID.randomUUID();
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2"));
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+        Path path = tombstoneSupport.createPath("a", "b");
+        Path otherPath = tombstoneSupport.createPath("c");
+
+        tombstoneSupport.writeToPath(rowKey, path, testObject);
+        tombstoneSupport.writeToPath(rowKey, otherPath, "other");
+        assertEquals(tombstoneSupport.readFromPath(rowKey, path, typeReference), testObject);
+
+        // deleting an ancestor hides the path, but the columns remain until swept
+        tombstoneSupport.deletePath(rowKey, tombstoneSupport.createPath("a"));
+        assertNull(tombstoneSupport.readFromPath(rowKey, path, typeReference));
+        assertEquals(tombstoneSupport.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+        assertEquals(daoSupport.readFromPath(rowKey, path, typeReference), testObject);
+
+        // a write after the delete is not hidden
+        tombstoneSupport.writeToPath(rowKey, path.withElements("d"), "new");
+        assertEquals(tombstoneSupport.readFromPath(rowKey, tombstoneSupport.createPath("a"), MAP_TYPE),
+                     Collections.singletonMap("b", Collections.singletonMap("d", "new")));
+
+        tombstoneSupport.sweepPrefixTombstones(rowKey, tombstoneSupport.createPath("a"));
+        assertEquals(daoSupport.readFromPath(rowKey, tombstoneSupport.createPath("a"), MAP_TYPE),
+                     Collections.singletonMap("b", Collections.singletonMap("d", "new")));
+        assertEquals(daoSupport.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadListSizeWithPrefixTombstones() throws Exception {
+        CqlStructuredDataSupport<UUID> tombstoneSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                              ConsistencyLevel.QUORUM,
+                                                                                              session);
+        tombstoneSupport.setPrefixTombstonesEnabled(true);
+        tombstoneSupport.setListHeadersEnabled(true);
+        UUID rowKey = UUID.randomUUID();
+        Path path = tombstoneSupport.createPath("x");
+
+        tombstoneSupport.writeToPath(rowKey, path, Arrays.asList("1", "2", "3"));
+        assertEquals(tombstoneSupport.listSize(rowKey, path), 3);
+
+        tombstoneSupport.deletePath(rowKey, path);
+        assertEquals(tombstoneSupport.listSize(rowKey, path), 0);
+
+        tombstoneSupport.appendToList(rowKey, path, "4");
+        assertEquals(tombstoneSupport.readFromPath(rowKey, path, new TypeReference<List<String>>() { }),
+                     Arrays.asList("4"));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldAppendToList() throws Exception {
+        UUID rowKey = UUID.randomUUID();
+        TypeReference<List<Object>> typeReference = new TypeReference<List<Object>>() { };
+        Path path = daoSupport.createPath("x");
+
+        // written without a list header, so the first append falls back to reading the list
+        daoSupport.writeToPath(rowKey, path, Arrays.asList("1", "2", "3"));
+        assertEquals(daoSupport.listSize(rowKey, path), 3);
+
+        daoSupport.appendToList(rowKey, path, "4", "5");
+        assertEquals(daoSupport.listSize(rowKey, path), 5);
+
+        Map<String,String> map = Collections.singletonMap("k", "v");
+        daoSupport.appendToList(rowKey, path, map);
+        assertEquals(daoSupport.listSize(rowKey, path), 6);
+
+        List<Object> result = daoSupport.readFromPath(rowKey, path, typeReference);
+        assertEquals(result, Arrays.<Object>asList("1", "2", "3", "4", "5", map));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScan() throws Exception {
+        CqlStructuredDataSupport<UUID> scanSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                         ConsistencyLevel.QUORUM,
+                                                                                         session);
+        // the embedded cassandra uses the RandomPartitioner; a small page size splits rows across pages
+        scanSupport.setTokenRing(TokenRing.RANDOM);
+        scanSupport.setScanPageSize(3);
+        scanSupport.setScanParallelism(2);
+        // the remainder of an object split across scan pages is read in several read pages
+        scanSupport.setReadPageSize(2);
+
+        Path path = daoSupport.createPath("a");
+        Map<UUID,TestPojo> expected = new HashMap<UUID,TestPojo>();
+        for (int i = 0; i < 20; i++) {
+            UUID rowKey = UUID.randomUUID();
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            daoSupport.writeToPath(rowKey, path, testObject);
+            daoSupport.writeToPath(rowKey, daoSupport.createPath("b"), "other");
+            expected.put(rowKey, testObject);
+        }
+        // a row without data at the path
+        daoSupport.writeToPath(UUID.randomUUID(), daoSupport.createPath("b"), "other");
+
+        Map<UUID,TestPojo> result = new HashMap<UUID,TestPojo>();
+        CloseableIterator<Map.Entry<UUID,TestPojo>> iterator = scanSupport.scan(path,
+                                                                               new TypeReference<TestPojo>() { });
+        try {
+            while (iterator.hasNext()) {
+                Map.Entry<UUID,TestPojo> entry = iterator.next();
+                assertNull(result.put(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(result, expected);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldWriteDecomposedColumnsInBatch() throws Exception {
+        UUID rowKey = UUID.randomUUID();
+        Map<Path,Object> columns = new LinkedHashMap<Path,Object>();
+        columns.put(daoSupport.createPath("a", "x"), 42);
+        columns.put(daoSupport.createPath("a", "y"), ObjectUtils.NULL);
+        columns.put(daoSupport.createPath("b"), "value");
+
+        BatchContext batchContext = daoSupport.beginBatch();
+        daoSupport.writeColumns(rowKey, columns, batchContext);
+        daoSupport.applyBatch(batchContext);
+
+        Map<String,Object> expected = new HashMap<String,Object>();
+        expected.put("x", 42);
+        expected.put("y", null);
+        assertEquals(daoSupport.readFromPath(rowKey, daoSupport.createPath("a"), new TypeReference<Object>() { }),
+                     expected);
+        assertEquals(daoSupport.readFromPath(rowKey, daoSupport.createPath("b"), new TypeReference<String>() { }),
+                     "value");
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScanRowKeys() throws Exception {
+        CqlStructuredDataSupport<UUID> scanSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                         ConsistencyLevel.QUORUM,
+                                                                                         session);
+        // a small page size splits rows across pages, and some partitions are wider than a page
+        scanSupport.setTokenRing(TokenRing.RANDOM);
+        scanSupport.setScanPageSize(3);
+        scanSupport.setScanParallelism(2);
+
+        Set<UUID> expected = new HashSet<UUID>();
+        for (int i = 0; i < 20; i++) {
+            UUID rowKey = UUID.randomUUID();
+            // rows with data at different paths are all scanned
+            Path path = daoSupport.createPath(i % 2 == 0 ? "a" : "b");
+            daoSupport.writeToPath(rowKey, path, new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2")));
+            expected.add(rowKey);
+        }
+
+        List<UUID> result = new ArrayList<UUID>();
+        CloseableIterator<UUID> iterator = scanSupport.scanRowKeys();
+        try {
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(result.size(), expected.size());
+        assertEquals(new HashSet<UUID>(result), expected);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePath() throws Exception {
+        CqlStructuredDataSupport<UUID> iterateSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                            ConsistencyLevel.QUORUM,
+                                                                                            session);
+        // a small page size splits the path across pages
+        iterateSupport.setReadPageSize(2);
+        UUID rowKey = UUID.randomUUID();
+        Path path = daoSupport.createPath("a");
+        daoSupport.writeToPath(rowKey, path, new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2")));
+        daoSupport.writeToPath(rowKey, daoSupport.createPath("b"), "other");
+
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("b"), true),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("list").withIndices(0), "e1"),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("list").withIndices(1), "e2"),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("n"), 42),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("nullTest"), null),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath("s"), "v1"));
+        reset(session);
+        assertEquals(toList(iterateSupport.iteratePath(rowKey, path)), expected);
+        verify(session, never()).prepare(anyString());
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePathOfShrunkList() throws Exception {
+        CqlStructuredDataSupport<UUID> iterateSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                            ConsistencyLevel.QUORUM,
+                                                                                            session);
+        iterateSupport.setReadPageSize(2);
+        UUID rowKey = UUID.randomUUID();
+        Path path = daoSupport.createPath("x");
+        List<String> longList = new ArrayList<String>();
+        for (int i = 0; i < 12; i++) {
+            longList.add("old" + i);
+        }
+        daoSupport.writeToPath(rowKey, path, longList);
+        daoSupport.writeToPath(rowKey, path, Arrays.asList("1", "2", "3"));
+
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath().withIndices(0), "1"),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath().withIndices(1), "2"),
+                Maps.<Path,Object>immutableEntry(daoSupport.createPath().withIndices(2), "3"));
+        assertEquals(toList(iterateSupport.iteratePath(rowKey, path)), expected);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePathWithPrefixTombstones() throws Exception {
+        CqlStructuredDataSupport<UUID> tombstoneSupport = new CqlStructuredDataSupport<UUID>(tableName,
+                                                                                              ConsistencyLevel.QUORUM,
+                                                                                              session);
+        tombstoneSupport.setPrefixTombstonesEnabled(true);
+        tombstoneSupport.setReadPageSize(2);
+        UUID rowKey = UUID.randomUUID();
+        Path path = tombstoneSupport.createPath("a");
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("k1", "v1");
+        map.put("k2", "v2");
+        map.put("k3", "v3");
+        tombstoneSupport.writeToPath(rowKey, path, map);
+
+        // the tombstone of a/k1 sorts after the deleted column, and a/k1/x is written after the delete
+        tombstoneSupport.deletePath(rowKey, path.withElements("k1"));
+        tombstoneSupport.writeToPath(rowKey, path.withElements("k1", "x"), "new");
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(tombstoneSupport.createPath("k1", "x"), "new"),
+                Maps.<Path,Object>immutableEntry(tombstoneSupport.createPath("k2"), "v2"),
+                Maps.<Path,Object>immutableEntry(tombstoneSupport.createPath("k3"), "v3"));
+        // the queries are prepared once, not for each read
+        reset(session);
+        assertEquals(toList(tombstoneSupport.iteratePath(rowKey, path)), expected);
+        verify(session, never()).prepare(anyString());
+
+        // deleting an ancestor of the path hides everything under it
+        tombstoneSupport.deletePath(rowKey, path);
+        assertTrue(toList(tombstoneSupport.iteratePath(rowKey, path.withElements("k2"))).isEmpty());
+    }
     @SuppressWarnings("unchecked")
     @Test(groups = {"system"})
     public void convertValueShouldRetainOrderingInMaps() throws Exception {
@@ -215,6 +517,18 @@ public class CqlStructuredDataSupportSystemTest {
         assertEquals(((Map<String,String>)converted).keySet().iterator().next(), "a");
     }
 
+    private static List<Map.Entry<Path,Object>> toList(CloseableIterator<Map.Entry<Path,Object>> iterator) {
+        List<Map.Entry<Path,Object>> list = new ArrayList<Map.Entry<Path,Object>>();
+        try {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return list;
+    }
+
     private void dropAndCreateSchema() {
         Session localSession = cluster.connect();
         try {
@@ -238,7 +552,8 @@ public class CqlStructuredDataSupportSystemTest {
     }
 
     private void verifyConsistency(int numberOfInvocations) {
-        verify(session, times(numberOfInvocations)).execute(queryCaptor.capture());
+        // Session.execute delegates to executeAsync, so this counts both synchronous and asynchronous executions
+        verify(session, times(numberOfInvocations)).executeAsync(queryCaptor.capture());
         for (Query q : queryCaptor.getAllValues()) {
             assertEquals(q.getConsistencyLevel(), ConsistencyLevel.QUORUM);
         }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.cql.dao.CqlStructuredDataSupport;
+
+/**
+ * Load target for CqlStructuredDataSupport over a table with text keys, set up in the same way as the
+ * CQL system tests.
+ */
+class CqlLoadTarget implements LoadTarget {
+    private static final String EMBEDDED_CASSANDRA_HOST = "localhost";
+    private static final int EMBEDDED_CASSANDRA_PORT = 9142;
+    private static final String KEYSPACE = "loadtest_cql";
+    private static final String TABLE = "documents";
+
+    private final Cluster cluster;
+    private final StructuredDataSupport<String> structuredDataSupport;
+
+    CqlLoadTarget() {
+        cluster = Cluster.builder().addContactPoint(EMBEDDED_CASSANDRA_HOST).withPort(EMBEDDED_CASSANDRA_PORT).build();
+        Session localSession = cluster.connect();
+        try {
+            try {
+                localSession.execute("DROP KEYSPACE " + KEYSPACE);
+            } catch (InvalidQueryException ignored) {
+                // doesn't exist
+            }
+            localSession.execute("CREATE KEYSPACE " + KEYSPACE + " WITH replication = " +
+                                         "{'class':'SimpleStrategy', 'replication_factor':1};");
+            localSession.execute("CREATE TABLE " + KEYSPACE + "." + TABLE + " (key text, column1 text, " +
+                                         "value text, PRIMARY KEY (key, column1));");
+        } finally {
+            localSession.shutdown();
+        }
+
+        Session session = cluster.connect(KEYSPACE);
+        structuredDataSupport = new CqlStructuredDataSupport<String>(TABLE, ConsistencyLevel.ONE, session);
+    }
+
+    @Override
+    public StructuredDataSupport<String> getStructuredDataSupport() {
+        return structuredDataSupport;
+    }
+
+    @Override
+    public void close() {
+        cluster.shutdown();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The distributions of the row keys that operations are done on.
+ */
+public enum KeyDistribution {
+    /** Every key is equally likely. */
+    UNIFORM {
+        @Override
+        public KeyGenerator createGenerator(final int keyCount, double exponent) {
+            return new KeyGenerator() {
+                @Override
+                public int next(Random random) {
+                    return random.nextInt(keyCount);
+                }
+            };
+        }
+    },
+    /**
+     * The probability of the key of rank n is proportional to 1/n^exponent, so a few keys are hot and most
+     * are cold.
+     */
+    ZIPFIAN {
+        @Override
+        public KeyGenerator createGenerator(int keyCount, double exponent) {
+            final double[] cumulative = new double[keyCount];
+            double sum = 0.0;
+            for (int i = 0; i < keyCount; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cumulative[i] = sum;
+            }
+            final double total = sum;
+            return new KeyGenerator() {
+                @Override
+                public int next(Random random) {
+                    int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                    return index >= 0 ? index : Math.min(-index - 1, cumulative.length - 1);
+                }
+            };
+        }
+    };
+
+    /**
+     * Create a generator of key indexes in this distribution.
+     *
+     * @param keyCount the number of keys, the indexes generated are from 0 to keyCount - 1
+     * @param exponent the exponent of a zipfian distribution, ignored by other distributions
+     */
+    public abstract KeyGenerator createGenerator(int keyCount, double exponent);
+
+    /** Generates the indexes of row keys. */
+    public interface KeyGenerator {
+        int next(Random random);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates load from several threads. When there is a target rate, each thread schedules its operations at a
+ * fixed interval and waits until an operation is due before starting it; an operation that is late because the
+ * previous one was slow is started immediately, and its response time is still measured from when it was due.
+ * Without a target rate the threads start each operation as soon as the previous one completes, and response
+ * times are the same as service times.
+ */
+public class LoadGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final LoadTestConfig config;
+    private final Workload workload;
+    private final Map<LoadOperation,OperationStats> stats;
+    private final OperationStats totalStats = new OperationStats();
+
+    private long measuredNanos;
+
+    public LoadGenerator(LoadTestConfig config, Workload workload) {
+        this.config = config;
+        this.workload = workload;
+        stats = new EnumMap<LoadOperation,OperationStats>(LoadOperation.class);
+        for (LoadOperation operation : config.getMix().getWeights().keySet()) {
+            stats.put(operation, new OperationStats());
+        }
+    }
+
+    /** Generate load for the warmup and then the measured duration, and wait for all the threads to finish. */
+    public void run() throws InterruptedException {
+        int threadCount = config.getThreads();
+        final long intervalNanos = config.getRate() == 0 ? 0L :
+                TimeUnit.SECONDS.toNanos(threadCount) / config.getRate();
+        final long startNanos = System.nanoTime();
+        final long measureStartNanos = startNanos + TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        final long endNanos = measureStartNanos + TimeUnit.SECONDS.toNanos(config.getDurationSeconds());
+
+        List<Thread> threads = new ArrayList<Thread>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            // stagger the schedules of the threads so the operations are evenly spaced
+            final long firstScheduledNanos = startNanos + intervalNanos * i / threadCount;
+            Thread thread = new Thread("load-generator-" + i) {
+                @Override
+                public void run() {
+                    generate(firstScheduledNanos, intervalNanos, measureStartNanos, endNanos);
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        measuredNanos = endNanos - measureStartNanos;
+    }
+
+    public Map<LoadOperation,OperationStats> getStats() {
+        return stats;
+    }
+
+    public OperationStats getTotalStats() {
+        return totalStats;
+    }
+
+    /** Return the time over which the operations were measured. */
+    public long getMeasuredNanos() {
+        return measuredNanos;
+    }
+
+    private void generate(long firstScheduledNanos, long intervalNanos, long measureStartNanos, long endNanos) {
+        Random random = new Random();
+        KeyDistribution.KeyGenerator keyGenerator = config.getKeyDistribution().createGenerator(config.getKeyCount(),
+                                                                                                config.getExponent());
+        OperationMix mix = config.getMix();
+        long scheduledNanos = firstScheduledNanos;
+        long now = System.nanoTime();
+        while (now < endNanos) {
+            if (intervalNanos == 0L) {
+                scheduledNanos = now;
+            } else {
+                while (now < scheduledNanos) {
+                    LockSupport.parkNanos(scheduledNanos - now);
+                    now = System.nanoTime();
+                }
+            }
+
+            LoadOperation operation = mix.choose(random);
+            String rowKey = "key" + keyGenerator.next(random);
+            boolean failed = false;
+            long startNanos = System.nanoTime();
+            try {
+                operation.execute(workload, rowKey, random);
+            } catch (RuntimeException e) {
+                failed = true;
+                LOG.debug("{} failed on {}", new Object[] {operation, rowKey, e});
+            }
+            now = System.nanoTime();
+
+            if (scheduledNanos >= measureStartNanos && scheduledNanos < endNanos) {
+                stats.get(operation).record(scheduledNanos, startNanos, now, failed);
+                totalStats.record(scheduledNanos, startNanos, now, failed);
+            }
+            scheduledNanos += intervalNanos;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.Random;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.benchmarks.Document;
+
+/**
+ * The operations that are mixed in a load test. Each operation is on one of the paths of a workload in a row.
+ */
+public enum LoadOperation {
+    /** Read a document from a path. */
+    READ {
+        @Override
+        public void execute(Workload workload, String rowKey, Random random) {
+            workload.getStructuredDataSupport().readFromPath(rowKey, workload.getPath(random), DOCUMENT_TYPE);
+        }
+    },
+    /** Write a document to a path. */
+    WRITE {
+        @Override
+        public void execute(Workload workload, String rowKey, Random random) {
+            workload.getStructuredDataSupport().writeToPath(rowKey, workload.getPath(random), workload.getDocument());
+        }
+    },
+    /** Delete the document at a path. */
+    DELETE {
+        @Override
+        public void execute(Workload workload, String rowKey, Random random) {
+            workload.getStructuredDataSupport().deletePath(rowKey, workload.getPath(random));
+        }
+    },
+    /** Write a document to several paths in one batch. */
+    BATCH {
+        @Override
+        public void execute(Workload workload, String rowKey, Random random) {
+            StructuredDataSupport<String> dataSupport = workload.getStructuredDataSupport();
+            BatchContext batchContext = dataSupport.beginBatch();
+            for (int i = 0; i < workload.getBatchSize(); i++) {
+                dataSupport.writeToPath(rowKey, workload.getPath(random), workload.getDocument(), batchContext);
+            }
+            dataSupport.applyBatch(batchContext);
+        }
+    };
+
+    private static final TypeReference<Document> DOCUMENT_TYPE = new TypeReference<Document>() { };
+
+    /**
+     * Execute this operation on a row.
+     *
+     * @param workload the workload that the operation is part of
+     * @param rowKey the key of the row
+     * @param random the random number generator of the calling thread, used for choosing paths
+     */
+    public abstract void execute(Workload workload, String rowKey, Random random);
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.io.File;
+import java.util.Date;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a load test against an embedded Cassandra, for each of the configured implementations in turn, and writes
+ * the results. The arguments are name=value pairs, see {@link LoadTestConfig}.
+ */
+public final class LoadTest {
+    private static final Logger LOG = LoggerFactory.getLogger(LoadTest.class);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromArguments(args);
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+
+        ResultWriter resultWriter = new ResultWriter(config.getOutputDirectory());
+        for (Implementation implementation : config.getImplementations()) {
+            LoadTarget target = implementation.open();
+            try {
+                Workload workload = new Workload(target.getStructuredDataSupport(),
+                                                 config.getPathsPerRow(),
+                                                 config.getShape().create(),
+                                                 config.getBatchSize());
+                LoadGenerator generator = new LoadGenerator(config, workload);
+                LOG.info("Running {} load against {}", config.getMix(), implementation);
+                Date startTime = new Date();
+                generator.run();
+
+                File resultFile = resultWriter.write(config, implementation, startTime, generator);
+                LOG.info("{} total: {}", implementation, generator.getTotalStats().getResponseTimes());
+                LOG.info("Results written to {}", resultFile);
+            } finally {
+                target.close();
+            }
+        }
+        // the embedded Cassandra does not stop its threads
+        System.exit(0);
+    }
+}
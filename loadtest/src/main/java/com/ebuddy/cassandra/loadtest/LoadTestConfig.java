@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ebuddy.cassandra.benchmarks.DocumentShape;
+
+/**
+ * The configuration of a load test, parsed from name=value arguments. Arguments that are not given have defaults:
+ * <pre>
+ *   implementation=thrift,cql     the implementations to run the load against, one after the other
+ *   threads=8                     the number of threads generating load
+ *   rate=1000                     the target operations per second over all threads, 0 for as fast as possible
+ *   warmup=5                      the seconds of load before measuring starts
+ *   duration=30                   the seconds of load that are measured
+ *   keys=10000                    the number of distinct row keys
+ *   distribution=uniform          the distribution of row keys, uniform or zipfian
+ *   exponent=0.99                 the exponent of the zipfian distribution
+ *   shape=small                   the shape of the documents written, see DocumentShape
+ *   paths=4                       the number of distinct paths in each row
+ *   batch=10                      the number of writes in a batch operation
+ *   mix=read=60,write=25,delete=5,batch=10
+ *   output=loadtest-results       the directory the results are written to
+ * </pre>
+ */
+public class LoadTestConfig {
+    private static final Map<String,String> DEFAULTS = createDefaults();
+
+    private final List<Implementation> implementations;
+    private final int threads;
+    private final int rate;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int keyCount;
+    private final KeyDistribution keyDistribution;
+    private final double exponent;
+    private final DocumentShape shape;
+    private final int pathsPerRow;
+    private final int batchSize;
+    private final OperationMix mix;
+    private final File outputDirectory;
+
+    private LoadTestConfig(Map<String,String> arguments) {
+        implementations = new ArrayList<Implementation>();
+        for (String implementation : arguments.get("implementation").split(",")) {
+            implementations.add(Implementation.valueOf(implementation.trim().toUpperCase()));
+        }
+        threads = positive(arguments, "threads");
+        rate = Integer.parseInt(arguments.get("rate"));
+        warmupSeconds = Integer.parseInt(arguments.get("warmup"));
+        durationSeconds = positive(arguments, "duration");
+        keyCount = positive(arguments, "keys");
+        keyDistribution = KeyDistribution.valueOf(arguments.get("distribution").toUpperCase());
+        exponent = Double.parseDouble(arguments.get("exponent"));
+        shape = DocumentShape.valueOf(arguments.get("shape").toUpperCase());
+        pathsPerRow = positive(arguments, "paths");
+        batchSize = positive(arguments, "batch");
+        mix = OperationMix.parse(arguments.get("mix"));
+        outputDirectory = new File(arguments.get("output"));
+        if (rate < 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("rate and warmup must not be negative");
+        }
+    }
+
+    /**
+     * Parse a configuration from arguments of the form name=value.
+     * @throws IllegalArgumentException if an argument is unknown or cannot be parsed
+     */
+    public static LoadTestConfig fromArguments(String... args) {
+        Map<String,String> arguments = new HashMap<String,String>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("expected name=value but was " + arg);
+            }
+            String name = arg.substring(0, separator);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("unknown argument " + name);
+            }
+            arguments.put(name, arg.substring(separator + 1));
+        }
+        return new LoadTestConfig(arguments);
+    }
+
+    public List<Implementation> getImplementations() {
+        return Collections.unmodifiableList(implementations);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getKeyCount() {
+        return keyCount;
+    }
+
+    public KeyDistribution getKeyDistribution() {
+        return keyDistribution;
+    }
+
+    public double getExponent() {
+        return exponent;
+    }
+
+    public DocumentShape getShape() {
+        return shape;
+    }
+
+    public int getPathsPerRow() {
+        return pathsPerRow;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public OperationMix getMix() {
+        return mix;
+    }
+
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    private static int positive(Map<String,String> arguments, String name) {
+        int value = Integer.parseInt(arguments.get(name));
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive");
+        }
+        return value;
+    }
+
+    private static Map<String,String> createDefaults() {
+        Map<String,String> defaults = new HashMap<String,String>();
+        defaults.put("implementation", "thrift,cql");
+        defaults.put("threads", "8");
+        defaults.put("rate", "1000");
+        defaults.put("warmup", "5");
+        defaults.put("duration", "30");
+        defaults.put("keys", "10000");
+        defaults.put("distribution", "uniform");
+        defaults.put("exponent", "0.99");
+        defaults.put("shape", "small");
+        defaults.put("paths", "4");
+        defaults.put("batch", "10");
+        defaults.put("mix", "read=60,write=25,delete=5,batch=10");
+        defaults.put("output", "loadtest-results");
+        return Collections.unmodifiableMap(defaults);
+    }
+}
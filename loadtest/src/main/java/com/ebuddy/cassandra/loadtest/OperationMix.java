@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The relative weights of the operations in a load test, e.g. "read=60,write=25,delete=5,batch=10".
+ */
+public class OperationMix {
+    private final Map<LoadOperation,Integer> weights;
+    private final LoadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    public OperationMix(Map<LoadOperation,Integer> weights) {
+        this.weights = new EnumMap<LoadOperation,Integer>(weights);
+        operations = new LoadOperation[weights.size()];
+        cumulativeWeights = new int[weights.size()];
+        int sum = 0;
+        int i = 0;
+        for (Map.Entry<LoadOperation,Integer> entry : this.weights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("weight of " + entry.getKey() + " is negative");
+            }
+            sum += entry.getValue();
+            operations[i] = entry.getKey();
+            cumulativeWeights[i] = sum;
+            i++;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("operation mix is empty");
+        }
+        totalWeight = sum;
+    }
+
+    /**
+     * Parse an operation mix from comma separated operation=weight pairs.
+     * @throws IllegalArgumentException if the mix cannot be parsed
+     */
+    public static OperationMix parse(String mix) {
+        Map<LoadOperation,Integer> weights = new EnumMap<LoadOperation,Integer>(LoadOperation.class);
+        for (String pair : mix.split(",")) {
+            String[] nameAndWeight = pair.trim().split("=");
+            if (nameAndWeight.length != 2) {
+                throw new IllegalArgumentException("expected operation=weight but was " + pair);
+            }
+            weights.put(LoadOperation.valueOf(nameAndWeight[0].trim().toUpperCase()),
+                        Integer.valueOf(nameAndWeight[1].trim()));
+        }
+        return new OperationMix(weights);
+    }
+
+    /** Choose an operation at random according to the weights. */
+    public LoadOperation choose(Random random) {
+        int value = random.nextInt(totalWeight);
+        int i = 0;
+        while (cumulativeWeights[i] <= value) {
+            i++;
+        }
+        return operations[i];
+    }
+
+    public Map<LoadOperation,Integer> getWeights() {
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<LoadOperation,Integer> entry : weights.entrySet()) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(entry.getKey().name().toLowerCase()).append('=').append(entry.getValue());
+        }
+        return builder.toString();
+    }
+}
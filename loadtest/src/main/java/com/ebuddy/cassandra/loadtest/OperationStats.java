@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ebuddy.cassandra.metrics.Histogram;
+
+/**
+ * The latencies of one kind of operation in a load test. The response time is measured from when the operation
+ * was scheduled to start rather than when it actually started, so the time an operation waits behind a slow one
+ * is included and the latencies are corrected for coordinated omission. The service time is measured from when
+ * the operation actually started.
+ */
+public class OperationStats {
+    private static final double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p999"};
+
+    private final Histogram responseTimes = new Histogram();
+    private final Histogram serviceTimes = new Histogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Record an operation.
+     *
+     * @param scheduledNanos when the operation was scheduled to start
+     * @param startNanos when the operation started
+     * @param endNanos when the operation completed
+     * @param failed true if the operation threw an exception
+     */
+    public void record(long scheduledNanos, long startNanos, long endNanos, boolean failed) {
+        responseTimes.record(endNanos - scheduledNanos);
+        serviceTimes.record(endNanos - startNanos);
+        if (failed) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public long getCount() {
+        return responseTimes.getCount();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Histogram getResponseTimes() {
+        return responseTimes;
+    }
+
+    public Histogram getServiceTimes() {
+        return serviceTimes;
+    }
+
+    /**
+     * Summarize these stats for the results file, with latencies in microseconds.
+     * @param elapsedNanos the time over which the operations were measured, for the throughput
+     */
+    public Map<String,Object> summarize(long elapsedNanos) {
+        Map<String,Object> summary = new LinkedHashMap<String,Object>();
+        summary.put("count", getCount());
+        summary.put("errors", getErrors());
+        summary.put("throughput", getCount() * (double)TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        summary.put("responseTimeMicros", summarize(responseTimes));
+        summary.put("serviceTimeMicros", summarize(serviceTimes));
+        return summary;
+    }
+
+    private static Map<String,Object> summarize(Histogram histogram) {
+        Map<String,Object> summary = new LinkedHashMap<String,Object>();
+        summary.put("mean", histogram.getMean() / 1000.0);
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            summary.put(PERCENTILE_NAMES[i], TimeUnit.NANOSECONDS.toMicros(histogram.getPercentile(PERCENTILES[i])));
+        }
+        summary.put("max", TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+        return summary;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.ebuddy.cassandra.metrics.Histogram;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Writes the results of load tests so that runs can be compared: a JSON file with the configuration and the
+ * results of each run, and a CSV file with a line for each operation of each run, appended to by every run.
+ */
+public class ResultWriter {
+    static final String CSV_FILE_NAME = "results.csv";
+    private static final String CSV_HEADER = "run,implementation,shape,distribution,threads,targetRate,operation," +
+            "count,errors,throughput,p50Micros,p90Micros,p99Micros,p999Micros,maxMicros,serviceP99Micros";
+
+    private final File outputDirectory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public ResultWriter(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Write the results of a run.
+     * @return the JSON file that was written
+     */
+    public File write(LoadTestConfig config, Implementation implementation, Date startTime, LoadGenerator generator)
+            throws IOException {
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("cannot create " + outputDirectory);
+        }
+        String run = formatTimestamp(startTime);
+
+        Map<String,Object> results = new LinkedHashMap<String,Object>();
+        results.put("run", run);
+        results.put("implementation", implementation.name().toLowerCase());
+        results.put("config", summarize(config));
+        Map<String,Object> operations = new LinkedHashMap<String,Object>();
+        for (Map.Entry<LoadOperation,OperationStats> entry : generator.getStats().entrySet()) {
+            operations.put(entry.getKey().name().toLowerCase(), entry.getValue().summarize(generator.getMeasuredNanos()));
+        }
+        results.put("operations", operations);
+        results.put("total", generator.getTotalStats().summarize(generator.getMeasuredNanos()));
+
+        File jsonFile = new File(outputDirectory, implementation.name().toLowerCase() + "-" + run + ".json");
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(jsonFile, results);
+
+        File csvFile = new File(outputDirectory, CSV_FILE_NAME);
+        boolean newFile = !csvFile.exists();
+        Writer writer = new FileWriter(csvFile, true);
+        try {
+            if (newFile) {
+                writer.write(CSV_HEADER + "\n");
+            }
+            String prefix = run + "," + implementation.name().toLowerCase() + "," +
+                    config.getShape().name().toLowerCase() + "," +
+                    config.getKeyDistribution().name().toLowerCase() + "," + config.getThreads() + "," +
+                    config.getRate() + ",";
+            for (Map.Entry<LoadOperation,OperationStats> entry : generator.getStats().entrySet()) {
+                writer.write(prefix + toCsv(entry.getKey().name().toLowerCase(), entry.getValue(), generator) + "\n");
+            }
+            writer.write(prefix + toCsv("total", generator.getTotalStats(), generator) + "\n");
+        } finally {
+            writer.close();
+        }
+        return jsonFile;
+    }
+
+    private static String toCsv(String operation, OperationStats stats, LoadGenerator generator) {
+        Histogram responseTimes = stats.getResponseTimes();
+        double throughput = stats.getCount() * 1.0e9 / generator.getMeasuredNanos();
+        return operation + "," + stats.getCount() + "," + stats.getErrors() + "," +
+                String.format("%.1f", throughput) + "," +
+                micros(responseTimes.getPercentile(50.0)) + "," + micros(responseTimes.getPercentile(90.0)) + "," +
+                micros(responseTimes.getPercentile(99.0)) + "," + micros(responseTimes.getPercentile(99.9)) + "," +
+                micros(responseTimes.getMax()) + "," + micros(stats.getServiceTimes().getPercentile(99.0));
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000L;
+    }
+
+    private static Map<String,Object> summarize(LoadTestConfig config) {
+        Map<String,Object> summary = new LinkedHashMap<String,Object>();
+        summary.put("threads", config.getThreads());
+        summary.put("targetRate", config.getRate());
+        summary.put("warmupSeconds", config.getWarmupSeconds());
+        summary.put("durationSeconds", config.getDurationSeconds());
+        summary.put("keys", config.getKeyCount());
+        summary.put("distribution", config.getKeyDistribution().name().toLowerCase());
+        summary.put("exponent", config.getExponent());
+        summary.put("shape", config.getShape().name().toLowerCase());
+        summary.put("pathsPerRow", config.getPathsPerRow());
+        summary.put("batchSize", config.getBatchSize());
+        summary.put("mix", config.getMix().toString());
+        return summary;
+    }
+
+    private static String formatTimestamp(Date date) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.dao.ColumnFamilyTemplate;
+import com.ebuddy.cassandra.dao.StructureSerializer;
+import com.ebuddy.cassandra.dao.ThriftStructuredDataSupport;
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.cassandra.service.CassandraHostConfigurator;
+import me.prettyprint.hector.api.Cluster;
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.ddl.ColumnFamilyDefinition;
+import me.prettyprint.hector.api.ddl.ComparatorType;
+import me.prettyprint.hector.api.exceptions.HInvalidRequestException;
+import me.prettyprint.hector.api.factory.HFactory;
+
+/**
+ * Load target for ThriftStructuredDataSupport over a standard column family, set up in the same way as the
+ * Thrift system tests.
+ */
+class ThriftLoadTarget implements LoadTarget {
+    private static final String CLUSTER_NAME = "Test Cluster";
+    private static final String EMBEDDED_CASSANDRA_HOST = "localhost:9171";
+    private static final String KEYSPACE = "loadtest_thrift";
+    private static final String COLUMN_FAMILY = "documents";
+
+    private final Cluster cluster;
+    private final StructuredDataSupport<String> structuredDataSupport;
+
+    ThriftLoadTarget() {
+        cluster = HFactory.getOrCreateCluster(CLUSTER_NAME, new CassandraHostConfigurator(EMBEDDED_CASSANDRA_HOST));
+        try {
+            cluster.dropKeyspace(KEYSPACE, true);
+        } catch (HInvalidRequestException ignored) {
+            // doesn't exist
+        }
+        cluster.addKeyspace(HFactory.createKeyspaceDefinition(KEYSPACE), true);
+
+        ColumnFamilyDefinition columnFamilyDefinition = HFactory.createColumnFamilyDefinition(KEYSPACE,
+                                                                                              COLUMN_FAMILY,
+                                                                                              ComparatorType.UTF8TYPE);
+        columnFamilyDefinition.setDefaultValidationClass("UTF8Type");
+        columnFamilyDefinition.setKeyValidationClass("UTF8Type");
+        cluster.addColumnFamily(columnFamilyDefinition, true);
+
+        Keyspace keyspace = HFactory.createKeyspace(KEYSPACE, cluster);
+        ColumnFamilyTemplate<String,String,Object> template =
+                new ColumnFamilyTemplate<String,String,Object>(keyspace,
+                                                               COLUMN_FAMILY,
+                                                               StringSerializer.get(),
+                                                               StringSerializer.get(),
+                                                               StructureSerializer.get());
+        structuredDataSupport = new ThriftStructuredDataSupport<String>(template);
+    }
+
+    @Override
+    public StructuredDataSupport<String> getStructuredDataSupport() {
+        return structuredDataSupport;
+    }
+
+    @Override
+    public void close() {
+        HFactory.shutdownCluster(cluster);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import java.util.Random;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.benchmarks.Document;
+
+/**
+ * What the operations of a load test are done with: the structured data support under test, the paths
+ * in each row, and the document that is written.
+ */
+public class Workload {
+    private final StructuredDataSupport<String> structuredDataSupport;
+    private final Path[] paths;
+    private final Document document;
+    private final int batchSize;
+
+    public Workload(StructuredDataSupport<String> structuredDataSupport,
+                    int pathsPerRow,
+                    Document document,
+                    int batchSize) {
+        this.structuredDataSupport = structuredDataSupport;
+        this.document = document;
+        this.batchSize = batchSize;
+        paths = new Path[pathsPerRow];
+        for (int i = 0; i < pathsPerRow; i++) {
+            paths[i] = structuredDataSupport.createPath("documents", "d" + i);
+        }
+    }
+
+    public StructuredDataSupport<String> getStructuredDataSupport() {
+        return structuredDataSupport;
+    }
+
+    /** Choose one of the paths in a row at random. */
+    public Path getPath(Random random) {
+        return paths[random.nextInt(paths.length)];
+    }
+
+    public Document getDocument() {
+        return document;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+}
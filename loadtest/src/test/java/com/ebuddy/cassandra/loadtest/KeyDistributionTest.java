@@ -0,0 +1,59 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for KeyDistribution.
+ */
+public class KeyDistributionTest {
+    private static final int KEYS = 1000;
+    private static final int SAMPLES = 100000;
+
+    @Test(groups = "unit")
+    public void uniformShouldGenerateEveryKeyAboutEquallyOften() throws Exception {
+        int[] counts = sample(KeyDistribution.UNIFORM.createGenerator(KEYS, 0.0));
+
+        for (int count : counts) {
+            assertTrue(count > 50 && count < 150, "count was " + count);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void zipfianShouldFavorTheFirstKeys() throws Exception {
+        int[] counts = sample(KeyDistribution.ZIPFIAN.createGenerator(KEYS, 0.99));
+
+        // with an exponent of 0.99 the first key is chosen about 13% of the time, the 100th about 0.14%
+        assertTrue(counts[0] > 11000 && counts[0] < 15000, "count was " + counts[0]);
+        assertTrue(counts[0] > counts[1] && counts[1] > counts[99]);
+        assertTrue(counts[99] > 50 && counts[99] < 250, "count was " + counts[99]);
+    }
+
+    private static int[] sample(KeyDistribution.KeyGenerator generator) {
+        Random random = new Random(42L);
+        int[] counts = new int[KEYS];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[generator.next(random)]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.loadtest;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for OperationMix.
+ */
+public class OperationMixTest {
+
+    @Test(groups = "unit")
+    public void shouldChooseOperationsInProportionToTheirWeights() throws Exception {
+        OperationMix mix = OperationMix.parse("read=75, write=25, delete=0");
+        Random random = new Random(42L);
+        Map<LoadOperation,Integer> counts = new EnumMap<LoadOperation,Integer>(LoadOperation.class);
+        for (LoadOperation operation : LoadOperation.values()) {
+            counts.put(operation, 0);
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            LoadOperation operation = mix.choose(random);
+            counts.put(operation, counts.get(operation) + 1);
+        }
+
+        assertTrue(counts.get(LoadOperation.READ) > 7200 && counts.get(LoadOperation.READ) < 7800);
+        assertEquals(counts.get(LoadOperation.READ) + counts.get(LoadOperation.WRITE), 10000);
+        assertEquals(mix.toString(), "read=75,write=25,delete=0");
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectMalformedMix() throws Exception {
+        OperationMix.parse("read:50");
+    }
+
+    @Test(groups = "unit", expectedExceptions = IllegalArgumentException.class)
+    public void shouldRejectEmptyMix() throws Exception {
+        OperationMix.parse("read=0");
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nullable;
+
+import com.ebuddy.cassandra.scan.TokenRange;
+
+/**
+ * Records the progress of a migration per token range, so an interrupted migration can be resumed.
+ * Implementations must be thread safe, since the token ranges are migrated in parallel.
+ */
+public interface CheckpointStore {
+
+    /**
+     * Whether all the rows in a token range have been migrated.
+     */
+    boolean isCompleted(TokenRange range) throws IOException;
+
+    /**
+     * Get the serialized key of the last row migrated in a token range.
+     *
+     * @return the row key, or null if no rows have been migrated in the range
+     */
+    @Nullable
+    ByteBuffer getLastKey(TokenRange range) throws IOException;
+
+    /**
+     * Record that all the rows in a token range up to and including a row have been migrated.
+     *
+     * @param range the token range
+     * @param lastKey the serialized key of the last row migrated
+     */
+    void saveLastKey(TokenRange range, ByteBuffer lastKey) throws IOException;
+
+    /**
+     * Record that all the rows in a token range have been migrated.
+     */
+    void markCompleted(TokenRange range) throws IOException;
+}
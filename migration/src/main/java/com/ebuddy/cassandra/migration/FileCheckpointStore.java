@@ -0,0 +1,126 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Properties;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.scan.TokenRange;
+
+/**
+ * A CheckpointStore that keeps the progress in a properties file, so a migration can be resumed by another
+ * process after it was stopped. The file is rewritten on each checkpoint, by writing a temporary file and
+ * renaming it, so an interrupted write leaves the previous checkpoints intact.
+ *
+ * The token ranges are identified by their start and end tokens, so a migration can only be resumed
+ * with the same number of token ranges.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private static final String COMPLETED = "completed";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final File file;
+    private final File temporaryFile;
+    private final Properties checkpoints = new Properties();
+
+    /**
+     * Create a store that reads the checkpoints from a file, if it exists.
+     *
+     * @param file the file in which the checkpoints are kept
+     * @throws IOException if the file exists but cannot be read
+     */
+    public FileCheckpointStore(File file) throws IOException {
+        Validate.notNull(file);
+        this.file = file;
+        temporaryFile = new File(file.getPath() + ".tmp");
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                checkpoints.load(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized boolean isCompleted(TokenRange range) {
+        return COMPLETED.equals(checkpoints.getProperty(range.toString()));
+    }
+
+    @Nullable
+    @Override
+    public synchronized ByteBuffer getLastKey(TokenRange range) {
+        String checkpoint = checkpoints.getProperty(range.toString());
+        if (checkpoint == null || COMPLETED.equals(checkpoint)) {
+            return null;
+        }
+        return fromHex(checkpoint);
+    }
+
+    @Override
+    public synchronized void saveLastKey(TokenRange range, ByteBuffer lastKey) throws IOException {
+        checkpoints.setProperty(range.toString(), toHex(lastKey));
+        store();
+    }
+
+    @Override
+    public synchronized void markCompleted(TokenRange range) throws IOException {
+        checkpoints.setProperty(range.toString(), COMPLETED);
+        store();
+    }
+
+    private void store() throws IOException {
+        OutputStream out = new FileOutputStream(temporaryFile);
+        try {
+            checkpoints.store(out, "migration checkpoints");
+        } finally {
+            out.close();
+        }
+        // renaming over an existing file fails on some platforms
+        if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file))) {
+            throw new IOException("could not rename " + temporaryFile + " to " + file);
+        }
+    }
+
+    private static String toHex(ByteBuffer bytes) {
+        StringBuilder hex = new StringBuilder(bytes.remaining() * 2);
+        for (int i = bytes.position(); i < bytes.limit(); i++) {
+            int b = bytes.get(i) & 0xFF;
+            hex.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return hex.toString();
+    }
+
+    private static ByteBuffer fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte)Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+}
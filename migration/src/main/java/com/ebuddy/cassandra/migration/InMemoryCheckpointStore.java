@@ -0,0 +1,60 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import com.ebuddy.cassandra.scan.TokenRange;
+
+/**
+ * A CheckpointStore that keeps the progress in memory, so a migration can only be resumed by the same
+ * process, e.g. after a failed range has been retried.
+ */
+public class InMemoryCheckpointStore implements CheckpointStore {
+    private final ConcurrentMap<TokenRange,ByteBuffer> lastKeys = new ConcurrentHashMap<TokenRange,ByteBuffer>();
+    private final Set<TokenRange> completedRanges =
+            Collections.newSetFromMap(new ConcurrentHashMap<TokenRange,Boolean>());
+
+    @Override
+    public boolean isCompleted(TokenRange range) {
+        return completedRanges.contains(range);
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getLastKey(TokenRange range) {
+        ByteBuffer lastKey = lastKeys.get(range);
+        return lastKey == null ? null : lastKey.duplicate();
+    }
+
+    @Override
+    public void saveLastKey(TokenRange range, ByteBuffer lastKey) {
+        lastKeys.put(range, lastKey.duplicate());
+    }
+
+    @Override
+    public void markCompleted(TokenRange range) {
+        completedRanges.add(range);
+        lastKeys.remove(range);
+    }
+}
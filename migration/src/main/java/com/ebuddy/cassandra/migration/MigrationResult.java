@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import java.util.List;
+
+/**
+ * The counts of a migration run. The counts do not include the rows migrated by previous runs that were
+ * resumed from checkpoints.
+ *
+ * @param <K> the type of the row key
+ */
+public final class MigrationResult<K> {
+    private final int rangeCount;
+    private final int skippedRangeCount;
+    private final long rowCount;
+    private final long columnCount;
+    private final long verifiedRowCount;
+    private final long mismatchCount;
+    private final List<K> mismatchedRowKeys;
+
+    MigrationResult(int rangeCount,
+                    int skippedRangeCount,
+                    long rowCount,
+                    long columnCount,
+                    long verifiedRowCount,
+                    long mismatchCount,
+                    List<K> mismatchedRowKeys) {
+        this.rangeCount = rangeCount;
+        this.skippedRangeCount = skippedRangeCount;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.verifiedRowCount = verifiedRowCount;
+        this.mismatchCount = mismatchCount;
+        this.mismatchedRowKeys = mismatchedRowKeys;
+    }
+
+    /** The number of token ranges of the source column family. */
+    public int getRangeCount() {
+        return rangeCount;
+    }
+
+    /** The number of token ranges that were skipped because a previous run completed them. */
+    public int getSkippedRangeCount() {
+        return skippedRangeCount;
+    }
+
+    /** The number of rows migrated. */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /** The number of columns migrated. */
+    public long getColumnCount() {
+        return columnCount;
+    }
+
+    /** The number of migrated rows that were read back from the target table and compared with the source. */
+    public long getVerifiedRowCount() {
+        return verifiedRowCount;
+    }
+
+    /** The number of verified rows whose checksum in the target table differs from the source. */
+    public long getMismatchCount() {
+        return mismatchCount;
+    }
+
+    /** The keys of the first rows whose checksum in the target table differs from the source. */
+    public List<K> getMismatchedRowKeys() {
+        return mismatchedRowKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationResult{rangeCount=" + rangeCount +
+                ", skippedRangeCount=" + skippedRangeCount +
+                ", rowCount=" + rowCount +
+                ", columnCount=" + columnCount +
+                ", verifiedRowCount=" + verifiedRowCount +
+                ", mismatchCount=" + mismatchCount + '}';
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.timestamp;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.ttl;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.unloggedBatch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.KeyRange;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
+import org.apache.cassandra.thrift.SuperColumn;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.Batch;
+import com.datastax.driver.core.querybuilder.Insert;
+import com.ebuddy.cassandra.scan.TokenRange;
+import com.ebuddy.cassandra.scan.TokenRing;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import me.prettyprint.cassandra.model.ExecutingKeyspace;
+import me.prettyprint.cassandra.model.KeyspaceOperationCallback;
+import me.prettyprint.cassandra.service.KeyspaceService;
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.Serializer;
+
+/**
+ * Migrates the data of a super column family written with ThriftSuperStructuredDataSupport to a CQL table
+ * with the layout of CqlStructuredDataSupport, so the objects can be read with readFromPath from the table.
+ *
+ * The source column family is read in token ranges, which are migrated in parallel, a page of rows at a time.
+ * Each subcolumn is written as a CQL row with the path <code>superColumnName/subcolumnName</code>, which is the
+ * path of the value in ThriftSuperStructuredDataSupport. The values are copied as is, without being converted
+ * to and from objects, since both layouts store the same UTF-8 encoded strings. The columns keep their write
+ * timestamps, so rows that are updated through the target table during the migration are not overwritten by
+ * older values; columns with a time to live are written with their original time to live, since Thrift does
+ * not return the time remaining.
+ *
+ * The progress of each token range is saved in a CheckpointStore after each page of rows, so a migration that
+ * is stopped can be resumed by another migrator with the same checkpoint store and number of token ranges.
+ * A sample of the migrated rows can be read back from the target table and compared with the source by a
+ * checksum of their paths and values.
+ *
+ * The names of the super columns and subcolumns of the source column family must be UTF-8 strings.
+ *
+ * @param <K> the type of the row key
+ */
+public class SuperColumnFamilyMigrator<K> {
+    private static final Logger LOG = LoggerFactory.getLogger(SuperColumnFamilyMigrator.class);
+
+    private static final String DEFAULT_VALUE_COLUMN = "value";
+    private static final String DEFAULT_PATH_COLUMN = "column1";
+    private static final String DEFAULT_PARTITION_KEY_COLUMN = "key";
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_RANGE_COUNT = 64;
+    private static final int DEFAULT_ROW_PAGE_SIZE = 100;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    private static final int MAX_MISMATCHED_ROW_KEYS = 100;
+    private static final int ALL = Integer.MAX_VALUE;
+    private static final char PATH_DELIMITER = '/';
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final ExecutingKeyspace sourceKeyspace;
+    private final String sourceColumnFamily;
+    private final Serializer<K> keySerializer;
+    private final Session session;
+    private final String tableName;
+    private final String partitionKeyColumnName;
+    private final String pathColumnName;
+    private final String valueColumnName;
+    private final ConsistencyLevel consistencyLevel;
+    private final PreparedStatement readRowQuery;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int rangeCount = DEFAULT_RANGE_COUNT;
+    private int rowPageSize = DEFAULT_ROW_PAGE_SIZE;
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private TokenRing tokenRing = TokenRing.MURMUR3;
+    private CheckpointStore checkpointStore = new InMemoryCheckpointStore();
+    @Nullable
+    private RateLimiter rateLimiter;
+    private double verificationSampleRate;
+
+    /**
+     * Used for tables that are upgraded from a thrift dynamic column family that still have the default column names.
+     *
+     * @param sourceKeyspace the keyspace of the super column family, which must be created by HFactory
+     * @param sourceColumnFamily the name of the super column family
+     * @param keySerializer the serializer of the row keys
+     * @param session a Session configured with the keyspace of the target table
+     * @param tableName the name of the target table
+     * @param consistencyLevel the consistency level of the writes and verification reads of the target table
+     */
+    public SuperColumnFamilyMigrator(Keyspace sourceKeyspace,
+                                     String sourceColumnFamily,
+                                     Serializer<K> keySerializer,
+                                     Session session,
+                                     String tableName,
+                                     ConsistencyLevel consistencyLevel) {
+        this(sourceKeyspace,
+             sourceColumnFamily,
+             keySerializer,
+             session,
+             tableName,
+             DEFAULT_PARTITION_KEY_COLUMN,
+             DEFAULT_PATH_COLUMN,
+             DEFAULT_VALUE_COLUMN,
+             consistencyLevel);
+    }
+
+    /**
+     * Construct a migrator to a target table with the specified column names.
+     */
+    public SuperColumnFamilyMigrator(Keyspace sourceKeyspace,
+                                     String sourceColumnFamily,
+                                     Serializer<K> keySerializer,
+                                     Session session,
+                                     String tableName,
+                                     String partitionKeyColumnName,
+                                     String pathColumnName,
+                                     String valueColumnName,
+                                     ConsistencyLevel consistencyLevel) {
+        Validate.isTrue(sourceKeyspace instanceof ExecutingKeyspace,
+                        "token range queries require a Keyspace created by HFactory");
+        Validate.notEmpty(sourceColumnFamily);
+        Validate.notEmpty(tableName);
+        this.sourceKeyspace = (ExecutingKeyspace)sourceKeyspace;
+        this.sourceColumnFamily = sourceColumnFamily;
+        this.keySerializer = keySerializer;
+        this.session = session;
+        this.tableName = tableName;
+        this.partitionKeyColumnName = partitionKeyColumnName;
+        this.pathColumnName = pathColumnName;
+        this.valueColumnName = valueColumnName;
+        this.consistencyLevel = consistencyLevel;
+
+        readRowQuery = session.prepare(select(pathColumnName, valueColumnName)
+                                               .from(tableName)
+                                               .where(eq(partitionKeyColumnName, bindMarker()))
+                                               .getQueryString());
+        readRowQuery.setConsistencyLevel(consistencyLevel);
+    }
+
+    /**
+     * Set the number of token ranges that are migrated concurrently. The default is 4.
+     */
+    public void setParallelism(int parallelism) {
+        Validate.isTrue(parallelism > 0, "parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Set the number of token ranges the token ring is split into, each of which is checkpointed separately.
+     * A migration can only be resumed with the same number of token ranges. The default is 64.
+     */
+    public void setRangeCount(int rangeCount) {
+        Validate.isTrue(rangeCount > 0, "rangeCount must be positive");
+        this.rangeCount = rangeCount;
+    }
+
+    /**
+     * Set the maximum number of rows read from the source in one query, after which the progress of the token
+     * range is checkpointed. The default is 100.
+     */
+    public void setRowPageSize(int rowPageSize) {
+        Validate.isTrue(rowPageSize > 1, "rowPageSize must be greater than one");
+        this.rowPageSize = rowPageSize;
+    }
+
+    /**
+     * Set the maximum number of columns written to the target table in one batch. The default is 100.
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        Validate.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Set the token ring of the partitioner of the cluster. The default is MURMUR3.
+     */
+    public void setTokenRing(TokenRing tokenRing) {
+        Validate.notNull(tokenRing);
+        this.tokenRing = tokenRing;
+    }
+
+    /**
+     * Set the store of the progress of the token ranges. The default keeps the progress in memory.
+     */
+    public void setCheckpointStore(CheckpointStore checkpointStore) {
+        Validate.notNull(checkpointStore);
+        this.checkpointStore = checkpointStore;
+    }
+
+    /**
+     * Limit the rate at which columns are written to the target table, over all the token ranges.
+     * The rate is not limited by default.
+     *
+     * @param maxColumnsPerSecond the target rate, must be positive
+     */
+    public void setMaxColumnsPerSecond(double maxColumnsPerSecond) {
+        Validate.isTrue(maxColumnsPerSecond > 0, "maxColumnsPerSecond must be positive");
+        rateLimiter = RateLimiter.create(maxColumnsPerSecond);
+    }
+
+    /**
+     * Set the fraction of the migrated rows that are read back from the target table and compared with the
+     * source. The default is 0, i.e. no rows are verified.
+     */
+    public void setVerificationSampleRate(double verificationSampleRate) {
+        Validate.isTrue(verificationSampleRate >= 0 && verificationSampleRate <= 1,
+                        "verificationSampleRate must be between 0 and 1");
+        this.verificationSampleRate = verificationSampleRate;
+    }
+
+    /**
+     * Migrate the token ranges that are not completed in the checkpoint store.
+     * If a token range fails, the ranges being migrated are stopped, and the migration can be resumed from the
+     * last checkpoints.
+     *
+     * @return the counts of the rows migrated and verified
+     * @throws IOException if a checkpoint could not be saved or the migration was interrupted
+     */
+    public MigrationResult<K> migrate() throws IOException {
+        List<TokenRange> ranges = tokenRing.split(rangeCount);
+        final Progress progress = new Progress();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactoryBuilder()
+                .setNameFormat("migration-%d")
+                .build());
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>(ranges.size());
+            for (final TokenRange range : ranges) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        migrateRange(range, progress);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                getResult(future);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while migrating", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return progress.toResult(ranges.size());
+    }
+
+    //////// Private Methods //////////
+
+    private static void getResult(Future<Void> future) throws IOException, InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            throw new IOException("migration of a token range failed", cause);
+        }
+    }
+
+    private void migrateRange(TokenRange range, Progress progress) throws IOException {
+        if (checkpointStore.isCompleted(range)) {
+            progress.skippedRangeCount.incrementAndGet();
+            return;
+        }
+        Random random = new Random();
+        // the start key of a page is inclusive, so the last row of the previous page is read again and skipped
+        ByteBuffer lastKey = checkpointStore.getLastKey(range);
+        int pageSize;
+        do {
+            Map<ByteBuffer,List<SuperColumn>> rows = readRows(range, lastKey);
+            pageSize = rows.size();
+            for (Map.Entry<ByteBuffer,List<SuperColumn>> row : rows.entrySet()) {
+                if (!row.getKey().equals(lastKey)) {
+                    migrateRow(row.getKey(), row.getValue(), random, progress);
+                }
+            }
+            ByteBuffer pageLastKey = lastKeyOf(rows);
+            if (pageLastKey == null || pageLastKey.equals(lastKey)) {
+                break;
+            }
+            lastKey = pageLastKey;
+            checkpointStore.saveLastKey(range, lastKey);
+        } while (pageSize >= rowPageSize);
+
+        checkpointStore.markCompleted(range);
+        LOG.debug("Migrated token range {}", range);
+    }
+
+    @Nullable
+    private static ByteBuffer lastKeyOf(Map<ByteBuffer,?> rows) {
+        ByteBuffer lastKey = null;
+        for (ByteBuffer key : rows.keySet()) {
+            lastKey = key;
+        }
+        return lastKey;
+    }
+
+    /**
+     * Read a page of rows with all their super columns, starting from a row key or from the start of a token range.
+     */
+    private Map<ByteBuffer,List<SuperColumn>> readRows(TokenRange range, @Nullable ByteBuffer startKey) {
+        final ColumnParent columnParent = new ColumnParent(sourceColumnFamily);
+        final SlicePredicate predicate = new SlicePredicate();
+        predicate.setSlice_range(new SliceRange(EMPTY, EMPTY, false, ALL));
+
+        final KeyRange keyRange = new KeyRange(rowPageSize);
+        if (startKey == null) {
+            keyRange.setStart_token(range.getStartToken().toString());
+        } else {
+            keyRange.setStart_key(startKey.duplicate());
+        }
+        keyRange.setEnd_token(range.getEndToken().toString());
+
+        return sourceKeyspace.doExecute(new KeyspaceOperationCallback<Map<ByteBuffer,List<SuperColumn>>>() {
+            @Override
+            public Map<ByteBuffer,List<SuperColumn>> doInKeyspace(KeyspaceService ks) {
+                return ks.getSuperRangeSlices(columnParent, predicate, keyRange);
+            }
+        }).get();
+    }
+
+    private void migrateRow(ByteBuffer keyBytes, List<SuperColumn> superColumns, Random random, Progress progress) {
+        // a row without super columns is a deleted row that has not been compacted away yet
+        if (superColumns.isEmpty()) {
+            return;
+        }
+        K rowKey = keySerializer.fromByteBuffer(keyBytes.duplicate());
+        boolean verify = verificationSampleRate > 0 && random.nextDouble() < verificationSampleRate;
+        SortedMap<String,String> sourceColumns = verify ? new TreeMap<String,String>() : null;
+
+        Batch batch = unloggedBatch();
+        int batchSize = 0;
+        for (SuperColumn superColumn : superColumns) {
+            String superColumnName = decode(superColumn.bufferForName());
+            for (Column column : superColumn.getColumns()) {
+                String path = superColumnName + PATH_DELIMITER + decode(column.bufferForName());
+                String value = decode(column.bufferForValue());
+
+                Insert insert = insertInto(tableName)
+                        .value(partitionKeyColumnName, rowKey)
+                        .value(pathColumnName, path)
+                        .value(valueColumnName, value);
+                Insert.Options options = insert.using(timestamp(column.getTimestamp()));
+                if (column.isSetTtl()) {
+                    options.and(ttl(column.getTtl()));
+                }
+                batch.add(insert);
+                if (sourceColumns != null) {
+                    sourceColumns.put(path, value);
+                }
+
+                if (++batchSize == maxBatchSize) {
+                    executeBatch(batch, batchSize);
+                    progress.columnCount.addAndGet(batchSize);
+                    batch = unloggedBatch();
+                    batchSize = 0;
+                }
+            }
+        }
+        if (batchSize > 0) {
+            executeBatch(batch, batchSize);
+            progress.columnCount.addAndGet(batchSize);
+        }
+        progress.rowCount.incrementAndGet();
+
+        if (sourceColumns != null) {
+            verifyRow(rowKey, sourceColumns, progress);
+        }
+    }
+
+    private void executeBatch(Batch batch, int batchSize) {
+        if (rateLimiter != null) {
+            rateLimiter.acquire(batchSize);
+        }
+        batch.setConsistencyLevel(consistencyLevel);
+        session.execute(batch);
+    }
+
+    private void verifyRow(K rowKey, SortedMap<String,String> sourceColumns, Progress progress) {
+        SortedMap<String,String> targetColumns = new TreeMap<String,String>();
+        for (Row row : session.execute(readRowQuery.bind(rowKey))) {
+            targetColumns.put(row.getString(pathColumnName), row.getString(valueColumnName));
+        }
+        progress.verifiedRowCount.incrementAndGet();
+        if (checksum(sourceColumns) != checksum(targetColumns)) {
+            LOG.warn("Checksum of migrated row {} does not match the source", rowKey);
+            progress.addMismatch(rowKey);
+        }
+    }
+
+    /**
+     * Compute a checksum of the paths and values of a row, in path order.
+     */
+    private static long checksum(SortedMap<String,String> columns) {
+        CRC32 crc = new CRC32();
+        for (Map.Entry<String,String> column : columns.entrySet()) {
+            crc.update(column.getKey().getBytes(UTF8));
+            crc.update(0);
+            crc.update(column.getValue().getBytes(UTF8));
+            crc.update(0);
+        }
+        return crc.getValue();
+    }
+
+    private static String decode(ByteBuffer bytes) {
+        return UTF8.decode(bytes.duplicate()).toString();
+    }
+
+    /**
+     * The counts of a migration run, updated concurrently by the token ranges.
+     */
+    private class Progress {
+        private final AtomicInteger skippedRangeCount = new AtomicInteger();
+        private final AtomicLong rowCount = new AtomicLong();
+        private final AtomicLong columnCount = new AtomicLong();
+        private final AtomicLong verifiedRowCount = new AtomicLong();
+        private final AtomicLong mismatchCount = new AtomicLong();
+        private final List<K> mismatchedRowKeys = Collections.synchronizedList(new ArrayList<K>());
+
+        private void addMismatch(K rowKey) {
+            if (mismatchCount.incrementAndGet() <= MAX_MISMATCHED_ROW_KEYS) {
+                mismatchedRowKeys.add(rowKey);
+            }
+        }
+
+        private MigrationResult<K> toResult(int rangeCount) {
+            return new MigrationResult<K>(rangeCount,
+                                          skippedRangeCount.get(),
+                                          rowCount.get(),
+                                          columnCount.get(),
+                                          verifiedRowCount.get(),
+                                          mismatchCount.get(),
+                                          new ArrayList<K>(mismatchedRowKeys));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.scan.TokenRange;
+
+/**
+ * Tests for FileCheckpointStore.
+ */
+public class FileCheckpointStoreTest {
+    private final TokenRange range = new TokenRange(BigInteger.valueOf(-10), BigInteger.valueOf(10));
+    private final TokenRange otherRange = new TokenRange(BigInteger.valueOf(10), BigInteger.valueOf(20));
+    private File file;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        file = File.createTempFile("checkpoints", ".properties");
+        assertTrue(file.delete());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test(groups = "unit")
+    public void shouldStartWithoutProgress() throws Exception {
+        CheckpointStore store = new FileCheckpointStore(file);
+
+        assertFalse(store.isCompleted(range));
+        assertNull(store.getLastKey(range));
+    }
+
+    @Test(groups = "unit")
+    public void shouldReadProgressSavedByAnotherStore() throws Exception {
+        CheckpointStore store = new FileCheckpointStore(file);
+        store.saveLastKey(range, ByteBuffer.wrap(new byte[] {0, 1, (byte)0xAB, (byte)0xFF}));
+        store.markCompleted(otherRange);
+
+        CheckpointStore resumed = new FileCheckpointStore(file);
+
+        assertEquals(resumed.getLastKey(range), ByteBuffer.wrap(new byte[] {0, 1, (byte)0xAB, (byte)0xFF}));
+        assertFalse(resumed.isCompleted(range));
+        assertTrue(resumed.isCompleted(otherRange));
+        assertNull(resumed.getLastKey(otherRange));
+    }
+
+    @Test(groups = "unit")
+    public void shouldReplaceLastKeyWhenCompleted() throws Exception {
+        CheckpointStore store = new FileCheckpointStore(file);
+        store.saveLastKey(range, ByteBuffer.wrap(new byte[] {42}));
+        store.markCompleted(range);
+
+        CheckpointStore resumed = new FileCheckpointStore(file);
+
+        assertTrue(resumed.isCompleted(range));
+        assertNull(resumed.getLastKey(range));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.migration;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.cql.dao.CqlStructuredDataSupport;
+import com.ebuddy.cassandra.dao.StructureSerializer;
+import com.ebuddy.cassandra.dao.SuperColumnFamilyTemplate;
+import com.ebuddy.cassandra.dao.ThriftSuperStructuredDataSupport;
+import com.ebuddy.cassandra.scan.TokenRing;
+import com.ebuddy.cassandra.structure.DefaultPath;
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.Keyspace;
+import me.prettyprint.hector.api.ddl.ColumnFamilyDefinition;
+import me.prettyprint.hector.api.ddl.ColumnType;
+import me.prettyprint.hector.api.ddl.ComparatorType;
+import me.prettyprint.hector.api.factory.HFactory;
+
+/**
+ * System test for SuperColumnFamilyMigrator that migrates objects written with ThriftSuperStructuredDataSupport
+ * and reads them back with CqlStructuredDataSupport.
+ */
+public class SuperColumnFamilyMigratorSystemTest {
+    private static final String TEST_KEYSPACE = "migrationsystemtest";
+    private static final String SUPER_COLUMN_FAMILY = "testpojo";
+    private static final String TABLE_NAME = "testpojo_cql";
+    private static final int ROW_COUNT = 50;
+    private static final int RANGE_COUNT = 8;
+
+    private final Path profilePath = DefaultPath.fromStrings("profile");
+    private final Path settingsPath = DefaultPath.fromStrings("settings");
+    private final TypeReference<Map<String,Object>> mapType = new TypeReference<Map<String,Object>>() { };
+
+    private Cluster cluster;
+    private Session session;
+    private Keyspace keyspace;
+
+    @BeforeMethod(groups = {"system"})
+    public void setUp() throws Exception {
+        EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+        cluster = Cluster.builder().addContactPoint("localhost").withPort(9142).build();
+        dropAndCreateSchema();
+        session = cluster.connect(TEST_KEYSPACE);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() throws Exception {
+        if (cluster != null) {
+            cluster.shutdown();
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldMigrateAndVerifyAllRows() throws Exception {
+        writeSourceRows();
+
+        SuperColumnFamilyMigrator<String> migrator = createMigrator();
+        migrator.setVerificationSampleRate(1.0);
+        MigrationResult<String> result = migrator.migrate();
+
+        assertEquals(result.getRangeCount(), RANGE_COUNT);
+        assertEquals(result.getSkippedRangeCount(), 0);
+        assertEquals(result.getRowCount(), ROW_COUNT);
+        // name, city and theme
+        assertEquals(result.getColumnCount(), ROW_COUNT * 3);
+        assertEquals(result.getVerifiedRowCount(), ROW_COUNT);
+        assertEquals(result.getMismatchCount(), 0);
+
+        StructuredDataSupport<String> target = new CqlStructuredDataSupport<String>(TABLE_NAME,
+                                                                                   ConsistencyLevel.ONE,
+                                                                                   session);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            assertEquals(target.readFromPath(rowKey(i), profilePath, mapType), profile(i));
+            assertEquals(target.readFromPath(rowKey(i), settingsPath, mapType), settings());
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldSkipCompletedRangesWhenResumed() throws Exception {
+        writeSourceRows();
+        CheckpointStore checkpointStore = new InMemoryCheckpointStore();
+
+        SuperColumnFamilyMigrator<String> migrator = createMigrator();
+        migrator.setCheckpointStore(checkpointStore);
+        assertEquals(migrator.migrate().getRowCount(), ROW_COUNT);
+
+        SuperColumnFamilyMigrator<String> resumedMigrator = createMigrator();
+        resumedMigrator.setCheckpointStore(checkpointStore);
+        MigrationResult<String> result = resumedMigrator.migrate();
+
+        assertEquals(result.getSkippedRangeCount(), RANGE_COUNT);
+        assertEquals(result.getRowCount(), 0);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReportMismatchedRows() throws Exception {
+        writeSourceRows();
+        // a column that is only in the target table
+        session.execute("INSERT INTO " + TABLE_NAME + " (key, column1, value) VALUES ('" + rowKey(0) +
+                                "', 'extra/', 'x')");
+
+        SuperColumnFamilyMigrator<String> migrator = createMigrator();
+        migrator.setVerificationSampleRate(1.0);
+        MigrationResult<String> result = migrator.migrate();
+
+        assertEquals(result.getMismatchCount(), 1);
+        assertEquals(result.getMismatchedRowKeys(), Collections.singletonList(rowKey(0)));
+    }
+
+    private SuperColumnFamilyMigrator<String> createMigrator() {
+        SuperColumnFamilyMigrator<String> migrator = new SuperColumnFamilyMigrator<String>(keyspace,
+                                                                                          SUPER_COLUMN_FAMILY,
+                                                                                          StringSerializer.get(),
+                                                                                          session,
+                                                                                          TABLE_NAME,
+                                                                                          ConsistencyLevel.ONE);
+        // the embedded Cassandra uses the RandomPartitioner
+        migrator.setTokenRing(TokenRing.RANDOM);
+        migrator.setRangeCount(RANGE_COUNT);
+        migrator.setParallelism(3);
+        migrator.setRowPageSize(4);
+        migrator.setMaxBatchSize(2);
+        migrator.setMaxColumnsPerSecond(10000);
+        return migrator;
+    }
+
+    private void writeSourceRows() {
+        SuperColumnFamilyTemplate<String,String,String,Object> operations =
+                new SuperColumnFamilyTemplate<String,String,String,Object>(keyspace,
+                                                                           SUPER_COLUMN_FAMILY,
+                                                                           StringSerializer.get(),
+                                                                           StringSerializer.get(),
+                                                                           StringSerializer.get(),
+                                                                           StructureSerializer.get());
+        StructuredDataSupport<String> source = new ThriftSuperStructuredDataSupport<String>(operations);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            source.writeToPath(rowKey(i), profilePath, profile(i));
+            source.writeToPath(rowKey(i), settingsPath, settings());
+        }
+    }
+
+    private static String rowKey(int i) {
+        return "row" + i;
+    }
+
+    private static Map<String,Object> profile(int i) {
+        Map<String,Object> profile = new HashMap<String,Object>();
+        profile.put("name", "name" + i);
+        profile.put("address", Collections.singletonMap("city", "city" + i));
+        return profile;
+    }
+
+    private static Map<String,Object> settings() {
+        return Collections.<String,Object>singletonMap("theme", "dark");
+    }
+
+    private void dropAndCreateSchema() {
+        Session localSession = cluster.connect();
+        try {
+            try {
+                localSession.execute("drop keyspace " + TEST_KEYSPACE);
+            } catch (InvalidQueryException ignored) {
+                // doesn't exist
+            }
+            localSession.execute("CREATE KEYSPACE " + TEST_KEYSPACE + " WITH replication " +
+                                         "= {'class':'SimpleStrategy', 'replication_factor':1};");
+            localSession.execute("CREATE TABLE " + TEST_KEYSPACE + "." + TABLE_NAME + " (key text, column1 text, " +
+                                         "value text, PRIMARY KEY (key, column1));");
+        } finally {
+            localSession.shutdown();
+        }
+
+        // a super column family can only be created with Thrift
+        me.prettyprint.hector.api.Cluster hectorCluster = HFactory.getOrCreateCluster("Test Cluster",
+                                                                                     "localhost:9171");
+        ColumnFamilyDefinition columnFamilyDefinition = HFactory.createColumnFamilyDefinition(TEST_KEYSPACE,
+                                                                                              SUPER_COLUMN_FAMILY,
+                                                                                              ComparatorType.UTF8TYPE);
+        columnFamilyDefinition.setColumnType(ColumnType.SUPER);
+        columnFamilyDefinition.setSubComparatorType(ComparatorType.UTF8TYPE);
+        columnFamilyDefinition.setKeyValidationClass("UTF8Type");
+        columnFamilyDefinition.setDefaultValidationClass("UTF8Type");
+        hectorCluster.addColumnFamily(columnFamilyDefinition, true);
+        keyspace = HFactory.createKeyspace(TEST_KEYSPACE, hectorCluster);
+    }
+}
@@ -16,12 +16,17 @@
 
 package com.ebuddy.cassandra.dao;
 
+import java.util.List;
+
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.Validate;
+
 import com.ebuddy.cassandra.BatchContext;
 
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.Serializer;
+import me.prettyprint.hector.api.beans.HColumn;
 import me.prettyprint.hector.api.factory.HFactory;
 import me.prettyprint.hector.api.mutation.Mutator;
 
@@ -46,6 +51,8 @@ public abstract class AbstractColumnFamilyTemplate<K,N,V> extends KeyspaceTempla
      */
     protected static final int ALL = Integer.MAX_VALUE;
 
+    private static final int DEFAULT_DELETE_PAGE_SIZE = 1000;
+
     /**
      * The serializer used for column values, or null if not specific to one column family..
      */
@@ -65,6 +72,8 @@ public abstract class AbstractColumnFamilyTemplate<K,N,V> extends KeyspaceTempla
     @Nullable
     private final String columnFamily;
 
+    private int deletePageSize = DEFAULT_DELETE_PAGE_SIZE;
+
     /**
      * Constructor.
      *
@@ -113,6 +122,41 @@ public abstract class AbstractColumnFamilyTemplate<K,N,V> extends KeyspaceTempla
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
     }
 
+    /**
+     * Set the maximum number of column names read, and deleted in one mutation, when deleting a range of columns.
+     * The default is 1000.
+     */
+    public void setDeletePageSize(int deletePageSize) {
+        Validate.isTrue(deletePageSize > 1, "deletePageSize must be greater than one");
+        this.deletePageSize = deletePageSize;
+    }
+
+    protected final int getDeletePageSize() {
+        return deletePageSize;
+    }
+
+    /**
+     * Remove the first column name of a page of a range if it is the last name of the previous page, where the page
+     * was started from.
+     */
+    protected static <N> List<N> withoutPreviousLast(List<N> page, @Nullable N previousLast) {
+        if (previousLast != null && !page.isEmpty() && previousLast.equals(page.get(0))) {
+            return page.subList(1, page.size());
+        }
+        return page;
+    }
+
+    /**
+     * Get the total size in bytes of the serialized values of columns.
+     */
+    protected static long getValueSize(Iterable<? extends HColumn<?,?>> columns) {
+        long size = 0;
+        for (HColumn<?,?> column : columns) {
+            size += column.getValueBytes().remaining();
+        }
+        return size;
+    }
+
     protected final Mutator<K> createMutator() {
         return HFactory.createMutator(getKeyspace(), getKeySerializer());
     }
@@ -1,15 +1,46 @@
 package com.ebuddy.cassandra.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.Validate;
 
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.StructuredDataSupport;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
 import com.ebuddy.cassandra.databind.CustomTypeResolverBuilder;
+import com.ebuddy.cassandra.metrics.Metrics;
+import com.ebuddy.cassandra.metrics.NoOpMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.ebuddy.cassandra.scan.ParallelScanIterator;
+import com.ebuddy.cassandra.scan.RangeScanner;
+import com.ebuddy.cassandra.scan.TokenRange;
+import com.ebuddy.cassandra.scan.TokenRing;
+import com.ebuddy.cassandra.structure.Composer;
+import com.ebuddy.cassandra.structure.Decomposer;
 import com.ebuddy.cassandra.structure.DefaultPath;
+import com.ebuddy.cassandra.structure.JacksonTypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ForwardingIterator;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * Abstract implementation of StructuredDataSupport for Thrift.
@@ -20,9 +51,30 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 public abstract class AbstractThriftStructuredDataSupport<K> implements StructuredDataSupport<K> {
     private  static final int MAX_CODE_POINT = 0x10FFFF;
+    private static final int DEFAULT_SCAN_PARALLELISM = 4;
+    private static final int DEFAULT_SCAN_PAGE_SIZE = 100;
+    private static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 100;
+    private static final int DEFAULT_READ_PAGE_SIZE = 1000;
+    /** The number of token ranges per scanning thread, so that threads finishing early can pick up more work. */
+    private static final int RANGES_PER_THREAD = 4;
+
     protected final ObjectMapper writeMapper;
     protected final ObjectMapper readMapper;
 
+    protected static final TypeReference<List<Object>> LIST_TYPE = new TypeReference<List<Object>>() { };
+
+    private boolean listHeadersEnabled;
+
+    private int scanParallelism = DEFAULT_SCAN_PARALLELISM;
+    private int scanPageSize = DEFAULT_SCAN_PAGE_SIZE;
+    private int multiGetChunkSize = DEFAULT_MULTI_GET_CHUNK_SIZE;
+    private int readPageSize = DEFAULT_READ_PAGE_SIZE;
+    @Nullable
+    private ExecutorService multiGetExecutor;
+    private AsyncOperationExecutor asyncExecutor;
+    private TokenRing tokenRing = TokenRing.MURMUR3;
+    private Metrics metrics = NoOpMetrics.INSTANCE;
+
     protected AbstractThriftStructuredDataSupport() {
         readMapper = new ObjectMapper();
         writeMapper = new ObjectMapper();
@@ -46,19 +98,230 @@ public abstract class AbstractThriftStructuredDataSupport<K> implements Structur
     }
 
     /**
-     * Convert strings to paths and remove the start of the paths that match the inputPath.
+     * Enable or disable writing a list header with the size of each list that is written.
+     * List headers are disabled by default.
+     */
+    public void setListHeadersEnabled(boolean listHeadersEnabled) {
+        this.listHeadersEnabled = listHeadersEnabled;
+    }
+
+    /**
+     * Set the number of token ranges that are read concurrently by a scan. The default is 4.
+     */
+    public void setScanParallelism(int scanParallelism) {
+        Validate.isTrue(scanParallelism > 0, "scanParallelism must be positive");
+        this.scanParallelism = scanParallelism;
+    }
+
+    /**
+     * Set the maximum number of rows read in one query by a scan. The default is 100.
+     */
+    public void setScanPageSize(int scanPageSize) {
+        Validate.isTrue(scanPageSize > 1, "scanPageSize must be greater than one");
+        this.scanPageSize = scanPageSize;
+    }
+
+    /**
+     * Set the maximum number of columns read in one slice when reading the columns under a path in a single row.
+     * The columns are read one page at a time, so a wide row is never returned in a single Thrift frame.
+     * The default is 1000.
+     */
+    public void setReadPageSize(int readPageSize) {
+        Validate.isTrue(readPageSize > 1, "readPageSize must be greater than one");
+        this.readPageSize = readPageSize;
+    }
+
+    protected final int getReadPageSize() {
+        return readPageSize;
+    }
+
+    /**
+     * Set the maximum number of rows read in one query by readFromPath of multiple rows. The default is 100.
+     */
+    public void setMultiGetChunkSize(int multiGetChunkSize) {
+        Validate.isTrue(multiGetChunkSize > 0, "multiGetChunkSize must be positive");
+        this.multiGetChunkSize = multiGetChunkSize;
+    }
+
+    /**
+     * Set the executor that the chunks of readFromPath of multiple rows are read with, concurrently with the first
+     * chunk, which is read by the calling thread. By default there is no executor, and the chunks are read one
+     * after the other by the calling thread.
+     */
+    public void setMultiGetExecutor(@Nullable ExecutorService multiGetExecutor) {
+        this.multiGetExecutor = multiGetExecutor;
+    }
+
+    /**
+     * Set the executor that the asynchronous operations are executed with, with the concurrency limit of the keyspace
+     * of this data support. By default there is no executor, and the asynchronous operations cannot be used.
+     */
+    public void setAsyncExecutor(@Nullable AsyncOperationExecutor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * Set the token ring of the partitioner used by the cluster, used to split a scan into token ranges.
+     * The default is the ring of the Murmur3Partitioner.
+     */
+    public void setTokenRing(TokenRing tokenRing) {
+        Validate.notNull(tokenRing);
+        this.tokenRing = tokenRing;
+    }
+
+    /**
+     * Set the metrics that operations are recorded to. By default nothing is recorded.
+     * The columns read and written, and the size of their values, are recorded by the column family template,
+     * which can be given the same metrics.
+     */
+    public void setMetrics(Metrics metrics) {
+        Validate.notNull(metrics);
+        this.metrics = metrics;
+    }
+
+    protected final Metrics getMetrics() {
+        return metrics;
+    }
+
+    protected final Decomposer getDecomposer() {
+        return listHeadersEnabled ? Decomposer.getWithListHeaders() : Decomposer.get();
+    }
+
+    /**
+     * Convert the values to be appended to a list into basic JSON structures.
+     */
+    protected final List<Object> convertListElements(Object[] values) {
+        List<Object> elements = new ArrayList<Object>(values.length);
+        for (Object value : values) {
+            elements.add(writeMapper.convertValue(value, Object.class));
+        }
+        return elements;
+    }
+
+    /**
+     * Get the columns that encode the members of a set, keyed by column name.
+     */
+    protected final Map<String,Object> getSetMemberColumns(Path setPath, Object[] members) {
+        Map<String,Object> columns = new HashMap<String,Object>(members.length);
+        for (Object member : members) {
+            Object simpleMember = writeMapper.convertValue(member, Object.class);
+            columns.put(setPath.concat(DefaultPath.fromSetMember(simpleMember)).toString(), simpleMember);
+        }
+        return columns;
+    }
+
+    /**
+     * Compose the columns read under a path into an object.
      */
-    protected final Map<Path,Object> getTerminalPathMap(Path inputPath, Map<String,Object> columnsMap) {
-        Map<Path,Object> pathMap = new HashMap<Path,Object>(columnsMap.size());
+    protected static Object compose(Path inputPath, Map<String,Object> columnsMap) {
+        ComposingVisitor composer = new ComposingVisitor(inputPath);
         for (Map.Entry<String,Object> entry : columnsMap.entrySet()) {
-            Path path = DefaultPath.fromEncodedPathString(entry.getKey());
-            if (!path.startsWith(inputPath)) {
-                throw new IllegalStateException("unexpected path found in database:" + path);
+            composer.add(entry.getKey(), entry.getValue());
+        }
+        return composer.compose();
+    }
+
+    /**
+     * Read the columns under a path from a page of rows in a token range, in token order.
+     *
+     * @param path the path to read in each row
+     * @param startKey the key of the first row to read, or null to start after startToken
+     * @param startToken the token to start after (exclusive) if startKey is null
+     * @param endToken the token to end with (inclusive)
+     * @param rowCount the maximum number of rows to read
+     * @return a map of row keys to columns, in token order
+     */
+    protected abstract Map<K,Map<String,Object>> readRows(Path path,
+                                                          @Nullable K startKey,
+                                                          String startToken,
+                                                          String endToken,
+                                                          int rowCount);
+
+    /**
+     * Read the columns under a path from multiple rows with one query.
+     *
+     * @param rowKeys the keys of the rows to read
+     * @param path the path to read in each row
+     * @return a map of row keys to columns, which can be empty or leave out rows that have no columns under the path
+     */
+    protected abstract Map<K,Map<String,Object>> multiGetRows(List<K> rowKeys, Path path);
+
+    /**
+     * Iterate over the keys of the rows of the column family in token order, a page of rows at a time.
+     *
+     * @param rowPageSize the maximum number of rows read in one query
+     * @return an iterator over the row keys
+     */
+    protected abstract Iterator<K> iterateRowKeys(int rowPageSize);
+
+    /**
+     * Get the part of a path that is encoded in the column names.
+     */
+    protected Path getColumnPath(Path path) {
+        return path;
+    }
+
+    /**
+     * Read the objects at a path in multiple rows.
+     * The rows are read with multiget queries of up to the multiget chunk size rows each, and each row is composed
+     * independently.
+     *
+     * @param rowKeys the keys of the rows to read
+     * @param path the path to the object to be read in each row
+     * @param type a TypeReference for the type of objects to be returned
+     * @param <T> the type of the objects to be returned
+     * @return a map of row keys to objects, without the rows that have no data at the path
+     * @see #setMultiGetChunkSize
+     * @see #setMultiGetExecutor
+     */
+    public <T> Map<K,T> readFromPath(Collection<K> rowKeys, Path path, TypeReference<T> type) {
+        Validate.notNull(rowKeys, "Row keys must not be null");
+        Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+        JacksonTypeReference<T> typeReference = new JacksonTypeReference<T>(type);
+        List<List<K>> chunks = Lists.partition(new ArrayList<K>(rowKeys), multiGetChunkSize);
+        Map<K,T> result = new HashMap<K,T>(rowKeys.size());
+        if (chunks.isEmpty()) {
+            return result;
+        }
+
+        List<Future<Map<K,T>>> futures = new ArrayList<Future<Map<K,T>>>(chunks.size());
+        if (multiGetExecutor != null) {
+            for (List<K> chunk : chunks.subList(1, chunks.size())) {
+                futures.add(multiGetExecutor.submit(new MultiGetTask<T>(chunk, path, typeReference)));
+            }
+        }
+        List<List<K>> callerChunks = multiGetExecutor == null ? chunks : chunks.subList(0, 1);
+        for (List<K> chunk : callerChunks) {
+            result.putAll(readChunk(chunk, path, typeReference));
+        }
+        for (Future<Map<K,T>> future : futures) {
+            try {
+                result.putAll(Uninterruptibles.getUninterruptibly(future));
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
             }
-            path = path.tail(inputPath.size());
-            pathMap.put(path, entry.getValue());
         }
-        return pathMap;
+        return result;
+    }
+
+    @Override
+    public <T> CloseableIterator<Map.Entry<K,T>> scan(Path path, TypeReference<T> type) {
+        Validate.isTrue(!path.isEmpty(), "Path must not be empty");
+
+        return new ParallelScanIterator<Map.Entry<K,T>>(tokenRing.split(scanParallelism * RANGES_PER_THREAD),
+                                                        new ThriftRangeScanner<T>(path, type),
+                                                        scanParallelism,
+                                                        scanPageSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The keys are read in token order, a scan page of rows at a time, reading only the first column of each row.
+     */
+    @Override
+    public CloseableIterator<K> scanRowKeys() {
+        return new RowKeyIterator<K>(iterateRowKeys(scanPageSize));
     }
 
     @Override
@@ -66,6 +329,11 @@ public abstract class AbstractThriftStructuredDataSupport<K> implements Structur
         writeToPath(rowKey, path, value, null);
     }
 
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns) {
+        writeColumns(rowKey, columns, null);
+    }
+
     @Override
     public void deletePath(K rowKey, Path path) {
         deletePath(rowKey, path, null);
@@ -75,4 +343,209 @@ public abstract class AbstractThriftStructuredDataSupport<K> implements Structur
     public Path createPath(String... elements) {
         return DefaultPath.fromStrings(elements);
     }
+
+    /**
+     * Read the object at a path in a row asynchronously with the executor given with setAsyncExecutor.
+     *
+     * @return a future of the object read, or of null if there is no object at the path
+     * @throws IllegalStateException if no executor has been set
+     * @see #readFromPath(Object, Path, TypeReference)
+     */
+    public <T> ListenableFuture<T> readFromPathAsync(final K rowKey, final Path path, final TypeReference<T> type) {
+        return submitAsync(new Callable<T>() {
+            @Override
+            public T call() {
+                return readFromPath(rowKey, path, type);
+            }
+        });
+    }
+
+    /**
+     * Write an object to a path in a row asynchronously with the executor given with setAsyncExecutor.
+     *
+     * @return a future of null, which completes when the object is written
+     * @throws IllegalStateException if no executor has been set
+     * @see #writeToPath(Object, Path, Object)
+     */
+    public ListenableFuture<Void> writeToPathAsync(final K rowKey, final Path path, final Object value) {
+        return submitAsync(new Callable<Void>() {
+            @Override
+            public Void call() {
+                writeToPath(rowKey, path, value);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Delete the object at a path in a row asynchronously with the executor given with setAsyncExecutor.
+     *
+     * @return a future of null, which completes when the object is deleted
+     * @throws IllegalStateException if no executor has been set
+     * @see #deletePath(Object, Path)
+     */
+    public ListenableFuture<Void> deletePathAsync(final K rowKey, final Path path) {
+        return submitAsync(new Callable<Void>() {
+            @Override
+            public Void call() {
+                deletePath(rowKey, path);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Get the name of the keyspace the column family of this data support is in.
+     */
+    protected abstract String getKeyspaceName();
+
+    private <T> ListenableFuture<T> submitAsync(Callable<T> operation) {
+        if (asyncExecutor == null) {
+            throw new IllegalStateException("no async executor has been set");
+        }
+        return asyncExecutor.submit(getKeyspaceName(), operation);
+    }
+
+    private <T> Map<K,T> readChunk(List<K> rowKeys, Path path, JacksonTypeReference<T> typeReference) {
+        OperationTimer timer = OperationTimer.start(metrics, Operation.MULTI_READ, null, path);
+        Map<K,Map<String,Object>> rows = multiGetRows(rowKeys, path);
+        timer.phase(Phase.QUERY);
+
+        Path columnPath = getColumnPath(path);
+        Map<K,T> values = new HashMap<K,T>(rows.size());
+        for (Map.Entry<K,Map<String,Object>> row : rows.entrySet()) {
+            if (row.getValue().isEmpty()) {
+                continue;
+            }
+            Object structure = compose(columnPath, row.getValue());
+            timer.phase(Phase.COMPOSE);
+            values.put(row.getKey(), readMapper.<T>convertValue(structure, typeReference));
+            timer.phase(Phase.CONVERT);
+        }
+        timer.stop();
+        return values;
+    }
+
+    /**
+     * Composes the columns under a path into an object as they are visited. The path is stripped from the start of
+     * each column name before it is parsed, and the columns are merged into the composition one at a time, so they
+     * are never collected into a map.
+     */
+    protected static final class ComposingVisitor implements ColumnVisitor<String,Object> {
+        private final String pathPrefix;
+        private final Composer.Composition composition = Composer.get().startComposition();
+
+        public ComposingVisitor(Path path) {
+            // the path is encoded in the column names in its normalized string form
+            pathPrefix = path.toString();
+        }
+
+        @Override
+        public void visit(String columnName, Object columnValue, long timestamp, int ttl) {
+            add(columnName, columnValue);
+        }
+
+        public void add(String columnName, Object columnValue) {
+            if (!columnName.startsWith(pathPrefix)) {
+                throw new IllegalStateException("unexpected path found in database:" + columnName);
+            }
+            composition.add(DefaultPath.fromEncodedPathString(columnName.substring(pathPrefix.length())),
+                            columnValue);
+        }
+
+        public boolean isEmpty() {
+            return composition.isEmpty();
+        }
+
+        public Object compose() {
+            return composition.compose();
+        }
+    }
+
+    private class MultiGetTask<T> implements Callable<Map<K,T>> {
+        private final List<K> rowKeys;
+        private final Path path;
+        private final JacksonTypeReference<T> typeReference;
+
+        private MultiGetTask(List<K> rowKeys, Path path, JacksonTypeReference<T> typeReference) {
+            this.rowKeys = rowKeys;
+            this.path = path;
+            this.typeReference = typeReference;
+        }
+
+        @Override
+        public Map<K,T> call() {
+            return readChunk(rowKeys, path, typeReference);
+        }
+    }
+
+    /**
+     * Scans a token range one page of rows at a time, continuing each page from the last row key read.
+     */
+    private class ThriftRangeScanner<T> implements RangeScanner<Map.Entry<K,T>> {
+        private final Path path;
+        private final Path columnPath;
+        private final JacksonTypeReference<T> typeReference;
+
+        private ThriftRangeScanner(Path path, TypeReference<T> type) {
+            this.path = path;
+            columnPath = getColumnPath(path);
+            typeReference = new JacksonTypeReference<T>(type);
+        }
+
+        @Override
+        public void scan(TokenRange range, Sink<Map.Entry<K,T>> sink) throws InterruptedException {
+            String startToken = range.getStartToken().toString();
+            String endToken = range.getEndToken().toString();
+            K startKey = null;
+            while (true) {
+                OperationTimer timer = OperationTimer.start(metrics, Operation.SCAN, null, path);
+                Map<K,Map<String,Object>> rows = readRows(path, startKey, startToken, endToken, scanPageSize);
+                timer.phase(Phase.QUERY);
+                K lastKey = null;
+                List<Map.Entry<K,T>> page = new ArrayList<Map.Entry<K,T>>(rows.size());
+                for (Map.Entry<K,Map<String,Object>> row : rows.entrySet()) {
+                    lastKey = row.getKey();
+                    // the start key is inclusive, and was already read with the previous page
+                    if (row.getValue().isEmpty() || row.getKey().equals(startKey)) {
+                        continue;
+                    }
+                    Object structure = compose(columnPath, row.getValue());
+                    timer.phase(Phase.COMPOSE);
+                    T value = readMapper.convertValue(structure, typeReference);
+                    timer.phase(Phase.CONVERT);
+                    page.add(Maps.immutableEntry(row.getKey(), value));
+                }
+                // the time waiting for the consumer is not part of the operation
+                timer.stop();
+                for (Map.Entry<K,T> entry : page) {
+                    sink.put(entry);
+                }
+                if (rows.size() < scanPageSize) {
+                    return;
+                }
+                startKey = lastKey;
+            }
+        }
+    }
+
+    /**
+     * A CloseableIterator over row keys read by a template, which holds no resources between pages.
+     */
+    private static class RowKeyIterator<K> extends ForwardingIterator<K> implements CloseableIterator<K> {
+        private final Iterator<K> rowKeys;
+
+        private RowKeyIterator(Iterator<K> rowKeys) {
+            this.rowKeys = rowKeys;
+        }
+
+        @Override
+        protected Iterator<K> delegate() {
+            return rowKeys;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
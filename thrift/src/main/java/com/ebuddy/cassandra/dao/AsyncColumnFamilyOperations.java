@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Asynchronous counterparts of the ColumnFamilyOperations that read, write and delete columns.
+ * Each operation returns immediately with a future of its result, and the operation itself is executed later
+ * by an AsyncOperationExecutor. Operations that do not have a result return a future of null.
+ *
+ * @see ColumnFamilyOperations
+ */
+public interface AsyncColumnFamilyOperations<K,N,V> {
+
+    ListenableFuture<V> readColumnValue(K rowKey, N columnName);
+
+    ListenableFuture<Map<N,V>> readColumnsAsMap(K rowKey);
+
+    ListenableFuture<Map<N,V>> readColumnsAsMap(K rowKey, N start, N finish, int count, boolean reversed);
+
+    <T> ListenableFuture<List<T>> readColumns(K rowKey, ColumnMapper<T,N,V> columnMapper);
+
+    <T> ListenableFuture<List<T>> readColumns(K rowKey,
+                                              N start,
+                                              N finish,
+                                              int count,
+                                              boolean reversed,
+                                              ColumnMapper<T,N,V> columnMapper);
+
+    ListenableFuture<Map<K,Map<N,V>>> multiGetAsMap(Iterable<K> rowKeys);
+
+    ListenableFuture<Map<K,Map<N,V>>> multiGetColumnsAsMap(Iterable<K> rowKeys, N... columnNames);
+
+    ListenableFuture<Map<K,Map<N,V>>> multiGetColumnRangeAsMap(Iterable<K> rowKeys,
+                                                               N start,
+                                                               N finish,
+                                                               int count,
+                                                               boolean reversed);
+
+    ListenableFuture<Void> writeColumn(K rowKey, N columnName, V columnValue);
+
+    ListenableFuture<Void> writeColumn(K rowKey,
+                                       N columnName,
+                                       V columnValue,
+                                       long timeToLive,
+                                       TimeUnit timeToLiveTimeUnit);
+
+    ListenableFuture<Void> writeColumns(K rowKey, Map<N,V> map);
+
+    ListenableFuture<Void> deleteColumns(K rowKey, N... columnNames);
+
+    ListenableFuture<Void> deleteColumns(K rowKey, N start, N finish);
+
+    ListenableFuture<Void> removeRow(K rowKey);
+
+    /**
+     * Execute a batch of mutations asynchronously.
+     *
+     * @param batchContext the BatchContext, which must not be used after calling this method
+     */
+    ListenableFuture<Void> commit(@Nonnull BatchContext batchContext);
+}
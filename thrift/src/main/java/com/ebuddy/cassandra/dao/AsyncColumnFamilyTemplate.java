@@ -0,0 +1,228 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Implementation of AsyncColumnFamilyOperations that executes the operations of a ColumnFamilyOperations,
+ * such as a ColumnFamilyTemplate, with an AsyncOperationExecutor. The operations count towards the concurrency limit
+ * of the keyspace of the ColumnFamilyOperations.
+ */
+public class AsyncColumnFamilyTemplate<K,N,V> implements AsyncColumnFamilyOperations<K,N,V> {
+    private final ColumnFamilyOperations<K,N,V> operations;
+    private final AsyncOperationExecutor executor;
+    private final String keyspaceName;
+
+    public AsyncColumnFamilyTemplate(ColumnFamilyOperations<K,N,V> operations, AsyncOperationExecutor executor) {
+        Validate.notNull(operations);
+        Validate.notNull(executor);
+        this.operations = operations;
+        this.executor = executor;
+        keyspaceName = operations.getKeyspaceName();
+    }
+
+    @Override
+    public ListenableFuture<V> readColumnValue(final K rowKey, final N columnName) {
+        return submit(new Callable<V>() {
+            @Override
+            public V call() {
+                return operations.readColumnValue(rowKey, columnName);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<N,V>> readColumnsAsMap(final K rowKey) {
+        return submit(new Callable<Map<N,V>>() {
+            @Override
+            public Map<N,V> call() {
+                return operations.readColumnsAsMap(rowKey);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<N,V>> readColumnsAsMap(final K rowKey,
+                                                       final N start,
+                                                       final N finish,
+                                                       final int count,
+                                                       final boolean reversed) {
+        return submit(new Callable<Map<N,V>>() {
+            @Override
+            public Map<N,V> call() {
+                return operations.readColumnsAsMap(rowKey, start, finish, count, reversed);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<List<T>> readColumns(final K rowKey, final ColumnMapper<T,N,V> columnMapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return operations.readColumns(rowKey, columnMapper);
+            }
+        });
+    }
+
+    @Override
+    public <T> ListenableFuture<List<T>> readColumns(final K rowKey,
+                                                     final N start,
+                                                     final N finish,
+                                                     final int count,
+                                                     final boolean reversed,
+                                                     final ColumnMapper<T,N,V> columnMapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return operations.readColumns(rowKey, start, finish, count, reversed, columnMapper);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<K,Map<N,V>>> multiGetAsMap(final Iterable<K> rowKeys) {
+        return submit(new Callable<Map<K,Map<N,V>>>() {
+            @Override
+            public Map<K,Map<N,V>> call() {
+                return operations.multiGetAsMap(rowKeys);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<K,Map<N,V>>> multiGetColumnsAsMap(final Iterable<K> rowKeys, final N... columnNames) {
+        return submit(new Callable<Map<K,Map<N,V>>>() {
+            @Override
+            public Map<K,Map<N,V>> call() {
+                return operations.multiGetColumnsAsMap(rowKeys, columnNames);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<K,Map<N,V>>> multiGetColumnRangeAsMap(final Iterable<K> rowKeys,
+                                                                      final N start,
+                                                                      final N finish,
+                                                                      final int count,
+                                                                      final boolean reversed) {
+        return submit(new Callable<Map<K,Map<N,V>>>() {
+            @Override
+            public Map<K,Map<N,V>> call() {
+                return operations.multiGetColumnRangeAsMap(rowKeys, start, finish, count, reversed);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeColumn(final K rowKey, final N columnName, final V columnValue) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.writeColumn(rowKey, columnName, columnValue);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeColumn(final K rowKey,
+                                              final N columnName,
+                                              final V columnValue,
+                                              final long timeToLive,
+                                              final TimeUnit timeToLiveTimeUnit) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.writeColumn(rowKey, columnName, columnValue, timeToLive, timeToLiveTimeUnit);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeColumns(final K rowKey, final Map<N,V> map) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.writeColumns(rowKey, map);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteColumns(final K rowKey, final N... columnNames) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.deleteColumns(rowKey, columnNames);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteColumns(final K rowKey, final N start, final N finish) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.deleteColumns(rowKey, start, finish);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> removeRow(final K rowKey) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.removeRow(rowKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> commit(@Nonnull final BatchContext batchContext) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.commit(batchContext);
+                return null;
+            }
+        });
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> operation) {
+        return executor.submit(keyspaceName, operation);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.metrics.Metrics;
+import com.ebuddy.cassandra.metrics.NoOpMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Executes blocking operations of the templates asynchronously on an executor, with a limit on the number of
+ * operations executing concurrently in each keyspace. Operations submitted while a keyspace is at its limit wait
+ * in a queue for that keyspace, so one busy keyspace cannot take all the threads of the executor.
+ * The time spent waiting is recorded as the QUEUE phase of Operation.ASYNC, and the number of operations waiting in
+ * the keyspace when an operation is submitted is recorded as its queue depth.
+ */
+public class AsyncOperationExecutor {
+    private final Executor executor;
+    private final int maxConcurrentOperations;
+    private final ConcurrentMap<String,KeyspaceQueue> queues = new ConcurrentHashMap<String,KeyspaceQueue>();
+    private volatile Metrics metrics = NoOpMetrics.INSTANCE;
+
+    /**
+     * Constructor.
+     *
+     * @param executor the executor that executes the operations, normally a fixed size thread pool
+     * @param maxConcurrentOperationsPerKeyspace the maximum number of operations executing at the same time in one
+     *                                           keyspace
+     */
+    public AsyncOperationExecutor(Executor executor, int maxConcurrentOperationsPerKeyspace) {
+        Validate.notNull(executor);
+        Validate.isTrue(maxConcurrentOperationsPerKeyspace > 0, "maxConcurrentOperationsPerKeyspace must be positive");
+        this.executor = executor;
+        maxConcurrentOperations = maxConcurrentOperationsPerKeyspace;
+    }
+
+    /**
+     * Set the metrics that the waiting time and queue depth of the operations are recorded to.
+     * By default nothing is recorded.
+     */
+    public void setMetrics(Metrics metrics) {
+        Validate.notNull(metrics);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Submit an operation in a keyspace for execution.
+     *
+     * @param keyspaceName the name of the keyspace that the operation is executed in
+     * @param operation the operation
+     * @return a future of the result of the operation, which fails if the executor rejects the operation
+     */
+    public <T> ListenableFuture<T> submit(String keyspaceName, Callable<T> operation) {
+        Validate.notNull(keyspaceName);
+        Validate.notNull(operation);
+        KeyspaceQueue queue = getQueue(keyspaceName);
+        AsyncOperation<T> asyncOperation = new AsyncOperation<T>(operation, queue);
+        queue.submit(asyncOperation);
+        return asyncOperation.future;
+    }
+
+    /**
+     * Get the number of operations in a keyspace waiting to be executed.
+     */
+    public int getQueueDepth(String keyspaceName) {
+        KeyspaceQueue queue = queues.get(keyspaceName);
+        return queue == null ? 0 : queue.waiting.get();
+    }
+
+    /**
+     * Get the number of operations in a keyspace that are being executed.
+     */
+    public int getActiveCount(String keyspaceName) {
+        KeyspaceQueue queue = queues.get(keyspaceName);
+        return queue == null ? 0 : queue.active.get();
+    }
+
+    private KeyspaceQueue getQueue(String keyspaceName) {
+        KeyspaceQueue queue = queues.get(keyspaceName);
+        if (queue == null) {
+            KeyspaceQueue newQueue = new KeyspaceQueue();
+            queue = queues.putIfAbsent(keyspaceName, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * The operations of one keyspace waiting to be executed, and the number being executed.
+     */
+    private final class KeyspaceQueue {
+        private final Queue<AsyncOperation<?>> operations = new ConcurrentLinkedQueue<AsyncOperation<?>>();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+
+        private void submit(AsyncOperation<?> operation) {
+            metrics.recordQueueDepth(Operation.ASYNC, waiting.getAndIncrement());
+            operations.add(operation);
+            drain();
+        }
+
+        private void completed() {
+            active.decrementAndGet();
+            drain();
+        }
+
+        /**
+         * Execute waiting operations while there are fewer than the maximum executing.
+         * The queue is checked again after giving up a slot, since an operation may have been added after the poll
+         * by a thread that saw no free slot.
+         */
+        private void drain() {
+            while (!operations.isEmpty()) {
+                int current = active.get();
+                if (current >= maxConcurrentOperations) {
+                    return;
+                }
+                if (!active.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+                AsyncOperation<?> operation = operations.poll();
+                if (operation == null) {
+                    active.decrementAndGet();
+                    continue;
+                }
+                waiting.decrementAndGet();
+                try {
+                    executor.execute(operation);
+                } catch (RejectedExecutionException e) {
+                    active.decrementAndGet();
+                    operation.future.setException(e);
+                }
+            }
+        }
+    }
+
+    private final class AsyncOperation<T> implements Runnable {
+        private final Callable<T> operation;
+        private final KeyspaceQueue queue;
+        private final SettableFuture<T> future = SettableFuture.create();
+        private final OperationTimer timer = OperationTimer.start(metrics, Operation.ASYNC);
+
+        private AsyncOperation(Callable<T> operation, KeyspaceQueue queue) {
+            this.operation = operation;
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                timer.phase(Phase.QUEUE);
+                if (future.isCancelled()) {
+                    return;
+                }
+                future.set(operation.call());
+                timer.phase(Phase.EXECUTE);
+                timer.stop();
+            } catch (Throwable t) {
+                future.setException(t);
+            } finally {
+                queue.completed();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Asynchronous counterparts of the SuperColumnFamilyOperations that read, write and delete columns.
+ * Each operation returns immediately with a future of its result, and the operation itself is executed later
+ * by an AsyncOperationExecutor. Operations that do not have a result return a future of null.
+ *
+ * @see SuperColumnFamilyOperations
+ */
+public interface AsyncSuperColumnFamilyOperations<K,SN,N,V> {
+
+    ListenableFuture<V> readColumnValue(K rowKey, SN superColumnName, N columnName);
+
+    ListenableFuture<Map<N,V>> readColumnsAsMap(K rowKey, SN superColumnName, N... columnNames);
+
+    ListenableFuture<Map<N,V>> readColumnsAsMap(K rowKey,
+                                                SN superColumnName,
+                                                N start,
+                                                N finish,
+                                                int count,
+                                                boolean reversed);
+
+    ListenableFuture<Map<K,Map<N,V>>> multiGetAsMap(Collection<K> rowKeys, SN superColumnName);
+
+    ListenableFuture<Map<K,Map<N,V>>> multiGetColumnsAsMap(Collection<K> rowKeys,
+                                                           SN superColumnName,
+                                                           N... columnNames);
+
+    ListenableFuture<Map<SN,Map<N,V>>> readRowAsMap(K key);
+
+    ListenableFuture<Void> writeColumns(K rowKey, SN superColumnName, Map<N,V> columnMap);
+
+    ListenableFuture<Void> writeColumn(K rowKey, SN superColumnName, N columnName, V columnValue);
+
+    ListenableFuture<Void> deleteColumns(K rowKey, SN superColumnName, Iterable<N> subcolumnNames);
+
+    ListenableFuture<Void> deleteColumns(K rowKey, SN superColumnName, N start, N finish);
+
+    ListenableFuture<Void> deleteSuperColumn(K rowKey, SN superColumnName);
+
+    ListenableFuture<Void> removeRow(K rowKey);
+
+    /**
+     * Execute a batch of updates asynchronously.
+     *
+     * @param batchContext the BatchContext, which must not be used after calling this method
+     */
+    ListenableFuture<Void> commit(@Nonnull BatchContext batchContext);
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.lang3.Validate;
+
+import com.ebuddy.cassandra.BatchContext;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Implementation of AsyncSuperColumnFamilyOperations that executes the operations of a SuperColumnFamilyOperations,
+ * such as a SuperColumnFamilyTemplate, with an AsyncOperationExecutor. The operations count towards the concurrency
+ * limit of the keyspace of the SuperColumnFamilyOperations.
+ */
+public class AsyncSuperColumnFamilyTemplate<K,SN,N,V> implements AsyncSuperColumnFamilyOperations<K,SN,N,V> {
+    private final SuperColumnFamilyOperations<K,SN,N,V> operations;
+    private final AsyncOperationExecutor executor;
+    private final String keyspaceName;
+
+    public AsyncSuperColumnFamilyTemplate(SuperColumnFamilyOperations<K,SN,N,V> operations,
+                                          AsyncOperationExecutor executor) {
+        Validate.notNull(operations);
+        Validate.notNull(executor);
+        this.operations = operations;
+        this.executor = executor;
+        keyspaceName = operations.getKeyspaceName();
+    }
+
+    @Override
+    public ListenableFuture<V> readColumnValue(final K rowKey, final SN superColumnName, final N columnName) {
+        return submit(new Callable<V>() {
+            @Override
+            public V call() {
+                return operations.readColumnValue(rowKey, superColumnName, columnName);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<N,V>> readColumnsAsMap(final K rowKey,
+                                                       final SN superColumnName,
+                                                       final N... columnNames) {
+        return submit(new Callable<Map<N,V>>() {
+            @Override
+            public Map<N,V> call() {
+                return operations.readColumnsAsMap(rowKey, superColumnName, columnNames);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<N,V>> readColumnsAsMap(final K rowKey,
+                                                       final SN superColumnName,
+                                                       final N start,
+                                                       final N finish,
+                                                       final int count,
+                                                       final boolean reversed) {
+        return submit(new Callable<Map<N,V>>() {
+            @Override
+            public Map<N,V> call() {
+                return operations.readColumnsAsMap(rowKey, superColumnName, start, finish, count, reversed);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<K,Map<N,V>>> multiGetAsMap(final Collection<K> rowKeys, final SN superColumnName) {
+        return submit(new Callable<Map<K,Map<N,V>>>() {
+            @Override
+            public Map<K,Map<N,V>> call() {
+                return operations.multiGetAsMap(rowKeys, superColumnName);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<K,Map<N,V>>> multiGetColumnsAsMap(final Collection<K> rowKeys,
+                                                                  final SN superColumnName,
+                                                                  final N... columnNames) {
+        return submit(new Callable<Map<K,Map<N,V>>>() {
+            @Override
+            public Map<K,Map<N,V>> call() {
+                return operations.multiGetColumnsAsMap(rowKeys, superColumnName, columnNames);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Map<SN,Map<N,V>>> readRowAsMap(final K key) {
+        return submit(new Callable<Map<SN,Map<N,V>>>() {
+            @Override
+            public Map<SN,Map<N,V>> call() {
+                return operations.readRowAsMap(key);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeColumns(final K rowKey, final SN superColumnName, final Map<N,V> columnMap) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.writeColumns(rowKey, superColumnName, columnMap);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> writeColumn(final K rowKey,
+                                              final SN superColumnName,
+                                              final N columnName,
+                                              final V columnValue) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.writeColumn(rowKey, superColumnName, columnName, columnValue);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteColumns(final K rowKey,
+                                                final SN superColumnName,
+                                                final Iterable<N> subcolumnNames) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.deleteColumns(rowKey, superColumnName, subcolumnNames);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteColumns(final K rowKey,
+                                                final SN superColumnName,
+                                                final N start,
+                                                final N finish) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.deleteColumns(rowKey, superColumnName, start, finish);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> deleteSuperColumn(final K rowKey, final SN superColumnName) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.deleteSuperColumn(rowKey, superColumnName);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> removeRow(final K rowKey) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.removeRow(rowKey);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Void> commit(@Nonnull final BatchContext batchContext) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                operations.commit(batchContext);
+                return null;
+            }
+        });
+    }
+
+    private <T> ListenableFuture<T> submit(Callable<T> operation) {
+        return executor.submit(keyspaceName, operation);
+    }
+}
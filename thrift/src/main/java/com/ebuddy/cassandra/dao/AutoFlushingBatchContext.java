@@ -0,0 +1,38 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import com.ebuddy.cassandra.BatchContext;
+
+/**
+ * A BatchContext that executes its pending mutations whenever the number of pending mutations or their estimated
+ * size in bytes reaches a threshold, so a large batch is sent in several smaller batch mutations.
+ * The remaining mutations are executed on commit.
+ */
+public interface AutoFlushingBatchContext extends BatchContext {
+
+    /**
+     * Get the number of times the pending mutations were executed before commit because a threshold was reached.
+     */
+    int getFlushCount();
+
+    /**
+     * Get the total number of mutations added to this batch, including those already flushed.
+     */
+    long getMutationCount();
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.nio.ByteBuffer;
+
+import com.ebuddy.cassandra.metrics.Metrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+
+import me.prettyprint.hector.api.Serializer;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.beans.HCounterColumn;
+import me.prettyprint.hector.api.beans.HCounterSuperColumn;
+import me.prettyprint.hector.api.beans.HSuperColumn;
+import me.prettyprint.hector.api.mutation.MutationResult;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+/**
+ * Mutator that delegates to another Mutator and executes the pending mutations as soon as their number or their
+ * estimated size in bytes reaches a threshold.
+ * The timestamps of the mutations are assigned when they are added, as with any Hector Mutator, so flushing early
+ * does not change which mutations win.
+ *
+ * @param <K> the type of row key
+ */
+class AutoFlushingMutator<K> implements Mutator<K> {
+    /** Estimated bytes of a mutation in addition to the row key, names and values, e.g. the timestamp. */
+    private static final int MUTATION_OVERHEAD_BYTES = 24;
+    private static final int COUNTER_VALUE_BYTES = 8;
+
+    private final Mutator<K> delegate;
+    private final Serializer<K> keySerializer;
+    private final int maxMutationCount;
+    private final long maxByteSize;
+    private final Metrics metrics;
+
+    private int pendingMutationCount;
+    private long pendingByteSize;
+    private int flushCount;
+    private long mutationCount;
+
+    /** The last row key sized, since consecutive mutations are usually for the same row. */
+    private K lastKey;
+    private int lastKeySize;
+
+    AutoFlushingMutator(Mutator<K> delegate,
+                        Serializer<K> keySerializer,
+                        int maxMutationCount,
+                        long maxByteSize,
+                        Metrics metrics) {
+        this.delegate = delegate;
+        this.keySerializer = keySerializer;
+        this.maxMutationCount = maxMutationCount;
+        this.maxByteSize = maxByteSize;
+        this.metrics = metrics;
+    }
+
+    int getFlushCount() {
+        return flushCount;
+    }
+
+    long getMutationCount() {
+        return mutationCount;
+    }
+
+    @Override
+    public <N,V> Mutator<K> addInsertion(K key, String cf, HColumn<N,V> c) {
+        delegate.addInsertion(key, cf, c);
+        added(key, columnSize(c));
+        return this;
+    }
+
+    @Override
+    public <SN,N,V> Mutator<K> addInsertion(K key, String cf, HSuperColumn<SN,N,V> sc) {
+        delegate.addInsertion(key, cf, sc);
+        added(key, superColumnSize(sc));
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(K key, String cf, N columnName, Serializer<N> nameSerializer) {
+        delegate.addDeletion(key, cf, columnName, nameSerializer);
+        added(key, nameSize(columnName, nameSerializer));
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(K key, String cf) {
+        delegate.addDeletion(key, cf);
+        added(key, 0);
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(Iterable<K> keys, String cf) {
+        delegate.addDeletion(keys, cf);
+        for (K key : keys) {
+            added(key, 0);
+        }
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(Iterable<K> keys, String cf, long clock) {
+        delegate.addDeletion(keys, cf, clock);
+        for (K key : keys) {
+            added(key, 0);
+        }
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(K key, String cf, long clock) {
+        delegate.addDeletion(key, cf, clock);
+        added(key, 0);
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addDeletion(K key, String cf, N columnName, Serializer<N> nameSerializer, long clock) {
+        delegate.addDeletion(key, cf, columnName, nameSerializer, clock);
+        added(key, nameSize(columnName, nameSerializer));
+        return this;
+    }
+
+    @Override
+    public <SN,N,V> Mutator<K> addSubDelete(K key, String cf, HSuperColumn<SN,N,V> sc) {
+        delegate.addSubDelete(key, cf, sc);
+        added(key, superColumnNamesSize(sc));
+        return this;
+    }
+
+    @Override
+    public <SN,N,V> Mutator<K> addSubDelete(K key, String cf, HSuperColumn<SN,N,V> sc, long clock) {
+        delegate.addSubDelete(key, cf, sc, clock);
+        added(key, superColumnNamesSize(sc));
+        return this;
+    }
+
+    @Override
+    public <SN,N> Mutator<K> addSubDelete(K key,
+                                          String cf,
+                                          SN supercolumnName,
+                                          N columnName,
+                                          Serializer<SN> sNameSerializer,
+                                          Serializer<N> nameSerializer) {
+        delegate.addSubDelete(key, cf, supercolumnName, columnName, sNameSerializer, nameSerializer);
+        added(key, nameSize(supercolumnName, sNameSerializer) + nameSize(columnName, nameSerializer));
+        return this;
+    }
+
+    @Override
+    public <SN,N> Mutator<K> addSubDelete(K key,
+                                          String cf,
+                                          SN supercolumnName,
+                                          N columnName,
+                                          Serializer<SN> sNameSerializer,
+                                          Serializer<N> nameSerializer,
+                                          long clock) {
+        delegate.addSubDelete(key, cf, supercolumnName, columnName, sNameSerializer, nameSerializer, clock);
+        added(key, nameSize(supercolumnName, sNameSerializer) + nameSize(columnName, nameSerializer));
+        return this;
+    }
+
+    @Override
+    public <SN> Mutator<K> addSuperDelete(K key, String cf, SN sColumnName, Serializer<SN> sNameSerializer) {
+        delegate.addSuperDelete(key, cf, sColumnName, sNameSerializer);
+        added(key, nameSize(sColumnName, sNameSerializer));
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addCounter(K key, String cf, HCounterColumn<N> c) {
+        delegate.addCounter(key, cf, c);
+        added(key, c.getNameBytes().remaining() + COUNTER_VALUE_BYTES);
+        return this;
+    }
+
+    @Override
+    public <SN,N> Mutator<K> addCounter(K key, String cf, HCounterSuperColumn<SN,N> sc) {
+        delegate.addCounter(key, cf, sc);
+        added(key, counterSuperColumnSize(sc));
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addCounterDeletion(K key, String cf, N counterColumnName, Serializer<N> nameSerializer) {
+        delegate.addCounterDeletion(key, cf, counterColumnName, nameSerializer);
+        added(key, nameSize(counterColumnName, nameSerializer));
+        return this;
+    }
+
+    @Override
+    public <N> Mutator<K> addCounterDeletion(K key, String cf) {
+        delegate.addCounterDeletion(key, cf);
+        added(key, 0);
+        return this;
+    }
+
+    @Override
+    public <SN,N> Mutator<K> addCounterSubDeletion(K key, String cf, HCounterSuperColumn<SN,N> sc) {
+        delegate.addCounterSubDeletion(key, cf, sc);
+        added(key, counterSuperColumnSize(sc));
+        return this;
+    }
+
+    // the immediate operations also execute all the pending mutations of the delegate
+
+    @Override
+    public <N,V> MutationResult insert(K key, String cf, HColumn<N,V> c) {
+        return executed(delegate.insert(key, cf, c), 1);
+    }
+
+    @Override
+    public <SN,N,V> MutationResult insert(K key, String cf, HSuperColumn<SN,N,V> superColumn) {
+        return executed(delegate.insert(key, cf, superColumn), 1);
+    }
+
+    @Override
+    public <N> MutationResult delete(K key, String cf, N columnName, Serializer<N> nameSerializer) {
+        return executed(delegate.delete(key, cf, columnName, nameSerializer), 1);
+    }
+
+    @Override
+    public <N> MutationResult delete(K key, String cf, N columnName, Serializer<N> nameSerializer, long clock) {
+        return executed(delegate.delete(key, cf, columnName, nameSerializer, clock), 1);
+    }
+
+    @Override
+    public <SN,N> MutationResult subDelete(K key,
+                                           String cf,
+                                           SN supercolumnName,
+                                           N columnName,
+                                           Serializer<SN> sNameSerializer,
+                                           Serializer<N> nameSerializer) {
+        return executed(delegate.subDelete(key, cf, supercolumnName, columnName, sNameSerializer, nameSerializer), 1);
+    }
+
+    @Override
+    public <SN> MutationResult superDelete(K key, String cf, SN supercolumnName, Serializer<SN> sNameSerializer) {
+        return executed(delegate.superDelete(key, cf, supercolumnName, sNameSerializer), 1);
+    }
+
+    @Override
+    public <N> MutationResult insertCounter(K key, String cf, HCounterColumn<N> c) {
+        return executed(delegate.insertCounter(key, cf, c), 1);
+    }
+
+    @Override
+    public <SN,N> MutationResult insertCounter(K key, String cf, HCounterSuperColumn<SN,N> superColumn) {
+        return executed(delegate.insertCounter(key, cf, superColumn), 1);
+    }
+
+    @Override
+    public <N> MutationResult incrementCounter(K key, String cf, N columnName, long increment) {
+        return executed(delegate.incrementCounter(key, cf, columnName, increment), 1);
+    }
+
+    @Override
+    public <N> MutationResult decrementCounter(K key, String cf, N columnName, long increment) {
+        return executed(delegate.decrementCounter(key, cf, columnName, increment), 1);
+    }
+
+    @Override
+    public <N> MutationResult deleteCounter(K key, String cf, N counterColumnName, Serializer<N> nameSerializer) {
+        return executed(delegate.deleteCounter(key, cf, counterColumnName, nameSerializer), 1);
+    }
+
+    @Override
+    public <SN,N> MutationResult subDeleteCounter(K key,
+                                                  String cf,
+                                                  SN supercolumnName,
+                                                  N columnName,
+                                                  Serializer<SN> sNameSerializer,
+                                                  Serializer<N> nameSerializer) {
+        return executed(delegate.subDeleteCounter(key,
+                                                  cf,
+                                                  supercolumnName,
+                                                  columnName,
+                                                  sNameSerializer,
+                                                  nameSerializer),
+                        1);
+    }
+
+    @Override
+    public MutationResult execute() {
+        return executed(delegate.execute(), 0);
+    }
+
+    @Override
+    public Mutator<K> discardPendingMutations() {
+        delegate.discardPendingMutations();
+        pendingMutationCount = 0;
+        pendingByteSize = 0;
+        return this;
+    }
+
+    @Override
+    public int getPendingMutationCount() {
+        return delegate.getPendingMutationCount();
+    }
+
+    @Override
+    public String toString() {
+        return "AutoFlushingMutator(" + delegate + ")";
+    }
+
+    private void added(K key, long size) {
+        pendingMutationCount++;
+        mutationCount++;
+        pendingByteSize += keySize(key) + size + MUTATION_OVERHEAD_BYTES;
+        if (pendingMutationCount >= maxMutationCount || pendingByteSize >= maxByteSize) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        OperationTimer timer = OperationTimer.start(metrics, Operation.FLUSH);
+        int batchSize = pendingMutationCount;
+        delegate.execute();
+        pendingMutationCount = 0;
+        pendingByteSize = 0;
+        flushCount++;
+        timer.phase(Phase.EXECUTE);
+        timer.batchSize(batchSize);
+        timer.stop();
+    }
+
+    private MutationResult executed(MutationResult result, int immediateMutationCount) {
+        mutationCount += immediateMutationCount;
+        pendingMutationCount = 0;
+        pendingByteSize = 0;
+        return result;
+    }
+
+    private int keySize(K key) {
+        if (key == null) {
+            return 0;
+        }
+        if (!key.equals(lastKey)) {
+            lastKey = key;
+            lastKeySize = keySerializer.toByteBuffer(key).remaining();
+        }
+        return lastKeySize;
+    }
+
+    private static <N> int nameSize(N name, Serializer<N> nameSerializer) {
+        if (name == null) {
+            return 0;
+        }
+        ByteBuffer nameBytes = nameSerializer.toByteBuffer(name);
+        return nameBytes == null ? 0 : nameBytes.remaining();
+    }
+
+    private static long columnSize(HColumn<?,?> column) {
+        ByteBuffer valueBytes = column.getValueBytes();
+        return column.getNameBytes().remaining() + (valueBytes == null ? 0 : valueBytes.remaining());
+    }
+
+    private static long superColumnSize(HSuperColumn<?,?,?> superColumn) {
+        long size = superColumn.getNameByteBuffer().remaining();
+        for (HColumn<?,?> column : superColumn.getColumns()) {
+            size += columnSize(column) + MUTATION_OVERHEAD_BYTES;
+        }
+        return size;
+    }
+
+    private static long superColumnNamesSize(HSuperColumn<?,?,?> superColumn) {
+        long size = superColumn.getNameByteBuffer().remaining();
+        for (HColumn<?,?> column : superColumn.getColumns()) {
+            size += column.getNameBytes().remaining();
+        }
+        return size;
+    }
+
+    private static long counterSuperColumnSize(HCounterSuperColumn<?,?> superColumn) {
+        long size = superColumn.getNameByteBuffer().remaining();
+        for (HCounterColumn<?> column : superColumn.getColumns()) {
+            size += column.getNameBytes().remaining() + COUNTER_VALUE_BYTES;
+        }
+        return size;
+    }
+}
@@ -16,15 +16,20 @@
 
 package com.ebuddy.cassandra.dao;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.ebuddy.cassandra.BatchContext;
 import com.ebuddy.cassandra.dao.mapper.ColumnFamilyRowMapper;
 import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
+import com.ebuddy.cassandra.dao.mapper.ColumnMapperWithTimestamps;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.dao.visitor.RowVisitor;
 
 /**
  * Core Column Family operations.
@@ -39,6 +44,21 @@ public interface ColumnFamilyOperations<K,N,V> {
      */
     BatchContext begin();
 
+    /**
+     * Create a BatchContext that executes the pending mutations whenever their number or their estimated size in
+     * bytes reaches a threshold. The remaining mutations are executed on commit.
+     *
+     * @param maxMutationCount the number of pending mutations that are executed together
+     * @param maxByteSize the estimated size in bytes of the pending mutations at which they are executed
+     * @return the BatchContext
+     */
+    AutoFlushingBatchContext begin(int maxMutationCount, long maxByteSize);
+
+    /**
+     * Get the name of the keyspace of this DAO.
+     */
+    String getKeyspaceName();
+
     /**
      * Execute a batch of mutations using a mutator.
      *
@@ -55,12 +75,114 @@ public interface ColumnFamilyOperations<K,N,V> {
 
     <T> List<T> readColumns(K rowKey, N start, N finish, int count, boolean reversed, ColumnMapper<T,N,V> columnMapper);
 
+    <T> List<T> readColumnsWithTimestamps(K rowKey,
+                                          N start,
+                                          N finish,
+                                          int count,
+                                          boolean reversed,
+                                          ColumnMapperWithTimestamps<T,N,V> columnMapper);
+
+    /**
+     * Read specific columns from a single row with their write timestamps.
+     * Columns that are not found are not mapped.
+     */
+    <T> List<T> readColumnsWithTimestamps(K rowKey,
+                                          ColumnMapperWithTimestamps<T,N,V> columnMapper,
+                                          N... columnNames);
+
+    /**
+     * Iterate over a range of columns from a single row, reading a page of columns at a time, so a wide row is
+     * never read in a single slice.
+     *
+     * @param rowKey the row key
+     * @param start the first column name of the range
+     * @param finish the last column name of the range
+     * @param pageSize the maximum number of columns read in one slice, must be greater than one
+     * @return an iterator over the columns in column name order, which reads the next page when needed
+     */
+    Iterator<Map.Entry<N,V>> iterateColumns(K rowKey, N start, N finish, int pageSize);
+
+    /**
+     * Visit a range of columns from a single row, reading a page of columns at a time.
+     *
+     * @param rowKey the row key
+     * @param start the first column name of the range
+     * @param finish the last column name of the range
+     * @param pageSize the maximum number of columns read in one slice, must be greater than one
+     * @param columnVisitor the visitor of each column, in column name order
+     */
+    void visitColumnsInPages(K rowKey, N start, N finish, int pageSize, ColumnVisitor<N,V> columnVisitor);
+
     Map<K,Map<N,V>> multiGetAsMap(Iterable<K> rowKeys);
 
     Map<K,Map<N,V>> multiGetColumnsAsMap(Iterable<K> rowKeys, N... columnNames);
 
+    /**
+     * Read a range of columns from multiple rows with one query.
+     *
+     * @return a map of row keys to columns, including an empty map for rows that have no columns in the range
+     */
+    Map<K,Map<N,V>> multiGetColumnRangeAsMap(Iterable<K> rowKeys, N start, N finish, int count, boolean reversed);
+
+    /**
+     * Read all the columns of all the rows in the column family with one query.
+     *
+     * @deprecated the whole column family is read into memory at once; use {@link #iterateRows} or
+     * {@link #visitRows} to walk a column family a page of rows at a time.
+     */
+    @Deprecated
     Map<K,Map<N,V>> readRowsAsMap();
 
+    /**
+     * Iterate over the rows of the column family in token order, reading a page of rows at a time, each page
+     * starting from the key of the last row of the previous page. Rows that have no columns in the range,
+     * including deleted rows that have not been compacted away yet, are skipped.
+     *
+     * @param start the first column name of the range read from each row
+     * @param finish the last column name of the range read from each row
+     * @param maxColumnsPerRow the maximum number of columns read from each row
+     * @param rowPageSize the maximum number of rows read in one query, must be greater than one
+     * @return an iterator over the rows, which reads the next page when needed
+     */
+    Iterator<Map.Entry<K,Map<N,V>>> iterateRows(N start, N finish, int maxColumnsPerRow, int rowPageSize);
+
+    /**
+     * Visit the rows of the column family in token order, reading a page of rows at a time.
+     *
+     * @see #iterateRows
+     */
+    void visitRows(N start, N finish, int maxColumnsPerRow, int rowPageSize, RowVisitor<K,N,V> rowVisitor);
+
+    /**
+     * Iterate over the keys of the rows of the column family in token order, reading a page of rows at a time
+     * and only the first column of each row, so deleted rows can be skipped.
+     *
+     * @param rowPageSize the maximum number of rows read in one query, must be greater than one
+     * @return an iterator over the row keys, which reads the next page when needed
+     */
+    Iterator<K> iterateRowKeys(int rowPageSize);
+
+    /**
+     * Read a range of columns from a page of rows in a token range, in token order.
+     *
+     * @param startKey the key of the first row to read, or null to start after startToken
+     * @param startToken the token to start after (exclusive) if startKey is null
+     * @param endToken the token to end with (inclusive)
+     * @param start the first column name of the range
+     * @param finish the last column name of the range
+     * @param maxColumnsPerRow the maximum number of columns read from each row with the rows, the rest of a row
+     *                         is read separately this many columns at a time; must be greater than one
+     * @param rowCount the maximum number of rows to read
+     * @return a map of row keys to columns, in token order
+     */
+    Map<K,Map<N,V>> readRowsAsMap(@Nullable K startKey,
+                                  String startToken,
+                                  String endToken,
+                                  N start,
+                                  N finish,
+                                  int maxColumnsPerRow,
+                                  int rowCount);
+
     <T> List<T> multiGet(Iterable<K> rowKeys, ColumnFamilyRowMapper<T,K,N,V> rowMapper);
 
     <T> List<T> multiGetColumns(Iterable<K> rowKeys, ColumnFamilyRowMapper<T,K,N,V> rowMapper, N... columnNames);
@@ -84,9 +206,27 @@ public interface ColumnFamilyOperations<K,N,V> {
 
     void deleteColumns(K rowKey, N... columnNames);
 
+    /**
+     * Remove columns as a batch operation.
+     *
+     * @param rowKey the row key
+     * @param columnNames the names of the columns to remove
+     * @param batchContext BatchContext for batch operation
+     */
+    void deleteColumns(K rowKey, Iterable<N> columnNames, @Nonnull BatchContext batchContext);
+
     void deleteColumns(K rowKey, N start, N finish);
     void deleteColumns(K rowKey, N start, N finish, BatchContext batchContext);
 
+    /**
+     * Delete columns each with its own timestamp, so a column is only deleted if it was not written after
+     * that timestamp.
+     *
+     * @param rowKey the row key
+     * @param timestamps the timestamps to delete with, keyed by the names of the columns to delete
+     */
+    void deleteColumnsWithTimestamps(K rowKey, Map<N,Long> timestamps);
+
     void removeRow(K rowKey);
 
     void removeRow(K rowKey, BatchContext batchContext);
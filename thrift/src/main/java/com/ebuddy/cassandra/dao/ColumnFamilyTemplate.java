@@ -16,9 +16,12 @@
 
 package com.ebuddy.cassandra.dao;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -33,7 +36,17 @@ import org.slf4j.LoggerFactory;
 import com.ebuddy.cassandra.BatchContext;
 import com.ebuddy.cassandra.dao.mapper.ColumnFamilyRowMapper;
 import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
-
+import com.ebuddy.cassandra.dao.mapper.ColumnMapperWithTimestamps;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.dao.visitor.RowVisitor;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.Serializer;
 import me.prettyprint.hector.api.beans.ColumnSlice;
@@ -61,13 +74,6 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
         implements ColumnFamilyOperations<K,N,V> {
     private static final Logger LOG = LoggerFactory.getLogger(ColumnFamilyTemplate.class);
 
-    private final ColumnMapper<N,N,V> columnMapperToGetColumnNames = new ColumnMapper<N,N,V>() {
-        @Override
-        public N mapColumn(N columnName, V columnValue) {
-            return columnName;
-        }
-    };
-
     public ColumnFamilyTemplate(Keyspace keyspace,
                                 Serializer<K> keySerializer,
                                 Serializer<N> columnNameSerializer,
@@ -130,6 +136,7 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
      */
     @Override
     public Map<N,V> readColumnsAsMap(K rowKey, N start, N finish, int count, boolean reversed) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, rowKey, null);
         Map<N,V> maps = new HashMap<N,V>();
         SliceQuery<K,N,V> query = HFactory.createSliceQuery(getKeyspace(),
                                                             getKeySerializer(),
@@ -140,11 +147,17 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
                 setRange(start, finish, reversed, count).
                 execute();
         ColumnSlice<N,V> slice = result.get();
+        timer.phase(Phase.QUERY);
 
         for (HColumn<N,V> column : slice.getColumns()) {
             maps.put(column.getName(),
                      column.getValue());
         }
+        timer.phase(Phase.DECODE);
+        if (timer.isRecording()) {
+            timer.columnsRead(maps.size(), getValueSize(slice.getColumns()));
+        }
+        timer.stop();
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
         return maps;
     }
@@ -180,6 +193,60 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
         return resultList;
     }
 
+    @Override
+    public <T> List<T> readColumnsWithTimestamps(K rowKey,
+                                                 N start,
+                                                 N finish,
+                                                 int count,
+                                                 boolean reversed,
+                                                 ColumnMapperWithTimestamps<T,N,V> columnMapper) {
+        SliceQuery<K,N,V> query = HFactory.createSliceQuery(getKeyspace(),
+                                                            getKeySerializer(),
+                                                            getColumnNameSerializer(),
+                                                            getValueSerializer());
+        query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setRange(start, finish, reversed, count);
+        return mapColumnsWithTimestamps(rowKey, query, columnMapper);
+    }
+
+    @Override
+    public <T> List<T> readColumnsWithTimestamps(K rowKey,
+                                                 ColumnMapperWithTimestamps<T,N,V> columnMapper,
+                                                 N... columnNames) {
+        if (columnNames.length == 0) {
+            return new ArrayList<T>();
+        }
+        SliceQuery<K,N,V> query = HFactory.createSliceQuery(getKeyspace(),
+                                                            getKeySerializer(),
+                                                            getColumnNameSerializer(),
+                                                            getValueSerializer());
+        query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setColumnNames(columnNames);
+        return mapColumnsWithTimestamps(rowKey, query, columnMapper);
+    }
+
+    @Override
+    public Iterator<Map.Entry<N,V>> iterateColumns(K rowKey, N start, N finish, int pageSize) {
+        return Iterators.transform(new SliceIterator(rowKey, start, finish, pageSize),
+                                   new Function<HColumn<N,V>,Map.Entry<N,V>>() {
+                                       @Override
+                                       public Map.Entry<N,V> apply(HColumn<N,V> column) {
+                                           return Maps.immutableEntry(column.getName(), column.getValue());
+                                       }
+                                   });
+    }
+
+    @Override
+    public void visitColumnsInPages(K rowKey, N start, N finish, int pageSize, ColumnVisitor<N,V> columnVisitor) {
+        Iterator<HColumn<N,V>> columns = new SliceIterator(rowKey, start, finish, pageSize);
+        while (columns.hasNext()) {
+            HColumn<N,V> column = columns.next();
+            columnVisitor.visit(column.getName(), column.getValue(), column.getClock(), column.getTtl());
+        }
+    }
+
     /**
      * Read all columns from multiple rows.
      *
@@ -210,6 +277,46 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
     }
 
     @Override
+    public Map<K,Map<N,V>> multiGetColumnRangeAsMap(Iterable<K> rowKeys,
+                                                    N start,
+                                                    N finish,
+                                                    int count,
+                                                    boolean reversed) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS);
+        MultigetSliceQuery<K,N,V> query = HFactory.createMultigetSliceQuery(getKeyspace(),
+                                                                            getKeySerializer(),
+                                                                            getColumnNameSerializer(),
+                                                                            getValueSerializer());
+        query.setKeys(rowKeys).
+                setColumnFamily(getColumnFamily()).
+                setRange(start, finish, reversed, count);
+        QueryResult<Rows<K,N,V>> result = query.execute();
+        timer.phase(Phase.QUERY);
+
+        Map<K,Map<N,V>> resultMap = new HashMap<K,Map<N,V>>();
+        int columnCount = 0;
+        long valueSize = 0;
+        for (Row<K,N,V> row : result.get()) {
+            Map<N,V> columns = new HashMap<N,V>();
+            List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+            for (HColumn<N,V> column : rowColumns) {
+                columns.put(column.getName(), column.getValue());
+            }
+            if (timer.isRecording()) {
+                columnCount += rowColumns.size();
+                valueSize += getValueSize(rowColumns);
+            }
+            resultMap.put(row.getKey(), columns);
+        }
+        timer.phase(Phase.DECODE);
+        timer.columnsRead(columnCount, valueSize);
+        timer.stop();
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+        return resultMap;
+    }
+
+    @Override
+    @Deprecated
     public Map<K,Map<N,V>> readRowsAsMap() {
         Map<K,Map<N,V>> resultMap = new HashMap<K,Map<N,V>>();
         RangeSlicesQuery<K, N, V> rangeSlicesQuery = HFactory.createRangeSlicesQuery(getKeyspace(),
@@ -239,11 +346,120 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
         return resultMap;
     }
 
+    /**
+     * Read a range of columns from a page of rows in a token range, in token order.
+     * The first row read is either the row with startKey, or else the first row with a token after startToken.
+     * A row with more columns in the range than are read with the rows has the rest of them read a page at a time,
+     * so a wide row is never read in a single slice.
+     *
+     * @param startKey the key of the first row to read, or null to start after startToken
+     * @param startToken the token to start after (exclusive) if startKey is null
+     * @param endToken the token to end with (inclusive)
+     * @param start the first column name of the range
+     * @param finish the last column name of the range
+     * @param maxColumnsPerRow the maximum number of columns read from each row with the rows, the rest of a row
+     *                         is read separately this many columns at a time; must be greater than one
+     * @param rowCount the maximum number of rows to read
+     * @return a map of row keys to columns, in token order
+     */
+    @Override
+    public Map<K,Map<N,V>> readRowsAsMap(@Nullable K startKey,
+                                         String startToken,
+                                         String endToken,
+                                         N start,
+                                         N finish,
+                                         int maxColumnsPerRow,
+                                         int rowCount) {
+        Validate.isTrue(maxColumnsPerRow > 1, "maxColumnsPerRow must be greater than one");
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS);
+        Map<K,Map<N,V>> resultMap = new LinkedHashMap<K,Map<N,V>>();
+        RangeSlicesQuery<K, N, V> rangeSlicesQuery = HFactory.createRangeSlicesQuery(getKeyspace(),
+                                                                                     getKeySerializer(),
+                                                                                     getColumnNameSerializer(),
+                                                                                     getValueSerializer());
+        rangeSlicesQuery.setColumnFamily(getColumnFamily());
+        if (startKey == null) {
+            rangeSlicesQuery.setTokens(null, startToken, endToken);
+        } else {
+            rangeSlicesQuery.setTokens(startKey, null, endToken);
+        }
+        rangeSlicesQuery.setRange(start, finish, false, maxColumnsPerRow);
+        rangeSlicesQuery.setRowCount(rowCount);
+        QueryResult<OrderedRows<K, N, V>> result = rangeSlicesQuery.execute();
+        timer.phase(Phase.QUERY);
+        int columnCount = 0;
+        long valueSize = 0;
+        Map<K,N> truncatedRows = new LinkedHashMap<K,N>();
+        for (Row<K,N,V> row : result.get()) {
+            Map<N,V> columns = new HashMap<N,V>();
+            List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+            for (HColumn<N,V> column : rowColumns) {
+                columns.put(column.getName(), column.getValue());
+            }
+            if (timer.isRecording()) {
+                columnCount += rowColumns.size();
+                valueSize += getValueSize(rowColumns);
+            }
+            if (rowColumns.size() == maxColumnsPerRow) {
+                truncatedRows.put(row.getKey(), rowColumns.get(rowColumns.size() - 1).getName());
+            }
+            resultMap.put(row.getKey(), columns);
+        }
+        timer.phase(Phase.DECODE);
+        timer.columnsRead(columnCount, valueSize);
+        timer.stop();
+
+        // the rest of each wide row is read starting from its last column read, which is read again
+        for (Map.Entry<K,N> row : truncatedRows.entrySet()) {
+            final Map<N,V> columns = resultMap.get(row.getKey());
+            visitColumnsInPages(row.getKey(), row.getValue(), finish, maxColumnsPerRow, new ColumnVisitor<N,V>() {
+                @Override
+                public void visit(N columnName, V columnValue, long timestamp, int ttl) {
+                    columns.put(columnName, columnValue);
+                }
+            });
+        }
+        return resultMap;
+    }
+
     /**
      * Read all columns from multiple rows using a mapper for the result.
      *
      * @param rowKeys a collection of rows to read
      */
+    @Override
+    public Iterator<Map.Entry<K,Map<N,V>>> iterateRows(N start, N finish, int maxColumnsPerRow, int rowPageSize) {
+        Validate.isTrue(maxColumnsPerRow > 0, "maxColumnsPerRow must be positive");
+        return Iterators.transform(new RangeIterator(start, finish, maxColumnsPerRow, rowPageSize),
+                                   new Function<Row<K,N,V>,Map.Entry<K,Map<N,V>>>() {
+                                       @Override
+                                       public Map.Entry<K,Map<N,V>> apply(Row<K,N,V> row) {
+                                           return Maps.immutableEntry(row.getKey(), toMap(row));
+                                       }
+                                   });
+    }
+
+    @Override
+    public void visitRows(N start, N finish, int maxColumnsPerRow, int rowPageSize, RowVisitor<K,N,V> rowVisitor) {
+        Validate.isTrue(maxColumnsPerRow > 0, "maxColumnsPerRow must be positive");
+        Iterator<Row<K,N,V>> rows = new RangeIterator(start, finish, maxColumnsPerRow, rowPageSize);
+        while (rows.hasNext()) {
+            Row<K,N,V> row = rows.next();
+            rowVisitor.visit(row.getKey(), toMap(row));
+        }
+    }
+
+    @Override
+    public Iterator<K> iterateRowKeys(int rowPageSize) {
+        return Iterators.transform(new RangeIterator(null, null, 1, rowPageSize),
+                                   new Function<Row<K,N,V>,K>() {
+                                       @Override
+                                       public K apply(Row<K,N,V> row) {
+                                           return row.getKey();
+                                       }
+                                   });
+    }
+
     @Override
     public <T> List<T> multiGet(Iterable<K> rowKeys, ColumnFamilyRowMapper<T,K,N,V> rowMapper) {
         if (LOG.isDebugEnabled()) {
@@ -368,8 +584,32 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
             for (N columnName : columnNames) {
                 mutator.addDeletion(rowKey, getColumnFamily(), columnName, getColumnNameSerializer());
             }
-            mutator.execute();
+            executeMutator(mutator, Operation.DELETE_COLUMNS);
+        }
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+    }
+
+    @Override
+    public void deleteColumns(K rowKey, Iterable<N> columnNames, @Nonnull BatchContext batchContext) {
+        Validate.notNull(batchContext);
+        Mutator<K> mutator = validateAndGetMutator(batchContext);
+
+        for (N columnName : columnNames) {
+            mutator.addDeletion(rowKey, getColumnFamily(), columnName, getColumnNameSerializer());
+        }
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+    }
+
+    @Override
+    public void deleteColumnsWithTimestamps(K rowKey, Map<N,Long> timestamps) {
+        if (timestamps.isEmpty()) {
+            return;
         }
+        Mutator<K> mutator = createMutator();
+        for (Map.Entry<N,Long> entry : timestamps.entrySet()) {
+            mutator.addDeletion(rowKey, getColumnFamily(), entry.getKey(), getColumnNameSerializer(), entry.getValue());
+        }
+        executeMutator(mutator, Operation.DELETE_COLUMNS);
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
     }
 
@@ -380,33 +620,134 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
 
     @Override
     public void deleteColumns(K rowKey, N start, N finish, @Nullable BatchContext batchContext) {
-        Mutator<K> mutator;
-        boolean shouldExecute;
-        if (batchContext == null) {
-            shouldExecute = true;
-            mutator = createMutator();
-        } else {
-            shouldExecute = false;
-            mutator = validateAndGetMutator(batchContext);
-        }
+        Mutator<K> batchMutator = validateAndGetMutator(batchContext);
 
         // unfortunately the thrift API to Cassandra does not support deleting with a SliceRange.
         // !! We have read before delete -- performance and thread safety issue
-        // get column names to delete using a slice query
-        List<N> columnNamesToDelete = readColumns(rowKey,
-                                                  start,
-                                                  finish,
-                                                  ALL,
-                                                  false,
-                                                  columnMapperToGetColumnNames);
-        for (N columnName : columnNamesToDelete) {
-            mutator.addDeletion(rowKey, getColumnFamily(), columnName, getColumnNameSerializer());
+        // The column names are read a page at a time without deserializing the values, and unless this is part
+        // of a batch each page is deleted in its own mutation, so a large range is never held in memory at once.
+        N pageStart = start;
+        N previousLast = null;
+        List<N> page;
+        do {
+            page = readColumnNames(rowKey, pageStart, finish, getDeletePageSize());
+            List<N> columnNamesToDelete = withoutPreviousLast(page, previousLast);
+            if (columnNamesToDelete.isEmpty()) {
+                break;
+            }
+            Mutator<K> mutator = batchMutator == null ? createMutator() : batchMutator;
+            for (N columnName : columnNamesToDelete) {
+                mutator.addDeletion(rowKey, getColumnFamily(), columnName, getColumnNameSerializer());
+            }
+            if (batchMutator == null) {
+                executeMutator(mutator, Operation.DELETE_COLUMNS);
+            }
+            previousLast = page.get(page.size() - 1);
+            pageStart = previousLast;
+        } while (page.size() == getDeletePageSize());
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+    }
+
+    /**
+     * Read the names of a range of columns, leaving the values serialized.
+     */
+    List<N> readColumnNames(K rowKey, N start, N finish, int count) {
+        SliceQuery<K,N,ByteBuffer> query = HFactory.createSliceQuery(getKeyspace(),
+                                                                     getKeySerializer(),
+                                                                     getColumnNameSerializer(),
+                                                                     ByteBufferSerializer.get());
+        ColumnSlice<N,ByteBuffer> slice = query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setRange(start, finish, false, count).
+                execute().
+                get();
+
+        List<N> columnNames = new ArrayList<N>(slice.getColumns().size());
+        for (HColumn<N,ByteBuffer> column : slice.getColumns()) {
+            columnNames.add(column.getName());
         }
+        return columnNames;
+    }
 
-        if (shouldExecute) {
-            mutator.execute();
+    /**
+     * Read one slice of a range of columns.
+     */
+    List<HColumn<N,V>> readColumnSlice(K rowKey, N start, N finish, int count) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, rowKey, null);
+        SliceQuery<K,N,V> query = HFactory.createSliceQuery(getKeyspace(),
+                                                            getKeySerializer(),
+                                                            getColumnNameSerializer(),
+                                                            getValueSerializer());
+        List<HColumn<N,V>> columns = query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setRange(start, finish, false, count).
+                execute().
+                get().
+                getColumns();
+        timer.phase(Phase.QUERY);
+        if (timer.isRecording()) {
+            timer.columnsRead(columns.size(), getValueSize(columns));
+        }
+        timer.stop();
+        return columns;
+    }
+
+    /**
+     * Read one page of rows in token order, starting from a row key.
+     */
+    List<Row<K,N,V>> readRowSlice(@Nullable K startKey, N start, N finish, int count, int rowCount) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS);
+        RangeSlicesQuery<K,N,V> rangeSlicesQuery = HFactory.createRangeSlicesQuery(getKeyspace(),
+                                                                                   getKeySerializer(),
+                                                                                   getColumnNameSerializer(),
+                                                                                   getValueSerializer());
+        rangeSlicesQuery.setColumnFamily(getColumnFamily());
+        rangeSlicesQuery.setKeys(startKey, null);
+        rangeSlicesQuery.setRange(start, finish, false, count);
+        rangeSlicesQuery.setRowCount(rowCount);
+        List<Row<K,N,V>> rows = rangeSlicesQuery.execute().get().getList();
+        timer.phase(Phase.QUERY);
+        if (timer.isRecording()) {
+            int columnCount = 0;
+            long valueSize = 0;
+            for (Row<K,N,V> row : rows) {
+                List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+                columnCount += rowColumns.size();
+                valueSize += getValueSize(rowColumns);
+            }
+            timer.columnsRead(columnCount, valueSize);
+        }
+        timer.stop();
+        return rows;
+    }
+
+    private Map<N,V> toMap(Row<K,N,V> row) {
+        List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+        Map<N,V> columns = new HashMap<N,V>(rowColumns.size());
+        for (HColumn<N,V> column : rowColumns) {
+            columns.put(column.getName(), column.getValue());
+        }
+        return columns;
+    }
+
+    private <T> List<T> mapColumnsWithTimestamps(K rowKey,
+                                                 SliceQuery<K,N,V> query,
+                                                 ColumnMapperWithTimestamps<T,N,V> columnMapper) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, rowKey, null);
+        ColumnSlice<N,V> slice = query.execute().get();
+        timer.phase(Phase.QUERY);
+
+        List<T> resultList = new ArrayList<T>(slice.getColumns().size());
+        for (HColumn<N,V> column : slice.getColumns()) {
+            resultList.add(columnMapper.mapColumn(column.getName(), column.getValue(), column.getClock()));
+        }
+        timer.phase(Phase.DECODE);
+        if (timer.isRecording()) {
+            timer.columnsRead(resultList.size(), getValueSize(slice.getColumns()));
         }
+        timer.stop();
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+        return resultList;
     }
 
     /**
@@ -539,13 +880,21 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
     }
 
     private void insertColumns(K rowKey, Map<N,V> properties) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE_COLUMNS, rowKey, null);
         Mutator<K> mutator = createMutator();
+        long valueSize = 0;
         for (Map.Entry<N,V> mapEntry : properties.entrySet()) {
             N key = mapEntry.getKey();
             V value = mapEntry.getValue();
-            mutator.addInsertion(rowKey, getColumnFamily(), createColumn(key, value));
+            HColumn<N,V> column = createColumn(key, value);
+            valueSize += column.getValueBytes().remaining();
+            mutator.addInsertion(rowKey, getColumnFamily(), column);
         }
+        timer.phase(Phase.ENCODE);
+        timer.columnsWritten(properties.size(), valueSize);
         mutator.execute();
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
     }
 
     private HColumn<N,V> createColumn(N key, V value) {
@@ -555,4 +904,46 @@ public class ColumnFamilyTemplate<K,N,V> extends AbstractColumnFamilyTemplate<K,
     private Serializer<N> getColumnNameSerializer() {
         return getTopSerializer();
     }
+
+    private class RangeIterator extends RowPageIterator<K,Row<K,N,V>> {
+        private final N start;
+        private final N finish;
+        private final int maxColumnsPerRow;
+
+        private RangeIterator(N start, N finish, int maxColumnsPerRow, int rowPageSize) {
+            super(rowPageSize);
+            this.start = start;
+            this.finish = finish;
+            this.maxColumnsPerRow = maxColumnsPerRow;
+        }
+
+        @Override
+        protected List<Row<K,N,V>> readPage(@Nullable K startKey, int rowCount) {
+            return readRowSlice(startKey, start, finish, maxColumnsPerRow, rowCount);
+        }
+
+        @Override
+        protected K getKey(Row<K,N,V> row) {
+            return row.getKey();
+        }
+
+        @Override
+        protected boolean hasColumns(Row<K,N,V> row) {
+            return !row.getColumnSlice().getColumns().isEmpty();
+        }
+    }
+
+    private class SliceIterator extends ColumnPageIterator<N,V> {
+        private final K rowKey;
+
+        private SliceIterator(K rowKey, N start, N finish, int pageSize) {
+            super(start, finish, pageSize);
+            this.rowKey = rowKey;
+        }
+
+        @Override
+        protected List<HColumn<N,V>> readPage(N start, N finish, int count) {
+            return readColumnSlice(rowKey, start, finish, count);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+
+import com.google.common.collect.AbstractIterator;
+
+import me.prettyprint.hector.api.beans.HColumn;
+
+/**
+ * Iterates over a range of columns, reading one page of columns at a time. Each page is read starting from the
+ * last column name of the previous page, which is then skipped, so the range is never read in a single slice.
+ *
+ * @param <N> the type of the column names
+ * @param <V> the type of the column values
+ */
+abstract class ColumnPageIterator<N,V> extends AbstractIterator<HColumn<N,V>> {
+    private final N finish;
+    private final int pageSize;
+    private N pageStart;
+    @Nullable
+    private N previousLast;
+    private Iterator<HColumn<N,V>> page = Collections.<HColumn<N,V>>emptyList().iterator();
+    private boolean lastPage;
+
+    /**
+     * @param start the first column name of the range
+     * @param finish the last column name of the range
+     * @param pageSize the maximum number of columns read in one slice, must be greater than one
+     */
+    ColumnPageIterator(N start, N finish, int pageSize) {
+        Validate.isTrue(pageSize > 1, "pageSize must be greater than one");
+        pageStart = start;
+        this.finish = finish;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Read one slice of columns in column name order.
+     */
+    protected abstract List<HColumn<N,V>> readPage(N start, N finish, int count);
+
+    @Override
+    protected HColumn<N,V> computeNext() {
+        while (!page.hasNext()) {
+            if (lastPage) {
+                return endOfData();
+            }
+            List<HColumn<N,V>> columns = readPage(pageStart, finish, pageSize);
+            lastPage = columns.size() < pageSize;
+            if (columns.isEmpty()) {
+                return endOfData();
+            }
+            N first = columns.get(0).getName();
+            N last = columns.get(columns.size() - 1).getName();
+            if (previousLast != null && previousLast.equals(first)) {
+                columns = columns.subList(1, columns.size());
+            }
+            previousLast = last;
+            pageStart = last;
+            page = columns.iterator();
+        }
+        return page.next();
+    }
+}
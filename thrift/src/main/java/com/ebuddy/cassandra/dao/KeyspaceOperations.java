@@ -35,6 +35,21 @@ public interface KeyspaceOperations {
      */
     BatchContext begin();
 
+    /**
+     * Create a BatchContext that executes the pending mutations whenever their number or their estimated size in
+     * bytes reaches a threshold. The remaining mutations are executed on commit.
+     *
+     * @param maxMutationCount the number of pending mutations that are executed together
+     * @param maxByteSize the estimated size in bytes of the pending mutations at which they are executed
+     * @return the BatchContext
+     */
+    AutoFlushingBatchContext begin(int maxMutationCount, long maxByteSize);
+
+    /**
+     * Get the name of the keyspace of this DAO.
+     */
+    String getKeyspaceName();
+
     /**
      * Execute a batch of mutations using a mutator.
      *
@@ -21,6 +21,11 @@ import javax.annotation.Nonnull;
 import org.apache.commons.lang3.Validate;
 
 import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.metrics.Metrics;
+import com.ebuddy.cassandra.metrics.NoOpMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
 
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.Serializer;
@@ -43,6 +48,10 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
      * The serializer for row keys.
      */
     private final Serializer<K> keySerializer;
+    /**
+     * The metrics that operations are recorded to.
+     */
+    private Metrics metrics = NoOpMetrics.INSTANCE;
 
     public KeyspaceTemplate(Keyspace keyspace, Serializer<K> keySerializer) {
         if (keySerializer == null) {
@@ -60,7 +69,28 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
      */
     @Override
     public final BatchContext begin() {
-        return new HectorBatchContext(keyspace, keySerializer);
+        return new HectorBatchContext(HFactory.createMutator(keyspace, keySerializer));
+    }
+
+    /**
+     * Create a BatchContext that executes the pending mutations whenever their number or their estimated size in
+     * bytes reaches a threshold, instead of sending the whole batch in one batch mutation on commit.
+     * The mutations keep the timestamps they are given when they are added, so a batch that is flushed has the
+     * same effect as one that is not.
+     *
+     * @param maxMutationCount the number of pending mutations that are executed together
+     * @param maxByteSize the estimated size in bytes of the pending mutations at which they are executed
+     */
+    @Override
+    public final AutoFlushingBatchContext begin(int maxMutationCount, long maxByteSize) {
+        Validate.isTrue(maxMutationCount > 0, "maxMutationCount must be positive");
+        Validate.isTrue(maxByteSize > 0, "maxByteSize must be positive");
+        AutoFlushingMutator<K> mutator = new AutoFlushingMutator<K>(HFactory.createMutator(keyspace, keySerializer),
+                                                                    keySerializer,
+                                                                    maxMutationCount,
+                                                                    maxByteSize,
+                                                                    metrics);
+        return new AutoFlushingHectorBatchContext(mutator);
     }
 
     /**
@@ -75,7 +105,25 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
 
         // could translate the hector exception here in a try/catch to a library specific exception;
         // we used to translate to spring exceptions, but spring dependency has been removed
-        mutator.execute();
+        executeMutator(mutator, Operation.COMMIT);
+    }
+
+    @Override
+    public final String getKeyspaceName() {
+        return keyspace.getKeyspaceName();
+    }
+
+    /**
+     * Set the metrics that the queries and mutations of this template are recorded to.
+     * By default nothing is recorded.
+     */
+    public void setMetrics(Metrics metrics) {
+        Validate.notNull(metrics);
+        this.metrics = metrics;
+    }
+
+    protected final Metrics getMetrics() {
+        return metrics;
     }
 
     protected final Mutator<K> validateAndGetMutator(BatchContext txnContext) {
@@ -94,6 +142,18 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
         return htc.getMutator();
     }
 
+    /**
+     * Execute the pending mutations of a mutator, recording the operation to the metrics.
+     */
+    protected final void executeMutator(Mutator<K> mutator, Operation operation) {
+        OperationTimer timer = OperationTimer.start(metrics, operation);
+        int mutationCount = mutator.getPendingMutationCount();
+        mutator.execute();
+        timer.phase(Phase.EXECUTE);
+        timer.batchSize(mutationCount);
+        timer.stop();
+    }
+
     protected final Serializer<K> getKeySerializer() {
         return keySerializer;
     }
@@ -105,8 +165,8 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
     class HectorBatchContext implements BatchContext {
         final Mutator<K> mutator;
 
-        private HectorBatchContext(Keyspace keyspace, Serializer<K> keySerializer) {
-            mutator = HFactory.createMutator(keyspace, keySerializer);
+        private HectorBatchContext(Mutator<K> mutator) {
+            this.mutator = mutator;
         }
 
         Mutator<K> getMutator() {
@@ -119,4 +179,23 @@ public class KeyspaceTemplate<K> implements KeyspaceOperations {
             }
         }
     }
+
+    private class AutoFlushingHectorBatchContext extends HectorBatchContext implements AutoFlushingBatchContext {
+        private final AutoFlushingMutator<K> autoFlushingMutator;
+
+        private AutoFlushingHectorBatchContext(AutoFlushingMutator<K> autoFlushingMutator) {
+            super(autoFlushingMutator);
+            this.autoFlushingMutator = autoFlushingMutator;
+        }
+
+        @Override
+        public int getFlushCount() {
+            return autoFlushingMutator.getFlushCount();
+        }
+
+        @Override
+        public long getMutationCount() {
+            return autoFlushingMutator.getMutationCount();
+        }
+    }
 }
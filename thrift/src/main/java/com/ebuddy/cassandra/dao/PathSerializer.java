@@ -0,0 +1,98 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import java.nio.ByteBuffer;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.structure.DefaultPath;
+
+import me.prettyprint.cassandra.serializers.AbstractSerializer;
+import me.prettyprint.cassandra.serializers.StringSerializer;
+
+/**
+ * Serializer for Paths used as column names, which writes the same bytes as serializing the String representation
+ * of the path with the StringSerializer, i.e. each encoded element followed by a delimiter, in UTF-8.
+ * Paths are written straight into the ByteBuffer without building the String first, unless an element has
+ * non-ASCII characters, which can only happen for paths created from raw encoded path strings.
+ * When reading, the elements of the path are only split when they are first accessed.
+ */
+public class PathSerializer extends AbstractSerializer<Path> {
+    private static final PathSerializer INSTANCE = new PathSerializer();
+    private static final byte PATH_DELIMITER_BYTE = '/';
+    private static final char MAX_ASCII_CHAR = 0x7f;
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Only instantiated once for the static singleton.
+     */
+    private PathSerializer() { }
+
+    /**
+     * Get the singleton instance of PathSerializer.
+     *
+     * @return the singleton PathSerializer
+     */
+    public static PathSerializer get() {
+        return INSTANCE;
+    }
+
+    @Override
+    public ByteBuffer toByteBuffer(Path path) {
+        if (path == null) {
+            return null;
+        }
+        // the elements of a path can be a view that encodes them each time they are iterated,
+        // so they are written in a single pass, growing the buffer if they do not fit
+        ByteBuffer byteBuffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+        for (String element : path.getElements()) {
+            if (byteBuffer.remaining() < element.length() + 1) {
+                byteBuffer = grow(byteBuffer, element.length() + 1);
+            }
+            for (int i = 0; i < element.length(); i++) {
+                char c = element.charAt(i);
+                if (c > MAX_ASCII_CHAR) {
+                    return StringSerializer.get().toByteBuffer(path.toString());
+                }
+                byteBuffer.put((byte)c);
+            }
+            byteBuffer.put(PATH_DELIMITER_BYTE);
+        }
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    @Override
+    public Path fromByteBuffer(ByteBuffer byteBuffer) {
+        if (byteBuffer == null) {
+            return null;
+        }
+        return DefaultPath.fromEncodedPathString(StringSerializer.get().fromByteBuffer(byteBuffer));
+    }
+
+    /**
+     * Copy the bytes written so far to a buffer with room for at least the given number of bytes more.
+     */
+    private static ByteBuffer grow(ByteBuffer byteBuffer, int needed) {
+        int capacity = Math.max(byteBuffer.capacity() * 2, byteBuffer.position() + needed);
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        byteBuffer.flip();
+        grown.put(byteBuffer);
+        return grown;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.dao;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterates over the rows of a column family in token order, reading one page of rows at a time. Each page is read
+ * starting from the key of the last row of the previous page, which is then skipped, so the rows are never all
+ * held in memory at once. Rows without columns, which include deleted rows that have not been compacted away,
+ * are skipped.
+ *
+ * @param <K> the type of the row keys
+ * @param <R> the type of the rows as read by a query
+ */
+abstract class RowPageIterator<K,R> extends AbstractIterator<R> {
+    private final int rowPageSize;
+    @Nullable
+    private K previousLast;
+    private Iterator<R> page = Collections.<R>emptyList().iterator();
+    private boolean lastPage;
+
+    /**
+     * @param rowPageSize the maximum number of rows read in one query, must be greater than one
+     */
+    RowPageIterator(int rowPageSize) {
+        Validate.isTrue(rowPageSize > 1, "rowPageSize must be greater than one");
+        this.rowPageSize = rowPageSize;
+    }
+
+    /**
+     * Read one page of rows in token order.
+     *
+     * @param startKey the key of the first row to read, or null to start from the beginning of the ring
+     * @param rowCount the maximum number of rows to read
+     */
+    protected abstract List<R> readPage(@Nullable K startKey, int rowCount);
+
+    protected abstract K getKey(R row);
+
+    protected abstract boolean hasColumns(R row);
+
+    @Override
+    protected R computeNext() {
+        while (true) {
+            while (page.hasNext()) {
+                R row = page.next();
+                if (hasColumns(row)) {
+                    return row;
+                }
+            }
+            if (lastPage) {
+                return endOfData();
+            }
+            List<R> rows = readPage(previousLast, rowPageSize);
+            lastPage = rows.size() < rowPageSize;
+            if (rows.isEmpty()) {
+                return endOfData();
+            }
+            K first = getKey(rows.get(0));
+            K last = getKey(rows.get(rows.size() - 1));
+            if (previousLast != null && previousLast.equals(first)) {
+                rows = rows.subList(1, rows.size());
+            }
+            previousLast = last;
+            page = rows.iterator();
+        }
+    }
+}
@@ -17,10 +17,12 @@
 package com.ebuddy.cassandra.dao;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import com.ebuddy.cassandra.BatchContext;
 import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
@@ -28,6 +30,7 @@ import com.ebuddy.cassandra.dao.mapper.ColumnMapperWithTimestamps;
 import com.ebuddy.cassandra.dao.mapper.SuperColumnFamilyRowMapper;
 import com.ebuddy.cassandra.dao.mapper.SuperColumnMapper;
 import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.dao.visitor.RowVisitor;
 
 /**
  * Operations for a super column family.
@@ -47,6 +50,21 @@ public interface SuperColumnFamilyOperations<K,SN,N,V>  {
      */
     BatchContext begin();
 
+    /**
+     * Create a BatchContext that executes the pending mutations whenever their number or their estimated size in
+     * bytes reaches a threshold. The remaining mutations are executed on commit.
+     *
+     * @param maxMutationCount the number of pending mutations that are executed together
+     * @param maxByteSize the estimated size in bytes of the pending mutations at which they are executed
+     * @return the BatchContext
+     */
+    AutoFlushingBatchContext begin(int maxMutationCount, long maxByteSize);
+
+    /**
+     * Get the name of the keyspace of this DAO.
+     */
+    String getKeyspaceName();
+
     /**
      * Execute a batch of updates.
      *
@@ -91,6 +109,36 @@ public interface SuperColumnFamilyOperations<K,SN,N,V>  {
                          boolean reversed,
                          ColumnVisitor<N, V> columnVisitor);
 
+    /**
+     * Iterate over a range of subcolumns from a single super column, reading a page of subcolumns at a time,
+     * so a wide super column is never read in a single slice.
+     *
+     * @param rowKey the row key
+     * @param superColumnName the name of the super column
+     * @param start the first subcolumn name of the range
+     * @param finish the last subcolumn name of the range
+     * @param pageSize the maximum number of subcolumns read in one slice, must be greater than one
+     * @return an iterator over the subcolumns in subcolumn name order, which reads the next page when needed
+     */
+    Iterator<Map.Entry<N,V>> iterateColumns(K rowKey, SN superColumnName, N start, N finish, int pageSize);
+
+    /**
+     * Visit a range of subcolumns from a single super column, reading a page of subcolumns at a time.
+     *
+     * @param rowKey the row key
+     * @param superColumnName the name of the super column
+     * @param start the first subcolumn name of the range
+     * @param finish the last subcolumn name of the range
+     * @param pageSize the maximum number of subcolumns read in one slice, must be greater than one
+     * @param columnVisitor the visitor of each subcolumn, in subcolumn name order
+     */
+    void visitColumnsInPages(K rowKey,
+                             SN superColumnName,
+                             N start,
+                             N finish,
+                             int pageSize,
+                             ColumnVisitor<N,V> columnVisitor);
+
     Map<K,Map<N,V>> multiGetAsMap(Collection<K> rowKeys, SN superColumnName);
 
     Map<K,Map<N,V>> multiGetColumnsAsMap(Collection<K> rowKeys, SN superColumnName, N... columnNames);
@@ -115,8 +163,80 @@ public interface SuperColumnFamilyOperations<K,SN,N,V>  {
                                            boolean reversed,
                                            ColumnMapper<T,N,V> columnMapper);
 
+    /**
+     * Read a range of columns from a single super column in a page of rows in a token range, in token order.
+     *
+     * @param startKey the key of the first row to read, or null to start after startToken
+     * @param startToken the token to start after (exclusive) if startKey is null
+     * @param endToken the token to end with (inclusive)
+     * @param superColumnName the name of the super column
+     * @param start the first subcolumn name of the range
+     * @param finish the last subcolumn name of the range
+     * @param maxColumnsPerRow the maximum number of subcolumns read from each row with the rows, the rest of a row
+     *                         is read separately this many subcolumns at a time; must be greater than one
+     * @param rowCount the maximum number of rows to read
+     * @return a map of row keys to columns, in token order
+     */
+    Map<K,Map<N,V>> readRowsAsMap(@Nullable K startKey,
+                                  String startToken,
+                                  String endToken,
+                                  SN superColumnName,
+                                  N start,
+                                  N finish,
+                                  int maxColumnsPerRow,
+                                  int rowCount);
+
+    /**
+     * Iterate over the rows of the super column family in token order, reading a range of subcolumns from a single
+     * super column of each row, a page of rows at a time. Each page starts from the key of the last row of the
+     * previous page. Rows that have no subcolumns in the range, including deleted rows that have not been
+     * compacted away yet, are skipped.
+     *
+     * @param superColumnName the name of the super column
+     * @param start the first subcolumn name of the range read from each row
+     * @param finish the last subcolumn name of the range read from each row
+     * @param maxColumnsPerRow the maximum number of subcolumns read from each row
+     * @param rowPageSize the maximum number of rows read in one query, must be greater than one
+     * @return an iterator over the rows, which reads the next page when needed
+     */
+    Iterator<Map.Entry<K,Map<N,V>>> iterateRows(SN superColumnName,
+                                                N start,
+                                                N finish,
+                                                int maxColumnsPerRow,
+                                                int rowPageSize);
+
+    /**
+     * Visit the rows of the super column family in token order, reading a page of rows at a time.
+     *
+     * @see #iterateRows
+     */
+    void visitRows(SN superColumnName,
+                   N start,
+                   N finish,
+                   int maxColumnsPerRow,
+                   int rowPageSize,
+                   RowVisitor<K,N,V> rowVisitor);
+
+    /**
+     * Iterate over the keys of the rows of the super column family in token order, reading a page of rows at a
+     * time and only the first super column of each row, so deleted rows can be skipped.
+     *
+     * @param rowPageSize the maximum number of rows read in one query, must be greater than one
+     * @return an iterator over the row keys, which reads the next page when needed
+     */
+    Iterator<K> iterateRowKeys(int rowPageSize);
+
     Map<SN,Map<N,V>> readRowAsMap(K key);
 
+    /**
+     * Read the named super columns of a row with one query.
+     *
+     * @param key the row key
+     * @param superColumnNames the names of the super columns to read
+     * @return a map of the names of the super columns found to their columns
+     */
+    Map<SN,Map<N,V>> readSuperColumnsAsMap(K key, SN... superColumnNames);
+
     <T> List<T> readRow(K key, SuperColumnMapper<T,K,SN,N,V> superColumnMapper);
 
     void writeColumns(K rowKey, SN superColumnName, Map<N,V> columnMap);
@@ -16,10 +16,13 @@
 
 package com.ebuddy.cassandra.dao;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +30,11 @@ import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.cassandra.thrift.Column;
+import org.apache.cassandra.thrift.ColumnParent;
+import org.apache.cassandra.thrift.KeyRange;
+import org.apache.cassandra.thrift.SlicePredicate;
+import org.apache.cassandra.thrift.SliceRange;
 import org.apache.commons.lang3.Validate;
 
 import com.ebuddy.cassandra.BatchContext;
@@ -35,8 +43,19 @@ import com.ebuddy.cassandra.dao.mapper.ColumnMapperWithTimestamps;
 import com.ebuddy.cassandra.dao.mapper.SuperColumnFamilyRowMapper;
 import com.ebuddy.cassandra.dao.mapper.SuperColumnMapper;
 import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.dao.visitor.RowVisitor;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.google.common.base.Function;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
+import me.prettyprint.cassandra.model.ExecutingKeyspace;
+import me.prettyprint.cassandra.serializers.ByteBufferSerializer;
+import me.prettyprint.cassandra.model.KeyspaceOperationCallback;
+import me.prettyprint.cassandra.service.KeyspaceService;
 import me.prettyprint.hector.api.Keyspace;
 import me.prettyprint.hector.api.Serializer;
 import me.prettyprint.hector.api.beans.ColumnSlice;
@@ -52,6 +71,8 @@ import me.prettyprint.hector.api.mutation.Mutator;
 import me.prettyprint.hector.api.query.MultigetSubSliceQuery;
 import me.prettyprint.hector.api.query.MultigetSuperSliceQuery;
 import me.prettyprint.hector.api.query.QueryResult;
+import me.prettyprint.hector.api.query.RangeSubSlicesQuery;
+import me.prettyprint.hector.api.query.RangeSuperSlicesQuery;
 import me.prettyprint.hector.api.query.SubColumnQuery;
 import me.prettyprint.hector.api.query.SubSliceQuery;
 import me.prettyprint.hector.api.query.SuperSliceQuery;
@@ -75,13 +96,6 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
      */
     private final Serializer<N> subSerializer;
 
-    private final ColumnMapper<N,N,V> columnMapperToGetColumnNames = new ColumnMapper<N,N,V>() {
-        @Override
-        public N mapColumn(N columnName, V columnValue) {
-            return columnName;
-        }
-    };
-
 
     public SuperColumnFamilyTemplate(Keyspace keyspace,
                                      @Nullable String columnFamily,
@@ -168,6 +182,7 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
                                      N finish,
                                      int count,
                                      boolean reversed) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, rowKey, null);
         Map<N,V> columns = new HashMap<N,V>();
 
         SubSliceQuery<K,SN,N,V> query = HFactory.createSubSliceQuery(getKeyspace(),
@@ -182,11 +197,17 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
 
         QueryResult<ColumnSlice<N,V>> result = query.execute();
         ColumnSlice<N,V> slice = result.get();
+        timer.phase(Phase.QUERY);
 
         for (HColumn<N,V> column : slice.getColumns()) {
             V value = column.getValue();
             columns.put(column.getName(), value);
         }
+        timer.phase(Phase.DECODE);
+        if (timer.isRecording()) {
+            timer.columnsRead(columns.size(), getValueSize(slice.getColumns()));
+        }
+        timer.stop();
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
         return columns;
     }
@@ -291,6 +312,31 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
     }
 
+    @Override
+    public Iterator<Map.Entry<N,V>> iterateColumns(K rowKey, SN superColumnName, N start, N finish, int pageSize) {
+        return Iterators.transform(new SubSliceIterator(rowKey, superColumnName, start, finish, pageSize),
+                                   new Function<HColumn<N,V>,Map.Entry<N,V>>() {
+                                       @Override
+                                       public Map.Entry<N,V> apply(HColumn<N,V> column) {
+                                           return Maps.immutableEntry(column.getName(), column.getValue());
+                                       }
+                                   });
+    }
+
+    @Override
+    public void visitColumnsInPages(K rowKey,
+                                    SN superColumnName,
+                                    N start,
+                                    N finish,
+                                    int pageSize,
+                                    ColumnVisitor<N,V> columnVisitor) {
+        Iterator<HColumn<N,V>> columns = new SubSliceIterator(rowKey, superColumnName, start, finish, pageSize);
+        while (columns.hasNext()) {
+            HColumn<N,V> column = columns.next();
+            columnVisitor.visit(column.getName(), column.getValue(), column.getClock(), column.getTtl());
+        }
+    }
+
     /**
      * Read all columns from multiple rows from a single super column in each row.
      *
@@ -318,6 +364,151 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
         return basicMultiGetAsMap(rowKeys, superColumnName, columnNames);
     }
 
+    /**
+     * Read a range of columns from a single super column in a page of rows in a token range, in token order.
+     * The first row read is either the row with startKey, or else the first row with a token after startToken.
+     * This requires the Keyspace to be created by HFactory, since Hector has no token support for
+     * range queries on super columns.
+     * A row with more subcolumns in the range than are read with the rows has the rest of them read a page at a
+     * time, so a wide row is never read in a single slice.
+     *
+     * @param startKey the key of the first row to read, or null to start after startToken
+     * @param startToken the token to start after (exclusive) if startKey is null
+     * @param endToken the token to end with (inclusive)
+     * @param superColumnName the name of the super column
+     * @param start the first subcolumn name of the range
+     * @param finish the last subcolumn name of the range
+     * @param maxColumnsPerRow the maximum number of subcolumns read from each row with the rows, the rest of a row
+     *                         is read separately this many subcolumns at a time; must be greater than one
+     * @param rowCount the maximum number of rows to read
+     * @return a map of row keys to columns, in token order
+     */
+    @Override
+    public Map<K,Map<N,V>> readRowsAsMap(@Nullable K startKey,
+                                         String startToken,
+                                         String endToken,
+                                         SN superColumnName,
+                                         N start,
+                                         N finish,
+                                         int maxColumnsPerRow,
+                                         int rowCount) {
+        Validate.isTrue(maxColumnsPerRow > 1, "maxColumnsPerRow must be greater than one");
+        if (!(getKeyspace() instanceof ExecutingKeyspace)) {
+            throw new UnsupportedOperationException("token range queries require a Keyspace created by HFactory");
+        }
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS);
+
+        final ColumnParent columnParent = new ColumnParent(getColumnFamily());
+        columnParent.setSuper_column(getSuperColumnNameSerializer().toByteBuffer(superColumnName));
+
+        SliceRange sliceRange = new SliceRange(getSubcolumnNameSerializer().toByteBuffer(start),
+                                               getSubcolumnNameSerializer().toByteBuffer(finish),
+                                               false,
+                                               maxColumnsPerRow);
+        final SlicePredicate predicate = new SlicePredicate();
+        predicate.setSlice_range(sliceRange);
+
+        final KeyRange keyRange = new KeyRange(rowCount);
+        if (startKey == null) {
+            keyRange.setStart_token(startToken);
+        } else {
+            keyRange.setStart_key(getKeySerializer().toByteBuffer(startKey));
+        }
+        keyRange.setEnd_token(endToken);
+
+        Map<ByteBuffer,List<Column>> rows = ((ExecutingKeyspace)getKeyspace()).doExecute(
+                new KeyspaceOperationCallback<Map<ByteBuffer,List<Column>>>() {
+                    @Override
+                    public Map<ByteBuffer,List<Column>> doInKeyspace(KeyspaceService ks) {
+                        return ks.getRangeSlices(columnParent, predicate, keyRange);
+                    }
+                }).get();
+        timer.phase(Phase.QUERY);
+
+        Map<K,Map<N,V>> resultMap = new LinkedHashMap<K,Map<N,V>>();
+        int columnCount = 0;
+        long valueSize = 0;
+        Map<K,N> truncatedRows = new LinkedHashMap<K,N>();
+        for (Map.Entry<ByteBuffer,List<Column>> row : rows.entrySet()) {
+            K rowKey = getKeySerializer().fromByteBuffer(row.getKey());
+            Map<N,V> columns = new HashMap<N,V>();
+            N columnName = null;
+            for (Column column : row.getValue()) {
+                byte[] value = column.getValue();
+                valueSize += value.length;
+                columnName = getSubcolumnNameSerializer().fromBytes(column.getName());
+                columns.put(columnName, getValueSerializer().fromBytes(value));
+            }
+            columnCount += row.getValue().size();
+            if (row.getValue().size() == maxColumnsPerRow) {
+                truncatedRows.put(rowKey, columnName);
+            }
+            resultMap.put(rowKey, columns);
+        }
+        timer.phase(Phase.DECODE);
+        timer.columnsRead(columnCount, valueSize);
+        timer.stop();
+
+        // the rest of each wide row is read starting from its last subcolumn read, which is read again
+        for (Map.Entry<K,N> row : truncatedRows.entrySet()) {
+            final Map<N,V> columns = resultMap.get(row.getKey());
+            visitColumnsInPages(row.getKey(),
+                                superColumnName,
+                                row.getValue(),
+                                finish,
+                                maxColumnsPerRow,
+                                new ColumnVisitor<N,V>() {
+                                    @Override
+                                    public void visit(N columnName, V columnValue, long timestamp, int ttl) {
+                                        columns.put(columnName, columnValue);
+                                    }
+                                });
+        }
+        return resultMap;
+    }
+
+    @Override
+    public Iterator<Map.Entry<K,Map<N,V>>> iterateRows(SN superColumnName,
+                                                       N start,
+                                                       N finish,
+                                                       int maxColumnsPerRow,
+                                                       int rowPageSize) {
+        Validate.isTrue(maxColumnsPerRow > 0, "maxColumnsPerRow must be positive");
+        return Iterators.transform(new SubRangeIterator(superColumnName, start, finish, maxColumnsPerRow, rowPageSize),
+                                   new Function<Row<K,N,V>,Map.Entry<K,Map<N,V>>>() {
+                                       @Override
+                                       public Map.Entry<K,Map<N,V>> apply(Row<K,N,V> row) {
+                                           return Maps.immutableEntry(row.getKey(), toMap(row));
+                                       }
+                                   });
+    }
+
+    @Override
+    public void visitRows(SN superColumnName,
+                          N start,
+                          N finish,
+                          int maxColumnsPerRow,
+                          int rowPageSize,
+                          RowVisitor<K,N,V> rowVisitor) {
+        Validate.isTrue(maxColumnsPerRow > 0, "maxColumnsPerRow must be positive");
+        Iterator<Row<K,N,V>> rows = new SubRangeIterator(superColumnName, start, finish, maxColumnsPerRow, rowPageSize);
+        while (rows.hasNext()) {
+            Row<K,N,V> row = rows.next();
+            rowVisitor.visit(row.getKey(), toMap(row));
+        }
+    }
+
+    @Override
+    public Iterator<K> iterateRowKeys(int rowPageSize) {
+        return Iterators.transform(new SuperRangeIterator(rowPageSize),
+                                   new Function<SuperRow<K,SN,N,V>,K>() {
+                                       @Override
+                                       public K apply(SuperRow<K,SN,N,V> row) {
+                                           return row.getKey();
+                                       }
+                                   });
+    }
+
     @Override
     public <T> Map<K,List<T>> multiGetColumnRange(Iterable<K> rowKeys,
                                                    SN supercolumnName,
@@ -424,29 +615,20 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
      */
     @Override
     public Map<SN,Map<N,V>> readRowAsMap(K key) {
+        return readSuperSliceAsMap(key, null);
+    }
 
-        SuperSliceQuery<K,SN,N,V> query = HFactory.createSuperSliceQuery(getKeyspace(),
-                                                                         getKeySerializer(),
-                                                                         getSuperColumnNameSerializer(),
-                                                                         getSubcolumnNameSerializer(),
-                                                                         getValueSerializer());
-        query.setKey(key).
-                setColumnFamily(getColumnFamily()).
-                setRange(null, null, false, ALL);
-        QueryResult<SuperSlice<SN,N,V>> queryResult = query.execute();
-        Map<SN,Map<N,V>> results = new HashMap<SN,Map<N,V>>();
-        for (HSuperColumn<SN,N,V> superColumn : queryResult.get().getSuperColumns()) {
-            List<HColumn<N,V>> allColumns = superColumn.getColumns();
-            Map<N,V> columnMap = new HashMap<N,V>(allColumns.size());
-            for (HColumn<N,V> column : allColumns) {
-                columnMap.put(column.getName(), column.getValue());
-            }
-            if (!columnMap.isEmpty()) {
-                results.put(superColumn.getName(), columnMap);
-            }
-        }
-        return results;
-        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+    /**
+     * Read the named super columns of a row as a map of maps with one query.
+     *
+     * @param key the row key
+     * @param superColumnNames the names of the super columns to read
+     * @return the super columns that were found as a map of maps
+     *         where the key is the super column name and the value is a map of column names to column values.
+     */
+    @Override
+    public Map<SN,Map<N,V>> readSuperColumnsAsMap(K key, SN... superColumnNames) {
+        return readSuperSliceAsMap(key, superColumnNames);
     }
 
     /**
@@ -481,6 +663,52 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
     }
 
+    /**
+     * Read the named super columns of a row, or all the super columns if superColumnNames is null.
+     * Super columns without subcolumns are left out.
+     */
+    private Map<SN,Map<N,V>> readSuperSliceAsMap(K key, @Nullable SN[] superColumnNames) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, key, null);
+        SuperSliceQuery<K,SN,N,V> query = HFactory.createSuperSliceQuery(getKeyspace(),
+                                                                         getKeySerializer(),
+                                                                         getSuperColumnNameSerializer(),
+                                                                         getSubcolumnNameSerializer(),
+                                                                         getValueSerializer());
+        query.setKey(key).setColumnFamily(getColumnFamily());
+        if (superColumnNames == null) {
+            query.setRange(null, null, false, ALL);
+        } else {
+            query.setColumnNames(superColumnNames);
+        }
+        QueryResult<SuperSlice<SN,N,V>> queryResult = query.execute();
+        timer.phase(Phase.QUERY);
+
+        Map<SN,Map<N,V>> results = new HashMap<SN,Map<N,V>>();
+        int columnCount = 0;
+        long valueSize = 0;
+        for (HSuperColumn<SN,N,V> superColumn : queryResult.get().getSuperColumns()) {
+            List<HColumn<N,V>> allColumns = superColumn.getColumns();
+            Map<N,V> columnMap = new HashMap<N,V>(allColumns.size());
+            for (HColumn<N,V> column : allColumns) {
+                columnMap.put(column.getName(), column.getValue());
+            }
+            if (!columnMap.isEmpty()) {
+                results.put(superColumn.getName(), columnMap);
+            }
+            if (timer.isRecording()) {
+                columnCount += allColumns.size();
+                valueSize += getValueSize(allColumns);
+            }
+        }
+        timer.phase(Phase.DECODE);
+        if (timer.isRecording()) {
+            timer.columnsRead(columnCount, valueSize);
+        }
+        timer.stop();
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+        return results;
+    }
+
     /**
      * Set subcolumn values for a specified super column and execute immediately.
      *
@@ -593,39 +821,148 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
 
     @Override
     public void deleteColumns(K rowKey, SN superColumnName, N start, N finish, @Nullable BatchContext batchContext) {
-        Mutator<K> mutator;
-        boolean shouldExecute;
-        if (batchContext == null) {
-            shouldExecute = true;
-            mutator = createMutator();
-        } else {
-            shouldExecute = false;
-            mutator = validateAndGetMutator(batchContext);
-        }
+        Mutator<K> batchMutator = validateAndGetMutator(batchContext);
 
         // unfortunately the thrift API to Cassandra does not support deleting with a SliceRange.
         // !! We have read before delete -- performance and thread safety issue
-        // get column names to delete using a slice query
-        List<N> columnNamesToDelete = readColumns(rowKey,
-                                                  superColumnName,
-                                                  start,
-                                                  finish,
-                                                  ALL,
-                                                  false,
-                                                  columnMapperToGetColumnNames);
-        for (N columnName : columnNamesToDelete) {
-            mutator.addSubDelete(rowKey,
-                                 getColumnFamily(),
-                                 superColumnName,
-                                 columnName,
-                                 getSuperColumnNameSerializer(),
-                                 getSubcolumnNameSerializer());
+        // The subcolumn names are read a page at a time without deserializing the values, and unless this is part
+        // of a batch each page is deleted in its own mutation, so a large range is never held in memory at once.
+        N pageStart = start;
+        N previousLast = null;
+        List<N> page;
+        do {
+            page = readSubcolumnNames(rowKey, superColumnName, pageStart, finish, getDeletePageSize());
+            List<N> columnNamesToDelete = withoutPreviousLast(page, previousLast);
+            if (columnNamesToDelete.isEmpty()) {
+                break;
+            }
+            Mutator<K> mutator = batchMutator == null ? createMutator() : batchMutator;
+            for (N columnName : columnNamesToDelete) {
+                mutator.addSubDelete(rowKey,
+                                     getColumnFamily(),
+                                     superColumnName,
+                                     columnName,
+                                     getSuperColumnNameSerializer(),
+                                     getSubcolumnNameSerializer());
+            }
+            if (batchMutator == null) {
+                executeMutator(mutator, Operation.DELETE_COLUMNS);
+            }
+            previousLast = page.get(page.size() - 1);
+            pageStart = previousLast;
+        } while (page.size() == getDeletePageSize());
+        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+    }
+
+    /**
+     * Read the names of a range of subcolumns, leaving the values serialized.
+     */
+    List<N> readSubcolumnNames(K rowKey, SN superColumnName, N start, N finish, int count) {
+        SubSliceQuery<K,SN,N,ByteBuffer> query = HFactory.createSubSliceQuery(getKeyspace(),
+                                                                              getKeySerializer(),
+                                                                              getSuperColumnNameSerializer(),
+                                                                              getSubcolumnNameSerializer(),
+                                                                              ByteBufferSerializer.get());
+        ColumnSlice<N,ByteBuffer> slice = query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setSuperColumn(superColumnName).
+                setRange(start, finish, false, count).
+                execute().
+                get();
+
+        List<N> columnNames = new ArrayList<N>(slice.getColumns().size());
+        for (HColumn<N,ByteBuffer> column : slice.getColumns()) {
+            columnNames.add(column.getName());
         }
+        return columnNames;
+    }
 
-        if (shouldExecute) {
-            mutator.execute();
+    /**
+     * Read one slice of a range of subcolumns.
+     */
+    List<HColumn<N,V>> readSubcolumnSlice(K rowKey, SN superColumnName, N start, N finish, int count) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS, rowKey, null);
+        SubSliceQuery<K,SN,N,V> query = HFactory.createSubSliceQuery(getKeyspace(),
+                                                                     getKeySerializer(),
+                                                                     getSuperColumnNameSerializer(),
+                                                                     getSubcolumnNameSerializer(),
+                                                                     getValueSerializer());
+        List<HColumn<N,V>> columns = query.setKey(rowKey).
+                setColumnFamily(getColumnFamily()).
+                setSuperColumn(superColumnName).
+                setRange(start, finish, false, count).
+                execute().
+                get().
+                getColumns();
+        timer.phase(Phase.QUERY);
+        if (timer.isRecording()) {
+            timer.columnsRead(columns.size(), getValueSize(columns));
         }
-        // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
+        timer.stop();
+        return columns;
+    }
+
+    /**
+     * Read one page of rows in token order, starting from a row key, reading a range of subcolumns from a single
+     * super column of each row.
+     */
+    List<Row<K,N,V>> readSubRowSlice(@Nullable K startKey,
+                                     SN superColumnName,
+                                     N start,
+                                     N finish,
+                                     int count,
+                                     int rowCount) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ_COLUMNS);
+        RangeSubSlicesQuery<K,SN,N,V> query = HFactory.createRangeSubSlicesQuery(getKeyspace(),
+                                                                                 getKeySerializer(),
+                                                                                 getSuperColumnNameSerializer(),
+                                                                                 getSubcolumnNameSerializer(),
+                                                                                 getValueSerializer());
+        query.setColumnFamily(getColumnFamily());
+        query.setSuperColumn(superColumnName);
+        query.setKeys(startKey, null);
+        query.setRange(start, finish, false, count);
+        query.setRowCount(rowCount);
+        List<Row<K,N,V>> rows = query.execute().get().getList();
+        timer.phase(Phase.QUERY);
+        if (timer.isRecording()) {
+            int columnCount = 0;
+            long valueSize = 0;
+            for (Row<K,N,V> row : rows) {
+                List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+                columnCount += rowColumns.size();
+                valueSize += getValueSize(rowColumns);
+            }
+            timer.columnsRead(columnCount, valueSize);
+        }
+        timer.stop();
+        return rows;
+    }
+
+    /**
+     * Read one page of rows in token order, starting from a row key, reading only the first super column of each
+     * row.
+     */
+    List<SuperRow<K,SN,N,V>> readFirstSuperColumns(@Nullable K startKey, int rowCount) {
+        RangeSuperSlicesQuery<K,SN,N,V> query = HFactory.createRangeSuperSlicesQuery(getKeyspace(),
+                                                                                     getKeySerializer(),
+                                                                                     getSuperColumnNameSerializer(),
+                                                                                     getSubcolumnNameSerializer(),
+                                                                                     getValueSerializer());
+        query.setColumnFamily(getColumnFamily());
+        query.setKeys(startKey, null);
+        query.setRange(null, null, false, 1);
+        query.setRowCount(rowCount);
+        return query.execute().get().getList();
+    }
+
+    private Map<N,V> toMap(Row<K,N,V> row) {
+        List<HColumn<N,V>> rowColumns = row.getColumnSlice().getColumns();
+        Map<N,V> columns = new HashMap<N,V>(rowColumns.size());
+        for (HColumn<N,V> column : rowColumns) {
+            columns.put(column.getName(), column.getValue());
+        }
+        return columns;
     }
 
     @Override
@@ -790,7 +1127,14 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
 
     private void insertSuperColumn(K rowKey,
                                    HSuperColumn<SN,N,V> superColumn) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE_COLUMNS, rowKey, null);
+        if (timer.isRecording()) {
+            List<HColumn<N,V>> columns = superColumn.getColumns();
+            timer.columnsWritten(columns.size(), getValueSize(columns));
+        }
         createMutator().insert(rowKey, getColumnFamily(), superColumn);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
         // we used to translate hector exceptions into spring exceptions here, but spring dependency was removed
     }
 
@@ -826,4 +1170,72 @@ public final class SuperColumnFamilyTemplate<K,SN,N,V> extends AbstractColumnFam
         }
 
     }
+
+    private class SubRangeIterator extends RowPageIterator<K,Row<K,N,V>> {
+        private final SN superColumnName;
+        private final N start;
+        private final N finish;
+        private final int maxColumnsPerRow;
+
+        private SubRangeIterator(SN superColumnName, N start, N finish, int maxColumnsPerRow, int rowPageSize) {
+            super(rowPageSize);
+            this.superColumnName = superColumnName;
+            this.start = start;
+            this.finish = finish;
+            this.maxColumnsPerRow = maxColumnsPerRow;
+        }
+
+        @Override
+        protected List<Row<K,N,V>> readPage(@Nullable K startKey, int rowCount) {
+            return readSubRowSlice(startKey, superColumnName, start, finish, maxColumnsPerRow, rowCount);
+        }
+
+        @Override
+        protected K getKey(Row<K,N,V> row) {
+            return row.getKey();
+        }
+
+        @Override
+        protected boolean hasColumns(Row<K,N,V> row) {
+            return !row.getColumnSlice().getColumns().isEmpty();
+        }
+    }
+
+    private class SuperRangeIterator extends RowPageIterator<K,SuperRow<K,SN,N,V>> {
+
+        private SuperRangeIterator(int rowPageSize) {
+            super(rowPageSize);
+        }
+
+        @Override
+        protected List<SuperRow<K,SN,N,V>> readPage(@Nullable K startKey, int rowCount) {
+            return readFirstSuperColumns(startKey, rowCount);
+        }
+
+        @Override
+        protected K getKey(SuperRow<K,SN,N,V> row) {
+            return row.getKey();
+        }
+
+        @Override
+        protected boolean hasColumns(SuperRow<K,SN,N,V> row) {
+            return !row.getSuperSlice().getSuperColumns().isEmpty();
+        }
+    }
+
+    private class SubSliceIterator extends ColumnPageIterator<N,V> {
+        private final K rowKey;
+        private final SN superColumnName;
+
+        private SubSliceIterator(K rowKey, SN superColumnName, N start, N finish, int pageSize) {
+            super(start, finish, pageSize);
+            this.rowKey = rowKey;
+            this.superColumnName = superColumnName;
+        }
+
+        @Override
+        protected List<HColumn<N,V>> readPage(N start, N finish, int count) {
+            return readSubcolumnSlice(rowKey, superColumnName, start, finish, count);
+        }
+    }
 }
@@ -16,18 +16,43 @@
 
 package com.ebuddy.cassandra.dao;
 
+import static org.apache.commons.lang3.ObjectUtils.NULL;
+
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.TypeReference;
-import com.ebuddy.cassandra.structure.Composer;
+import com.ebuddy.cassandra.dao.mapper.ColumnMapperWithTimestamps;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
 import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.DefaultPath;
 import com.ebuddy.cassandra.structure.JacksonTypeReference;
+import com.ebuddy.cassandra.structure.PathEntryIterator;
+import com.ebuddy.cassandra.structure.PrefixTombstoneFilter;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
 
 /**
  * Implementation of StructuredDataSupport for the Thrift API access to a standard ColumnFamily.
@@ -37,8 +62,24 @@ import com.ebuddy.cassandra.structure.JacksonTypeReference;
  * @author Eric Zoerner <a href="mailto:ezoerner@ebuddy.com">ezoerner@ebuddy.com</a>
  */
 public class ThriftStructuredDataSupport<K> extends AbstractThriftStructuredDataSupport<K> {
+    private static final Logger LOG = LoggerFactory.getLogger(ThriftStructuredDataSupport.class);
+
+    private static final ColumnMapperWithTimestamps<TimestampedColumn,String,Object> TIMESTAMPED_COLUMN_MAPPER =
+            new ColumnMapperWithTimestamps<TimestampedColumn,String,Object>() {
+                @Override
+                public TimestampedColumn mapColumn(String columnName, Object columnValue, long timestamp) {
+                    return new TimestampedColumn(columnName, columnValue, timestamp);
+                }
+            };
 
     private final ColumnFamilyOperations<K,String,Object> operations;
+    @Nullable
+    private ColumnFamilyOperations<K,Path,Object> pathOperations;
+
+    private boolean prefixTombstonesEnabled;
+    @Nullable
+    private ScheduledExecutorService sweepExecutor;
+    private long sweepDelayMillis;
 
     /**
      * Create and configure an instance with a ColumnFamilyOperations.
@@ -49,6 +90,44 @@ public class ThriftStructuredDataSupport<K> extends AbstractThriftStructuredData
         this.operations = operations;
     }
 
+    /**
+     * Set operations on the same column family that have Path column names, e.g. a ColumnFamilyTemplate with the
+     * PathSerializer, to write the columns of writeToPath and appendToList with. The column names are then serialized
+     * straight from the decomposed paths, without building a String for each column first.
+     * Reads always use the operations with String column names, since their slices are bounded by string prefixes.
+     * By default the columns are written with the operations with String column names.
+     *
+     * @param pathOperations the operations with Path column names, or null to write with String column names
+     */
+    public void setPathOperations(@Nullable ColumnFamilyOperations<K,Path,Object> pathOperations) {
+        this.pathOperations = pathOperations;
+    }
+
+    /**
+     * Enable or disable prefix tombstones, which are disabled by default.
+     * When enabled, deletePath writes one tombstone column under the path instead of reading and deleting the
+     * columns under it, and reads ignore columns written before a tombstone of their path or of an ancestor.
+     * A scan ignores the columns deleted by tombstones under the path scanned, but not by those of its ancestors.
+     * Deleted columns remain until swept, see sweepPrefixTombstones, so tombstones must stay enabled
+     * until every tombstone has been swept.
+     */
+    public void setPrefixTombstonesEnabled(boolean prefixTombstonesEnabled) {
+        this.prefixTombstonesEnabled = prefixTombstonesEnabled;
+    }
+
+    /**
+     * Sweep the columns deleted by each prefix tombstone in the background, a delay after the tombstone is written.
+     * The delay should be longer than a batch containing the delete can take to be committed.
+     * By default there is no executor, and tombstones are only swept by calling sweepPrefixTombstones.
+     *
+     * @param executor the executor to sweep with, or null to not sweep in the background
+     */
+    public void setPrefixTombstoneSweeper(@Nullable ScheduledExecutorService executor, long delay, TimeUnit unit) {
+        Validate.isTrue(delay >= 0, "delay must not be negative");
+        sweepExecutor = executor;
+        sweepDelayMillis = unit.toMillis(delay);
+    }
+
     @Override
     public BatchContext beginBatch() {
         return operations.begin();
@@ -56,28 +135,169 @@ public class ThriftStructuredDataSupport<K> extends AbstractThriftStructuredData
 
     @Override
     public void applyBatch(BatchContext batchContext) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.APPLY_BATCH);
         operations.commit(batchContext);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
     }
 
     @Override
     public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
         validateArgs(rowKey, path);
-        int count = Integer.MAX_VALUE;
-        boolean reversed = false;
-
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ, rowKey, path);
         // converting from a string and back normalizes the path, e.g. makes sure ends with the delimiter character
         String start = path.toString();
         String finish = getFinishString(start);
-        Map<String,Object> columnsMap = operations.readColumnsAsMap(rowKey, start, finish, count, reversed);
-        if (columnsMap.isEmpty()) {
+        ComposingVisitor composer = new ComposingVisitor(path);
+        if (prefixTombstonesEnabled) {
+            PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            for (Map.Entry<String,Object> column : removeDeleted(readWithTombstones(rowKey, path, tombstones),
+                                                                 tombstones).entrySet()) {
+                composer.add(column.getKey(), column.getValue());
+            }
+        } else {
+            // the columns are merged into the composition as each page is read
+            operations.visitColumnsInPages(rowKey, start, finish, getReadPageSize(), composer);
+        }
+        timer.phase(Phase.QUERY);
+        if (composer.isEmpty()) {
+            timer.stop();
             return null;
         }
 
-        Map<Path,Object> pathMap = getTerminalPathMap(path, columnsMap);
-        Object structure = Composer.get().compose(pathMap);
+        Object structure = composer.compose();
+        timer.phase(Phase.COMPOSE);
 
         // convert object structure into POJO of type referred to by TypeReference
-        return readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        T value = readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        timer.phase(Phase.CONVERT);
+        timer.stop();
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If prefix tombstones are enabled, the columns under the path are read twice, first to find the tombstones and
+     * then to return the columns that are not deleted by them, since a tombstone can follow the columns it deletes.
+     */
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        validateArgs(rowKey, path);
+        String start = path.toString();
+        String finish = getFinishString(start);
+        if (!prefixTombstonesEnabled) {
+            return new PathEntryIterator(path, operations.iterateColumns(rowKey, start, finish, getReadPageSize()));
+        }
+
+        final PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+        addAncestorTombstones(rowKey, path, tombstones);
+        operations.visitColumnsInPages(rowKey, start, finish, getReadPageSize(), new ColumnVisitor<String,Object>() {
+            @Override
+            public void visit(String columnName, Object columnValue, long timestamp, int ttl) {
+                tombstones.addIfTombstone(columnName, timestamp);
+            }
+        });
+        return new PathEntryIterator(path, new LiveColumnIterator(rowKey, start, finish, tombstones));
+    }
+
+    @Override
+    protected Map<K,Map<String,Object>> readRows(Path path,
+                                                 @Nullable K startKey,
+                                                 String startToken,
+                                                 String endToken,
+                                                 int rowCount) {
+        String start = path.toString();
+        String finish = getFinishString(start);
+        Map<K,Map<String,Object>> rows = operations.readRowsAsMap(startKey,
+                                                                  startToken,
+                                                                  endToken,
+                                                                  start,
+                                                                  finish,
+                                                                  getReadPageSize(),
+                                                                  rowCount);
+        if (!prefixTombstonesEnabled) {
+            return rows;
+        }
+
+        // the rows with tombstones are read again with timestamps, to find the columns deleted by the tombstones
+        Map<K,Map<String,Object>> liveRows = new LinkedHashMap<K,Map<String,Object>>(rows.size());
+        for (Map.Entry<K,Map<String,Object>> row : rows.entrySet()) {
+            Map<String,Object> columns = row.getValue();
+            if (containsTombstone(columns.keySet())) {
+                PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+                List<TimestampedColumn> timestampedColumns = readColumnsWithTimestamps(row.getKey(), start, finish);
+                addTombstones(timestampedColumns, tombstones);
+                columns = removeDeleted(timestampedColumns, tombstones);
+            }
+            liveRows.put(row.getKey(), columns);
+        }
+        return liveRows;
+    }
+
+    @Override
+    protected String getKeyspaceName() {
+        return operations.getKeyspaceName();
+    }
+
+    @Override
+    protected Iterator<K> iterateRowKeys(int rowPageSize) {
+        return operations.iterateRowKeys(rowPageSize);
+    }
+
+    @Override
+    protected Map<K,Map<String,Object>> multiGetRows(List<K> rowKeys, Path path) {
+        String start = path.toString();
+        String finish = getFinishString(start);
+        int pageSize = getReadPageSize();
+        Map<K,Map<String,Object>> rows = operations.multiGetColumnRangeAsMap(rowKeys, start, finish, pageSize, false);
+
+        // a row that fills the page may have more columns, so it is read again a page at a time
+        for (Map.Entry<K,Map<String,Object>> row : rows.entrySet()) {
+            if (row.getValue().size() == pageSize) {
+                final Map<String,Object> columns = new HashMap<String,Object>();
+                operations.visitColumnsInPages(row.getKey(),
+                                               start,
+                                               finish,
+                                               pageSize,
+                                               new ColumnVisitor<String,Object>() {
+                                                   @Override
+                                                   public void visit(String columnName,
+                                                                     Object columnValue,
+                                                                     long timestamp,
+                                                                     int ttl) {
+                                                       columns.put(columnName, columnValue);
+                                                   }
+                                               });
+                row.setValue(columns);
+            }
+        }
+        if (!prefixTombstonesEnabled) {
+            return rows;
+        }
+
+        // only the rows with a tombstone under the path or an ancestor are read again, with timestamps
+        Set<K> rowsWithTombstones = new HashSet<K>();
+        for (Map.Entry<K,Map<String,Object>> row : rows.entrySet()) {
+            if (containsTombstone(row.getValue().keySet())) {
+                rowsWithTombstones.add(row.getKey());
+            }
+        }
+        List<String> ancestorTombstoneNames = PrefixTombstoneFilter.getAncestorTombstoneNames(path);
+        if (!ancestorTombstoneNames.isEmpty()) {
+            Map<K,Map<String,Object>> ancestorTombstones = operations.multiGetColumnsAsMap(
+                    rowKeys, ancestorTombstoneNames.toArray(new String[ancestorTombstoneNames.size()]));
+            for (Map.Entry<K,Map<String,Object>> row : ancestorTombstones.entrySet()) {
+                if (!row.getValue().isEmpty()) {
+                    rowsWithTombstones.add(row.getKey());
+                }
+            }
+        }
+        for (K rowKey : rowsWithTombstones) {
+            PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            rows.put(rowKey, removeDeleted(readWithTombstones(rowKey, path, tombstones), tombstones));
+        }
+        return rows;
     }
 
     @Override
@@ -86,25 +306,60 @@ public class ThriftStructuredDataSupport<K> extends AbstractThriftStructuredData
                             Object value,
                             @Nullable BatchContext batchContext) {
         validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE, rowKey, path);
 
         Object structure = writeMapper.convertValue(value, Object.class);
+        timer.phase(Phase.CONVERT);
 
         Map<Path,Object> pathMap = Collections.singletonMap(path, structure);
-        Map<Path,Object> objectMap = Decomposer.get().decompose(pathMap);
-
-        Map<String,Object> stringMap = new HashMap<String,Object>();
-        for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
-            stringMap.put(entry.getKey().toString(), entry.getValue());
+        List<Path> setPaths = new ArrayList<Path>();
+        Map<Path,Object> objectMap = getDecomposer().decompose(pathMap, setPaths);
+        if (!setPaths.isEmpty()) {
+            // a set replaces the set that was at its path, so delete the old columns that are not overwritten
+            timer.phase(Phase.DECOMPOSE);
+            List<String> staleColumnNames = readStaleSetColumnNames(rowKey, setPaths, objectMap);
+            timer.phase(Phase.QUERY);
+            if (!staleColumnNames.isEmpty()) {
+                if (batchContext == null) {
+                    operations.deleteColumns(rowKey, staleColumnNames.toArray(new String[staleColumnNames.size()]));
+                } else {
+                    operations.deleteColumns(rowKey, staleColumnNames, batchContext);
+                }
+                timer.phase(Phase.EXECUTE);
+            }
         }
-        if (batchContext == null) {
-            operations.writeColumns(rowKey, stringMap);
-        } else {
-            operations.writeColumns(rowKey, stringMap, batchContext);
+        writeDecomposedColumns(rowKey, objectMap, batchContext, timer);
+        timer.stop();
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, @Nullable BatchContext batchContext) {
+        for (Path path : columns.keySet()) {
+            validateArgs(rowKey, path);
         }
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE, rowKey, null);
+        writeDecomposedColumns(rowKey, columns, batchContext, timer);
+        timer.stop();
     }
 
     @Override
     public void deletePath(K rowKey, Path path, @Nullable BatchContext batchContext) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.DELETE, rowKey, path);
+        if (prefixTombstonesEnabled) {
+            String tombstoneName = PrefixTombstoneFilter.getTombstoneName(path);
+            if (batchContext == null) {
+                operations.writeColumn(rowKey, tombstoneName, NULL);
+            } else {
+                operations.writeColumn(rowKey, tombstoneName, NULL, batchContext);
+            }
+            timer.phase(Phase.EXECUTE);
+            if (sweepExecutor != null) {
+                sweepExecutor.schedule(new SweepTask(rowKey, path), sweepDelayMillis, TimeUnit.MILLISECONDS);
+            }
+            timer.stop();
+            return;
+        }
+
         String start = path.toString();
         String finish = getFinishString(start);
         if (batchContext == null) {
@@ -112,5 +367,340 @@ public class ThriftStructuredDataSupport<K> extends AbstractThriftStructuredData
         } else {
             operations.deleteColumns(rowKey, start, finish, batchContext);
         }
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        validateArgs(rowKey, listPath);
+        Validate.notEmpty(values, "No values to append");
+
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.APPEND_TO_LIST, rowKey, listPath);
+        int currentSize = listSize(rowKey, listPath);
+        timer.phase(Phase.QUERY);
+        List<Object> elements = convertListElements(values);
+        timer.phase(Phase.CONVERT);
+        Map<Path,Object> objectMap = Decomposer.get().decomposeListAppend(listPath, currentSize, elements);
+
+        // if the first new element is a structure then the old terminator is not overwritten, so delete it first
+        Path oldTerminatorPath = listPath.withIndices(currentSize);
+        if (!objectMap.containsKey(oldTerminatorPath)) {
+            operations.deleteColumns(rowKey, oldTerminatorPath.toString());
+        }
+
+        if (pathOperations == null) {
+            Map<String,Object> stringMap = toStringMap(objectMap);
+            timer.phase(Phase.DECOMPOSE);
+            operations.writeColumns(rowKey, stringMap);
+        } else {
+            timer.phase(Phase.DECOMPOSE);
+            pathOperations.writeColumns(rowKey, objectMap);
+        }
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        validateArgs(rowKey, listPath);
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.LIST_SIZE, rowKey, listPath);
+
+        Path headerPath = listPath.concat(DefaultPath.fromListHeader());
+        Object header;
+        if (prefixTombstonesEnabled) {
+            PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+            header = removeDeleted(readWithTombstones(rowKey, headerPath, tombstones), tombstones)
+                    .get(headerPath.toString());
+        } else {
+            header = operations.readColumnValue(rowKey, headerPath.toString());
+        }
+        timer.phase(Phase.QUERY);
+        if (header instanceof Number) {
+            timer.stop();
+            return ((Number)header).intValue();
+        }
+
+        // no list header, so fall back to reading the whole list
+        List<Object> list = readFromPath(rowKey, listPath, LIST_TYPE);
+        timer.phase(Phase.QUERY);
+        timer.stop();
+        return list == null ? 0 : list.size();
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to add");
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.ADD_TO_SET, rowKey, path);
+
+        Map<String,Object> columns = getSetMemberColumns(path, members);
+        timer.phase(Phase.CONVERT);
+        operations.writeColumns(rowKey, columns);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to remove");
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.REMOVE_FROM_SET, rowKey, path);
+
+        Set<String> columnNames = getSetMemberColumns(path, members).keySet();
+        timer.phase(Phase.CONVERT);
+        operations.deleteColumns(rowKey, columnNames.toArray(new String[columnNames.size()]));
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    /**
+     * Remove the columns under a path that are deleted by prefix tombstones, and then the tombstones under the
+     * path. Each column is deleted with the timestamp of the tombstone that deleted it, so a column written since
+     * is not removed.
+     */
+    public void sweepPrefixTombstones(K rowKey, Path path) {
+        validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.SWEEP_TOMBSTONES, rowKey, path);
+
+        PrefixTombstoneFilter tombstones = new PrefixTombstoneFilter();
+        List<TimestampedColumn> columns = readWithTombstones(rowKey, path, tombstones);
+        timer.phase(Phase.QUERY);
+
+        Map<String,Long> deletedColumns = new HashMap<String,Long>();
+        Map<String,Long> sweptTombstones = new HashMap<String,Long>();
+        for (TimestampedColumn column : columns) {
+            if (PrefixTombstoneFilter.isTombstone(column.name)) {
+                sweptTombstones.put(column.name, column.timestamp);
+            } else {
+                Long deletingTimestamp = tombstones.getDeletingTimestamp(column.name, column.timestamp);
+                if (deletingTimestamp != null) {
+                    deletedColumns.put(column.name, deletingTimestamp);
+                }
+            }
+        }
+        // the tombstones are deleted last, so the columns they delete stay hidden if the sweep fails part way
+        operations.deleteColumnsWithTimestamps(rowKey, deletedColumns);
+        operations.deleteColumnsWithTimestamps(rowKey, sweptTombstones);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    /**
+     * Read the columns under a path with their write timestamps, and add the prefix tombstones of the path,
+     * its ancestors and its descendants to a filter.
+     *
+     * @return the columns read, including the tombstones and the columns they delete
+     */
+    private List<TimestampedColumn> readWithTombstones(K rowKey, Path path, PrefixTombstoneFilter tombstones) {
+        addAncestorTombstones(rowKey, path, tombstones);
+
+        String start = path.toString();
+        List<TimestampedColumn> columns = readColumnsWithTimestamps(rowKey, start, getFinishString(start));
+        addTombstones(columns, tombstones);
+        return columns;
+    }
+
+    /**
+     * Add the prefix tombstones of the ancestors of a path to a filter, which are outside the range of the path.
+     */
+    private void addAncestorTombstones(K rowKey, Path path, PrefixTombstoneFilter tombstones) {
+        List<String> ancestorTombstoneNames = PrefixTombstoneFilter.getAncestorTombstoneNames(path);
+        addTombstones(operations.readColumnsWithTimestamps(rowKey,
+                                                           TIMESTAMPED_COLUMN_MAPPER,
+                                                           ancestorTombstoneNames.toArray(
+                                                                   new String[ancestorTombstoneNames.size()])),
+                      tombstones);
+    }
+
+    /**
+     * Read a range of columns with their write timestamps, one page at a time.
+     */
+    private List<TimestampedColumn> readColumnsWithTimestamps(K rowKey, String start, String finish) {
+        final List<TimestampedColumn> columns = new ArrayList<TimestampedColumn>();
+        operations.visitColumnsInPages(rowKey, start, finish, getReadPageSize(), new ColumnVisitor<String,Object>() {
+            @Override
+            public void visit(String columnName, Object columnValue, long timestamp, int ttl) {
+                columns.add(new TimestampedColumn(columnName, columnValue, timestamp));
+            }
+        });
+        return columns;
+    }
+
+    private static void addTombstones(Iterable<TimestampedColumn> columns, PrefixTombstoneFilter tombstones) {
+        for (TimestampedColumn column : columns) {
+            tombstones.addIfTombstone(column.name, column.timestamp);
+        }
+    }
+
+    /**
+     * Get the values of the columns that are neither prefix tombstones nor deleted by them, keyed by column name.
+     */
+    private static Map<String,Object> removeDeleted(List<TimestampedColumn> columns,
+                                                    PrefixTombstoneFilter tombstones) {
+        Map<String,Object> liveColumns = new HashMap<String,Object>(columns.size());
+        for (TimestampedColumn column : columns) {
+            if (!PrefixTombstoneFilter.isTombstone(column.name) &&
+                    !tombstones.isDeleted(column.name, column.timestamp)) {
+                liveColumns.put(column.name, column.value);
+            }
+        }
+        return liveColumns;
+    }
+
+    private static boolean containsTombstone(Iterable<String> columnNames) {
+        for (String columnName : columnNames) {
+            if (PrefixTombstoneFilter.isTombstone(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class TimestampedColumn {
+        private final String name;
+        private final Object value;
+        private final long timestamp;
+
+        private TimestampedColumn(String name, Object value, long timestamp) {
+            this.name = name;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /**
+     * Iterates over the columns in a range that are neither prefix tombstones nor deleted by them, reading one page
+     * of columns with their write timestamps at a time. Each page is read starting from the last column name of the
+     * previous page, which is then skipped.
+     */
+    private class LiveColumnIterator extends AbstractIterator<Map.Entry<String,Object>> {
+        private final K rowKey;
+        private final String finish;
+        private final PrefixTombstoneFilter tombstones;
+        private String pageStart;
+        @Nullable
+        private String previousLast;
+        private Iterator<TimestampedColumn> page = Collections.<TimestampedColumn>emptyList().iterator();
+        private boolean lastPage;
+
+        private LiveColumnIterator(K rowKey, String start, String finish, PrefixTombstoneFilter tombstones) {
+            this.rowKey = rowKey;
+            this.finish = finish;
+            this.tombstones = tombstones;
+            pageStart = start;
+        }
+
+        @Override
+        protected Map.Entry<String,Object> computeNext() {
+            while (true) {
+                while (!page.hasNext()) {
+                    if (lastPage) {
+                        return endOfData();
+                    }
+                    int pageSize = getReadPageSize();
+                    List<TimestampedColumn> columns = operations.readColumnsWithTimestamps(rowKey,
+                                                                                           pageStart,
+                                                                                           finish,
+                                                                                           pageSize,
+                                                                                           false,
+                                                                                           TIMESTAMPED_COLUMN_MAPPER);
+                    lastPage = columns.size() < pageSize;
+                    if (columns.isEmpty()) {
+                        return endOfData();
+                    }
+                    String last = columns.get(columns.size() - 1).name;
+                    if (previousLast != null && previousLast.equals(columns.get(0).name)) {
+                        columns = columns.subList(1, columns.size());
+                    }
+                    previousLast = last;
+                    pageStart = last;
+                    page = columns.iterator();
+                }
+                TimestampedColumn column = page.next();
+                if (!PrefixTombstoneFilter.isTombstone(column.name) &&
+                        !tombstones.isDeleted(column.name, column.timestamp)) {
+                    return Maps.immutableEntry(column.name, column.value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write decomposed columns with the operations with Path column names if there are any, otherwise with
+     * String column names.
+     */
+    private void writeDecomposedColumns(K rowKey,
+                                        Map<Path,Object> objectMap,
+                                        @Nullable BatchContext batchContext,
+                                        OperationTimer timer) {
+        if (pathOperations != null) {
+            timer.phase(Phase.DECOMPOSE);
+            if (batchContext == null) {
+                pathOperations.writeColumns(rowKey, objectMap);
+            } else {
+                pathOperations.writeColumns(rowKey, objectMap, batchContext);
+            }
+            timer.phase(Phase.EXECUTE);
+            return;
+        }
+
+        Map<String,Object> stringMap = toStringMap(objectMap);
+        timer.phase(Phase.DECOMPOSE);
+        if (batchContext == null) {
+            operations.writeColumns(rowKey, stringMap);
+        } else {
+            operations.writeColumns(rowKey, stringMap, batchContext);
+        }
+        timer.phase(Phase.EXECUTE);
+    }
+
+    /**
+     * Read the names of the columns under the set paths that are not written again, i.e. the members, list elements
+     * and terminator of the sets that are replaced.
+     */
+    private List<String> readStaleSetColumnNames(K rowKey, Iterable<Path> setPaths, Map<Path,Object> objectMap) {
+        Set<String> staleColumnNames = new LinkedHashSet<String>();
+        for (Path setPath : setPaths) {
+            String start = setPath.toString();
+            Iterator<Map.Entry<String,Object>> columns = operations.iterateColumns(rowKey,
+                                                                                   start,
+                                                                                   getFinishString(start),
+                                                                                   getReadPageSize());
+            while (columns.hasNext()) {
+                String columnName = columns.next().getKey();
+                if (!objectMap.containsKey(DefaultPath.fromEncodedPathString(columnName))) {
+                    staleColumnNames.add(columnName);
+                }
+            }
+        }
+        return new ArrayList<String>(staleColumnNames);
+    }
+
+    private static Map<String,Object> toStringMap(Map<Path,Object> objectMap) {
+        Map<String,Object> stringMap = new HashMap<String,Object>();
+        for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
+            stringMap.put(entry.getKey().toString(), entry.getValue());
+        }
+        return stringMap;
+    }
+
+    private class SweepTask implements Runnable {
+        private final K rowKey;
+        private final Path path;
+
+        private SweepTask(K rowKey, Path path) {
+            this.rowKey = rowKey;
+            this.path = path;
+        }
+
+        @Override
+        public void run() {
+            try {
+                sweepPrefixTombstones(rowKey, path);
+            } catch (RuntimeException e) {
+                LOG.error("Failed to sweep prefix tombstones under " + path, e);
+            }
+        }
     }
 }
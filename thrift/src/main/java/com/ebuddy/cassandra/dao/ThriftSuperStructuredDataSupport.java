@@ -1,15 +1,33 @@
 package com.ebuddy.cassandra.dao;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.Validate;
 
 import com.ebuddy.cassandra.BatchContext;
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.TypeReference;
-import com.ebuddy.cassandra.structure.Composer;
+import com.ebuddy.cassandra.dao.mapper.ColumnMapper;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.OperationTimer;
+import com.ebuddy.cassandra.metrics.Phase;
 import com.ebuddy.cassandra.structure.Decomposer;
+import com.ebuddy.cassandra.structure.DefaultPath;
 import com.ebuddy.cassandra.structure.JacksonTypeReference;
+import com.ebuddy.cassandra.structure.PathEntryIterator;
+import com.google.common.collect.Maps;
 
 /**
  * Implementation of StructuredDataSupport for a Thrift SuperColumnFamily.
@@ -20,6 +38,16 @@ import com.ebuddy.cassandra.structure.JacksonTypeReference;
  */
 public class ThriftSuperStructuredDataSupport<K> extends AbstractThriftStructuredDataSupport<K> {
 
+    private static final ColumnMapper<Map.Entry<String,Object>,String,Object> COLUMN_ENTRY_MAPPER =
+            new ColumnMapper<Map.Entry<String,Object>,String,Object>() {
+                @Override
+                public Map.Entry<String,Object> mapColumn(String columnName, Object columnValue) {
+                    return Maps.immutableEntry(columnName, columnValue);
+                }
+            };
+
+    private static final char PATH_DELIMITER = '/';
+
     private final SuperColumnFamilyOperations<K,String,String,Object> operations;
 
     /**
@@ -38,63 +66,279 @@ public class ThriftSuperStructuredDataSupport<K> extends AbstractThriftStructure
 
     @Override
     public void applyBatch(BatchContext batchContext) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.APPLY_BATCH);
         operations.commit(batchContext);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the path is empty, the whole row is read with one query and composed with the super column names as the
+     * first path elements.
+     */
     @Override
     public <T> T readFromPath(K rowKey, Path path, TypeReference<T> type) {
+        if (path.isEmpty()) {
+            Validate.notNull(rowKey, "Row key must not be empty");
+            return readSuperColumns(rowKey, null, type);
+        }
         validateArgs(rowKey, path);
-        int count = Integer.MAX_VALUE;
-        boolean reversed = false;
-
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ, rowKey, path);
         // converting from a string and back normalizes the path, e.g. makes sure ends with the delimiter character
         String superColumnName = path.head();
         Path rest = path.tail();
         String start = rest.toString();
         String finish = getFinishString(start);
-        Map<String,Object> columnsMap = operations.readColumnsAsMap(rowKey,
-                                                                    superColumnName,
-                                                                    start,
-                                                                    finish,
-                                                                    count,
-                                                                    reversed);
-        if (columnsMap.isEmpty()) {
+        // the columns are merged into the composition as each page is read
+        ComposingVisitor composer = new ComposingVisitor(rest);
+        operations.visitColumnsInPages(rowKey, superColumnName, start, finish, getReadPageSize(), composer);
+        timer.phase(Phase.QUERY);
+        if (composer.isEmpty()) {
+            timer.stop();
             return null;
         }
 
-        Map<Path,Object> pathMap = getTerminalPathMap(rest, columnsMap);
-        Object structure = Composer.get().compose(pathMap);
+        Object structure = composer.compose();
+        timer.phase(Phase.COMPOSE);
 
         // convert object structure into POJO of type referred to by TypeReference
-        return readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        T value = readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        timer.phase(Phase.CONVERT);
+        timer.stop();
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The first element of the path is the super column read, so the path must not be empty.
+     */
+    @Override
+    public CloseableIterator<Map.Entry<Path,Object>> iteratePath(K rowKey, Path path) {
+        validateArgs(rowKey, path);
+        // the subcolumn names are the paths relative to the super column
+        String superColumnName = path.head();
+        Path rest = path.tail();
+        String start = rest.toString();
+        String finish = getFinishString(start);
+        return new PathEntryIterator(rest, operations.iterateColumns(rowKey,
+                                                                     superColumnName,
+                                                                     start,
+                                                                     finish,
+                                                                     getReadPageSize()));
+    }
+
+    /**
+     * Read the objects at several top level paths of a row with one query, which reads the super columns of those
+     * paths.
+     *
+     * @param rowKey the row key
+     * @param type the type of the result, normally a map or an object with a property for each of the top level keys
+     * @param topLevelKeys the first elements of the paths, one for each super column, as given to createPath
+     * @return the object composed of the top level keys that were found, or null if none were found
+     */
+    public <T> T readFromPaths(K rowKey, TypeReference<T> type, String... topLevelKeys) {
+        Validate.notNull(rowKey, "Row key must not be empty");
+        Validate.notEmpty(topLevelKeys, "No top level keys to read");
+        String[] superColumnNames = new String[topLevelKeys.length];
+        for (int i = 0; i < topLevelKeys.length; i++) {
+            superColumnNames[i] = createPath(topLevelKeys[i]).head();
+        }
+        return readSuperColumns(rowKey, superColumnNames, type);
+    }
+
+    /**
+     * Read the named super columns of a row, or all of them if superColumnNames is null, and compose them into an
+     * object with the super column names restored as the first path elements.
+     */
+    private <T> T readSuperColumns(K rowKey, @Nullable String[] superColumnNames, TypeReference<T> type) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.READ, rowKey, null);
+        Map<String,Map<String,Object>> superColumns = superColumnNames == null ?
+                operations.readRowAsMap(rowKey) :
+                operations.readSuperColumnsAsMap(rowKey, superColumnNames);
+        timer.phase(Phase.QUERY);
+        if (superColumns.isEmpty()) {
+            timer.stop();
+            return null;
+        }
+
+        ComposingVisitor composer = new ComposingVisitor(DefaultPath.fromStrings());
+        StringBuilder columnPath = new StringBuilder();
+        for (Map.Entry<String,Map<String,Object>> superColumn : superColumns.entrySet()) {
+            columnPath.setLength(0);
+            columnPath.append(superColumn.getKey()).append(PATH_DELIMITER);
+            int prefixLength = columnPath.length();
+            for (Map.Entry<String,Object> column : superColumn.getValue().entrySet()) {
+                columnPath.setLength(prefixLength);
+                composer.add(columnPath.append(column.getKey()).toString(), column.getValue());
+            }
+        }
+        Object structure = composer.compose();
+        timer.phase(Phase.COMPOSE);
+
+        T value = readMapper.convertValue(structure, new JacksonTypeReference<T>(type));
+        timer.phase(Phase.CONVERT);
+        timer.stop();
+        return value;
+    }
+
+    @Override
+    protected Map<K,Map<String,Object>> readRows(Path path,
+                                                 @Nullable K startKey,
+                                                 String startToken,
+                                                 String endToken,
+                                                 int rowCount) {
+        String superColumnName = path.head();
+        String start = path.tail().toString();
+        String finish = getFinishString(start);
+        return operations.readRowsAsMap(startKey,
+                                        startToken,
+                                        endToken,
+                                        superColumnName,
+                                        start,
+                                        finish,
+                                        getReadPageSize(),
+                                        rowCount);
+    }
+
+    @Override
+    protected String getKeyspaceName() {
+        return operations.getKeyspaceName();
+    }
+
+    @Override
+    protected Iterator<K> iterateRowKeys(int rowPageSize) {
+        return operations.iterateRowKeys(rowPageSize);
+    }
+
+    @Override
+    protected Map<K,Map<String,Object>> multiGetRows(List<K> rowKeys, Path path) {
+        String superColumnName = path.head();
+        String start = path.tail().toString();
+        String finish = getFinishString(start);
+        int pageSize = getReadPageSize();
+        Map<K,List<Map.Entry<String,Object>>> rows = operations.multiGetColumnRange(rowKeys,
+                                                                                    superColumnName,
+                                                                                    start,
+                                                                                    finish,
+                                                                                    pageSize,
+                                                                                    false,
+                                                                                    COLUMN_ENTRY_MAPPER);
+        Map<K,Map<String,Object>> result = new HashMap<K,Map<String,Object>>(rows.size());
+        for (Map.Entry<K,List<Map.Entry<String,Object>>> row : rows.entrySet()) {
+            final Map<String,Object> columns = new HashMap<String,Object>(row.getValue().size());
+            for (Map.Entry<String,Object> column : row.getValue()) {
+                columns.put(column.getKey(), column.getValue());
+            }
+            if (row.getValue().size() == pageSize) {
+                // the row may have more subcolumns, so the rest are read a page at a time after the last one read
+                String lastColumnName = row.getValue().get(pageSize - 1).getKey();
+                operations.visitColumnsInPages(row.getKey(),
+                                               superColumnName,
+                                               lastColumnName,
+                                               finish,
+                                               pageSize,
+                                               new ColumnVisitor<String,Object>() {
+                                                   @Override
+                                                   public void visit(String columnName,
+                                                                     Object columnValue,
+                                                                     long timestamp,
+                                                                     int ttl) {
+                                                       columns.put(columnName, columnValue);
+                                                   }
+                                               });
+            }
+            result.put(row.getKey(), columns);
+        }
+        return result;
+    }
+
+    @Override
+    protected Path getColumnPath(Path path) {
+        return path.tail();
     }
 
     @Override
     public void writeToPath(K rowKey, Path path, Object value, BatchContext batchContext) {
         validateArgs(rowKey, path);
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE, rowKey, path);
 
         Object structure = writeMapper.convertValue(value, Object.class);
+        timer.phase(Phase.CONVERT);
 
         String superColumnName = path.head();
         Path rest = path.tail();
 
         Map<Path,Object> pathMap = Collections.singletonMap(rest, structure);
-        Map<Path,Object> objectMap = Decomposer.get().decompose(pathMap);
+        List<Path> setPaths = new ArrayList<Path>();
+        Map<Path,Object> objectMap = getDecomposer().decompose(pathMap, setPaths);
+        if (!setPaths.isEmpty()) {
+            // a set replaces the set that was at its path, so delete the old subcolumns that are not overwritten
+            timer.phase(Phase.DECOMPOSE);
+            List<String> staleColumnNames = readStaleSetColumnNames(rowKey, superColumnName, setPaths, objectMap);
+            timer.phase(Phase.QUERY);
+            if (!staleColumnNames.isEmpty()) {
+                // without a batch the subcolumns are still deleted in one mutation rather than one at a time
+                BatchContext batch = batchContext == null ? operations.begin() : batchContext;
+                operations.deleteColumns(rowKey, superColumnName, staleColumnNames, batch);
+                if (batchContext == null) {
+                    operations.commit(batch);
+                }
+                timer.phase(Phase.EXECUTE);
+            }
+        }
 
         Map<String,Object> stringMap = new HashMap<String,Object>();
         for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
             stringMap.put(entry.getKey().toString(), entry.getValue());
         }
+        timer.phase(Phase.DECOMPOSE);
 
         if (batchContext == null) {
             operations.writeColumns(rowKey, superColumnName, stringMap);
         } else {
             operations.writeColumns(rowKey, superColumnName, stringMap, batchContext);
         }
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public void writeColumns(K rowKey, Map<Path,Object> columns, BatchContext batchContext) {
+        for (Path path : columns.keySet()) {
+            validateArgs(rowKey, path);
+        }
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.WRITE, rowKey, null);
+
+        // the first element of each path is the super column name
+        Map<String,Map<String,Object>> superColumns = new LinkedHashMap<String,Map<String,Object>>();
+        for (Map.Entry<Path,Object> entry : columns.entrySet()) {
+            String superColumnName = entry.getKey().head();
+            Map<String,Object> stringMap = superColumns.get(superColumnName);
+            if (stringMap == null) {
+                stringMap = new HashMap<String,Object>();
+                superColumns.put(superColumnName, stringMap);
+            }
+            stringMap.put(entry.getKey().tail().toString(), entry.getValue());
+        }
+        timer.phase(Phase.DECOMPOSE);
+
+        BatchContext batch = batchContext == null ? operations.begin() : batchContext;
+        for (Map.Entry<String,Map<String,Object>> superColumn : superColumns.entrySet()) {
+            operations.writeColumns(rowKey, superColumn.getKey(), superColumn.getValue(), batch);
+        }
+        if (batchContext == null) {
+            operations.commit(batch);
+        }
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
     }
 
     @Override
     public void deletePath(K rowKey, Path path, BatchContext batchContext) {
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.DELETE, rowKey, path);
         String superColumnName = path.head();
 
         String start = path.tail().toString();
@@ -104,5 +348,112 @@ public class ThriftSuperStructuredDataSupport<K> extends AbstractThriftStructure
         } else {
             operations.deleteColumns(rowKey, superColumnName, start, finish, batchContext);
         }
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public void appendToList(K rowKey, Path listPath, Object... values) {
+        validateArgs(rowKey, listPath);
+        Validate.notEmpty(values, "No values to append");
+
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.APPEND_TO_LIST, rowKey, listPath);
+        int currentSize = listSize(rowKey, listPath);
+        timer.phase(Phase.QUERY);
+        String superColumnName = listPath.head();
+        Path rest = listPath.tail();
+        List<Object> elements = convertListElements(values);
+        timer.phase(Phase.CONVERT);
+        Map<Path,Object> objectMap = Decomposer.get().decomposeListAppend(rest, currentSize, elements);
+
+        // if the first new element is a structure then the old terminator is not overwritten, so delete it first
+        Path oldTerminatorPath = rest.withIndices(currentSize);
+        if (!objectMap.containsKey(oldTerminatorPath)) {
+            operations.deleteColumns(rowKey,
+                                     superColumnName,
+                                     Collections.singletonList(oldTerminatorPath.toString()));
+        }
+
+        Map<String,Object> stringMap = new HashMap<String,Object>();
+        for (Map.Entry<Path,Object> entry : objectMap.entrySet()) {
+            stringMap.put(entry.getKey().toString(), entry.getValue());
+        }
+        timer.phase(Phase.DECOMPOSE);
+        operations.writeColumns(rowKey, superColumnName, stringMap);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public int listSize(K rowKey, Path listPath) {
+        validateArgs(rowKey, listPath);
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.LIST_SIZE, rowKey, listPath);
+
+        String superColumnName = listPath.head();
+        Path headerPath = listPath.tail().concat(DefaultPath.fromListHeader());
+        Object header = operations.readColumnValue(rowKey, superColumnName, headerPath.toString());
+        timer.phase(Phase.QUERY);
+        if (header instanceof Number) {
+            timer.stop();
+            return ((Number)header).intValue();
+        }
+
+        // no list header, so fall back to reading the whole list
+        List<Object> list = readFromPath(rowKey, listPath, LIST_TYPE);
+        timer.phase(Phase.QUERY);
+        timer.stop();
+        return list == null ? 0 : list.size();
+    }
+
+    @Override
+    public void addToSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to add");
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.ADD_TO_SET, rowKey, path);
+
+        Map<String,Object> columns = getSetMemberColumns(path.tail(), members);
+        timer.phase(Phase.CONVERT);
+        operations.writeColumns(rowKey, path.head(), columns);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    @Override
+    public void removeFromSet(K rowKey, Path path, Object... members) {
+        validateArgs(rowKey, path);
+        Validate.notEmpty(members, "No members to remove");
+        OperationTimer timer = OperationTimer.start(getMetrics(), Operation.REMOVE_FROM_SET, rowKey, path);
+
+        Set<String> columnNames = getSetMemberColumns(path.tail(), members).keySet();
+        timer.phase(Phase.CONVERT);
+        operations.deleteColumns(rowKey, path.head(), columnNames);
+        timer.phase(Phase.EXECUTE);
+        timer.stop();
+    }
+
+    /**
+     * Read the names of the subcolumns under the set paths that are not written again, i.e. the members,
+     * list elements and terminator of the sets that are replaced.
+     */
+    private List<String> readStaleSetColumnNames(K rowKey,
+                                                 String superColumnName,
+                                                 Iterable<Path> setPaths,
+                                                 Map<Path,Object> objectMap) {
+        Set<String> staleColumnNames = new LinkedHashSet<String>();
+        for (Path setPath : setPaths) {
+            String start = setPath.toString();
+            Iterator<Map.Entry<String,Object>> columns = operations.iterateColumns(rowKey,
+                                                                                   superColumnName,
+                                                                                   start,
+                                                                                   getFinishString(start),
+                                                                                   getReadPageSize());
+            while (columns.hasNext()) {
+                String columnName = columns.next().getKey();
+                if (!objectMap.containsKey(DefaultPath.fromEncodedPathString(columnName))) {
+                    staleColumnNames.add(columnName);
+                }
+            }
+        }
+        return new ArrayList<String>(staleColumnNames);
     }
 }
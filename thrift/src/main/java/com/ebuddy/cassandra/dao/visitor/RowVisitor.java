@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.dao.visitor;
+
+import java.util.Map;
+
+/**
+ * Visit rows one at a time while walking a column family.
+ *
+ * @param <K> The type of a row key.
+ * @param <N> The type of a column name.
+ * @param <V> The type of a column value.
+ */
+public interface RowVisitor<K,N,V> {
+
+    /**
+     * Visit a row.
+     * @param rowKey the key of the row
+     * @param columns the columns read from the row, keyed by column name
+     */
+    void visit(K rowKey, Map<N,V> columns);
+
+}
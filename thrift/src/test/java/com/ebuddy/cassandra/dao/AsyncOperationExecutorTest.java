@@ -0,0 +1,195 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.metrics.InMemoryMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * Tests for AsyncOperationExecutor and the asynchronous templates.
+ */
+public class AsyncOperationExecutorTest {
+    private static final int THREADS = 4;
+    private static final int MAX_CONCURRENT = 2;
+
+    private ExecutorService threadPool;
+    private AsyncOperationExecutor executor;
+    private InMemoryMetrics metrics;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        threadPool = Executors.newFixedThreadPool(THREADS);
+        executor = new AsyncOperationExecutor(threadPool, MAX_CONCURRENT);
+        metrics = new InMemoryMetrics();
+        executor.setMetrics(metrics);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test(groups = "unit")
+    public void shouldLimitConcurrentOperationsPerKeyspace() throws Exception {
+        CountDownLatch started = new CountDownLatch(MAX_CONCURRENT);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<ListenableFuture<Integer>> futures = new ArrayList<ListenableFuture<Integer>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(executor.submit("ks1", new BlockingOperation(i, started, release, running, maxRunning)));
+        }
+        // another keyspace is not held up by the first one
+        assertEquals(executor.submit("ks2", constant(42)).get(5, TimeUnit.SECONDS), Integer.valueOf(42));
+
+        assertEquals(executor.getActiveCount("ks1"), MAX_CONCURRENT);
+        assertEquals(executor.getQueueDepth("ks1"), 3);
+
+        // the active operations may not have started running yet
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        for (int i = 0; i < futures.size(); i++) {
+            assertEquals(futures.get(i).get(5, TimeUnit.SECONDS), Integer.valueOf(i));
+        }
+        assertEquals(maxRunning.get(), MAX_CONCURRENT);
+        assertEquals(executor.getQueueDepth("ks1"), 0);
+        assertEquals(metrics.getQueueDepth(Operation.ASYNC).getMax(), 2L);
+        assertEquals(metrics.getPhaseLatency(Operation.ASYNC, Phase.QUEUE).getCount(), 6L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldFailFutureWhenOperationFails() throws Exception {
+        final IllegalStateException exception = new IllegalStateException("failed");
+        ListenableFuture<Object> future = executor.submit("ks", new Callable<Object>() {
+            @Override
+            public Object call() {
+                throw exception;
+            }
+        });
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(e.getCause(), exception);
+        }
+        // the failed operation does not keep its slot
+        assertEquals(executor.submit("ks", constant(1)).get(5, TimeUnit.SECONDS), Integer.valueOf(1));
+    }
+
+    @Test(groups = "unit")
+    public void shouldFailFutureWhenRejected() throws Exception {
+        threadPool.shutdown();
+
+        ListenableFuture<Integer> future = executor.submit("ks", constant(1));
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("expected ExecutionException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertEquals(executor.getActiveCount("ks"), 0);
+    }
+
+    @Test(groups = "unit")
+    @SuppressWarnings("unchecked")
+    public void shouldExecuteTemplateOperations() throws Exception {
+        ColumnFamilyOperations<String,String,String> operations = mock(ColumnFamilyOperations.class);
+        when(operations.getKeyspaceName()).thenReturn("ks");
+        Map<String,String> columns = ImmutableMap.of("a", "1");
+        when(operations.readColumnsAsMap("key")).thenReturn(columns);
+        AsyncColumnFamilyOperations<String,String,String> asyncOperations =
+                new AsyncColumnFamilyTemplate<String,String,String>(
+                        operations,
+                        new AsyncOperationExecutor(MoreExecutors.sameThreadExecutor(), 1));
+
+        assertEquals(asyncOperations.readColumnsAsMap("key").get(), columns);
+        asyncOperations.writeColumns("key", columns).get();
+        verify(operations).writeColumns("key", columns);
+    }
+
+    private static Callable<Integer> constant(final int value) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return value;
+            }
+        };
+    }
+
+    private static class BlockingOperation implements Callable<Integer> {
+        private final int result;
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+        private final AtomicInteger running;
+        private final AtomicInteger maxRunning;
+
+        private BlockingOperation(int result,
+                                  CountDownLatch started,
+                                  CountDownLatch release,
+                                  AtomicInteger running,
+                                  AtomicInteger maxRunning) {
+            this.result = result;
+            this.started = started;
+            this.release = release;
+            this.running = running;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public Integer call() throws InterruptedException {
+            int current = running.incrementAndGet();
+            synchronized (maxRunning) {
+                maxRunning.set(Math.max(maxRunning.get(), current));
+            }
+            started.countDown();
+            release.await();
+            running.decrementAndGet();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.metrics.InMemoryMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+import me.prettyprint.hector.api.beans.HColumn;
+import me.prettyprint.hector.api.factory.HFactory;
+import me.prettyprint.hector.api.mutation.Mutator;
+
+/**
+ * Tests for AutoFlushingMutator.
+ */
+public class AutoFlushingMutatorTest {
+    private static final String CF = "cf";
+
+    private Mutator<String> delegate;
+    private InMemoryMetrics metrics;
+
+    @BeforeMethod(alwaysRun = true)
+    @SuppressWarnings("unchecked")
+    private void setUp() {
+        delegate = mock(Mutator.class);
+        metrics = new InMemoryMetrics();
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushWhenMutationCountReached() throws Exception {
+        AutoFlushingMutator<String> mutator = createMutator(3, Long.MAX_VALUE);
+
+        for (int i = 0; i < 7; i++) {
+            mutator.addInsertion("key", CF, createColumn("column" + i, "value"));
+        }
+
+        verify(delegate, times(2)).execute();
+        assertEquals(mutator.getFlushCount(), 2);
+        assertEquals(mutator.getMutationCount(), 7L);
+        assertEquals(metrics.getBatchSize(Operation.FLUSH).getCount(), 2L);
+        assertEquals(metrics.getBatchSize(Operation.FLUSH).getSum(), 6L);
+
+        mutator.execute();
+        verify(delegate, times(3)).execute();
+        assertEquals(mutator.getFlushCount(), 2);
+    }
+
+    @Test(groups = "unit")
+    public void shouldFlushWhenByteSizeReached() throws Exception {
+        AutoFlushingMutator<String> mutator = createMutator(Integer.MAX_VALUE, 1000L);
+        char[] chars = new char[400];
+        Arrays.fill(chars, 'x');
+        String largeValue = new String(chars);
+
+        mutator.addInsertion("key", CF, createColumn("column1", largeValue));
+        mutator.addInsertion("key", CF, createColumn("column2", largeValue));
+        verify(delegate, never()).execute();
+
+        mutator.addInsertion("key", CF, createColumn("column3", largeValue));
+        verify(delegate).execute();
+        assertEquals(mutator.getFlushCount(), 1);
+    }
+
+    @Test(groups = "unit")
+    public void shouldCountDeletionsOfMultipleRows() throws Exception {
+        AutoFlushingMutator<String> mutator = createMutator(2, Long.MAX_VALUE);
+
+        mutator.addDeletion(Arrays.asList("key1", "key2", "key3"), CF);
+
+        verify(delegate).addDeletion(Arrays.asList("key1", "key2", "key3"), CF);
+        verify(delegate).execute();
+        assertEquals(mutator.getMutationCount(), 3L);
+    }
+
+    @Test(groups = "unit")
+    public void shouldNotFlushAfterDiscardingPendingMutations() throws Exception {
+        AutoFlushingMutator<String> mutator = createMutator(2, Long.MAX_VALUE);
+
+        mutator.addDeletion("key", CF, "column1", StringSerializer.get());
+        mutator.discardPendingMutations();
+        mutator.addDeletion("key", CF, "column2", StringSerializer.get());
+
+        verify(delegate).discardPendingMutations();
+        verify(delegate, never()).execute();
+    }
+
+    private AutoFlushingMutator<String> createMutator(int maxMutationCount, long maxByteSize) {
+        return new AutoFlushingMutator<String>(delegate,
+                                               StringSerializer.get(),
+                                               maxMutationCount,
+                                               maxByteSize,
+                                               metrics);
+    }
+
+    private HColumn<String,String> createColumn(String name, String value) {
+        return HFactory.createColumn(name, value, StringSerializer.get(), StringSerializer.get());
+    }
+}
@@ -26,9 +26,11 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -39,7 +41,6 @@ import org.apache.commons.collections.KeyValue;
 import org.apache.commons.collections.keyvalue.DefaultKeyValue;
 import org.apache.commons.lang3.ObjectUtils;
 import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.testng.annotations.BeforeMethod;
@@ -78,9 +79,6 @@ public class ColumnFamilyTemplateTest {
     @Mock
     private Mutator<String> mutator;
 
-    @Captor
-    private ArgumentCaptor<ColumnMapper<String,String,String>> mapperCaptor;
-
     private ColumnFamilyOperations<String,String,String> columnFamilyTestDao;
 
     @BeforeMethod(alwaysRun = true)
@@ -301,21 +299,105 @@ public class ColumnFamilyTemplateTest {
 
     @Test(groups = {"unit"})
     public void shouldDeleteColumnSlice() throws Exception {
-        ColumnFamilyOperations<String,String,String> spy = spy(columnFamilyTestDao);
-        doReturn(Arrays.asList("a", "b", "c")).when(spy).readColumns(eq(rowKey), eq("start"), eq(
-                "finish"), eq(Integer.MAX_VALUE), eq(false), mapperCaptor.capture());
+        ColumnFamilyTemplate<String,String,String> spy =
+                spy((ColumnFamilyTemplate<String,String,String>)columnFamilyTestDao);
+        doReturn(Arrays.asList("a", "b", "c")).when(spy).readColumnNames(rowKey, "start", "finish", 1000);
 
         //=========================
         spy.deleteColumns(rowKey, "start", "finish", txnContext);
         //=========================
 
         verify(mutator).addDeletion(rowKey, columnFamily, "a", StringSerializer.get());
-        verify(mutator).addDeletion(rowKey, columnFamily, "a", StringSerializer.get());
-        verify(mutator).addDeletion(rowKey, columnFamily, "a", StringSerializer.get());
+        verify(mutator).addDeletion(rowKey, columnFamily, "b", StringSerializer.get());
+        verify(mutator).addDeletion(rowKey, columnFamily, "c", StringSerializer.get());
 
         verify(mutator, never()).execute();
     }
 
+    @Test(groups = {"unit"})
+    public void shouldDeleteColumnSliceInPages() throws Exception {
+        ColumnFamilyTemplate<String,String,String> spy =
+                spy((ColumnFamilyTemplate<String,String,String>)columnFamilyTestDao);
+        spy.setDeletePageSize(3);
+        doReturn(Arrays.asList("a", "b", "c")).when(spy).readColumnNames(rowKey, "start", "finish", 3);
+        doReturn(Arrays.asList("c", "d", "e")).when(spy).readColumnNames(rowKey, "c", "finish", 3);
+        doReturn(Arrays.asList("e")).when(spy).readColumnNames(rowKey, "e", "finish", 3);
+
+        //=========================
+        spy.deleteColumns(rowKey, "start", "finish", txnContext);
+        //=========================
+
+        // the first name of each page after the first is where the page started, so it is deleted only once
+        for (String columnName : Arrays.asList("a", "b", "c", "d", "e")) {
+            verify(mutator).addDeletion(rowKey, columnFamily, columnName, StringSerializer.get());
+        }
+        verify(spy).readColumnNames(rowKey, "e", "finish", 3);
+        verify(mutator, never()).execute();
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldIterateColumnsInPages() throws Exception {
+        ColumnFamilyTemplate<String,String,String> spy =
+                spy((ColumnFamilyTemplate<String,String,String>)columnFamilyTestDao);
+        doReturn(createColumns("a", "b", "c")).when(spy).readColumnSlice(rowKey, "start", "finish", 3);
+        doReturn(createColumns("c", "d", "e")).when(spy).readColumnSlice(rowKey, "c", "finish", 3);
+        doReturn(createColumns("e")).when(spy).readColumnSlice(rowKey, "e", "finish", 3);
+
+        //=========================
+        Iterator<Map.Entry<String,String>> columns = spy.iterateColumns(rowKey, "start", "finish", 3);
+        //=========================
+
+        // the first column of each page after the first is where the page started, so it is returned only once
+        for (String name : Arrays.asList("a", "b", "c", "d", "e")) {
+            assertTrue(columns.hasNext());
+            Map.Entry<String,String> column = columns.next();
+            assertEquals(column.getKey(), name);
+            assertEquals(column.getValue(), name + "Value");
+        }
+        assertFalse(columns.hasNext());
+        verify(spy).readColumnSlice(rowKey, "e", "finish", 3);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldIterateRowsInPages() throws Exception {
+        ColumnFamilyTemplate<String,String,String> spy =
+                spy((ColumnFamilyTemplate<String,String,String>)columnFamilyTestDao);
+        Row<String,String,String> deletedRow = createRow("k2");
+        doReturn(Arrays.asList(createRow("k1", "a"), deletedRow, createRow("k3", "a", "b"))).
+                when(spy).readRowSlice(null, "start", "finish", 10, 3);
+        doReturn(Arrays.asList(createRow("k3", "a", "b"), createRow("k4", "b"))).
+                when(spy).readRowSlice("k3", "start", "finish", 10, 3);
+
+        //=========================
+        Iterator<Map.Entry<String,Map<String,String>>> rows = spy.iterateRows("start", "finish", 10, 3);
+        //=========================
+
+        // the row without columns is skipped, and the first row of the second page is returned only once
+        assertEquals(rows.next().getKey(), "k1");
+        Map.Entry<String,Map<String,String>> row = rows.next();
+        assertEquals(row.getKey(), "k3");
+        assertEquals(row.getValue().get("b"), "bValue");
+        assertEquals(rows.next().getKey(), "k4");
+        assertFalse(rows.hasNext());
+    }
+
+    private Row<String,String,String> createRow(String key, String... columnNames) {
+        Row<String,String,String> row = mock(Row.class);
+        ColumnSlice<String,String> slice = mock(ColumnSlice.class);
+        when(row.getKey()).thenReturn(key);
+        when(row.getColumnSlice()).thenReturn(slice);
+        when(slice.getColumns()).thenReturn(createColumns(columnNames));
+        return row;
+    }
+
+    private List<HColumn<String,String>> createColumns(String... names) {
+        List<HColumn<String,String>> columns = new ArrayList<HColumn<String,String>>(names.length);
+        for (String name : names) {
+            columns.add(HFactory.createStringColumn(name, name + "Value"));
+        }
+        return columns;
+    }
+
     private boolean areColumnsEqual(HColumn column1, HColumn column2) {
         return column1 == column2 ||
                 column2 != null &&
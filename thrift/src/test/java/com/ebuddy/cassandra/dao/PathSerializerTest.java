@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.ebuddy.cassandra.dao;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.structure.DefaultPath;
+import com.google.common.base.Strings;
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+
+/**
+ * Tests for PathSerializer.
+ */
+public class PathSerializerTest {
+
+    @Test(groups = "unit")
+    public void shouldWriteSameBytesAsStringSerializer() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b c", "é/x").withIndices(3).withElements("");
+
+        ByteBuffer bytes = PathSerializer.get().toByteBuffer(path);
+
+        assertEquals(bytes, StringSerializer.get().toByteBuffer(path.toString()));
+    }
+
+    @Test(groups = "unit")
+    public void shouldWriteSameBytesAsStringSerializerForNonAsciiElements() throws Exception {
+        Path path = DefaultPath.fromEncodedPathString("été/x/");
+
+        ByteBuffer bytes = PathSerializer.get().toByteBuffer(path);
+
+        assertEquals(bytes, StringSerializer.get().toByteBuffer(path.toString()));
+    }
+
+    @Test(groups = "unit")
+    public void shouldWriteSameBytesAsStringSerializerForLongPaths() throws Exception {
+        Path path = DefaultPath.fromStrings("a", Strings.repeat("b", 100)).withIndices(1).withElements(
+                Strings.repeat("c", 200), "d");
+
+        ByteBuffer bytes = PathSerializer.get().toByteBuffer(path);
+
+        assertEquals(bytes, StringSerializer.get().toByteBuffer(path.toString()));
+    }
+
+    @Test(groups = "unit")
+    public void shouldWriteEmptyPath() throws Exception {
+        ByteBuffer bytes = PathSerializer.get().toByteBuffer(DefaultPath.fromStrings());
+
+        assertEquals(bytes.remaining(), 0);
+    }
+
+    @Test(groups = "unit")
+    public void shouldReadPathWrittenAsString() throws Exception {
+        Path path = DefaultPath.fromStrings("a", "b/c").withIndices(0);
+
+        Path result = PathSerializer.get().fromByteBuffer(StringSerializer.get().toByteBuffer(path.toString()));
+
+        assertEquals(result, path);
+        assertEquals(result.size(), 3);
+    }
+
+    @Test(groups = "unit")
+    public void shouldRoundTrip() throws Exception {
+        Path path = DefaultPath.fromStrings("x", "y").concat(DefaultPath.fromListHeader());
+
+        Path result = PathSerializer.get().fromByteBuffer(PathSerializer.get().toByteBuffer(path));
+
+        assertEquals(result, path);
+        assertTrue(result.startsWith(DefaultPath.fromStrings("x")));
+    }
+}
@@ -17,9 +17,14 @@
 package com.ebuddy.cassandra.dao;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.cassandraunit.DataLoader;
 import org.cassandraunit.dataset.yaml.ClassPathYamlDataSet;
@@ -30,6 +35,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.ebuddy.cassandra.dao.mapper.SuperColumnFamilyRowMapper;
+import com.google.common.collect.Iterators;
 
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.hector.api.Cluster;
@@ -102,6 +108,29 @@ public class SuperColumnFamilyTemplateSystemTest {
         });
     }
 
+    @Test(groups = "system")
+    public void shouldIterateRows() throws Exception {
+        SuperColumnFamilyTemplate<String,String,String,String> template = new
+                SuperColumnFamilyTemplate<String,String,String,String>(
+                getKeyspace(),
+                SUPER_COLUMN_FAMILY,
+                StringSerializer.get(),
+                StringSerializer.get(),
+                StringSerializer.get(),
+                StringSerializer.get());
+
+        // only one row has the super column, and at most two subcolumns are read from it
+        Iterator<Map.Entry<String,Map<String,String>>> rows = template.iterateRows("alex", null, null, 2, 2);
+        Map.Entry<String,Map<String,String>> row = rows.next();
+        assertEquals(row.getKey(), ALEX_ROW_KEY);
+        assertEquals(row.getValue().keySet(), new HashSet<String>(Arrays.asList("age", "city")));
+        assertFalse(rows.hasNext());
+
+        Set<String> rowKeys = new HashSet<String>();
+        Iterators.addAll(rowKeys, template.iterateRowKeys(2));
+        assertEquals(rowKeys, new HashSet<String>(Arrays.asList(ALEX_ROW_KEY, MIKE_ROW_KEY)));
+    }
+
     private Keyspace getKeyspace() {
         Cluster cluster = HFactory.getOrCreateCluster(CLUSTER_NAME, HOST);
         Keyspace keyspace = HFactory.createKeyspace(KEYSPACE_NAME, cluster);
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2013 eBuddy B.V.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package com.ebuddy.cassandra.dao;
+
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import me.prettyprint.cassandra.serializers.StringSerializer;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.ebuddy.cassandra.Path;
+import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.test.AllocationBudget;
+
+/**
+ * Allocation budgets for ThriftStructuredDataSupport, from a POJO to serialized columns and back, without the
+ * call to Cassandra. The budgets are in allocation-budgets.properties.
+ */
+public class ThriftStructuredDataSupportAllocationTest {
+    private final String rowKey = "rowKey";
+    private final TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+    private final TestPojo testPojo = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3"));
+
+    private AllocationBudget budget;
+    private ThriftStructuredDataSupport<String> dao;
+    private Path path;
+    private Map<String,ByteBuffer> columns;
+    private ThriftStructuredDataSupport<String> pathDao;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() throws Exception {
+        budget = new AllocationBudget(getClass());
+        columns = new HashMap<String,ByteBuffer>();
+        dao = new ThriftStructuredDataSupport<String>(createSerializingOperations());
+        path = dao.createPath("a", "b", "c");
+        dao.writeToPath(rowKey, path, testPojo);
+        pathDao = new ThriftStructuredDataSupport<String>(createSerializingOperations());
+        pathDao.setPathOperations(createPathSerializingOperations());
+        pathDao.writeToPath(rowKey, path, testPojo);
+    }
+
+    @Test(groups = "unit")
+    public void writeToPathShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("thrift.writeToPath", new Runnable() {
+            @Override
+            public void run() {
+                dao.writeToPath(rowKey, path, testPojo);
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void writeToPathWithPathOperationsShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("thrift.writeToPath.pathOperations", new Runnable() {
+            @Override
+            public void run() {
+                pathDao.writeToPath(rowKey, path, testPojo);
+            }
+        });
+    }
+
+    @Test(groups = "unit")
+    public void writeToPathWithPathOperationsShouldAllocateLessThanWithStringColumnNames() throws Exception {
+        long withStrings = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                dao.writeToPath(rowKey, path, testPojo);
+            }
+        });
+        long withPaths = AllocationBudget.measure(new Runnable() {
+            @Override
+            public void run() {
+                pathDao.writeToPath(rowKey, path, testPojo);
+            }
+        });
+
+        assertTrue(withPaths < withStrings,
+                   "writing with Path column names allocated " + withPaths + " bytes, with String column names " +
+                           withStrings);
+    }
+
+    @Test(groups = "unit")
+    public void readFromPathShouldBeWithinBudget() throws Exception {
+        budget.assertWithinBudget("thrift.readFromPath", new Runnable() {
+            @Override
+            public void run() {
+                dao.readFromPath(rowKey, path, typeReference);
+            }
+        });
+    }
+
+    /**
+     * Create ColumnFamilyOperations that serialize the columns written and deserialize the columns read,
+     * as ColumnFamilyTemplate does, but keep them in memory.
+     */
+    @SuppressWarnings("unchecked")
+    private ColumnFamilyOperations<String,String,Object> createSerializingOperations() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("writeColumns")) {
+                    for (Map.Entry<String,Object> entry : ((Map<String,Object>)args[1]).entrySet()) {
+                        StringSerializer.get().toByteBuffer(entry.getKey());
+                        columns.put(entry.getKey(), StructureSerializer.get().toByteBuffer(entry.getValue()));
+                    }
+                    return null;
+                }
+                if (method.getName().equals("visitColumnsInPages")) {
+                    ColumnVisitor<String,Object> visitor = (ColumnVisitor<String,Object>)args[4];
+                    for (Map.Entry<String,ByteBuffer> entry : columns.entrySet()) {
+                        visitor.visit(entry.getKey(),
+                                      StructureSerializer.get().fromByteBuffer(entry.getValue().duplicate()),
+                                      0L,
+                                      0);
+                    }
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (ColumnFamilyOperations<String,String,Object>)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {ColumnFamilyOperations.class}, handler);
+    }
+
+    /**
+     * Create ColumnFamilyOperations with Path column names that serialize the columns written with the PathSerializer,
+     * as a ColumnFamilyTemplate with the PathSerializer does, but discard them.
+     */
+    @SuppressWarnings("unchecked")
+    private ColumnFamilyOperations<String,Path,Object> createPathSerializingOperations() {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("writeColumns")) {
+                    for (Map.Entry<Path,Object> entry : ((Map<Path,Object>)args[1]).entrySet()) {
+                        PathSerializer.get().toByteBuffer(entry.getKey());
+                        StructureSerializer.get().toByteBuffer(entry.getValue());
+                    }
+                    return null;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            }
+        };
+        return (ColumnFamilyOperations<String,Path,Object>)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {ColumnFamilyOperations.class}, handler);
+    }
+}
@@ -17,20 +17,38 @@
 package com.ebuddy.cassandra.dao;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.StructuredDataSupport;
 import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.scan.TokenRing;
 import com.ebuddy.cassandra.test.AbstractCassandraThriftSystemTest;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.hector.api.Serializer;
@@ -48,6 +66,7 @@ public class ThriftStructuredDataSupportSystemTest extends AbstractCassandraThri
 
     private final String columnFamily = "testpojo";
     private StructuredDataSupport<String> dao;
+    private ColumnFamilyOperations<String,String,Object> operations;
 
     @Override
     @BeforeMethod(alwaysRun = true)
@@ -56,7 +75,7 @@ public class ThriftStructuredDataSupportSystemTest extends AbstractCassandraThri
         Serializer<String> keySerializer = StringSerializer.get();
         Serializer<String> columnNameSerializer = StringSerializer.get();
         Serializer<Object> valueSerializer = StructureSerializer.get();
-        ColumnFamilyOperations<String,String,Object> operations = new ColumnFamilyTemplate<String,String,Object>(
+        operations = new ColumnFamilyTemplate<String,String,Object>(
                 keyspace,
                 columnFamily,
                 keySerializer,
@@ -83,6 +102,79 @@ public class ThriftStructuredDataSupportSystemTest extends AbstractCassandraThri
         assertNull(result2);
     }
 
+    @Test(groups = {"system"})
+    public void shouldWriteWithPathOperations() throws Exception {
+        ThriftStructuredDataSupport<String> pathDao = new ThriftStructuredDataSupport<String>(operations);
+        pathDao.setPathOperations(new ColumnFamilyTemplate<String,Path,Object>(keyspace,
+                                                                               columnFamily,
+                                                                               StringSerializer.get(),
+                                                                               PathSerializer.get(),
+                                                                               StructureSerializer.get()));
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2"));
+        String rowKey = "pojoPathOperations";
+        Path path = pathDao.createPath("a", "b c");
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+
+        pathDao.writeToPath(rowKey, path, testObject);
+        pathDao.appendToList(rowKey, pathDao.createPath("list"), "x", "y");
+
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), testObject);
+        assertEquals(dao.readFromPath(rowKey, dao.createPath("list"), new TypeReference<List<String>>() { }),
+                     Arrays.asList("x", "y"));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldDeletePathInPages() throws Exception {
+        ((ColumnFamilyTemplate<String,String,Object>)operations).setDeletePageSize(2);
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3", "e4"));
+        String rowKey = "pojoPaged";
+        Path path = dao.createPath("a");
+        Path otherPath = dao.createPath("b");
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+
+        dao.writeToPath(rowKey, path, testObject);
+        dao.writeToPath(rowKey, otherPath, "other");
+
+        dao.deletePath(rowKey, path);
+        assertNull(dao.readFromPath(rowKey, path, typeReference));
+        assertEquals(dao.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+    }
+
+    @Test(groups = {"system"})
+    public void shouldDeletePathWithPrefixTombstones() throws Exception {
+        ThriftStructuredDataSupport<String> tombstoneDao = new ThriftStructuredDataSupport<String>(operations);
+        tombstoneDao.setPrefixTombstonesEnabled(true);
+        String rowKey = "pojoTombstones";
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2"));
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+        TypeReference<Map<String,Object>> mapType = new TypeReference<Map<String,Object>>() { };
+        Path parentPath = tombstoneDao.createPath("a");
+        Path path = tombstoneDao.createPath("a", "b");
+        Path otherPath = tombstoneDao.createPath("c");
+
+        tombstoneDao.writeToPath(rowKey, path, testObject);
+        tombstoneDao.writeToPath(rowKey, otherPath, "other");
+        assertEquals(tombstoneDao.readFromPath(rowKey, path, typeReference), testObject);
+
+        // deleting an ancestor hides the path, but the columns remain until swept
+        tombstoneDao.deletePath(rowKey, parentPath);
+        assertNull(tombstoneDao.readFromPath(rowKey, path, typeReference));
+        assertEquals(tombstoneDao.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+        assertEquals(tombstoneDao.readFromPath(Collections.singletonList(rowKey), path, typeReference),
+                     Collections.emptyMap());
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), testObject);
+
+        // a write after the delete is not hidden
+        tombstoneDao.writeToPath(rowKey, path.withElements("d"), "new");
+        Map<String,Object> expected = Collections.<String,Object>singletonMap("b",
+                                                                              Collections.singletonMap("d", "new"));
+        assertEquals(tombstoneDao.readFromPath(rowKey, parentPath, mapType), expected);
+
+        tombstoneDao.sweepPrefixTombstones(rowKey, parentPath);
+        assertEquals(dao.readFromPath(rowKey, parentPath, mapType), expected);
+        assertEquals(dao.readFromPath(rowKey, otherPath, new TypeReference<String>() { }), "other");
+    }
+
     @Test(groups = {"system"})
     public void shouldWriteReadDeleteTestPojoWithSet() throws Exception {
         TestPojoWithSet testObject = getTestPojoWithSubclassedSets();
@@ -100,6 +192,254 @@ public class ThriftStructuredDataSupportSystemTest extends AbstractCassandraThri
         assertNull(result2);
     }
 
+    @Test(groups = {"system"})
+    public void shouldReplaceSet() throws Exception {
+        String rowKey = "set1";
+        Path path = dao.createPath("a","b");
+        TypeReference<Set<String>> typeReference = new TypeReference<Set<String>>() { };
+
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1", "m2", "m3")));
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m1")));
+
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m4", "m5")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m4", "m5")));
+
+        // a set with a null member is written as a list
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m6", null)));
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m7")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m7")));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScan() throws Exception {
+        ThriftStructuredDataSupport<String> scanDao = new ThriftStructuredDataSupport<String>(operations);
+        // the embedded cassandra uses the RandomPartitioner; a small page size splits rows across pages
+        scanDao.setTokenRing(TokenRing.RANDOM);
+        scanDao.setScanPageSize(3);
+        scanDao.setScanParallelism(2);
+        // the columns of each object beyond the first read page are read separately
+        scanDao.setReadPageSize(2);
+
+        Path path = dao.createPath("a");
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        for (int i = 0; i < 20; i++) {
+            String rowKey = "scan" + i;
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            dao.writeToPath(rowKey, path, testObject);
+            dao.writeToPath(rowKey, dao.createPath("b"), "other");
+            expected.put(rowKey, testObject);
+        }
+        // a row without data at the path
+        dao.writeToPath("noscan", dao.createPath("b"), "other");
+
+        Map<String,TestPojo> result = new HashMap<String,TestPojo>();
+        CloseableIterator<Map.Entry<String,TestPojo>> iterator = scanDao.scan(path, new TypeReference<TestPojo>() { });
+        try {
+            while (iterator.hasNext()) {
+                Map.Entry<String,TestPojo> entry = iterator.next();
+                assertNull(result.put(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(result, expected);
+    }
+
+
+    @Test(groups = {"system"})
+    public void shouldIterateRows() throws Exception {
+        Map<String,String> expected = new HashMap<String,String>();
+        for (int i = 0; i < 5; i++) {
+            String rowKey = "iterate" + i;
+            dao.writeToPath(rowKey, dao.createPath("x"), "x" + i);
+            expected.put(rowKey, "x" + i);
+        }
+        // a deleted row is not returned
+        dao.writeToPath("deleted", dao.createPath("x"), "deleted");
+        dao.deletePath("deleted", dao.createPath("x"));
+
+        String start = dao.createPath("x").toString();
+        Map<String,String> result = new HashMap<String,String>();
+        Iterator<Map.Entry<String,Map<String,Object>>> rows = operations.iterateRows(start, start, 10, 2);
+        while (rows.hasNext()) {
+            Map.Entry<String,Map<String,Object>> row = rows.next();
+            assertNull(result.put(row.getKey(), (String)row.getValue().get(start)));
+        }
+        assertEquals(result, expected);
+
+        Set<String> rowKeys = new HashSet<String>();
+        Iterators.addAll(rowKeys, operations.iterateRowKeys(2));
+        assertTrue(rowKeys.containsAll(expected.keySet()));
+        assertFalse(rowKeys.contains("deleted"));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScanRowKeys() throws Exception {
+        ThriftStructuredDataSupport<String> scanDao = new ThriftStructuredDataSupport<String>(operations);
+        // a small page size splits rows across pages
+        scanDao.setScanPageSize(3);
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 10; i++) {
+            String rowKey = "scanKeys" + i;
+            // rows with data at different paths are all scanned
+            dao.writeToPath(rowKey, dao.createPath(i % 2 == 0 ? "a" : "b"), "x" + i);
+            expected.add(rowKey);
+        }
+        // a deleted row is not returned
+        dao.writeToPath("deletedScanKeys", dao.createPath("x"), "deleted");
+        dao.deletePath("deletedScanKeys", dao.createPath("x"));
+
+        List<String> rowKeys = new ArrayList<String>();
+        CloseableIterator<String> iterator = scanDao.scanRowKeys();
+        try {
+            Iterators.addAll(rowKeys, iterator);
+        } finally {
+            iterator.close();
+        }
+        assertEquals(new HashSet<String>(rowKeys).size(), rowKeys.size());
+        assertTrue(rowKeys.containsAll(expected));
+        assertFalse(rowKeys.contains("deletedScanKeys"));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadFromPathInPages() throws Exception {
+        ThriftStructuredDataSupport<String> pagingDao = new ThriftStructuredDataSupport<String>(operations);
+        // a page size smaller than the number of columns splits the row across slices
+        pagingDao.setReadPageSize(2);
+        String rowKey = "pojoPages";
+        Path path = pagingDao.createPath("a", "b");
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3"));
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+
+        pagingDao.writeToPath(rowKey, path, testObject);
+        assertEquals(pagingDao.readFromPath(rowKey, path, typeReference), testObject);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePath() throws Exception {
+        ThriftStructuredDataSupport<String> iterateDao = new ThriftStructuredDataSupport<String>(operations);
+        // a small page size splits the path across slices
+        iterateDao.setReadPageSize(2);
+        String rowKey = "pojoIterate";
+        Path path = iterateDao.createPath("a");
+        iterateDao.writeToPath(rowKey, path, new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2")));
+        iterateDao.writeToPath(rowKey, iterateDao.createPath("b"), "other");
+
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("b"), true),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("list").withIndices(0), "e1"),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("list").withIndices(1), "e2"),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("n"), 42),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("nullTest"), null),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("s"), "v1"));
+        assertEquals(toList(iterateDao.iteratePath(rowKey, path)), expected);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePathWithPrefixTombstones() throws Exception {
+        ThriftStructuredDataSupport<String> tombstoneDao = new ThriftStructuredDataSupport<String>(operations);
+        tombstoneDao.setPrefixTombstonesEnabled(true);
+        tombstoneDao.setReadPageSize(2);
+        String rowKey = "pojoIterateTombstones";
+        Path path = tombstoneDao.createPath("a");
+        Map<String,String> map = new HashMap<String,String>();
+        map.put("k1", "v1");
+        map.put("k2", "v2");
+        map.put("k3", "v3");
+        tombstoneDao.writeToPath(rowKey, path, map);
+
+        // the tombstone of a/k1 sorts after the deleted column, and a/k1/x is written after the delete
+        tombstoneDao.deletePath(rowKey, path.withElements("k1"));
+        tombstoneDao.writeToPath(rowKey, path.withElements("k1", "x"), "new");
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(tombstoneDao.createPath("k1", "x"), "new"),
+                Maps.<Path,Object>immutableEntry(tombstoneDao.createPath("k2"), "v2"),
+                Maps.<Path,Object>immutableEntry(tombstoneDao.createPath("k3"), "v3"));
+        assertEquals(toList(tombstoneDao.iteratePath(rowKey, path)), expected);
+
+        // deleting an ancestor of the path hides everything under it
+        tombstoneDao.deletePath(rowKey, path);
+        assertTrue(toList(tombstoneDao.iteratePath(rowKey, path.withElements("k2"))).isEmpty());
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadFromPathOfMultipleRows() throws Exception {
+        ThriftStructuredDataSupport<String> multiGetDao = new ThriftStructuredDataSupport<String>(operations);
+        // a small chunk size splits the rows across chunks, read concurrently
+        multiGetDao.setMultiGetChunkSize(3);
+        // the rows are wider than a read page, so they are read again a page at a time
+        multiGetDao.setReadPageSize(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        multiGetDao.setMultiGetExecutor(executor);
+
+        Path path = dao.createPath("a");
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        List<String> rowKeys = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            String rowKey = "multiGet" + i;
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            dao.writeToPath(rowKey, path, testObject);
+            dao.writeToPath(rowKey, dao.createPath("b"), "other");
+            expected.put(rowKey, testObject);
+            rowKeys.add(rowKey);
+        }
+        // a row without data at the path and a row that does not exist
+        dao.writeToPath("noMultiGet", dao.createPath("b"), "other");
+        rowKeys.add("noMultiGet");
+        rowKeys.add("missing");
+
+        try {
+            assertEquals(multiGetDao.readFromPath(rowKeys, path, new TypeReference<TestPojo>() { }), expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldWriteWithAutoFlushingBatch() throws Exception {
+        AutoFlushingBatchContext batchContext = operations.begin(5, Long.MAX_VALUE);
+        Path path = dao.createPath("a");
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        for (int i = 0; i < 4; i++) {
+            String rowKey = "autoFlush" + i;
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            dao.writeToPath(rowKey, path, testObject, batchContext);
+            expected.put(rowKey, testObject);
+        }
+        assertTrue(batchContext.getFlushCount() > 0);
+
+        operations.commit(batchContext);
+        for (Map.Entry<String,TestPojo> entry : expected.entrySet()) {
+            assertEquals(dao.readFromPath(entry.getKey(), path, new TypeReference<TestPojo>() { }), entry.getValue());
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldWriteReadDeleteAsync() throws Exception {
+        ThriftStructuredDataSupport<String> asyncDao = new ThriftStructuredDataSupport<String>(operations);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        asyncDao.setAsyncExecutor(new AsyncOperationExecutor(executor, 2));
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+        Path path = dao.createPath("a");
+
+        try {
+            List<ListenableFuture<Void>> writes = new ArrayList<ListenableFuture<Void>>();
+            for (int i = 0; i < 5; i++) {
+                writes.add(asyncDao.writeToPathAsync("async" + i, path, new TestPojo("v" + i, i, true,
+                                                                                      Arrays.asList("e1"))));
+            }
+            Futures.allAsList(writes).get(10, TimeUnit.SECONDS);
+
+            ListenableFuture<TestPojo> read = asyncDao.readFromPathAsync("async3", path, typeReference);
+            assertEquals(read.get(10, TimeUnit.SECONDS), new TestPojo("v3", 3, true, Arrays.asList("e1")));
+
+            asyncDao.deletePathAsync("async3", path).get(10, TimeUnit.SECONDS);
+            assertNull(asyncDao.readFromPathAsync("async3", path, typeReference).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
 
 
     @Override
@@ -114,6 +454,18 @@ public class ThriftStructuredDataSupportSystemTest extends AbstractCassandraThri
     }
 
 
+    private static List<Map.Entry<Path,Object>> toList(CloseableIterator<Map.Entry<Path,Object>> iterator) {
+        List<Map.Entry<Path,Object>> list = new ArrayList<Map.Entry<Path,Object>>();
+        try {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return list;
+    }
+
     @SuppressWarnings("CloneableClassWithoutClone")
     private TestPojoWithSet getTestPojoWithSubclassedSets() {
         return new TestPojoWithSet("string",
@@ -17,6 +17,11 @@
 package com.ebuddy.cassandra.dao;
 
 import static org.apache.commons.lang3.ObjectUtils.NULL;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
@@ -25,15 +30,27 @@ import static org.testng.Assert.assertNull;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.dao.visitor.ColumnVisitor;
+import com.ebuddy.cassandra.metrics.InMemoryMetrics;
+import com.ebuddy.cassandra.metrics.Operation;
+import com.ebuddy.cassandra.metrics.Phase;
+import com.ebuddy.cassandra.scan.TokenRing;
+import com.ebuddy.cassandra.writebehind.WriteBehindStructuredDataSupport;
 
 /**
  * Unit tests for ThriftStructuredDataSupport.
@@ -63,11 +80,7 @@ public class ThriftStructuredDataSupportTest {
 
         Map<String,Object> stringObjectMap = getExpectedMap(false);
 
-        when(operations.readColumnsAsMap(rowKey,
-                                         "a/b/c/",
-                                         getFinishString("a/b/c/"),
-                                         Integer.MAX_VALUE,
-                                         false)).thenReturn(stringObjectMap);
+        givenColumns(stringObjectMap);
 
         //////////////////////
         TestPojo result = dao.readFromPath(rowKey, path, typeReference);
@@ -77,14 +90,26 @@ public class ThriftStructuredDataSupportTest {
         assertEquals(result, expectedResult);
     }
 
+    @Test(groups = {"unit"})
+    public void shouldRecordMetricsForReadFromPath() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        dao.setMetrics(metrics);
+        givenColumns(getExpectedMap(false));
+
+        //////////////////////
+        dao.readFromPath(rowKey, path, typeReference);
+        //////////////////////
+
+        assertEquals(metrics.getLatency(Operation.READ).getCount(), 1L);
+        assertEquals(metrics.getPhaseLatency(Operation.READ, Phase.QUERY).getCount(), 1L);
+        assertEquals(metrics.getPhaseLatency(Operation.READ, Phase.COMPOSE).getCount(), 1L);
+        assertEquals(metrics.getPhaseLatency(Operation.READ, Phase.CONVERT).getCount(), 1L);
+    }
+
     @Test(groups = {"unit"})
     public void shouldReadFromPathNotFound() throws Exception {
 
-        when(operations.readColumnsAsMap(rowKey,
-                                         "a/b/c/",
-                                         getFinishString("a/b/c/"),
-                                         Integer.MAX_VALUE,
-                                         false)).thenReturn(Collections.<String,Object>emptyMap());
+        givenColumns(Collections.<String,Object>emptyMap());
 
         //////////////////////
         TestPojo result = dao.readFromPath(rowKey, path, typeReference);
@@ -107,6 +132,46 @@ public class ThriftStructuredDataSupportTest {
         verify(operations).writeColumns(rowKey, stringObjectMap);
     }
 
+    @Test(groups = {"unit"})
+    public void shouldWriteDecomposedColumns() throws Exception {
+        Map<Path,Object> columns = new LinkedHashMap<Path,Object>();
+        columns.put(dao.createPath("a", "x"), 42);
+        columns.put(dao.createPath("a", "y"), NULL);
+
+        //////////////////////
+        dao.writeColumns(rowKey, columns);
+        //////////////////////
+
+        Map<String,Object> expectedColumns = new HashMap<String,Object>();
+        expectedColumns.put("a/x/", 42);
+        expectedColumns.put("a/y/", NULL);
+        verify(operations).writeColumns(rowKey, expectedColumns);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldRecordOneWritePerRowFlushedFromWriteBehindBuffer() throws Exception {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        dao.setMetrics(metrics);
+        WriteBehindStructuredDataSupport<String> writeBehind =
+                new WriteBehindStructuredDataSupport<String>(dao, 1, TimeUnit.HOURS, 100, 100);
+        try {
+            writeBehind.writeToPath(rowKey, path, new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2")));
+            writeBehind.writeToPath(rowKey, dao.createPath("d"), "value");
+            writeBehind.writeToPath("otherRowKey", path, "value");
+
+            //////////////////////
+            writeBehind.flush();
+            //////////////////////
+        } finally {
+            writeBehind.close();
+        }
+
+        assertEquals(metrics.getLatency(Operation.WRITE).getCount(), 2L);
+        assertEquals(metrics.getPhaseLatency(Operation.WRITE, Phase.CONVERT).getCount(), 0L);
+        verify(operations).writeColumns(eq(rowKey), anyMapOf(String.class, Object.class));
+        verify(operations).writeColumns(eq("otherRowKey"), anyMapOf(String.class, Object.class));
+    }
+
     @Test(groups = {"unit"})
     public void shouldDeletePath() throws Exception {
 
@@ -117,6 +182,137 @@ public class ThriftStructuredDataSupportTest {
         verify(operations).deleteColumns(rowKey, "a/b/c/", getFinishString("a/b/c/"));
     }
 
+    @Test(groups = {"unit"})
+    public void shouldGetListSizeFromListHeader() throws Exception {
+        when(operations.readColumnValue(rowKey, "a/b/c/@size/")).thenReturn(3);
+
+        //////////////////////
+        int size = dao.listSize(rowKey, path);
+        //////////////////////
+
+        assertEquals(size, 3);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldAppendToListUsingListHeader() throws Exception {
+        when(operations.readColumnValue(rowKey, "a/b/c/@size/")).thenReturn(2);
+
+        //////////////////////
+        dao.appendToList(rowKey, path, "e3", "e4");
+        //////////////////////
+
+        Map<String,Object> stringObjectMap = new HashMap<String,Object>();
+        stringObjectMap.put("a/b/c/@2/", "e3");
+        stringObjectMap.put("a/b/c/@3/", "e4");
+        stringObjectMap.put("a/b/c/@4/", "\uFFFF\uFFFF");
+        stringObjectMap.put("a/b/c/@size/", 4);
+
+        verify(operations).writeColumns(rowKey, stringObjectMap);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldAddToSet() throws Exception {
+
+        //////////////////////
+        dao.addToSet(rowKey, path, "m1", 2);
+        //////////////////////
+
+        Map<String,Object> stringObjectMap = new HashMap<String,Object>();
+        stringObjectMap.put("a/b/c/#m1/", "m1");
+        stringObjectMap.put("a/b/c/#%EF%BF%BE2/", 2);
+
+        verify(operations).writeColumns(rowKey, stringObjectMap);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldRemoveFromSet() throws Exception {
+
+        //////////////////////
+        dao.removeFromSet(rowKey, path, "m1");
+        //////////////////////
+
+        verify(operations).deleteColumns(rowKey, "a/b/c/#m1/");
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldDeleteOldColumnsWhenWritingSet() throws Exception {
+        Map<String,Object> oldColumns = new LinkedHashMap<String,Object>();
+        oldColumns.put("a/b/c/#m1/", "m1");
+        oldColumns.put("a/b/c/#m3/", "m3");
+        oldColumns.put("a/b/c/@0/", "e1");
+        oldColumns.put("a/b/c/@1/", "\uFFFF\uFFFF");
+        when(operations.iterateColumns(eq(rowKey), eq("a/b/c/"), eq(getFinishString("a/b/c/")), anyInt()))
+                .thenReturn(oldColumns.entrySet().iterator());
+
+        //////////////////////
+        dao.writeToPath(rowKey, path, new HashSet<Object>(Arrays.asList("m1", "m2")));
+        //////////////////////
+
+        verify(operations).deleteColumns(rowKey, "a/b/c/#m3/", "a/b/c/@0/", "a/b/c/@1/");
+
+        Map<String,Object> stringObjectMap = new HashMap<String,Object>();
+        stringObjectMap.put("a/b/c/#m1/", "m1");
+        stringObjectMap.put("a/b/c/#m2/", "m2");
+        verify(operations).writeColumns(rowKey, stringObjectMap);
+    }
+
+    @Test(groups = {"unit"})
+    public void shouldScanContinuingFromLastRowKey() throws Exception {
+        dao.setTokenRing(TokenRing.RANDOM);
+        dao.setScanParallelism(1);
+        dao.setScanPageSize(2);
+        String endToken = TokenRing.RANDOM.split(4).get(0).getEndToken().toString();
+        String finish = getFinishString("a/b/c/");
+
+        Map<String,Map<String,Object>> firstPage = new LinkedHashMap<String,Map<String,Object>>();
+        firstPage.put("k1", getExpectedMap(false));
+        firstPage.put("k2", getExpectedMap(false));
+        when(operations.readRowsAsMap(null, "-1", endToken, "a/b/c/", finish, 1000, 2)).thenReturn(firstPage);
+        Map<String,Map<String,Object>> secondPage = new LinkedHashMap<String,Map<String,Object>>();
+        secondPage.put("k2", getExpectedMap(false));
+        secondPage.put("k3", Collections.<String,Object>emptyMap());
+        when(operations.readRowsAsMap("k2", "-1", endToken, "a/b/c/", finish, 1000, 2)).thenReturn(secondPage);
+        Map<String,Map<String,Object>> thirdPage = new LinkedHashMap<String,Map<String,Object>>();
+        thirdPage.put("k3", Collections.<String,Object>emptyMap());
+        when(operations.readRowsAsMap("k3", "-1", endToken, "a/b/c/", finish, 1000, 2)).thenReturn(thirdPage);
+
+        //////////////////////
+        CloseableIterator<Map.Entry<String,TestPojo>> iterator = dao.scan(path, typeReference);
+        //////////////////////
+
+        Map<String,TestPojo> result = new HashMap<String,TestPojo>();
+        while (iterator.hasNext()) {
+            Map.Entry<String,TestPojo> entry = iterator.next();
+            result.put(entry.getKey(), entry.getValue());
+        }
+        TestPojo expectedResult = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2"));
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        expected.put("k1", expectedResult);
+        expected.put("k2", expectedResult);
+        assertEquals(result, expected);
+    }
+
+    /**
+     * Make the operations visit the given columns when the columns under the path are read.
+     */
+    @SuppressWarnings("unchecked")
+    private void givenColumns(final Map<String,Object> columns) {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ColumnVisitor<String,Object> visitor = (ColumnVisitor<String,Object>)invocation.getArguments()[4];
+                for (Map.Entry<String,Object> column : columns.entrySet()) {
+                    visitor.visit(column.getKey(), column.getValue(), 0L, 0);
+                }
+                return null;
+            }
+        }).when(operations).visitColumnsInPages(eq(rowKey),
+                                                eq("a/b/c/"),
+                                                eq(getFinishString("a/b/c/")),
+                                                eq(1000),
+                                                any(ColumnVisitor.class));
+    }
+
     private Map<String,Object> getExpectedMap(boolean useNullToken) {
         Map<String,Object> stringObjectMap = new HashMap<String,Object>();
         stringObjectMap.put("a/b/c/s/", "v1");
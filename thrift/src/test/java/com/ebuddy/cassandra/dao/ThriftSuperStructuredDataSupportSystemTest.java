@@ -19,18 +19,32 @@ package com.ebuddy.cassandra.dao;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.ebuddy.cassandra.CloseableIterator;
 import com.ebuddy.cassandra.Path;
 import com.ebuddy.cassandra.StructuredDataSupport;
 import com.ebuddy.cassandra.TypeReference;
+import com.ebuddy.cassandra.scan.TokenRing;
 import com.ebuddy.cassandra.test.AbstractCassandraThriftSystemTest;
+import com.google.common.collect.Maps;
 
 import me.prettyprint.cassandra.serializers.StringSerializer;
 import me.prettyprint.hector.api.Serializer;
@@ -49,6 +63,7 @@ public class ThriftSuperStructuredDataSupportSystemTest extends AbstractCassandr
 
     private final String columnFamily = "testpojo";
     private StructuredDataSupport<String> dao;
+    private SuperColumnFamilyOperations<String,String,String,Object> operations;
 
     @Override
     @BeforeMethod(alwaysRun = true)
@@ -58,7 +73,7 @@ public class ThriftSuperStructuredDataSupportSystemTest extends AbstractCassandr
         Serializer<String> supercolumnSerializer = StringSerializer.get();
         Serializer<String> columnNameSerializer = StringSerializer.get();
         Serializer<Object> valueSerializer = StructureSerializer.get();
-        SuperColumnFamilyOperations<String,String,String,Object> operations = new SuperColumnFamilyTemplate<String,String,String,Object>(
+        operations = new SuperColumnFamilyTemplate<String,String,String,Object>(
                 keyspace,
                 columnFamily,
                 keySerializer,
@@ -103,6 +118,200 @@ public class ThriftSuperStructuredDataSupportSystemTest extends AbstractCassandr
         assertNull(result2);
     }
 
+    @Test(groups = {"system"})
+    public void shouldReplaceSet() throws Exception {
+        String rowKey = "set1";
+        Path path = dao.createPath("a","b");
+        TypeReference<Set<String>> typeReference = new TypeReference<Set<String>>() { };
+
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1", "m2", "m3")));
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m1")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m1")));
+
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m4", "m5")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m4", "m5")));
+
+        // a set with a null member is written as a list
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m6", null)));
+        dao.writeToPath(rowKey, path, new HashSet<String>(Arrays.asList("m7")));
+        assertEquals(dao.readFromPath(rowKey, path, typeReference), new HashSet<String>(Arrays.asList("m7")));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScan() throws Exception {
+        ThriftSuperStructuredDataSupport<String> scanDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        // the embedded cassandra uses the RandomPartitioner; a small page size splits rows across pages
+        scanDao.setTokenRing(TokenRing.RANDOM);
+        scanDao.setScanPageSize(3);
+        scanDao.setScanParallelism(2);
+        // the columns of each object beyond the first read page are read separately
+        scanDao.setReadPageSize(2);
+
+        Path path = dao.createPath("a", "b");
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        for (int i = 0; i < 20; i++) {
+            String rowKey = "scan" + i;
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            dao.writeToPath(rowKey, path, testObject);
+            dao.writeToPath(rowKey, dao.createPath("a", "x"), "other");
+            expected.put(rowKey, testObject);
+        }
+        // a row without data at the path
+        dao.writeToPath("noscan", dao.createPath("a", "x"), "other");
+
+        Map<String,TestPojo> result = new HashMap<String,TestPojo>();
+        CloseableIterator<Map.Entry<String,TestPojo>> iterator = scanDao.scan(path, new TypeReference<TestPojo>() { });
+        try {
+            while (iterator.hasNext()) {
+                Map.Entry<String,TestPojo> entry = iterator.next();
+                assertNull(result.put(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(result, expected);
+    }
+
+
+    @Test(groups = {"system"})
+    public void shouldWriteDecomposedColumns() throws Exception {
+        String rowKey = "decomposed";
+        Map<Path,Object> columns = new LinkedHashMap<Path,Object>();
+        columns.put(dao.createPath("a", "x"), 42);
+        columns.put(dao.createPath("a", "y"), ObjectUtils.NULL);
+        columns.put(dao.createPath("b", "z"), "value");
+
+        dao.writeColumns(rowKey, columns);
+
+        Map<String,Object> expected = new HashMap<String,Object>();
+        expected.put("x", 42);
+        expected.put("y", null);
+        assertEquals(dao.readFromPath(rowKey, dao.createPath("a"), new TypeReference<Object>() { }), expected);
+        assertEquals(dao.readFromPath(rowKey, dao.createPath("b", "z"), new TypeReference<String>() { }), "value");
+    }
+
+    @Test(groups = {"system"})
+    public void shouldScanRowKeys() throws Exception {
+        ThriftSuperStructuredDataSupport<String> scanDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        // a small page size splits rows across pages
+        scanDao.setScanPageSize(3);
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < 10; i++) {
+            String rowKey = "scanKeys" + i;
+            // rows with data in different super columns are all scanned
+            dao.writeToPath(rowKey, dao.createPath(i % 2 == 0 ? "a" : "b", "x"), "x" + i);
+            expected.add(rowKey);
+        }
+
+        List<String> rowKeys = new ArrayList<String>();
+        CloseableIterator<String> iterator = scanDao.scanRowKeys();
+        try {
+            while (iterator.hasNext()) {
+                rowKeys.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        assertEquals(new HashSet<String>(rowKeys).size(), rowKeys.size());
+        assertTrue(rowKeys.containsAll(expected));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadFromPathInPages() throws Exception {
+        ThriftSuperStructuredDataSupport<String> pagingDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        // a page size smaller than the number of columns splits the row across slices
+        pagingDao.setReadPageSize(2);
+        String rowKey = "pojoPages";
+        Path path = pagingDao.createPath("a", "b");
+        TestPojo testObject = new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2", "e3"));
+        TypeReference<TestPojo> typeReference = new TypeReference<TestPojo>() { };
+
+        pagingDao.writeToPath(rowKey, path, testObject);
+        assertEquals(pagingDao.readFromPath(rowKey, path, typeReference), testObject);
+    }
+
+    @Test(groups = {"system"})
+    public void shouldIteratePath() throws Exception {
+        ThriftSuperStructuredDataSupport<String> iterateDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        // a small page size splits the path across slices
+        iterateDao.setReadPageSize(2);
+        String rowKey = "pojoIterate";
+        Path path = iterateDao.createPath("a", "b");
+        iterateDao.writeToPath(rowKey, path, new TestPojo("v1", 42L, true, Arrays.asList("e1", "e2")));
+        iterateDao.writeToPath(rowKey, iterateDao.createPath("a", "x"), "other");
+
+        List<Map.Entry<Path,Object>> expected = Arrays.asList(
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("b"), true),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("list").withIndices(0), "e1"),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("list").withIndices(1), "e2"),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("n"), 42),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("nullTest"), null),
+                Maps.<Path,Object>immutableEntry(iterateDao.createPath("s"), "v1"));
+        assertEquals(toList(iterateDao.iteratePath(rowKey, path)), expected);
+
+        // a path of only the super column name iterates the whole super column
+        List<Map.Entry<Path,Object>> superColumnEntries = toList(iterateDao.iteratePath(rowKey,
+                                                                                        iterateDao.createPath("a")));
+        assertEquals(superColumnEntries.size(), expected.size() + 1);
+        assertEquals(superColumnEntries.get(expected.size()),
+                     Maps.<Path,Object>immutableEntry(iterateDao.createPath("x"), "other"));
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadFromPathOfMultipleRows() throws Exception {
+        ThriftSuperStructuredDataSupport<String> multiGetDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        // a small chunk size splits the rows across chunks, read concurrently
+        multiGetDao.setMultiGetChunkSize(3);
+        // the rows are wider than a read page, so they are read again a page at a time
+        multiGetDao.setReadPageSize(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        multiGetDao.setMultiGetExecutor(executor);
+
+        Path path = dao.createPath("a", "b");
+        Map<String,TestPojo> expected = new HashMap<String,TestPojo>();
+        List<String> rowKeys = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            String rowKey = "multiGet" + i;
+            TestPojo testObject = new TestPojo("v" + i, i, true, Arrays.asList("e1", "e2"));
+            dao.writeToPath(rowKey, path, testObject);
+            dao.writeToPath(rowKey, dao.createPath("a", "x"), "other");
+            expected.put(rowKey, testObject);
+            rowKeys.add(rowKey);
+        }
+        // a row without data at the path and a row that does not exist
+        dao.writeToPath("noMultiGet", dao.createPath("a", "x"), "other");
+        rowKeys.add("noMultiGet");
+        rowKeys.add("missing");
+
+        try {
+            assertEquals(multiGetDao.readFromPath(rowKeys, path, new TypeReference<TestPojo>() { }), expected);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(groups = {"system"})
+    public void shouldReadSuperColumnsWithOneQuery() throws Exception {
+        ThriftSuperStructuredDataSupport<String> superDao = new ThriftSuperStructuredDataSupport<String>(operations);
+        String rowKey = "superColumns";
+        Map<String,Object> expected = new HashMap<String,Object>();
+        expected.put("a", Collections.singletonMap("x", "1"));
+        expected.put("b", Collections.singletonMap("y", "2"));
+        expected.put("c d", Collections.singletonMap("z/w", "3"));
+        for (Map.Entry<String,Object> entry : expected.entrySet()) {
+            dao.writeToPath(rowKey, dao.createPath(entry.getKey()), entry.getValue());
+        }
+        TypeReference<Map<String,Object>> mapType = new TypeReference<Map<String,Object>>() { };
+
+        assertEquals(superDao.readFromPath(rowKey, dao.createPath(), mapType), expected);
+
+        Map<String,Object> expectedSubset = new HashMap<String,Object>(expected);
+        expectedSubset.remove("b");
+        assertEquals(superDao.readFromPaths(rowKey, mapType, "a", "c d", "missing"), expectedSubset);
+
+        assertNull(superDao.readFromPaths(rowKey, mapType, "missing"));
+        assertNull(superDao.readFromPath("missingRow", dao.createPath(), mapType));
+    }
 
 
     @Override
@@ -117,6 +326,18 @@ public class ThriftSuperStructuredDataSupportSystemTest extends AbstractCassandr
         cluster.addColumnFamily(columnFamilyDefinition);
     }
 
+    private static List<Map.Entry<Path,Object>> toList(CloseableIterator<Map.Entry<Path,Object>> iterator) {
+        List<Map.Entry<Path,Object>> list = new ArrayList<Map.Entry<Path,Object>>();
+        try {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+        return list;
+    }
+
     @SuppressWarnings("CloneableClassWithoutClone")
     private TestPojoWithSet getTestPojoWithSubclassedSets() {
         return new TestPojoWithSet("string",